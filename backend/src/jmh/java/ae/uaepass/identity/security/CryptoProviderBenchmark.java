@@ -0,0 +1,65 @@
+package ae.uaepass.identity.security;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-256-GCM encryption and SHA-256 of a 64-byte value per JCA provider: the JVM's own
+ * (SunJCE / SUN) vs BouncyCastle. The numbers to set app.security.providers from; the startup
+ * self-benchmark (CryptoProviders) takes a shorter, noisier version of the same measurement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CryptoProviderBenchmark {
+
+    @Param({"JDK", "BC"})
+    public String provider;
+
+    private Cipher cipher;
+    private MessageDigest digest;
+    private SecretKeySpec key;
+    private final byte[] iv = new byte[12];
+    private final byte[] value = new byte[64];
+    private int counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        Provider bc = new BouncyCastleProvider();
+        cipher = "BC".equals(provider)
+            ? Cipher.getInstance("AES/GCM/NoPadding", bc)
+            : Cipher.getInstance("AES/GCM/NoPadding", Security.getProvider("SunJCE"));
+        digest = "BC".equals(provider)
+            ? MessageDigest.getInstance("SHA-256", bc)
+            : MessageDigest.getInstance("SHA-256", Security.getProvider("SUN"));
+        key = new SecretKeySpec(new byte[32], "AES");
+    }
+
+    @Benchmark
+    public byte[] aesGcmEncrypt() throws Exception {
+        // A fresh IV per call, as GCM requires
+        int n = counter++;
+        iv[0] = (byte) n;
+        iv[1] = (byte) (n >>> 8);
+        iv[2] = (byte) (n >>> 16);
+        iv[3] = (byte) (n >>> 24);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        return cipher.doFinal(value);
+    }
+
+    @Benchmark
+    public byte[] sha256() {
+        return digest.digest(value);
+    }
+}
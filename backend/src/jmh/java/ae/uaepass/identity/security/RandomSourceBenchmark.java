@@ -0,0 +1,67 @@
+package ae.uaepass.identity.security;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate throughput of IV and OTP draws from all threads: one shared SecureRandom (previous)
+ * vs the striped DRBG RandomSource (current).
+ *
+ * Run with -t 1, then -t equal to the core count: the shared instance stays flat or degrades,
+ * the striped source should scale with cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class RandomSourceBenchmark {
+
+    private SecureRandom shared;
+    private RandomSource striped;
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final byte[] iv = new byte[12];
+    }
+
+    @Setup
+    public void setUp() {
+        shared = new SecureRandom();
+        striped = new RandomSource(TestSecurityProperties.builder()
+            .random(new AppSecurityProperties.RandomProperties(0, 600000))
+            .build());
+    }
+
+    @Benchmark
+    public byte[] sharedIv(Buffer buffer) {
+        shared.nextBytes(buffer.iv);
+        return buffer.iv;
+    }
+
+    @Benchmark
+    public byte[] stripedIv(Buffer buffer) {
+        striped.nextBytes(buffer.iv);
+        return buffer.iv;
+    }
+
+    @Benchmark
+    public String sharedOtp() {
+        StringBuilder otp = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            otp.append(shared.nextInt(10));
+        }
+        return otp.toString();
+    }
+
+    @Benchmark
+    public String stripedOtp() {
+        return striped.digits(6);
+    }
+}
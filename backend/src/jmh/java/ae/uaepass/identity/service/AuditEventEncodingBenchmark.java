@@ -0,0 +1,74 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.security.SecretsProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of details serialization + chain hash, previous path vs current path.
+ *
+ * mapAndString: Map.of details, sorted-keys reflective write, HMAC over concatenated strings.
+ * typedAndBytes: AuditDetails record through a pre-built writer, HMAC over encoded bytes.
+ * Run with -prof gc to compare allocation per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AuditEventEncodingBenchmark {
+
+    private ObjectWriter sortedMapWriter;
+    private ObjectWriter typedWriter;
+    private Mac mac;
+    private AuditChainHasher hasher;
+    private UUID userId;
+    private String requestId;
+    private Instant createdAt;
+    private long seq;
+    private String previousHash = AuditSequencer.GENESIS;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        sortedMapWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        typedWriter = objectMapper.writerFor(AuditDetails.OtpAttempts.class);
+        SecretsProvider secrets = new TestSecretsProvider();
+        mac = AuditSequencer.newMac(secrets);
+        hasher = new AuditChainHasher(AuditSequencer.newMac(secrets));
+        userId = UUID.randomUUID();
+        requestId = UUID.randomUUID().toString();
+        createdAt = Instant.now();
+    }
+
+    @Benchmark
+    public String mapAndString() throws Exception {
+        String details = sortedMapWriter.writeValueAsString(Map.of("attemptsUsed", 2, "maxAttempts", 5));
+        AuditRecord record = new AuditRecord(AuditEventType.OTP_FAILED, userId, requestId,
+            "10.20.30.40", null, details, createdAt);
+        String entry = AuditSequencer.canonical(++seq, record) + "|" + previousHash;
+        previousHash = HexFormat.of().formatHex(mac.doFinal(entry.getBytes(StandardCharsets.UTF_8)));
+        return previousHash;
+    }
+
+    @Benchmark
+    public String typedAndBytes() throws Exception {
+        String details = typedWriter.writeValueAsString(new AuditDetails.OtpAttempts(2, 5));
+        AuditRecord record = new AuditRecord(AuditEventType.OTP_FAILED, userId, requestId,
+            "10.20.30.40", null, details, createdAt);
+        previousHash = hasher.hash(++seq, record, previousHash);
+        return previousHash;
+    }
+}
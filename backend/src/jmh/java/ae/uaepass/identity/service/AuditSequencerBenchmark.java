@@ -0,0 +1,37 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer sequencing throughput: sequence number + HMAC chain hash per event.
+ * Target: well above 50k events/sec on one core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AuditSequencerBenchmark {
+
+    private AuditSequencer sequencer;
+    private AuditRecord record;
+
+    @Setup
+    public void setUp() {
+        sequencer = new AuditSequencer(null, new TestSecretsProvider());
+        record = new AuditRecord(AuditEventType.OTP_FAILED, UUID.randomUUID(),
+            UUID.randomUUID().toString(), "10.20.30.40", null,
+            "{\"attemptsUsed\":2,\"maxAttempts\":5}", Instant.now());
+    }
+
+    @Benchmark
+    public SequencedAuditRecord sequence() {
+        return sequencer.next(record);
+    }
+}
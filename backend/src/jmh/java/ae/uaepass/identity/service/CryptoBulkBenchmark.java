@@ -0,0 +1,98 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.security.CryptoProviders;
+import ae.uaepass.identity.security.EnvironmentSecretsProvider;
+import ae.uaepass.identity.security.RandomSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CryptoService bulk APIs against the one-value-at-a-time loop a back-office job would write.
+ * Time per whole batch; the speed-up of the *All methods over their loop is the parallel scaling,
+ * bounded by the core count (run with -jvmArgs -XX:ActiveProcessorCount=N to chart it).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CryptoBulkBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    private CryptoService cryptoService;
+    private List<String> plaintexts;
+    private List<String> ciphertexts;
+
+    @Setup
+    public void setUp() {
+        byte[] key = "0123456789abcdef0123456789abcdef".getBytes();
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties("bench", Base64.getEncoder().encodeToString(key), "salt", null, 1))
+            .random(new AppSecurityProperties.RandomProperties(0, 600000))
+            .build();
+        cryptoService = new CryptoService(props, new EnvironmentSecretsProvider(props), new RandomSource(props),
+            new CryptoProviders(props, new SimpleMeterRegistry()));
+        plaintexts = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            plaintexts.add("Citizen Number " + i + " Al Mansoori");
+        }
+        ciphertexts = cryptoService.encryptAll(plaintexts);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cryptoService.shutdown();
+    }
+
+    @Benchmark
+    public List<String> encryptLoop() {
+        List<String> out = new ArrayList<>(rows);
+        for (String plaintext : plaintexts) {
+            out.add(cryptoService.encrypt(plaintext));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<String> encryptAll() {
+        return cryptoService.encryptAll(plaintexts);
+    }
+
+    @Benchmark
+    public List<String> decryptLoop() {
+        List<String> out = new ArrayList<>(rows);
+        for (String ciphertext : ciphertexts) {
+            out.add(cryptoService.decrypt(ciphertext));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<String> decryptAll() {
+        return cryptoService.decryptAll(ciphertexts);
+    }
+
+    @Benchmark
+    public List<byte[]> hashLoop() {
+        List<byte[]> out = new ArrayList<>(rows);
+        for (String plaintext : plaintexts) {
+            out.add(cryptoService.hash(plaintext));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<byte[]> hashAll() {
+        return cryptoService.hashAll(plaintexts);
+    }
+}
@@ -0,0 +1,139 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.security.CryptoProviders;
+import ae.uaepass.identity.security.EnvironmentSecretsProvider;
+import ae.uaepass.identity.security.RandomSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of identifier hashing, fingerprint hashing and PII encryption, previous path vs current.
+ *
+ * legacy*: getInstance per call, fresh SecretKeySpec, intermediate arrays, String.format hex.
+ * The unprefixed methods go through CryptoService / DeviceFingerprintService as they run today.
+ * *Concurrent variants run the current path on four threads.
+ * Run with -prof gc to compare allocation per call (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class CryptoPrimitivesBenchmark {
+
+    private static final String SALT = "bench-hash-salt-0123456789";
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private CryptoService cryptoService;
+    private SecureRandom secureRandom;
+    private String emiratesId;
+    private String fullName;
+    private String fullNameCiphertext;
+    private String legacyCiphertext;
+
+    @Setup
+    public void setUp() {
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties("bench", Base64.getEncoder().encodeToString(KEY), SALT, null, 1))
+            .random(new AppSecurityProperties.RandomProperties(0, 600000))
+            .build();
+        cryptoService = new CryptoService(props, new EnvironmentSecretsProvider(props), new RandomSource(props),
+            new CryptoProviders(props, new SimpleMeterRegistry()));
+        secureRandom = new SecureRandom();
+        emiratesId = "784-1990-1234567-0";
+        fullName = "Mohammed Ahmed Al Maktoum";
+        fullNameCiphertext = cryptoService.encrypt(fullName);
+        try {
+            legacyCiphertext = legacyEncrypt();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Benchmark
+    public byte[] hash() {
+        return cryptoService.hash(emiratesId);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] hashConcurrent() {
+        return cryptoService.hash(emiratesId);
+    }
+
+    @Benchmark
+    public String legacyHash() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hashBytes = digest.digest((SALT + ":" + emiratesId).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hashBytes);
+    }
+
+    @Benchmark
+    public String fingerprintHex() {
+        return cryptoService.hashRaw(fullName);
+    }
+
+    @Benchmark
+    public String legacyFingerprintHex() throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(fullName.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return cryptoService.encrypt(fullName);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String encryptConcurrent() {
+        return cryptoService.encrypt(fullName);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        byte[] iv = new byte[12];
+        secureRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(KEY, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(fullName.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + ciphertext.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(ciphertext, 0, combined, iv.length, ciphertext.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return cryptoService.decrypt(fullNameCiphertext);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        byte[] combined = Base64.getDecoder().decode(legacyCiphertext);
+        byte[] iv = new byte[12];
+        byte[] ciphertext = new byte[combined.length - 12];
+        System.arraycopy(combined, 0, iv, 0, iv.length);
+        System.arraycopy(combined, iv.length, ciphertext, 0, ciphertext.length);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(KEY, "AES"), new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(ciphertext), StandardCharsets.UTF_8);
+    }
+}
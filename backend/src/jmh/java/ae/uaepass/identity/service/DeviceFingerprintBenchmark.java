@@ -0,0 +1,67 @@
+package ae.uaepass.identity.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeviceFingerprintService.computeFingerprint over realistic browser and app headers.
+ * Runs on every login and risk score, so single- and multi-threaded cost both matter.
+ * fingerprintHash is the device_sessions lookup key (bytea, V14): the same digest without hex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class DeviceFingerprintBenchmark {
+
+    private static final String[] USER_AGENTS = {
+        "Mozilla/5.0 (iPhone; CPU iPhone OS 17_4 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.4 Mobile/15E148 Safari/604.1",
+        "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36",
+        "Mozilla/5.0 (Linux; Android 14; SM-S918B) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.6367.82 Mobile Safari/537.36",
+        "UAEPass/3.2.1 (iOS 17.4; iPhone15,2)"
+    };
+
+    private DeviceFingerprintService service;
+    private MockHttpServletRequest[] requests;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        service = new DeviceFingerprintService(null);
+        requests = new MockHttpServletRequest[16];
+        for (int i = 0; i < requests.length; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("POST", "/oauth2/token");
+            request.addHeader("User-Agent", USER_AGENTS[i % USER_AGENTS.length]);
+            request.addHeader("Accept-Language", i % 2 == 0 ? "ar-AE,ar;q=0.9,en-US;q=0.8" : "en-GB,en;q=0.9");
+            if (i % 3 != 0) {
+                request.addHeader("X-Screen-Resolution", "1170x2532");
+                request.addHeader("X-Timezone", "Asia/Dubai");
+            }
+            requests[i] = request;
+        }
+    }
+
+    @Benchmark
+    public String computeFingerprint(Cursor cursor) {
+        return service.computeFingerprint(requests[cursor.next++ & (requests.length - 1)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String computeFingerprintConcurrent(Cursor cursor) {
+        return computeFingerprint(cursor);
+    }
+
+    @Benchmark
+    public byte[] fingerprintHash(Cursor cursor) {
+        return service.fingerprintHash(requests[cursor.next++ & (requests.length - 1)]);
+    }
+}
@@ -0,0 +1,63 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.security.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Argon2id PIN hashing and verification at production parameters (64 MB, 3 iterations).
+ *
+ * Latency is by design; what matters for capacity is how it holds up under concurrency,
+ * since each call allocates and walks 64 MB. Compare verify with verifyConcurrent:
+ * per-call time grows once memory bandwidth is saturated. -prof gc shows the 64 MB per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PinServiceBenchmark {
+
+    private static final String PIN_WITH_PEPPER = "482917" + "bench-server-pepper";
+
+    private PinService pinService;
+    private String storedHash;
+
+    @Setup
+    public void setUp() {
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties("bench-server-pepper", "unused", "unused", null, 1))
+            .random(new AppSecurityProperties.RandomProperties(0, 600000))
+            .build();
+        pinService = new PinService(null, null, null, props, new RandomSource(props));
+        storedHash = pinService.hashWithArgon2id(PIN_WITH_PEPPER);
+    }
+
+    @Benchmark
+    public String hash() {
+        return pinService.hashWithArgon2id(PIN_WITH_PEPPER);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return pinService.verifyArgon2id(PIN_WITH_PEPPER, storedHash);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean verifyConcurrent() {
+        return pinService.verifyArgon2id(PIN_WITH_PEPPER, storedHash);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String validateComplexity() {
+        pinService.validatePinComplexity("285937");
+        return "285937";
+    }
+}
@@ -0,0 +1,72 @@
+package ae.uaepass.identity.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of masking the PII of one audit/log line: email, phone, Emirates ID, name, user ID and IP.
+ * Inputs rotate through a realistic mix, including IPv6 and malformed values.
+ * Run with -prof gc: maskName splits on a regex and dominates the allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PiiMaskingBenchmark {
+
+    private static final int INPUTS = 64;
+
+    private final String[] emails = new String[INPUTS];
+    private final String[] phones = new String[INPUTS];
+    private final String[] emiratesIds = new String[INPUTS];
+    private final String[] names = new String[INPUTS];
+    private final String[] userIds = new String[INPUTS];
+    private final String[] ips = new String[INPUTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        String[] givenNames = {"Mohammed", "Fatima", "Aisha", "Omar", "Khalid", "Mariam"};
+        String[] familyNames = {"Al Maktoum", "Al Nahyan", "Al Mansoori", "Al Hashimi", "bin Rashid Al Falasi"};
+        for (int i = 0; i < INPUTS; i++) {
+            emails[i] = givenNames[i % givenNames.length].toLowerCase() + "." + i + "@example.ae";
+            phones[i] = "+9715" + (10_000_000 + i * 7919);
+            emiratesIds[i] = "784-19" + (70 + i % 30) + "-" + (1_000_000 + i * 104_729 % 9_000_000) + "-" + (i % 10);
+            names[i] = givenNames[i % givenNames.length] + " " + familyNames[i % familyNames.length];
+            userIds[i] = UUID.nameUUIDFromBytes(new byte[] {(byte) i}).toString();
+            ips[i] = i % 8 == 0 ? "2001:db8::" + Integer.toHexString(i) : "10." + (i % 256) + ".20." + (i * 3 % 256);
+        }
+    }
+
+    @Benchmark
+    public void maskAuditLine(Blackhole bh) {
+        int i = next++ & (INPUTS - 1);
+        bh.consume(PiiMaskingUtil.maskEmail(emails[i]));
+        bh.consume(PiiMaskingUtil.maskPhone(phones[i]));
+        bh.consume(PiiMaskingUtil.maskEmiratesId(emiratesIds[i]));
+        bh.consume(PiiMaskingUtil.maskName(names[i]));
+        bh.consume(PiiMaskingUtil.maskUuid(userIds[i]));
+        bh.consume(PiiMaskingUtil.maskIp(ips[i]));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void maskAuditLineConcurrent(Blackhole bh) {
+        maskAuditLine(bh);
+    }
+
+    @Benchmark
+    public String maskIp() {
+        return PiiMaskingUtil.maskIp(ips[next++ & (INPUTS - 1)]);
+    }
+
+    @Benchmark
+    public String maskName() {
+        return PiiMaskingUtil.maskName(names[next++ & (INPUTS - 1)]);
+    }
+}
@@ -0,0 +1,172 @@
+-- ============================================
+-- Compact audit_logs columns: size and insert benchmark
+-- ============================================
+--
+-- Loads the same synthetic rows into the pre-V10 text layout and the V10 compact layout
+-- (smallint event_type, inet ip_address, bytea device_fingerprint_hash, sparse *_raw columns),
+-- both with the production indexes, and reports insert time and on-disk size of each.
+-- Run against a PostgreSQL 16 instance sized like production, never against production:
+--
+--   psql -d uae_identity_bench -v rows=10000000 -f src/jmh/sql/audit_compact_columns.sql
+--
+-- Compare the two "Time:" lines of the timed INSERTs (rows/s = rows / seconds) and the size
+-- table at the end. Repeat a few times: the first run also pays for warming shared_buffers.
+
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+  \set rows 10000000
+\endif
+\timing on
+
+DROP SCHEMA IF EXISTS audit_bench_compact CASCADE;
+CREATE SCHEMA audit_bench_compact;
+SET search_path = audit_bench_compact;
+SET timezone = 'UTC';
+
+-- Source rows, generated once so both layouts receive identical data.
+-- 2% IPv6 and 0.1% malformed client headers exercise the *_raw columns.
+CREATE UNLOGGED TABLE source AS
+SELECT g AS id,
+       e.event_type,
+       md5((g % 2000000)::text)::uuid AS user_id,
+       md5(g::text) AS request_id,
+       CASE
+           WHEN g % 1000 = 0 THEN 'unknown'
+           WHEN g % 50 = 0 THEN '2001:db8:' || to_hex(g % 65536) || '::' || to_hex(g % 4093)
+           ELSE '10.' || (g % 250) || '.' || (g % 199) || '.' || (g % 97)
+       END AS ip_address,
+       CASE WHEN g % 1000 = 1 THEN 'not-a-hash' ELSE encode(sha256(((g % 500000)::text)::bytea), 'hex') END
+           AS device_fingerprint_hash,
+       e.details,
+       NOW() - INTERVAL '30 days' + (g::double precision / :rows) * INTERVAL '30 days' AS created_at,
+       g AS seq,
+       encode(sha256(g::text::bytea), 'hex') AS chain_hash
+FROM generate_series(1, :rows) AS g
+CROSS JOIN LATERAL (
+    SELECT CASE
+        WHEN r < 0.30 THEN 'OTP_SENT'
+        WHEN r < 0.55 THEN 'OTP_VERIFIED'
+        WHEN r < 0.85 THEN 'LOGIN_SUCCESS'
+        WHEN r < 0.95 THEN 'OTP_FAILED'
+        WHEN r < 0.99 THEN 'SESSION_REVOKED'
+        ELSE 'ACCOUNT_LOCKED'
+    END AS event_type,
+    CASE WHEN r < 0.30 THEN jsonb_build_object('channel', 'SMS') END AS details
+    FROM (SELECT random() + 0 * g AS r) AS draw  -- correlated, so drawn per row
+) AS e;
+VACUUM ANALYZE source;
+
+CREATE TABLE codes (code SMALLINT PRIMARY KEY, name VARCHAR(50) NOT NULL UNIQUE);
+INSERT INTO codes VALUES (3, 'OTP_SENT'), (4, 'OTP_VERIFIED'), (5, 'OTP_FAILED'),
+    (7, 'LOGIN_SUCCESS'), (13, 'ACCOUNT_LOCKED'), (15, 'SESSION_REVOKED');
+
+-- Before: V9 layout
+CREATE TABLE text_layout (
+    id                      BIGINT NOT NULL,
+    event_type              VARCHAR(50) NOT NULL,
+    user_id                 UUID,
+    request_id              VARCHAR(64),
+    ip_address              VARCHAR(45),
+    device_fingerprint_hash VARCHAR(128),
+    details                 JSONB,
+    created_at              TIMESTAMPTZ NOT NULL,
+    seq                     BIGINT,
+    chain_hash              VARCHAR(64),
+    occurrence_count        INT NOT NULL DEFAULT 1,
+    first_seen_at           TIMESTAMPTZ,
+    PRIMARY KEY (id, created_at)
+);
+
+-- After: V10 layout
+CREATE TABLE compact_layout (
+    id                      BIGINT NOT NULL,
+    event_type              SMALLINT NOT NULL,
+    user_id                 UUID,
+    request_id              VARCHAR(64),
+    ip_address              INET,
+    device_fingerprint_hash BYTEA,
+    details                 JSONB,
+    created_at              TIMESTAMPTZ NOT NULL,
+    seq                     BIGINT,
+    chain_hash              VARCHAR(64),
+    occurrence_count        INT NOT NULL DEFAULT 1,
+    first_seen_at           TIMESTAMPTZ,
+    ip_address_raw          VARCHAR(45),
+    device_fingerprint_raw  VARCHAR(128),
+    PRIMARY KEY (id, created_at)
+);
+
+-- Production indexes (V5, V6, V8), on both
+DO $$
+DECLARE
+    t TEXT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['text_layout', 'compact_layout'] LOOP
+        EXECUTE format('CREATE INDEX %I ON %I (event_type, created_at DESC, id DESC)', t || '_event_type_time', t);
+        EXECUTE format('CREATE INDEX %I ON %I (user_id, created_at DESC, id DESC)', t || '_user_time', t);
+        EXECUTE format('CREATE INDEX %I ON %I (request_id)', t || '_request_id', t);
+        EXECUTE format('CREATE UNIQUE INDEX %I ON %I (seq, created_at)', t || '_seq', t);
+        EXECUTE format('CREATE INDEX %I ON %I (created_at DESC)', t || '_created_at', t);
+        EXECUTE format('CREATE INDEX %I ON %I USING GIN (details jsonb_path_ops)', t || '_details', t);
+    END LOOP;
+END $$;
+
+CHECKPOINT;
+\echo '=== Insert: text layout ==='
+INSERT INTO text_layout (id, event_type, user_id, request_id, ip_address, device_fingerprint_hash,
+                         details, created_at, seq, chain_hash)
+SELECT id, event_type, user_id, request_id, ip_address, device_fingerprint_hash,
+       details, created_at, seq, chain_hash
+FROM source;
+
+CHECKPOINT;
+\echo '=== Insert: compact layout (conversion as in AuditColumnCodec, done in SQL here) ==='
+INSERT INTO compact_layout (id, event_type, user_id, request_id, ip_address, ip_address_raw,
+                            device_fingerprint_hash, device_fingerprint_raw,
+                            details, created_at, seq, chain_hash)
+SELECT s.id, c.code, s.user_id, s.request_id,
+       CASE WHEN s.ip_address ~ '^[0-9.]+$' THEN s.ip_address::inet
+            WHEN s.ip_address LIKE '%:%' THEN s.ip_address::inet END,
+       CASE WHEN s.ip_address !~ '^[0-9.]+$' THEN s.ip_address END,
+       CASE WHEN s.device_fingerprint_hash ~ '^[0-9a-f]{64}$' THEN decode(s.device_fingerprint_hash, 'hex') END,
+       CASE WHEN s.device_fingerprint_hash !~ '^[0-9a-f]{64}$' THEN s.device_fingerprint_hash END,
+       s.details, s.created_at, s.seq, s.chain_hash
+FROM source s JOIN codes c ON c.name = s.event_type;
+
+VACUUM ANALYZE text_layout;
+VACUUM ANALYZE compact_layout;
+
+\echo '=== Size ==='
+SELECT c.relname AS relation,
+       pg_size_pretty(pg_relation_size(c.oid)) AS size,
+       pg_relation_size(c.oid) AS bytes,
+       round(pg_relation_size(c.oid)::numeric / :rows, 1) AS bytes_per_row
+FROM pg_class c
+WHERE c.relnamespace = 'audit_bench_compact'::regnamespace
+  AND (c.relname LIKE 'text_layout%' OR c.relname LIKE 'compact_layout%')
+  AND c.relkind IN ('r', 'i')
+ORDER BY c.relname;
+
+SELECT 'text_layout' AS layout, pg_size_pretty(pg_total_relation_size('text_layout')) AS total
+UNION ALL
+SELECT 'compact_layout', pg_size_pretty(pg_total_relation_size('compact_layout'));
+
+-- Average stored width of the changed columns
+SELECT avg(pg_column_size(event_type)) AS event_type, avg(pg_column_size(ip_address)) AS ip,
+       avg(pg_column_size(device_fingerprint_hash)) AS fingerprint
+FROM text_layout;
+SELECT avg(pg_column_size(event_type)) AS event_type,
+       avg(coalesce(pg_column_size(ip_address), 0) + coalesce(pg_column_size(ip_address_raw), 0)) AS ip,
+       avg(coalesce(pg_column_size(device_fingerprint_hash), 0)
+           + coalesce(pg_column_size(device_fingerprint_raw), 0)) AS fingerprint
+FROM compact_layout;
+
+-- Round trip: must return 0 (the chain hashes the original text)
+SELECT count(*) AS mismatches
+FROM text_layout t JOIN compact_layout c USING (id, created_at)
+WHERE COALESCE(c.ip_address_raw, host(c.ip_address)) IS DISTINCT FROM t.ip_address
+   OR COALESCE(c.device_fingerprint_raw, encode(c.device_fingerprint_hash, 'hex')) IS DISTINCT FROM t.device_fingerprint_hash;
+
+RESET search_path;
+-- DROP SCHEMA audit_bench_compact CASCADE;
@@ -0,0 +1,123 @@
+-- ============================================
+-- Audit details search: planner and latency benchmark
+-- ============================================
+--
+-- Builds a synthetic, partitioned copy of audit_logs in a scratch schema, then times the
+-- admin search queries (AuditLogRepositoryImpl) before and after idx_audit_details_path.
+-- Run against a PostgreSQL 16 instance sized like production, never against production:
+--
+--   psql -d uae_identity_bench -v rows=20000000 -f src/jmh/sql/audit_details_search.sql
+--
+-- Expect several GB of disk and 10-20 minutes of load for 20M rows. Compare, per query,
+-- "Execution Time" and "shared hit/read" buffers between the two EXPLAIN rounds; with the
+-- index, the selective searches should show a Bitmap Index Scan on *_details_* per partition.
+
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+  \set rows 20000000
+\endif
+\timing on
+
+DROP SCHEMA IF EXISTS audit_bench CASCADE;
+CREATE SCHEMA audit_bench;
+SET search_path = audit_bench;
+SET timezone = 'UTC';
+
+-- Same shape and indexes as V5/V6, six monthly partitions ending this month
+CREATE TABLE audit_logs (
+    id                      BIGINT NOT NULL,
+    event_type              VARCHAR(50) NOT NULL,
+    user_id                 UUID,
+    request_id              VARCHAR(64),
+    ip_address              VARCHAR(45),
+    device_fingerprint_hash VARCHAR(128),
+    details                 JSONB,
+    created_at              TIMESTAMPTZ NOT NULL,
+    seq                     BIGINT,
+    chain_hash              VARCHAR(64),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+DO $$
+DECLARE
+    start_month TIMESTAMPTZ := date_trunc('month', NOW()) - INTERVAL '5 months';
+    m TIMESTAMPTZ;
+BEGIN
+    FOR i IN 0..5 LOOP
+        m := start_month + make_interval(months => i);
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+            'audit_logs_p' || to_char(m, 'YYYYMM'), m, m + INTERVAL '1 month');
+    END LOOP;
+END $$;
+
+-- Event mix roughly as in production: OTP and login traffic dominate, failures are rare,
+-- and max_attempts_reached is a small fraction of OTP_FAILED
+INSERT INTO audit_logs (id, event_type, user_id, request_id, ip_address, details, created_at, seq)
+SELECT g,
+       e.event_type,
+       md5((g % 2000000)::text)::uuid,
+       md5(g::text),
+       '10.' || (g % 250) || '.' || (g % 199) || '.' || (g % 97),
+       e.details,
+       date_trunc('month', NOW()) - INTERVAL '5 months'
+           + (g::double precision / :rows) * (NOW() - (date_trunc('month', NOW()) - INTERVAL '5 months')),
+       g
+FROM generate_series(1, :rows) AS g
+CROSS JOIN LATERAL (
+    SELECT CASE
+        WHEN r < 0.30 THEN 'OTP_SENT'
+        WHEN r < 0.55 THEN 'OTP_VERIFIED'
+        WHEN r < 0.85 THEN 'LOGIN_SUCCESS'
+        WHEN r < 0.95 THEN 'OTP_FAILED'
+        WHEN r < 0.99 THEN 'SESSION_REVOKED'
+        ELSE 'ACCOUNT_LOCKED'
+    END AS event_type,
+    CASE
+        WHEN r < 0.30 THEN jsonb_build_object('channel', CASE WHEN g % 5 = 0 THEN 'EMAIL' ELSE 'SMS' END)
+        WHEN r < 0.85 THEN NULL
+        WHEN r < 0.94 THEN jsonb_build_object('attemptsUsed', 1 + g % 4, 'maxAttempts', 5)
+        WHEN r < 0.945 THEN jsonb_build_object('reason', 'max_attempts_reached')
+        WHEN r < 0.95 THEN jsonb_build_object('reason', 'expired')
+        WHEN r < 0.99 THEN jsonb_build_object('scope', 'ALL_SESSIONS')
+        ELSE jsonb_build_object('reason', 'max_otp_cycles_exceeded')
+    END AS details
+    FROM (SELECT random() + 0 * g AS r) AS draw  -- correlated, so drawn per row
+) AS e;
+
+CREATE INDEX ON audit_logs (event_type, created_at DESC, id DESC);
+CREATE INDEX ON audit_logs (user_id, created_at DESC, id DESC);
+CREATE INDEX ON audit_logs (created_at DESC);
+ALTER TABLE audit_logs ALTER COLUMN details SET STATISTICS 1000;
+VACUUM ANALYZE audit_logs;
+
+-- Q1: "all OTP_FAILED with reason=max_attempts_reached in the last day" (one page)
+-- Q2: same over 90 days (selective predicate, wide range)
+-- Q3: exact count over 90 days
+-- Q4: common predicate (channel=SMS) over 7 days — the planner should keep the time index here
+\set q1 'SELECT * FROM audit_logs WHERE created_at >= NOW() - INTERVAL ''1 day'' AND created_at < NOW() AND event_type = ''OTP_FAILED'' AND details @> ''{"reason":"max_attempts_reached"}'' ORDER BY created_at DESC, id DESC LIMIT 51'
+\set q2 'SELECT * FROM audit_logs WHERE created_at >= NOW() - INTERVAL ''90 days'' AND created_at < NOW() AND event_type = ''OTP_FAILED'' AND details @> ''{"reason":"max_attempts_reached"}'' ORDER BY created_at DESC, id DESC LIMIT 51'
+\set q3 'SELECT count(*) FROM audit_logs WHERE created_at >= NOW() - INTERVAL ''90 days'' AND created_at < NOW() AND details @> ''{"reason":"max_attempts_reached"}'''
+\set q4 'SELECT * FROM audit_logs WHERE created_at >= NOW() - INTERVAL ''7 days'' AND created_at < NOW() AND details @> ''{"channel":"SMS"}'' ORDER BY created_at DESC, id DESC LIMIT 51'
+
+\echo '=== Without details index ==='
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q1;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q2;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q3;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q4;
+
+-- V8__audit_details_index.sql
+CREATE INDEX idx_audit_details_path ON audit_logs USING GIN (details jsonb_path_ops);
+ANALYZE audit_logs;
+SELECT pg_size_pretty(sum(pg_relation_size(indexrelid))) AS details_index_size
+FROM pg_index WHERE indrelid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = 'audit_logs'::regclass)
+  AND indexrelid::regclass::text LIKE '%details%';
+
+\echo '=== With idx_audit_details_path ==='
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q1;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q2;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q3;
+EXPLAIN (ANALYZE, BUFFERS, SUMMARY) :q4;
+
+RESET search_path;
+-- DROP SCHEMA audit_bench CASCADE;
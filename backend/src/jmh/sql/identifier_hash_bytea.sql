@@ -0,0 +1,142 @@
+-- ============================================
+-- Identifier hashes as bytea: index size and lookup benchmark
+-- ============================================
+--
+-- Loads the same synthetic users into the pre-V14 layout (64-char hex in VARCHAR(128)) and the
+-- V14 layout (32-byte BYTEA), both with the production indexes, and reports the size of each
+-- index and the buffer hits of a batch of duplicate-check / phone / email lookups.
+-- Run against a PostgreSQL 16 instance sized like production, never against production:
+--
+--   psql -d uae_identity_bench -v rows=10000000 -f src/jmh/sql/identifier_hash_bytea.sql
+--
+-- Expected from the tuple layout: 84 -> 52 bytes per leaf entry, so each hash index ends up at
+-- ~62% of its hex size (not half: the 8-byte tuple header and line pointer stay). Indexes built
+-- by CREATE INDEX are packed to fillfactor 90; ones grown by random inserts, as in production,
+-- sit nearer 70% full, and REINDEX brings them back.
+
+\set ON_ERROR_STOP on
+\if :{?rows}
+\else
+  \set rows 10000000
+\endif
+\if :{?probes}
+\else
+  \set probes 100000
+\endif
+\timing on
+
+DROP SCHEMA IF EXISTS identifier_hash_bench CASCADE;
+CREATE SCHEMA identifier_hash_bench;
+SET search_path = identifier_hash_bench;
+
+-- Source hashes, generated once so both layouts receive identical data
+CREATE UNLOGGED TABLE source AS
+SELECT g AS id,
+       sha256(('784-' || g)::bytea) AS emirates_id_hash,
+       sha256(('user' || g || '@example.ae')::bytea) AS email_hash,
+       sha256(('+9715' || (10000000 + g))::bytea) AS phone_hash
+FROM generate_series(1, :rows) AS g;
+VACUUM ANALYZE source;
+
+-- Before: V1 layout
+CREATE TABLE hex_layout (
+    id               BIGINT PRIMARY KEY,
+    emirates_id_hash VARCHAR(128) NOT NULL UNIQUE,
+    email_hash       VARCHAR(128) NOT NULL,
+    phone_hash       VARCHAR(128) NOT NULL,
+    full_name_enc    TEXT,
+    status           VARCHAR(20) NOT NULL DEFAULT 'ACTIVE'
+);
+
+-- After: V14 layout
+CREATE TABLE bytea_layout (
+    id               BIGINT PRIMARY KEY,
+    emirates_id_hash BYTEA NOT NULL UNIQUE,
+    email_hash       BYTEA NOT NULL,
+    phone_hash       BYTEA NOT NULL,
+    full_name_enc    TEXT,
+    status           VARCHAR(20) NOT NULL DEFAULT 'ACTIVE'
+);
+
+CREATE INDEX hex_layout_email ON hex_layout (email_hash);
+CREATE INDEX hex_layout_phone ON hex_layout (phone_hash);
+CREATE INDEX bytea_layout_email ON bytea_layout (email_hash);
+CREATE INDEX bytea_layout_phone ON bytea_layout (phone_hash);
+
+-- Loaded with the indexes in place, so pages split as under registration traffic
+\echo '=== Insert: hex layout ==='
+INSERT INTO hex_layout (id, emirates_id_hash, email_hash, phone_hash, full_name_enc)
+SELECT id, encode(emirates_id_hash, 'hex'), encode(email_hash, 'hex'), encode(phone_hash, 'hex'),
+       'u:' || encode(sha256(id::text::bytea), 'base64')
+FROM source;
+
+\echo '=== Insert: bytea layout ==='
+INSERT INTO bytea_layout (id, emirates_id_hash, email_hash, phone_hash, full_name_enc)
+SELECT id, emirates_id_hash, email_hash, phone_hash,
+       'u:' || encode(sha256(id::text::bytea), 'base64')
+FROM source;
+
+VACUUM ANALYZE hex_layout;
+VACUUM ANALYZE bytea_layout;
+
+\echo '=== Size (as grown by inserts) ==='
+SELECT c.relname AS relation,
+       pg_size_pretty(pg_relation_size(c.oid)) AS size,
+       pg_relation_size(c.oid) AS bytes,
+       round(pg_relation_size(c.oid)::numeric / :rows, 1) AS bytes_per_row
+FROM pg_class c
+WHERE c.relnamespace = 'identifier_hash_bench'::regnamespace
+  AND (c.relname LIKE 'hex_layout%' OR c.relname LIKE 'bytea_layout%')
+  AND c.relkind IN ('r', 'i')
+ORDER BY c.relname;
+
+REINDEX TABLE hex_layout;
+REINDEX TABLE bytea_layout;
+
+\echo '=== Size (after REINDEX, as right after the V14 migration) ==='
+SELECT c.relname AS relation,
+       pg_size_pretty(pg_relation_size(c.oid)) AS size,
+       round(pg_relation_size(c.oid)::numeric / :rows, 1) AS bytes_per_row
+FROM pg_class c
+WHERE c.relnamespace = 'identifier_hash_bench'::regnamespace
+  AND (c.relname LIKE 'hex_layout%' OR c.relname LIKE 'bytea_layout%')
+  AND c.relkind = 'i'
+ORDER BY c.relname;
+
+-- Lookups: registration duplicate check (Emirates ID) plus phone and email, for random users.
+-- EXPLAIN (ANALYZE, BUFFERS) reports shared hits vs reads; with shared_buffers smaller than the
+-- hex indexes, the bytea run should read fewer pages from outside the buffer cache.
+CREATE UNLOGGED TABLE probes AS
+SELECT s.* FROM source s
+JOIN (SELECT (random() * (:rows - 1))::bigint + 1 AS id FROM generate_series(1, :probes)) p USING (id);
+ANALYZE probes;
+
+-- One index probe per lookup, as the application's single-row queries do
+SET enable_hashjoin = off;
+SET enable_mergejoin = off;
+
+\echo '=== Lookups: hex layout ==='
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT count(*) FROM probes p
+WHERE EXISTS (SELECT 1 FROM hex_layout u WHERE u.emirates_id_hash = encode(p.emirates_id_hash, 'hex'))
+  AND EXISTS (SELECT 1 FROM hex_layout u WHERE u.phone_hash = encode(p.phone_hash, 'hex'))
+  AND EXISTS (SELECT 1 FROM hex_layout u WHERE u.email_hash = encode(p.email_hash, 'hex'));
+
+\echo '=== Lookups: bytea layout ==='
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT count(*) FROM probes p
+WHERE EXISTS (SELECT 1 FROM bytea_layout u WHERE u.emirates_id_hash = p.emirates_id_hash)
+  AND EXISTS (SELECT 1 FROM bytea_layout u WHERE u.phone_hash = p.phone_hash)
+  AND EXISTS (SELECT 1 FROM bytea_layout u WHERE u.email_hash = p.email_hash);
+
+-- Cumulative index buffer hit ratio over the lookups above
+SELECT indexrelname AS index, idx_blks_hit, idx_blks_read,
+       round(idx_blks_hit::numeric / nullif(idx_blks_hit + idx_blks_read, 0), 4) AS hit_ratio
+FROM pg_statio_user_indexes
+WHERE schemaname = 'identifier_hash_bench'
+ORDER BY indexrelname;
+
+RESET enable_hashjoin;
+RESET enable_mergejoin;
+RESET search_path;
+-- DROP SCHEMA identifier_hash_bench CASCADE;
@@ -4,6 +4,10 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * Type-safe configuration properties for the identity platform.
@@ -16,7 +20,11 @@ public record AppSecurityProperties(
     JwtProperties jwt,
     CryptoProperties crypto,
     OtpProperties otp,
-    RateLimitProperties rateLimit
+    RateLimitProperties rateLimit,
+    RandomProperties random,
+    ReencryptionProperties reencryption,
+    DataKeyProperties dataKeys,
+    ProviderProperties providers
 ) {
     public record CorsProperties(
         @NotBlank String allowedOrigins
@@ -31,10 +39,19 @@ public record AppSecurityProperties(
         @Positive int refreshTokenTtlSeconds
     ) {}
 
+    /**
+     * @param aesKey      PII key id 1 (read through SecretsProvider); also decrypts ciphertexts
+     *                    written before key ids existed
+     * @param keys        further PII keys by id (Base64, 32 bytes), kept while any row still uses them;
+     *                    read through SecretsProvider like aesKey
+     * @param activeKeyId key id new ciphertexts are written with
+     */
     public record CryptoProperties(
         @NotBlank String serverPepper,
         @NotBlank String aesKey,
-        @NotBlank String hashSalt
+        @NotBlank String hashSalt,
+        Map<Integer, String> keys,
+        @Positive int activeKeyId
     ) {}
 
     public record OtpProperties(
@@ -51,4 +68,54 @@ public record AppSecurityProperties(
         @Positive int otpPerMinute,
         @Positive int registrationPerMinute
     ) {}
+
+    /**
+     * @param stripes          DRBG instances shared by request threads; 0 = twice the CPU count
+     * @param reseedIntervalMs how often every instance pulls fresh system entropy
+     */
+    public record RandomProperties(
+        @PositiveOrZero int stripes,
+        @Positive long reseedIntervalMs
+    ) {}
+
+    /**
+     * Background re-encryption of PII onto the active key (PiiReencryptionJob).
+     *
+     * @param maxRowsPerSecond cap across all workers
+     * @param maxBatchMs       a slower batch means the database is busy: the worker pauses as long again
+     */
+    public record ReencryptionProperties(
+        boolean enabled,
+        @Positive long intervalMs,
+        @Positive int batchSize,
+        @Positive int parallelism,
+        @Positive int maxRowsPerSecond,
+        @Positive long maxBatchMs
+    ) {}
+
+    /**
+     * Per-user data keys (UserDataKeyService).
+     *
+     * @param cacheSize       unwrapped keys held in memory, least recently used evicted first
+     * @param cacheTtlSeconds also bounds how long other instances can still decrypt after a shred
+     */
+    public record DataKeyProperties(
+        @Positive int cacheSize,
+        @Positive long cacheTtlSeconds
+    ) {}
+
+    /**
+     * JCA provider per primitive (CryptoProviders). A blank provider means the fastest compliant
+     * candidate when self-benchmark is on, else the JVM's first provider for the algorithm.
+     *
+     * @param candidates  provider names the self-benchmark may choose from, e.g. SunJCE, SUN, BC
+     * @param benchmarkMs measured time per candidate and primitive, after as long again of warm-up
+     */
+    public record ProviderProperties(
+        String aesGcm,
+        String sha256,
+        boolean selfBenchmark,
+        List<String> candidates,
+        @Positive long benchmarkMs
+    ) {}
 }
@@ -0,0 +1,13 @@
+package ae.uaepass.identity.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Audit pipeline configuration.
+ * Binds {@link AuditProperties}; the writer itself is a lifecycle-managed component.
+ */
+@Configuration
+@EnableConfigurationProperties(AuditProperties.class)
+public class AuditConfig {
+}
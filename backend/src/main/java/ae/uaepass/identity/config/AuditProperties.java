@@ -0,0 +1,207 @@
+package ae.uaepass.identity.config;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Type-safe configuration for the audit pipeline.
+ */
+@Validated
+@ConfigurationProperties(prefix = "app.audit")
+public record AuditProperties(
+    ExecutorProperties executor,
+    WriterProperties writer,
+    SealProperties seal,
+    PartitionProperties partition,
+    ExportProperties export,
+    SpoolProperties spool,
+    RollupProperties rollup,
+    ArchiveProperties archive,
+    ActivityProperties activity,
+    CoalesceProperties coalesce,
+    StreamProperties stream,
+    FeedProperties feed
+) {
+    /**
+     * Bounded executor ({@code AuditExecutor}) that prepares events off the request thread.
+     * saturation-policy applies once all threads are busy and queue-capacity tasks are waiting.
+     */
+    public record ExecutorProperties(
+        @Positive int threads,
+        @Positive int queueCapacity,
+        @NotNull SaturationPolicy saturationPolicy,
+        @Positive long blockTimeoutMs,
+        @Positive long shutdownTimeoutMs
+    ) {}
+
+    /**
+     * Ring buffer and batch flush policy for {@code AuditWriter}.
+     * A batch is flushed at batch-size rows or after flush-interval-ms, whichever comes first.
+     * Once spool-watermark events are queued, batches go to the local spool instead of Postgres.
+     */
+    public record WriterProperties(
+        @Positive int capacity,
+        @Positive int batchSize,
+        @Positive long flushIntervalMs,
+        @Positive long offerTimeoutMs,
+        @Positive long shutdownTimeoutMs,
+        @Positive int spoolWatermark
+    ) {}
+
+    /**
+     * Merkle sealing policy for {@code AuditSealService}.
+     * A batch is sealed at batch-size rows, or once its oldest row is older than max-delay-ms.
+     */
+    public record SealProperties(
+        @Positive int batchSize,
+        @Positive long maxDelayMs,
+        @Positive long intervalMs,
+        @Positive int verifyParallelism
+    ) {}
+
+    /**
+     * Monthly partition lifecycle for {@code AuditPartitionManager}.
+     * Ages are counted in whole months after a partition's upper bound.
+     */
+    public record PartitionProperties(
+        @NotBlank String cron,
+        @Positive int premakeMonths,
+        @Positive int brinAfterMonths,
+        @Positive int retentionMonths,
+        @NotNull RetentionMode retentionMode
+    ) {}
+
+    /**
+     * Streaming export ({@code AuditExportService}): rows held in memory per cursor fetch.
+     */
+    public record ExportProperties(
+        @Positive int fetchSize
+    ) {}
+
+    /**
+     * Local memory-mapped spool ({@code AuditSpool}) for batches Postgres cannot take.
+     * Once max-bytes are waiting for replay, further batches are refused (and lost).
+     */
+    public record SpoolProperties(
+        boolean enabled,
+        @NotBlank String directory,
+        @Positive int segmentBytes,
+        @Positive long maxBytes,
+        @Positive int replayBatchSize,
+        @Positive long replayIntervalMs
+    ) {}
+
+    /**
+     * Pre-aggregated counts ({@code AuditRollupService}) behind the admin stats endpoint.
+     * max-points bounds one stats response (e.g. 10080 = one week of minutes).
+     */
+    public record RollupProperties(
+        @Positive long flushIntervalMs,
+        @Positive int minuteRetentionDays,
+        @Positive int maxPoints
+    ) {}
+
+    /**
+     * Cold archive ({@code AuditArchiveService}) for partitions detached by retention.
+     * Requires retention-mode: detach; with drop, expired rows are gone before they can be archived.
+     */
+    public record ArchiveProperties(
+        boolean enabled,
+        @NotBlank String directory,
+        @NotBlank String cron,
+        @Positive long refreshMs,
+        @Positive int segmentRows,
+        @Positive int blockRows,
+        @Positive int indexPageEntries,
+        @Positive double bloomFpp
+    ) {}
+
+    /**
+     * User-facing activity timeline ({@code UserActivityService}).
+     * The first page is cached per user for cache-ttl-seconds and invalidated within
+     * invalidate-interval-ms of a new event for that user being written.
+     */
+    public record ActivityProperties(
+        @Positive int windowDays,
+        @Positive int pageSize,
+        @Positive long cacheTtlSeconds,
+        @Positive long invalidateIntervalMs
+    ) {}
+
+    /**
+     * Flood coalescing ({@code AuditCoalescer}): identical events of a type listed in windows
+     * are collapsed into one row per window. Types not listed are always written individually.
+     * key-modes sets what "identical" means per type; types not listed use FULL.
+     */
+    public record CoalesceProperties(
+        Map<AuditEventType, Duration> windows,
+        Map<AuditEventType, CoalesceKeyMode> keyModes,
+        @Positive int maxKeys,
+        @Positive long sweepIntervalMs
+    ) {}
+
+    /**
+     * Redis Streams transport ({@code AuditStreamPublisher}, {@code AuditStreamConsumer}): every node
+     * publishes batches to the stream at key; the node holding the writer lease persists them.
+     * Enable on all nodes at once, and only with an empty local spool (the spool belongs to
+     * the direct-to-Postgres mode). An entry that keeps failing on its data is dead-lettered
+     * after max-deliveries deliveries.
+     */
+    public record StreamProperties(
+        boolean enabled,
+        @NotBlank String key,
+        @NotBlank String group,
+        @Positive int batchSize,
+        @Positive long blockMs,
+        @Positive long leaseMs,
+        @Positive long retryBackoffMs,
+        @Positive int maxDeliveries,
+        @Positive long lagIntervalMs
+    ) {}
+
+    /**
+     * Server-sent security event feed ({@code SecurityEventFeed}) for SOC tooling: the last
+     * capacity events of event-types (plus risk events) per node, held in memory for resumption.
+     * Subscribers get a heartbeat every heartbeat-ms and reconnect after timeout-ms.
+     */
+    public record FeedProperties(
+        @Positive int capacity,
+        @NotNull Set<AuditEventType> eventTypes,
+        @Positive long heartbeatMs,
+        @Positive long timeoutMs,
+        @Positive int maxSubscribers
+    ) {}
+
+    public enum SaturationPolicy {
+        /** Run the task on the calling (request) thread. */
+        CALLER_RUNS,
+        /** Drop the event and count it. */
+        DROP,
+        /** Wait up to block-timeout-ms for queue space, then drop and count. */
+        BLOCK
+    }
+
+    public enum CoalesceKeyMode {
+        /** Same user, IP, device and details. */
+        FULL,
+        /** Same user, from any IP or device. */
+        USER,
+        /** Same IP, for any user or device. */
+        IP
+    }
+
+    public enum RetentionMode {
+        /** Detach expired partitions and keep them as standalone tables for archiving. */
+        DETACH,
+        /** Drop expired partitions. */
+        DROP
+    }
+}
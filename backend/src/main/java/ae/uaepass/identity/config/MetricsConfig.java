@@ -19,6 +19,50 @@ import org.springframework.context.annotation.Configuration;
  * Timers:
  * - identity.auth.flow.latency
  *
+ * Audit pipeline (registered by AuditWriter):
+ * - identity.audit.queue.depth / identity.audit.batch.size / identity.audit.flush.latency
+ * - identity.audit.dropped / identity.audit.write.failures
+ * - identity.audit.chain.writer (AuditChainLock) / identity.audit.chain.forks
+ *
+ * Audit spool and quarantine (registered by AuditSpool / AuditSpoolReplayer / AuditQuarantine):
+ * - identity.audit.spool.records / identity.audit.spool.bytes / identity.audit.spool.replay.lag
+ * - identity.audit.spool.appended / identity.audit.spool.rollovers / identity.audit.spool.replayed
+ * - identity.audit.spool.full / identity.audit.quarantined
+ *
+ * Audit executor (registered by AuditExecutor):
+ * - identity.audit.executor.saturated{outcome=caller_runs|dropped} / identity.audit.executor.queue.depth
+ *
+ * Audit coalescing (registered by AuditCoalescer):
+ * - identity.audit.coalesced{type} / identity.audit.coalesce.overflow / identity.audit.coalesce.windows
+ *
+ * Audit stream transport (registered by AuditStreamPublisher / AuditStreamConsumer):
+ * - identity.audit.stream.published / identity.audit.stream.persisted / identity.audit.stream.batch.size
+ * - identity.audit.stream.backlog / identity.audit.stream.lag.seconds / identity.audit.stream.leader
+ * - identity.audit.stream.duplicates / identity.audit.stream.dead.letters / identity.audit.stream.failures
+ *
+ * Audit rollups (registered by AuditRollupService):
+ * - identity.audit.rollup.flush.failures
+ *
+ * Audit archive (registered by AuditArchiveService):
+ * - identity.audit.archive.segments / identity.audit.archive.rows
+ * - identity.audit.archive.lookups{outcome=read|bloom_skip}
+ *
+ * User activity timeline (registered by UserActivityService):
+ * - identity.activity.cache{outcome=hit|miss} / identity.activity.invalidation.failures
+ *
+ * SOC security event feed (registered by SecurityEventFeed):
+ * - identity.feed.events / identity.feed.gaps / identity.feed.subscribers
+ *
+ * PII re-encryption (registered by PiiReencryptionJob):
+ * - identity.crypto.reencrypted / identity.crypto.reencrypt.conflicts / identity.crypto.reencrypt.failures
+ * - identity.crypto.reencrypt.throttled / identity.crypto.reencrypt.pending.segments
+ *
+ * User data keys (registered by UserDataKeyService):
+ * - identity.crypto.datakey.cache{outcome=hit|miss} / identity.crypto.datakey.shredded
+ *
+ * JCA providers (registered by CryptoProviders):
+ * - identity.crypto.provider.selected{primitive,provider,source} / identity.crypto.provider.benchmark{primitive,provider}
+ *
  * All exposed via /actuator/prometheus
  */
 @Configuration
@@ -1,17 +1,39 @@
 package ae.uaepass.identity.controller;
 
+import ae.uaepass.identity.dto.AuditCursor;
+import ae.uaepass.identity.dto.AuditDetailKey;
+import ae.uaepass.identity.dto.AuditLogFilter;
+import ae.uaepass.identity.entity.AuditEventType;
 import ae.uaepass.identity.entity.AuditLog;
 import ae.uaepass.identity.repository.AuditLogRepository;
+import ae.uaepass.identity.service.AuditArchiveService;
+import ae.uaepass.identity.service.AuditDetails;
+import ae.uaepass.identity.service.AuditExportService;
+import ae.uaepass.identity.service.AuditRollupService;
+import ae.uaepass.identity.service.AuditSealService;
+import ae.uaepass.identity.service.AuditSealVerifier;
+import ae.uaepass.identity.service.AuditService;
+import ae.uaepass.identity.service.SecurityEventFeed;
 import ae.uaepass.identity.util.PiiMaskingUtil;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -24,37 +46,173 @@ import java.util.stream.Collectors;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminAuditController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final Comparator<AuditLog> NEWEST_FIRST =
+        Comparator.comparing(AuditLog::getCreatedAt).thenComparing(AuditLog::getId).reversed();
+
     private final AuditLogRepository auditLogRepository;
+    private final AuditSealService sealService;
+    private final AuditSealVerifier sealVerifier;
+    private final AuditExportService exportService;
+    private final AuditService auditService;
+    private final AuditRollupService rollupService;
+    private final AuditArchiveService archiveService;
+    private final SecurityEventFeed feed;
 
-    public AdminAuditController(AuditLogRepository auditLogRepository) {
+    public AdminAuditController(AuditLogRepository auditLogRepository,
+                                AuditSealService sealService,
+                                AuditSealVerifier sealVerifier,
+                                AuditExportService exportService,
+                                AuditService auditService,
+                                AuditRollupService rollupService,
+                                AuditArchiveService archiveService,
+                                SecurityEventFeed feed) {
         this.auditLogRepository = auditLogRepository;
+        this.sealService = sealService;
+        this.sealVerifier = sealVerifier;
+        this.exportService = exportService;
+        this.auditService = auditService;
+        this.rollupService = rollupService;
+        this.archiveService = archiveService;
+        this.feed = feed;
     }
 
     /**
-     * Query audit logs with pagination.
+     * Query audit logs with keyset pagination on (createdAt, id).
+     * Pass the previous response's nextCursor to continue; page cost does not grow with depth.
+     * The time range (default: last 30 days, max 1 year) bounds the partitions scanned.
+     * totalElements is a planner estimate unless count=exact is requested.
+     * Request ID and user ID lookups also search the cold archive of retired partitions;
+     * archived rows are merged into the same (createdAt, id) order. They are counted only with
+     * count=exact, reported separately as archivedElements and included in totalElements.
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAuditLogs(
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) AuditEventType eventType,
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) String requestId,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(defaultValue = "approx") String count) {
+
+        AuditLogFilter filter = AuditLogFilter.of(eventType, userId, requestId, from, to);
+        return ResponseEntity.ok(page(filter, cursor, size, count));
+    }
+
+    /**
+     * Listing with typed predicates over detail keys, e.g.
+     * {@code ?eventType=OTP_FAILED&reason=max_attempts_reached&from=...}.
+     * All predicates must hold; they are served by the details GIN index, so selective
+     * searches stay index-bound however large the time range. Paging as in the plain listing.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchAuditLogs(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "50") int size,
-            @RequestParam(required = false) String eventType,
-            @RequestParam(required = false) UUID userId) {
+            @RequestParam(required = false) AuditEventType eventType,
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String reason,
+            @RequestParam(required = false) String channel,
+            @RequestParam(required = false) String scope,
+            @RequestParam(required = false) String accountLevel,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String alias,
+            @RequestParam(required = false) String attemptsUsed,
+            @RequestParam(defaultValue = "approx") String count) {
 
-        size = Math.min(size, 100); // Cap page size
+        Map<AuditDetailKey, String> predicates = new EnumMap<>(AuditDetailKey.class);
+        predicates.put(AuditDetailKey.REASON, reason);
+        predicates.put(AuditDetailKey.CHANNEL, channel);
+        predicates.put(AuditDetailKey.SCOPE, scope);
+        predicates.put(AuditDetailKey.ACCOUNT_LEVEL, accountLevel);
+        predicates.put(AuditDetailKey.STATUS, status);
+        predicates.put(AuditDetailKey.ALIAS, alias);
+        predicates.put(AuditDetailKey.ATTEMPTS_USED, attemptsUsed);
 
-        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        Page<AuditLog> logs = auditLogRepository.findAll(pageRequest);
+        AuditLogFilter filter = AuditLogFilter.of(eventType, userId, null, from, to).withDetails(predicates);
+        if (filter.details().isEmpty()) {
+            throw new IllegalArgumentException("At least one details predicate is required");
+        }
+        return ResponseEntity.ok(page(filter, cursor, size, count));
+    }
 
-        List<Map<String, Object>> masked = logs.getContent().stream()
-            .map(this::maskAuditLog)
-            .collect(Collectors.toList());
+    /**
+     * Stream every masked audit row in the range as NDJSON, optionally gzip-compressed.
+     * Memory use is constant: rows go from a server-side cursor straight to the response.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportAuditLogs(
+            @RequestParam(required = false) AuditEventType eventType,
+            @RequestParam(required = false) UUID userId,
+            @RequestParam(required = false) String requestId,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @AuthenticationPrincipal Jwt jwt,
+            HttpServletRequest request) {
+
+        boolean gzip = switch (format) {
+            case "ndjson" -> false;
+            case "gzip" -> true;
+            default -> throw new IllegalArgumentException("format must be ndjson or gzip");
+        };
+        AuditLogFilter filter = AuditLogFilter.of(eventType, userId, requestId, from, to);
+
+        // Exports of the audit trail are themselves audited
+        auditService.logEvent(AuditEventType.AUDIT_EXPORTED, null, request, new AuditDetails.Export(
+            jwt != null ? jwt.getSubject() : "unknown", format, filter.from().toString(), filter.to().toString()));
+
+        String filename = "audit-" + filter.from().getEpochSecond() + "-" + filter.to().getEpochSecond()
+            + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+            .contentType(gzip ? MediaType.parseMediaType("application/gzip") : NDJSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+            .body(out -> exportService.export(filter, gzip, out));
+    }
+
+    /**
+     * Event counts per minute, hour or day from the pre-aggregated rollups (default: last 24 hours).
+     * Never scans audit_logs. Counts lag by up to the rollup flush interval.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats(
+            @RequestParam(required = false) AuditEventType eventType,
+            @RequestParam(defaultValue = "hour") String granularity,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to) {
+
+        AuditRollupService.Granularity unit = switch (granularity) {
+            case "minute" -> AuditRollupService.Granularity.MINUTE;
+            case "hour" -> AuditRollupService.Granularity.HOUR;
+            case "day" -> AuditRollupService.Granularity.DAY;
+            default -> throw new IllegalArgumentException("granularity must be minute, hour or day");
+        };
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minusSeconds(24 * 3600);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("granularity", granularity);
+        response.put("from", start.toString());
+        response.put("to", end.toString());
+        response.put("points", rollupService.series(eventType, unit, start, end));
+        return ResponseEntity.ok(response);
+    }
 
-        return ResponseEntity.ok(Map.of(
-            "content", masked,
-            "totalElements", logs.getTotalElements(),
-            "totalPages", logs.getTotalPages(),
-            "page", page
-        ));
+    /**
+     * Live security events as server-sent events, e.g. {@code ?types=audit.TOKEN_REPLAYED,risk.BRUTE_FORCE}.
+     * Reconnect with Last-Event-ID to resume; a "gap" event precedes the replay when events were
+     * missed. Events raised on this node only — see SecurityEventFeed.
+     */
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter feed(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) Set<String> types) {
+        return feed.subscribe(lastEventId, types);
     }
 
     /**
@@ -67,6 +225,88 @@ public class AdminAuditController {
         return ResponseEntity.ok(maskAuditLog(entry));
     }
 
+    /**
+     * Merkle inclusion proof for one entry against its signed seal.
+     * Contains hashes only — no PII.
+     * The entry's createdAt (as listed) is required: it bounds the lookup to one partition,
+     * where a lookup by ID alone would probe every partition.
+     */
+    @GetMapping("/{id}/proof")
+    public ResponseEntity<AuditSealService.InclusionProof> getInclusionProof(
+            @PathVariable Long id,
+            @RequestParam(required = false) Instant createdAt) {
+        if (createdAt == null) {
+            throw new IllegalArgumentException("createdAt is required");
+        }
+        return ResponseEntity.ok(sealService.inclusionProof(id, createdAt));
+    }
+
+    /**
+     * Verify every sealed batch: row counts, HMAC chain, Merkle roots and signatures.
+     */
+    @GetMapping("/verify")
+    public ResponseEntity<AuditSealVerifier.VerificationReport> verify() {
+        return ResponseEntity.ok(sealVerifier.verifyAll());
+    }
+
+    /**
+     * One keyset page of masked rows for the listing and search endpoints.
+     */
+    private Map<String, Object> page(AuditLogFilter filter, String cursor, int size, String count) {
+        size = Math.max(1, Math.min(size, 100)); // Cap page size
+        boolean exact = switch (count) {
+            case "approx" -> false;
+            case "exact" -> true;
+            default -> throw new IllegalArgumentException("count must be approx or exact");
+        };
+        AuditCursor after = cursor != null ? AuditCursor.decode(cursor) : null;
+
+        // One extra row tells whether another page exists without counting
+        List<AuditLog> rows = auditLogRepository.findPage(filter, after, size + 1);
+        List<AuditLog> archived = archiveService.find(filter, after, size + 1);
+        if (!archived.isEmpty()) {
+            rows = mergeArchived(rows, archived, size + 1);
+        }
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+
+        List<Map<String, Object>> masked = rows.stream()
+            .map(this::maskAuditLog)
+            .collect(Collectors.toList());
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("content", masked);
+        response.put("hasMore", hasMore);
+        if (hasMore) {
+            AuditLog last = rows.get(rows.size() - 1);
+            response.put("nextCursor", new AuditCursor(last.getCreatedAt(), last.getId()).encode());
+        }
+        if (exact) {
+            long archivedElements = archiveService.count(filter);
+            response.put("totalElements", auditLogRepository.countExact(filter) + archivedElements);
+            response.put("archivedElements", archivedElements);
+        } else {
+            response.put("totalElements", auditLogRepository.estimateCount(filter));
+        }
+        response.put("totalExact", exact);
+        response.put("from", filter.from().toString());
+        response.put("to", filter.to().toString());
+        return response;
+    }
+
+    /**
+     * The archived page interleaved with the hot page; both are already past the cursor.
+     * Partitions are archived whole, so the two sources never hold the same row.
+     */
+    private static List<AuditLog> mergeArchived(List<AuditLog> hot, List<AuditLog> archived, int limit) {
+        List<AuditLog> merged = new ArrayList<>(hot);
+        merged.addAll(archived);
+        merged.sort(NEWEST_FIRST);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
     private Map<String, Object> maskAuditLog(AuditLog log) {
         return Map.of(
             "id", log.getId(),
@@ -75,6 +315,8 @@ public class AdminAuditController {
             "requestId", log.getRequestId() != null ? log.getRequestId() : "N/A",
             "ipAddress", log.getIpAddress() != null ? PiiMaskingUtil.maskIp(log.getIpAddress()) : "N/A",
             "createdAt", log.getCreatedAt().toString(),
+            "occurrenceCount", log.getOccurrenceCount(),
+            "firstSeenAt", log.getFirstSeenAt() != null ? log.getFirstSeenAt().toString() : "N/A",
             "details", log.getDetails() != null ? log.getDetails() : "{}"
         );
     }
@@ -1,6 +1,7 @@
 package ae.uaepass.identity.controller;
 
 import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.service.AuditDetails;
 import ae.uaepass.identity.service.AuditService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -71,7 +72,7 @@ public class SessionRevokeController {
         // Spring Session's FindByIndexNameSessionRepository supports this.
 
         auditService.logEvent(AuditEventType.SESSION_REVOKED, userId, request,
-            Map.of("scope", "ALL_SESSIONS"));
+            new AuditDetails.SessionScope("ALL_SESSIONS"));
 
         return ResponseEntity.ok(Map.of(
             "status", "all_revoked",
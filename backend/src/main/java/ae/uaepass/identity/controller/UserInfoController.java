@@ -1,8 +1,10 @@
 package ae.uaepass.identity.controller;
 
+import ae.uaepass.identity.dto.ActivityPage;
 import ae.uaepass.identity.entity.User;
 import ae.uaepass.identity.repository.UserRepository;
-import ae.uaepass.identity.service.CryptoService;
+import ae.uaepass.identity.service.UserActivityService;
+import ae.uaepass.identity.service.UserDataKeyService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
@@ -20,11 +22,14 @@ import java.util.UUID;
 public class UserInfoController {
 
     private final UserRepository userRepository;
-    private final CryptoService cryptoService;
+    private final UserDataKeyService dataKeyService;
+    private final UserActivityService activityService;
 
-    public UserInfoController(UserRepository userRepository, CryptoService cryptoService) {
+    public UserInfoController(UserRepository userRepository, UserDataKeyService dataKeyService,
+                              UserActivityService activityService) {
         this.userRepository = userRepository;
-        this.cryptoService = cryptoService;
+        this.dataKeyService = dataKeyService;
+        this.activityService = activityService;
     }
 
     /**
@@ -43,7 +48,7 @@ public class UserInfoController {
 
         // Decrypt PII for display
         String fullName = user.getFullNameEnc() != null
-            ? cryptoService.decrypt(user.getFullNameEnc()) : null;
+            ? dataKeyService.decrypt(userId, user.getFullNameEnc()) : null;
 
         return ResponseEntity.ok(Map.of(
             "userId", user.getId(),
@@ -54,4 +59,17 @@ public class UserInfoController {
             "createdAt", user.getCreatedAt().toString()
         ));
     }
+
+    /**
+     * The caller's own security activity (sign-ins, OTPs, devices, sessions), newest first.
+     * Pass the previous response's nextCursor to continue; the first page is served from cache.
+     */
+    @GetMapping("/activity")
+    public ResponseEntity<ActivityPage> getActivity(
+            @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal Jwt jwt) {
+
+        UUID userId = UUID.fromString(jwt.getSubject());
+        return ResponseEntity.ok(activityService.page(userId, cursor));
+    }
 }
@@ -0,0 +1,30 @@
+package ae.uaepass.identity.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One page of the caller's own security activity, newest first.
+ * nextCursor is set only when hasMore is true.
+ */
+public record ActivityPage(
+    List<Item> items,
+    boolean hasMore,
+    String nextCursor
+) {
+    /**
+     * A user-visible audit event. ipAddress is masked; details carry no secrets (see AuditDetails).
+     * occurrences > 1 for repeated identical events collapsed into one entry, the first at
+     * firstOccurredAt and the last at occurredAt.
+     */
+    public record Item(
+        String eventType,
+        Instant occurredAt,
+        String ipAddress,
+        JsonNode details,
+        int occurrences,
+        Instant firstOccurredAt
+    ) {}
+}
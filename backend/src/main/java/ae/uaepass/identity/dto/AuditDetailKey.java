@@ -0,0 +1,60 @@
+package ae.uaepass.identity.dto;
+
+import java.util.regex.Pattern;
+
+/**
+ * Searchable keys of the audit details payload (see AuditDetails) and their value types.
+ *
+ * Predicates compile to one jsonb containment ({@code details @> '{"reason":"expired"}'}),
+ * the only operator the jsonb_path_ops GIN index serves. Values are therefore typed exactly as
+ * AuditService writes them: a string never matches a number.
+ */
+public enum AuditDetailKey {
+    REASON("reason", ValueType.TEXT),
+    CHANNEL("channel", ValueType.TEXT),
+    SCOPE("scope", ValueType.TEXT),
+    ACCOUNT_LEVEL("accountLevel", ValueType.TEXT),
+    STATUS("status", ValueType.TEXT),
+    ALIAS("alias", ValueType.TEXT),
+    ATTEMPTS_USED("attemptsUsed", ValueType.INTEGER);
+
+    private static final Pattern TEXT_VALUE = Pattern.compile("[A-Za-z0-9_.:-]{1,64}");
+
+    private final String jsonName;
+    private final ValueType type;
+
+    AuditDetailKey(String jsonName, ValueType type) {
+        this.jsonName = jsonName;
+        this.type = type;
+    }
+
+    /** Property name inside the details object. */
+    public String jsonName() {
+        return jsonName;
+    }
+
+    /**
+     * Parse a request parameter into the JSON value stored for this key.
+     *
+     * @throws IllegalArgumentException if the value is malformed for the key's type
+     */
+    public Object parse(String raw) {
+        return switch (type) {
+            case TEXT -> {
+                if (raw == null || !TEXT_VALUE.matcher(raw).matches()) {
+                    throw new IllegalArgumentException("Invalid value for " + jsonName);
+                }
+                yield raw;
+            }
+            case INTEGER -> {
+                try {
+                    yield Integer.parseInt(raw);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(jsonName + " must be an integer");
+                }
+            }
+        };
+    }
+
+    private enum ValueType { TEXT, INTEGER }
+}
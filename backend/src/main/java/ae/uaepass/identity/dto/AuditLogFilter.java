@@ -0,0 +1,60 @@
+package ae.uaepass.identity.dto;
+
+import ae.uaepass.identity.entity.AuditEventType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Admin audit listing filter. The time range is always bounded so that
+ * queries prune to the audit_logs partitions it covers.
+ *
+ * details holds typed detail predicates (JSON property name to value), sorted by name,
+ * matched by containment against the details column.
+ */
+public record AuditLogFilter(
+    AuditEventType eventType,
+    UUID userId,
+    String requestId,
+    Instant from,
+    Instant to,
+    Map<String, Object> details
+) {
+    public static final Duration DEFAULT_RANGE = Duration.ofDays(30);
+    public static final Duration MAX_RANGE = Duration.ofDays(366);
+
+    /**
+     * Apply defaults (last 30 days ending now) and reject empty or oversized ranges.
+     */
+    public static AuditLogFilter of(AuditEventType eventType, UUID userId, String requestId,
+                                    Instant from, Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(DEFAULT_RANGE);
+        if (!start.isBefore(end) || Duration.between(start, end).compareTo(MAX_RANGE) > 0) {
+            throw new IllegalArgumentException(
+                "Time range must be positive and at most " + MAX_RANGE.toDays() + " days");
+        }
+        if (requestId != null && requestId.length() > 64) {
+            throw new IllegalArgumentException("Invalid request ID");
+        }
+        return new AuditLogFilter(eventType, userId, requestId, start, end, Map.of());
+    }
+
+    /**
+     * Same filter, additionally requiring each detail key to hold the given (raw) value.
+     * Null values are ignored.
+     */
+    public AuditLogFilter withDetails(Map<AuditDetailKey, String> predicates) {
+        Map<String, Object> parsed = new TreeMap<>(details);
+        predicates.forEach((key, raw) -> {
+            if (raw != null) {
+                parsed.put(key.jsonName(), key.parse(raw));
+            }
+        });
+        return new AuditLogFilter(eventType, userId, requestId, from, to, Collections.unmodifiableMap(parsed));
+    }
+}
@@ -1,26 +1,68 @@
 package ae.uaepass.identity.entity;
 
+/**
+ * Audit event types. audit_logs stores the code (smallint), not the name; see V10 and the
+ * audit_event_types lookup table.
+ *
+ * Codes are permanent: never renumber or reuse one. A new type takes the next free code
+ * and needs a migration adding it to audit_event_types.
+ */
 public enum AuditEventType {
-    REGISTRATION_START,
-    REGISTRATION_COMPLETE,
-    OTP_SENT,
-    OTP_VERIFIED,
-    OTP_FAILED,
-    PIN_CREATED,
-    LOGIN_SUCCESS,
-    LOGIN_FAILURE,
-    TOKEN_ISSUED,
-    TOKEN_REVOKED,
-    TOKEN_REPLAYED,
-    CONSENT_GRANTED,
-    ACCOUNT_LOCKED,
-    ACCOUNT_SUSPENDED,
-    SESSION_REVOKED,
-    DEVICE_REGISTERED,
-    DEVICE_REVOKED,
-    RISK_EVENT_CREATED,
-    KEY_ROTATION_NEEDED,
-    PIN_LOCKOUT,
-    OTP_LOCKOUT
-}
+    REGISTRATION_START(1),
+    REGISTRATION_COMPLETE(2),
+    OTP_SENT(3),
+    OTP_VERIFIED(4),
+    OTP_FAILED(5),
+    PIN_CREATED(6),
+    LOGIN_SUCCESS(7),
+    LOGIN_FAILURE(8),
+    TOKEN_ISSUED(9),
+    TOKEN_REVOKED(10),
+    TOKEN_REPLAYED(11),
+    CONSENT_GRANTED(12),
+    ACCOUNT_LOCKED(13),
+    ACCOUNT_SUSPENDED(14),
+    SESSION_REVOKED(15),
+    DEVICE_REGISTERED(16),
+    DEVICE_REVOKED(17),
+    RISK_EVENT_CREATED(18),
+    KEY_ROTATION_NEEDED(19),
+    PIN_LOCKOUT(20),
+    OTP_LOCKOUT(21),
+    AUDIT_EXPORTED(22);
+
+    private static final AuditEventType[] BY_CODE;
+
+    static {
+        int max = 0;
+        for (AuditEventType type : values()) {
+            max = Math.max(max, type.code);
+        }
+        BY_CODE = new AuditEventType[max + 1];
+        for (AuditEventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final short code;
 
+    AuditEventType(int code) {
+        this.code = (short) code;
+    }
+
+    /** Stored value of audit_logs.event_type. */
+    public short code() {
+        return code;
+    }
+
+    /**
+     * @throws IllegalArgumentException for a code no type carries
+     */
+    public static AuditEventType fromCode(int code) {
+        AuditEventType type = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown audit event code: " + code);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,21 @@
+package ae.uaepass.identity.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps audit_logs.event_type (smallint) to {@link AuditEventType} by its permanent code.
+ */
+@Converter
+public class AuditEventTypeConverter implements AttributeConverter<AuditEventType, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(AuditEventType type) {
+        return type != null ? type.code() : null;
+    }
+
+    @Override
+    public AuditEventType convertToEntityAttribute(Short code) {
+        return code != null ? AuditEventType.fromCode(code) : null;
+    }
+}
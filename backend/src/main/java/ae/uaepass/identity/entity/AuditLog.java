@@ -1,5 +1,6 @@
 package ae.uaepass.identity.entity;
 
+import ae.uaepass.identity.util.AuditColumnCodec;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
@@ -8,12 +9,14 @@ import java.util.UUID;
 @Table(name = "audit_logs")
 public class AuditLog {
 
+    // Sequence-backed so ids can be assigned inside multi-row batch inserts (see AuditWriter)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_logs_id_seq")
+    @SequenceGenerator(name = "audit_logs_id_seq", sequenceName = "audit_logs_id_seq", allocationSize = 1)
     private Long id;
 
-    @Enumerated(EnumType.STRING)
-    @Column(name = "event_type", nullable = false, length = 50)
+    @Convert(converter = AuditEventTypeConverter.class)
+    @Column(name = "event_type", nullable = false)
     private AuditEventType eventType;
 
     @Column(name = "user_id")
@@ -22,11 +25,18 @@ public class AuditLog {
     @Column(name = "request_id", length = 64)
     private String requestId;
 
-    @Column(name = "ip_address", length = 45)
+    // Stored compact; the *_raw columns hold header values the compact form would alter (see AuditColumnCodec)
+    @Column(name = "ip_address", columnDefinition = "inet")
     private String ipAddress;
 
-    @Column(name = "device_fingerprint_hash", length = 128)
-    private String deviceFingerprintHash;
+    @Column(name = "ip_address_raw", length = 45)
+    private String ipAddressRaw;
+
+    @Column(name = "device_fingerprint_hash", columnDefinition = "bytea")
+    private byte[] deviceFingerprintHash;
+
+    @Column(name = "device_fingerprint_raw", length = 128)
+    private String deviceFingerprintRaw;
 
     @Column(columnDefinition = "jsonb")
     private String details;
@@ -34,11 +44,37 @@ public class AuditLog {
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "chain_hash", length = 64)
+    private String chainHash;
+
+    // Identical events collapsed into this row by AuditCoalescer; first_seen_at is set when > 1
+    @Column(name = "occurrence_count", nullable = false)
+    private int occurrenceCount = 1;
+
+    @Column(name = "first_seen_at")
+    private Instant firstSeenAt;
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = Instant.now();
     }
 
+    /**
+     * A row read back from the cold archive (AuditArchiveService), for display only.
+     * Never persisted: the row no longer exists in audit_logs.
+     */
+    public static AuditLog restored(Long id, Long seq, Instant createdAt, String chainHash) {
+        AuditLog log = new AuditLog();
+        log.id = id;
+        log.seq = seq;
+        log.createdAt = createdAt;
+        log.chainHash = chainHash;
+        return log;
+    }
+
     // --- Builder-style setters for fluent construction ---
 
     public AuditLog eventType(AuditEventType eventType) {
@@ -57,12 +93,14 @@ public class AuditLog {
     }
 
     public AuditLog ipAddress(String ipAddress) {
-        this.ipAddress = ipAddress;
+        this.ipAddress = AuditColumnCodec.inet(ipAddress);
+        this.ipAddressRaw = AuditColumnCodec.ipRaw(ipAddress);
         return this;
     }
 
     public AuditLog deviceFingerprintHash(String hash) {
-        this.deviceFingerprintHash = hash;
+        this.deviceFingerprintHash = AuditColumnCodec.fingerprint(hash);
+        this.deviceFingerprintRaw = AuditColumnCodec.fingerprintRaw(hash);
         return this;
     }
 
@@ -71,12 +109,24 @@ public class AuditLog {
         return this;
     }
 
+    public AuditLog occurrences(int count, Instant firstSeenAt) {
+        this.occurrenceCount = count;
+        this.firstSeenAt = firstSeenAt;
+        return this;
+    }
+
     public Long getId() { return id; }
     public AuditEventType getEventType() { return eventType; }
     public UUID getUserId() { return userId; }
     public String getRequestId() { return requestId; }
-    public String getIpAddress() { return ipAddress; }
-    public String getDeviceFingerprintHash() { return deviceFingerprintHash; }
+    public String getIpAddress() { return AuditColumnCodec.ipText(ipAddress, ipAddressRaw); }
+    public String getDeviceFingerprintHash() {
+        return AuditColumnCodec.fingerprintText(deviceFingerprintHash, deviceFingerprintRaw);
+    }
     public String getDetails() { return details; }
     public Instant getCreatedAt() { return createdAt; }
+    public Long getSeq() { return seq; }
+    public String getChainHash() { return chainHash; }
+    public int getOccurrenceCount() { return occurrenceCount; }
+    public Instant getFirstSeenAt() { return firstSeenAt; }
 }
@@ -0,0 +1,86 @@
+package ae.uaepass.identity.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Signed Merkle root over a contiguous seq range of audit_logs.
+ * Immutable after creation.
+ */
+@Entity
+@Table(name = "audit_seals")
+public class AuditSeal {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "first_seq", nullable = false, updatable = false)
+    private long firstSeq;
+
+    @Column(name = "last_seq", nullable = false, updatable = false)
+    private long lastSeq;
+
+    @Column(name = "leaf_count", nullable = false, updatable = false)
+    private int leafCount;
+
+    @Column(name = "merkle_root", nullable = false, updatable = false, length = 64)
+    private String merkleRoot;
+
+    @Column(name = "first_created_at", nullable = false, updatable = false)
+    private Instant firstCreatedAt;
+
+    @Column(name = "last_created_at", nullable = false, updatable = false)
+    private Instant lastCreatedAt;
+
+    @Column(name = "signature", nullable = false, updatable = false, columnDefinition = "TEXT")
+    private String signature;
+
+    @Column(name = "key_id", nullable = false, updatable = false, length = 128)
+    private String keyId;
+
+    @Column(name = "sealed_at", nullable = false, updatable = false)
+    private Instant sealedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.sealedAt = Instant.now();
+    }
+
+    // --- Builder-style setters for fluent construction ---
+
+    public AuditSeal range(long firstSeq, long lastSeq, int leafCount) {
+        this.firstSeq = firstSeq;
+        this.lastSeq = lastSeq;
+        this.leafCount = leafCount;
+        return this;
+    }
+
+    public AuditSeal createdBetween(Instant first, Instant last) {
+        this.firstCreatedAt = first;
+        this.lastCreatedAt = last;
+        return this;
+    }
+
+    public AuditSeal merkleRoot(String merkleRoot) {
+        this.merkleRoot = merkleRoot;
+        return this;
+    }
+
+    public AuditSeal signature(String signature, String keyId) {
+        this.signature = signature;
+        this.keyId = keyId;
+        return this;
+    }
+
+    public Long getId() { return id; }
+    public long getFirstSeq() { return firstSeq; }
+    public long getLastSeq() { return lastSeq; }
+    public int getLeafCount() { return leafCount; }
+    public String getMerkleRoot() { return merkleRoot; }
+    public Instant getFirstCreatedAt() { return firstCreatedAt; }
+    public Instant getLastCreatedAt() { return lastCreatedAt; }
+    public String getSignature() { return signature; }
+    public String getKeyId() { return keyId; }
+    public Instant getSealedAt() { return sealedAt; }
+}
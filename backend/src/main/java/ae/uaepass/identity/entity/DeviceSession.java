@@ -19,8 +19,9 @@ public class DeviceSession {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(name = "device_fingerprint_hash", nullable = false, length = 128)
-    private String deviceFingerprintHash;
+    // Raw SHA-256, 32 bytes (V14)
+    @Column(name = "device_fingerprint_hash", nullable = false, columnDefinition = "bytea")
+    private byte[] deviceFingerprintHash;
 
     @Column(name = "user_agent", columnDefinition = "TEXT")
     private String userAgent;
@@ -61,8 +62,8 @@ public class DeviceSession {
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
-    public String getDeviceFingerprintHash() { return deviceFingerprintHash; }
-    public void setDeviceFingerprintHash(String hash) { this.deviceFingerprintHash = hash; }
+    public byte[] getDeviceFingerprintHash() { return deviceFingerprintHash; }
+    public void setDeviceFingerprintHash(byte[] hash) { this.deviceFingerprintHash = hash; }
 
     public String getUserAgent() { return userAgent; }
     public void setUserAgent(String userAgent) { this.userAgent = userAgent; }
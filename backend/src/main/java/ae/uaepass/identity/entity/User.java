@@ -12,14 +12,15 @@ public class User {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(name = "emirates_id_hash", nullable = false, unique = true, length = 128)
-    private String emiratesIdHash;
+    // Identifier hashes: raw SHA-256, 32 bytes (V14)
+    @Column(name = "emirates_id_hash", nullable = false, unique = true, columnDefinition = "bytea")
+    private byte[] emiratesIdHash;
 
-    @Column(name = "email_hash", nullable = false, length = 128)
-    private String emailHash;
+    @Column(name = "email_hash", nullable = false, columnDefinition = "bytea")
+    private byte[] emailHash;
 
-    @Column(name = "phone_hash", nullable = false, length = 128)
-    private String phoneHash;
+    @Column(name = "phone_hash", nullable = false, columnDefinition = "bytea")
+    private byte[] phoneHash;
 
     @Column(name = "full_name_enc")
     private String fullNameEnc;
@@ -57,14 +58,14 @@ public class User {
     public UUID getId() { return id; }
     public void setId(UUID id) { this.id = id; }
 
-    public String getEmiratesIdHash() { return emiratesIdHash; }
-    public void setEmiratesIdHash(String emiratesIdHash) { this.emiratesIdHash = emiratesIdHash; }
+    public byte[] getEmiratesIdHash() { return emiratesIdHash; }
+    public void setEmiratesIdHash(byte[] emiratesIdHash) { this.emiratesIdHash = emiratesIdHash; }
 
-    public String getEmailHash() { return emailHash; }
-    public void setEmailHash(String emailHash) { this.emailHash = emailHash; }
+    public byte[] getEmailHash() { return emailHash; }
+    public void setEmailHash(byte[] emailHash) { this.emailHash = emailHash; }
 
-    public String getPhoneHash() { return phoneHash; }
-    public void setPhoneHash(String phoneHash) { this.phoneHash = phoneHash; }
+    public byte[] getPhoneHash() { return phoneHash; }
+    public void setPhoneHash(byte[] phoneHash) { this.phoneHash = phoneHash; }
 
     public String getFullNameEnc() { return fullNameEnc; }
     public void setFullNameEnc(String fullNameEnc) { this.fullNameEnc = fullNameEnc; }
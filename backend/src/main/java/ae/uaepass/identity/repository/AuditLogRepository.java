@@ -4,6 +4,11 @@ import ae.uaepass.identity.entity.AuditLog;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+/**
+ * audit_logs is range-partitioned by created_at: every listing query carries a
+ * created_at range so Postgres only scans the partitions it touches.
+ * Listings are keyset-paginated, see {@link AuditLogRepositoryCustom}.
+ */
 @Repository
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, AuditLogRepositoryCustom {
 }
@@ -0,0 +1,43 @@
+package ae.uaepass.identity.repository;
+
+import ae.uaepass.identity.dto.AuditCursor;
+import ae.uaepass.identity.dto.AuditLogFilter;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditLog;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keyset-paginated audit queries with dynamic, index-backed filters.
+ */
+public interface AuditLogRepositoryCustom {
+
+    /**
+     * Up to {@code limit} rows ordered by (created_at DESC, id DESC), strictly after the cursor.
+     *
+     * @param after null for the first page
+     */
+    List<AuditLog> findPage(AuditLogFilter filter, AuditCursor after, int limit);
+
+    /**
+     * Planner row estimate for the filter. Costs one EXPLAIN, independent of table size.
+     */
+    long estimateCount(AuditLogFilter filter);
+
+    /**
+     * Exact count. Scans every matching row — only on explicit request.
+     */
+    long countExact(AuditLogFilter filter);
+
+    /**
+     * One user's events of the given types since {@code since}, newest first, strictly after the cursor.
+     * Walks idx_audit_user_time (user_id, created_at DESC, id DESC) and stops after {@code limit} rows.
+     *
+     * @param after null for the first page
+     */
+    List<AuditLog> findUserActivity(UUID userId, Set<AuditEventType> eventTypes, Instant since,
+                                    AuditCursor after, int limit);
+}
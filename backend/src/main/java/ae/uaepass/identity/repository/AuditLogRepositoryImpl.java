@@ -0,0 +1,157 @@
+package ae.uaepass.identity.repository;
+
+import ae.uaepass.identity.dto.AuditCursor;
+import ae.uaepass.identity.dto.AuditLogFilter;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditLog;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Native keyset queries for {@link AuditLogRepository}.
+ *
+ * DESIGN DECISIONS:
+ * - The cursor predicate is spelled as {@code created_at <= c AND (created_at < c OR id < i)}
+ *   rather than a row comparison, so any created_at index (B-tree or BRIN) can bound the scan
+ * - The created_at range is always present, so the planner prunes partitions
+ * - Only filters that are set are added, keeping each query on its matching composite index
+ * - Detail predicates are folded into a single {@code details @> ?} containment, the one
+ *   operator idx_audit_details_path (jsonb_path_ops GIN) can serve; the planner ANDs its
+ *   bitmap with the created_at or event_type index
+ */
+public class AuditLogRepositoryImpl implements AuditLogRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public AuditLogRepositoryImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<AuditLog> findPage(AuditLogFilter filter, AuditCursor after, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM audit_logs");
+        appendWhere(sql, params, filter);
+        if (after != null) {
+            OffsetDateTime createdAt = utc(after.createdAt());
+            sql.append(" AND created_at <= ? AND (created_at < ? OR id < ?)");
+            params.add(createdAt);
+            params.add(createdAt);
+            params.add(after.id());
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        params.add(limit);
+
+        Query query = entityManager.createNativeQuery(sql.toString(), AuditLog.class);
+        for (int i = 0; i < params.size(); i++) {
+            query.setParameter(i + 1, params.get(i));
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public long estimateCount(AuditLogFilter filter) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("EXPLAIN (FORMAT JSON) SELECT 1 FROM audit_logs");
+        appendWhere(sql, params, filter);
+        String plan = jdbcTemplate.queryForObject(sql.toString(), String.class, params.toArray());
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable query plan", e);
+        }
+    }
+
+    @Override
+    public long countExact(AuditLogFilter filter) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT count(*) FROM audit_logs");
+        appendWhere(sql, params, filter);
+        Long count = jdbcTemplate.queryForObject(sql.toString(), Long.class, params.toArray());
+        return count != null ? count : 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<AuditLog> findUserActivity(UUID userId, Set<AuditEventType> eventTypes, Instant since,
+                                           AuditCursor after, int limit) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT * FROM audit_logs WHERE user_id = ? AND created_at >= ?");
+        params.add(userId);
+        params.add(utc(since));
+        if (after != null) {
+            OffsetDateTime createdAt = utc(after.createdAt());
+            sql.append(" AND created_at <= ? AND (created_at < ? OR id < ?)");
+            params.add(createdAt);
+            params.add(createdAt);
+            params.add(after.id());
+        }
+        // Filtered on the index walk: the type list is short and most of a user's events match
+        sql.append(" AND event_type IN (").append(String.join(", ", Collections.nCopies(eventTypes.size(), "?")));
+        for (AuditEventType type : eventTypes) {
+            params.add(type.code());
+        }
+        sql.append(") ORDER BY created_at DESC, id DESC LIMIT ?");
+        params.add(limit);
+
+        Query query = entityManager.createNativeQuery(sql.toString(), AuditLog.class);
+        for (int i = 0; i < params.size(); i++) {
+            query.setParameter(i + 1, params.get(i));
+        }
+        return query.getResultList();
+    }
+
+    private void appendWhere(StringBuilder sql, List<Object> params, AuditLogFilter filter) {
+        sql.append(" WHERE created_at >= ? AND created_at < ?");
+        params.add(utc(filter.from()));
+        params.add(utc(filter.to()));
+        if (filter.eventType() != null) {
+            sql.append(" AND event_type = ?");
+            params.add(filter.eventType().code());
+        }
+        if (filter.userId() != null) {
+            sql.append(" AND user_id = ?");
+            params.add(filter.userId());
+        }
+        if (filter.requestId() != null) {
+            sql.append(" AND request_id = ?");
+            params.add(filter.requestId());
+        }
+        if (!filter.details().isEmpty()) {
+            sql.append(" AND details @> CAST(? AS jsonb)");
+            params.add(toJson(filter.details()));
+        }
+    }
+
+    private String toJson(Map<String, Object> details) {
+        try {
+            return objectMapper.writeValueAsString(details);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid details filter", e);
+        }
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,21 @@
+package ae.uaepass.identity.repository;
+
+import ae.uaepass.identity.entity.AuditSeal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AuditSealRepository extends JpaRepository<AuditSeal, Long> {
+
+    Optional<AuditSeal> findTopByOrderByLastSeqDesc();
+
+    @Query("SELECT s FROM AuditSeal s WHERE s.firstSeq <= :seq AND s.lastSeq >= :seq")
+    Optional<AuditSeal> findCovering(@Param("seq") long seq);
+
+    List<AuditSeal> findAllByOrderByFirstSeqAsc();
+}
@@ -19,7 +19,7 @@ public interface DeviceSessionRepository extends JpaRepository<DeviceSession, UU
            "AND ds.deviceFingerprintHash = :fingerprint AND ds.active = true")
     Optional<DeviceSession> findActiveByUserAndFingerprint(
         @Param("userId") UUID userId,
-        @Param("fingerprint") String fingerprintHash
+        @Param("fingerprint") byte[] fingerprintHash
     );
 
     @Query("SELECT COUNT(ds) FROM DeviceSession ds WHERE ds.user.id = :userId AND ds.active = true")
@@ -9,8 +9,8 @@ import java.util.UUID;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
-    Optional<User> findByEmiratesIdHash(String emiratesIdHash);
-    Optional<User> findByEmailHash(String emailHash);
-    Optional<User> findByPhoneHash(String phoneHash);
-    boolean existsByEmiratesIdHash(String emiratesIdHash);
+    Optional<User> findByEmiratesIdHash(byte[] emiratesIdHash);
+    Optional<User> findByEmailHash(byte[] emailHash);
+    Optional<User> findByPhoneHash(byte[] phoneHash);
+    boolean existsByEmiratesIdHash(byte[] emiratesIdHash);
 }
@@ -0,0 +1,99 @@
+package ae.uaepass.identity.security;
+
+import ae.uaepass.identity.entity.AuditSeal;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.springframework.stereotype.Component;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signs audit seal Merkle roots with the authorization server's RSA key.
+ *
+ * SECURITY: seals are RS256 JWS objects, so an external auditor can verify them
+ * against the public JWK set (/oauth2/jwks) without any server secret.
+ */
+@Component
+public class AuditSealSigner {
+
+    private final JWKSource<SecurityContext> jwkSource;
+
+    public AuditSealSigner(JWKSource<SecurityContext> jwkSource) {
+        this.jwkSource = jwkSource;
+    }
+
+    /**
+     * Sign the seal's range and root. Returns the compact JWS and the signing key id.
+     */
+    public SignedSeal sign(AuditSeal seal) {
+        try {
+            RSAKey key = (RSAKey) selectKey(new JWKMatcher.Builder()
+                .keyType(KeyType.RSA).privateOnly(true).build());
+            JWSObject jws = new JWSObject(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new Payload(claims(seal)));
+            jws.sign(new RSASSASigner(key));
+            return new SignedSeal(jws.serialize(), key.getKeyID());
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Audit seal signing failed", e);
+        }
+    }
+
+    /**
+     * Verify the signature and that the signed claims match the stored seal.
+     */
+    public boolean verify(AuditSeal seal) {
+        try {
+            JWSObject jws = JWSObject.parse(seal.getSignature());
+            RSAKey key = (RSAKey) selectKey(new JWKMatcher.Builder()
+                .keyType(KeyType.RSA).keyID(jws.getHeader().getKeyID()).build());
+            if (!jws.verify(new RSASSAVerifier(key.toRSAPublicKey()))) {
+                return false;
+            }
+            Map<String, Object> signed = jws.getPayload().toJSONObject();
+            Map<String, Object> expected = claims(seal);
+            return expected.entrySet().stream()
+                .allMatch(e -> e.getValue().toString().equals(String.valueOf(signed.get(e.getKey()))));
+        } catch (ParseException | JOSEException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private Map<String, Object> claims(AuditSeal seal) {
+        return Map.of(
+            "firstSeq", seal.getFirstSeq(),
+            "lastSeq", seal.getLastSeq(),
+            "leafCount", seal.getLeafCount(),
+            "root", seal.getMerkleRoot()
+        );
+    }
+
+    private JWK selectKey(JWKMatcher matcher) {
+        try {
+            List<JWK> keys = jwkSource.get(new JWKSelector(matcher), null);
+            if (keys.isEmpty()) {
+                throw new IllegalStateException("No RSA key available for audit seals");
+            }
+            return keys.get(0);
+        } catch (KeySourceException e) {
+            throw new IllegalStateException("JWK source unavailable", e);
+        }
+    }
+
+    public record SignedSeal(String jws, String keyId) {}
+}
@@ -0,0 +1,338 @@
+package ae.uaepass.identity.security;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.util.CryptoPrimitives;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JCA provider selection for the AES-GCM and SHA-256 primitives.
+ *
+ * The same algorithm can differ several-fold in speed between providers and JVM builds, depending
+ * on which of them use the CPU's AES and SHA instructions. Each primitive gets its provider here,
+ * once at startup, in this order:
+ * 1. The provider configured for it (app.security.providers.aes-gcm / sha256)
+ * 2. With self-benchmark on, the fastest of the candidates that offers it
+ * 3. The JVM's first provider for the algorithm
+ *
+ * The choice is logged, exported as identity.crypto.provider.* gauges and listed under "crypto"
+ * in /actuator/info.
+ *
+ * SECURITY:
+ * - Every provider must reproduce a known-answer vector before it is used: a configured or default
+ *   provider that does not fails startup, a candidate that does not is skipped
+ * - The benchmark runs on fixed test keys and data, never on secrets
+ * - BouncyCastle is instantiated for this class only, never registered with java.security.Security,
+ *   so no other code resolves algorithms through it by accident
+ *
+ * DESIGN DECISIONS:
+ * - Only JCA primitives are selectable: PIN hashing uses BouncyCastle's Argon2 directly and the
+ *   DRBG is SUN's, neither goes through a provider choice
+ * - Off by default: the benchmark adds up to 2 x benchmark-ms per candidate to startup, and a
+ *   fleet is better pinned to the provider one run measured than left to per-boot noise
+ */
+@Component
+public class CryptoProviders implements InfoContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(CryptoProviders.class);
+
+    private static final List<String> DEFAULT_CANDIDATES = List.of("SunJCE", "SUN", "BC");
+    private static final long DEFAULT_BENCHMARK_MS = 200;
+
+    /**
+     * A selectable primitive with its known-answer test and benchmark operation.
+     */
+    enum Primitive {
+
+        AES_GCM("aes-gcm", "AES/GCM/NoPadding") {
+            // AES-256-GCM, key 00..1f, IV a0..ab, AAD "k1:"
+            private static final byte[] KEY = HexFormat.of().parseHex(
+                "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+            private static final byte[] IV = HexFormat.of().parseHex("a0a1a2a3a4a5a6a7a8a9aaab");
+            private static final byte[] AAD = "k1:".getBytes(StandardCharsets.UTF_8);
+            private static final byte[] EXPECTED = HexFormat.of().parseHex(
+                "b359390d2caf67d1160cf3aa270ab2b106c53d75e0973109f0680bf21ad8018d"
+                    + "5b568b23a501fcc398d7425779e18f");
+
+            @Override
+            boolean knownAnswer(Provider provider) throws GeneralSecurityException {
+                Cipher cipher = Cipher.getInstance(algorithm, provider);
+                SecretKeySpec key = new SecretKeySpec(KEY, "AES");
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, IV));
+                cipher.updateAAD(AAD);
+                byte[] sealed = cipher.doFinal(KAT_MESSAGE);
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, IV));
+                cipher.updateAAD(AAD);
+                return MessageDigest.isEqual(EXPECTED, sealed)
+                    && MessageDigest.isEqual(KAT_MESSAGE, cipher.doFinal(sealed));
+            }
+
+            @Override
+            long nanosPerOp(Provider provider, long measureMs) throws GeneralSecurityException {
+                Cipher cipher = Cipher.getInstance(algorithm, provider);
+                SecretKeySpec key = new SecretKeySpec(KEY, "AES");
+                byte[] iv = IV.clone();
+                byte[] payload = new byte[PAYLOAD_LENGTH];
+                return measure(measureMs, n -> {
+                    // GCM refuses an IV reused under the same key, as production never does
+                    iv[0] = (byte) n;
+                    iv[1] = (byte) (n >>> 8);
+                    iv[2] = (byte) (n >>> 16);
+                    iv[3] = (byte) (n >>> 24);
+                    cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                    cipher.updateAAD(AAD);
+                    return cipher.doFinal(payload)[0];
+                });
+            }
+        },
+
+        SHA_256("sha-256", "SHA-256") {
+            private static final byte[] EXPECTED = HexFormat.of().parseHex(
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+
+            @Override
+            boolean knownAnswer(Provider provider) throws GeneralSecurityException {
+                byte[] digest = MessageDigest.getInstance(algorithm, provider)
+                    .digest("abc".getBytes(StandardCharsets.US_ASCII));
+                return MessageDigest.isEqual(EXPECTED, digest);
+            }
+
+            @Override
+            long nanosPerOp(Provider provider, long measureMs) throws GeneralSecurityException {
+                MessageDigest digest = MessageDigest.getInstance(algorithm, provider);
+                byte[] payload = new byte[PAYLOAD_LENGTH];
+                return measure(measureMs, n -> {
+                    payload[0] = (byte) n;
+                    return digest.digest(payload)[0];
+                });
+            }
+        };
+
+        private static final byte[] KAT_MESSAGE = "UAE identity provider self-test".getBytes(StandardCharsets.UTF_8);
+        // About an encrypted PII field or a salted identifier
+        private static final int PAYLOAD_LENGTH = 64;
+
+        final String tag;
+        final String algorithm;
+
+        Primitive(String tag, String algorithm) {
+            this.tag = tag;
+            this.algorithm = algorithm;
+        }
+
+        boolean offeredBy(Provider provider) {
+            // getInstance, not getService: a provider may register "AES/GCM" and accept the padding
+            try {
+                if (this == AES_GCM) {
+                    Cipher.getInstance(algorithm, provider);
+                } else {
+                    MessageDigest.getInstance(algorithm, provider);
+                }
+                return true;
+            } catch (GeneralSecurityException e) {
+                return false;
+            }
+        }
+
+        Provider jvmDefault() throws GeneralSecurityException {
+            return this == AES_GCM
+                ? Cipher.getInstance(algorithm).getProvider()
+                : MessageDigest.getInstance(algorithm).getProvider();
+        }
+
+        abstract boolean knownAnswer(Provider provider) throws GeneralSecurityException;
+
+        abstract long nanosPerOp(Provider provider, long measureMs) throws GeneralSecurityException;
+    }
+
+    /**
+     * One primitive's choice. Timings are in ns/op by provider name, empty unless benchmarked.
+     */
+    record Selection(Primitive primitive, Provider provider, String source, Map<String, Long> nanosPerOp) {}
+
+    @FunctionalInterface
+    private interface Operation {
+        byte run(int n) throws GeneralSecurityException;
+    }
+
+    private final Selection aesGcm;
+    private final Selection sha256;
+    private Provider bouncyCastle;
+
+    public CryptoProviders(AppSecurityProperties securityProps, MeterRegistry registry) {
+        // Null in unit tests and benchmarks: JVM defaults
+        AppSecurityProperties.ProviderProperties props = securityProps.providers();
+        String aesGcmName = props != null ? props.aesGcm() : null;
+        String sha256Name = props != null ? props.sha256() : null;
+        boolean selfBenchmark = props != null && props.selfBenchmark();
+        List<String> candidates = props != null && props.candidates() != null && !props.candidates().isEmpty()
+            ? props.candidates() : DEFAULT_CANDIDATES;
+        long benchmarkMs = props != null && props.benchmarkMs() > 0 ? props.benchmarkMs() : DEFAULT_BENCHMARK_MS;
+
+        this.aesGcm = select(Primitive.AES_GCM, aesGcmName, selfBenchmark, candidates, benchmarkMs);
+        this.sha256 = select(Primitive.SHA_256, sha256Name, selfBenchmark, candidates, benchmarkMs);
+        CryptoPrimitives.useSha256Provider(sha256.provider());
+
+        for (Selection selection : List.of(aesGcm, sha256)) {
+            register(selection, registry);
+            log.info("Crypto provider for {}: {} {} ({}){}", selection.primitive().algorithm,
+                selection.provider().getName(), selection.provider().getVersionStr(), selection.source(),
+                selection.nanosPerOp().isEmpty() ? "" : ", ns/op " + selection.nanosPerOp());
+        }
+    }
+
+    /** Provider for AES/GCM/NoPadding. */
+    public Provider aesGcm() {
+        return aesGcm.provider();
+    }
+
+    /** Provider for SHA-256, already applied to CryptoPrimitives. */
+    public Provider sha256() {
+        return sha256.provider();
+    }
+
+    Selection selection(Primitive primitive) {
+        return primitive == Primitive.AES_GCM ? aesGcm : sha256;
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Map<String, Object> providers = new LinkedHashMap<>();
+        for (Selection selection : List.of(aesGcm, sha256)) {
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("algorithm", selection.primitive().algorithm);
+            detail.put("provider", selection.provider().getName());
+            detail.put("version", selection.provider().getVersionStr());
+            detail.put("source", selection.source());
+            if (!selection.nanosPerOp().isEmpty()) {
+                detail.put("nanosPerOp", selection.nanosPerOp());
+            }
+            providers.put(selection.primitive().tag, detail);
+        }
+        builder.withDetail("crypto", Map.of("providers", providers));
+    }
+
+    private Selection select(Primitive primitive, String configured, boolean selfBenchmark,
+                             List<String> candidates, long benchmarkMs) {
+        try {
+            if (configured != null && !configured.isBlank()) {
+                Provider provider = provider(configured.trim());
+                if (provider == null || !primitive.offeredBy(provider)) {
+                    throw new IllegalStateException("JCA provider " + configured + " does not offer "
+                        + primitive.algorithm);
+                }
+                requireKnownAnswer(primitive, provider);
+                return new Selection(primitive, provider, "configured", Map.of());
+            }
+            if (selfBenchmark) {
+                Selection fastest = benchmark(primitive, candidates, benchmarkMs);
+                if (fastest != null) {
+                    return fastest;
+                }
+                log.warn("No provider candidate offers {}; using the JVM default", primitive.algorithm);
+            }
+            Provider provider = primitive.jvmDefault();
+            requireKnownAnswer(primitive, provider);
+            return new Selection(primitive, provider, "default", Map.of());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(primitive.algorithm + " provider self-test failed", e);
+        }
+    }
+
+    private Selection benchmark(Primitive primitive, List<String> candidates, long benchmarkMs)
+            throws GeneralSecurityException {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        Provider fastest = null;
+        long fastestNanos = Long.MAX_VALUE;
+        for (String name : candidates) {
+            Provider provider = provider(name.trim());
+            if (provider == null || !primitive.offeredBy(provider)) {
+                continue;
+            }
+            if (!primitive.knownAnswer(provider)) {
+                log.warn("Provider {} fails the {} known-answer test; not used", name, primitive.algorithm);
+                continue;
+            }
+            primitive.nanosPerOp(provider, benchmarkMs); // Warm-up: let the JIT compile the loop
+            long nanos = primitive.nanosPerOp(provider, benchmarkMs);
+            timings.put(provider.getName(), nanos);
+            if (nanos < fastestNanos) {
+                fastest = provider;
+                fastestNanos = nanos;
+            }
+        }
+        return fastest == null ? null : new Selection(primitive, fastest, "benchmarked", Collections.unmodifiableMap(timings));
+    }
+
+    private static void requireKnownAnswer(Primitive primitive, Provider provider) throws GeneralSecurityException {
+        if (!primitive.knownAnswer(provider)) {
+            throw new IllegalStateException("JCA provider " + provider.getName() + " fails the "
+                + primitive.algorithm + " known-answer test");
+        }
+    }
+
+    private Provider provider(String name) {
+        if ("BC".equals(name)) {
+            if (bouncyCastle == null) {
+                Provider registered = Security.getProvider("BC");
+                bouncyCastle = registered != null ? registered : new BouncyCastleProvider();
+            }
+            return bouncyCastle;
+        }
+        return Security.getProvider(name);
+    }
+
+    private static long measure(long measureMs, Operation operation) throws GeneralSecurityException {
+        long deadline = System.nanoTime() + measureMs * 1_000_000L;
+        long start = System.nanoTime();
+        int ops = 0;
+        int sink = 0;
+        do {
+            for (int i = 0; i < 64; i++) {
+                sink += operation.run(ops++);
+            }
+        } while (System.nanoTime() < deadline);
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            // Consume the results so the loop cannot be eliminated
+            log.trace("sink {}", sink);
+        }
+        return elapsed / ops;
+    }
+
+    private static void register(Selection selection, MeterRegistry registry) {
+        Gauge.builder("identity.crypto.provider.selected", () -> 1)
+            .description("JCA provider in use for the primitive")
+            .tag("primitive", selection.primitive().tag)
+            .tag("provider", selection.provider().getName())
+            .tag("source", selection.source())
+            .register(registry);
+        selection.nanosPerOp().forEach((provider, nanos) ->
+            Gauge.builder("identity.crypto.provider.benchmark", () -> nanos)
+                .description("Startup self-benchmark, ns per operation")
+                .baseUnit("nanoseconds")
+                .tag("primitive", selection.primitive().tag)
+                .tag("provider", provider)
+                .register(registry));
+    }
+}
@@ -3,6 +3,10 @@ package ae.uaepass.identity.security;
 import ae.uaepass.identity.config.AppSecurityProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
 /**
  * Default secrets provider that reads from environment variables
  * via Spring's property binding.
@@ -14,9 +18,15 @@ import org.springframework.stereotype.Component;
 public class EnvironmentSecretsProvider implements SecretsProvider {
 
     private final AppSecurityProperties properties;
+    private final Map<Integer, String> rotatedKeys;
 
     public EnvironmentSecretsProvider(AppSecurityProperties properties) {
         this.properties = properties;
+        Map<Integer, String> keys = properties.crypto().keys();
+        this.rotatedKeys = keys != null ? Map.copyOf(keys) : Map.of();
+        if (rotatedKeys.containsKey(1)) {
+            throw new IllegalStateException("PII key id 1 is aes-key; add rotated keys under other ids");
+        }
     }
 
     @Override
@@ -34,6 +44,18 @@ public class EnvironmentSecretsProvider implements SecretsProvider {
         return properties.crypto().aesKey();
     }
 
+    @Override
+    public String getEncryptionKey(int id) {
+        return id == 1 ? getEncryptionKey() : rotatedKeys.get(id);
+    }
+
+    @Override
+    public Set<Integer> getEncryptionKeyIds() {
+        Set<Integer> ids = new TreeSet<>(rotatedKeys.keySet());
+        ids.add(1);
+        return ids;
+    }
+
     @Override
     public String getServerPepper() {
         return properties.crypto().serverPepper();
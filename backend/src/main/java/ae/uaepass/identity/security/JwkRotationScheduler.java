@@ -1,6 +1,7 @@
 package ae.uaepass.identity.security;
 
 import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.service.AuditDetails;
 import ae.uaepass.identity.service.AuditService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,7 +14,6 @@ import java.security.cert.X509Certificate;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Enumeration;
-import java.util.Map;
 
 /**
  * JWT key rotation scheduler.
@@ -81,14 +81,13 @@ public class JwkRotationScheduler {
                         if (expiry.isBefore(now)) {
                             log.error("JWT key '{}' has EXPIRED at {}. Immediate rotation required!", alias, expiry);
                             auditService.logEvent(AuditEventType.KEY_ROTATION_NEEDED, null, (String) null,
-                                    Map.of("alias", alias, "status", "EXPIRED", "expiry", expiry.toString()));
+                                    AuditDetails.KeyRotation.expired(alias, expiry.toString()));
                         } else if (expiry.isBefore(warningThreshold)) {
                             long daysUntilExpiry = ChronoUnit.DAYS.between(now, expiry);
                             log.warn("JWT key '{}' expires in {} days ({}). Rotation recommended.",
                                     alias, daysUntilExpiry, expiry);
                             auditService.logEvent(AuditEventType.KEY_ROTATION_NEEDED, null, (String) null,
-                                    Map.of("alias", alias, "status", "EXPIRING_SOON",
-                                            "daysUntilExpiry", String.valueOf(daysUntilExpiry)));
+                                    AuditDetails.KeyRotation.expiringSoon(alias, daysUntilExpiry));
 
                             // Notify secrets provider for auto-rotation (Vault/KMS)
                             secretsProvider.rotateKey(alias);
@@ -1,5 +1,7 @@
 package ae.uaepass.identity.security;
 
+import java.util.Set;
+
 /**
  * Abstraction for secrets management.
  *
@@ -19,6 +21,22 @@ public interface SecretsProvider {
      */
     String getEncryptionKey();
 
+    /**
+     * Get PII key {@code id} of the key ring; key 1 is {@link #getEncryptionKey()}.
+     *
+     * @return the Base64 key, or null if the provider has no key under that id
+     */
+    default String getEncryptionKey(int id) {
+        return id == 1 ? getEncryptionKey() : null;
+    }
+
+    /**
+     * Ids of the PII keys in the ring, key 1 included.
+     */
+    default Set<Integer> getEncryptionKeyIds() {
+        return Set.of(1);
+    }
+
     /**
      * Get the server pepper for PIN hashing.
      */
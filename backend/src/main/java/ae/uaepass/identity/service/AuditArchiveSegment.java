@@ -0,0 +1,556 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.util.BloomFilter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * One immutable, compressed cold-archive segment of audit rows.
+ *
+ * Layout:
+ * <pre>
+ * [data blocks]          block-rows NDJSON rows each, deflate-compressed, oldest first
+ * [request_id index]     pages of sorted (key, block numbers) entries
+ * [user_id index]        same, keyed by the user UUID
+ * [footer]               time range, row count, block offsets, first key of each index
+ *                        page (the sparse index) and one Bloom filter per key
+ * [long footer offset][int magic]
+ * </pre>
+ *
+ * A lookup reads only the footer (cached in memory), one index page and the blocks the
+ * key appears in. The Bloom filter lets a segment that cannot match be skipped without
+ * touching the file.
+ *
+ * DESIGN DECISIONS:
+ * - Rows stay in time order so a segment maps to one time range; the indexes map
+ *   keys to blocks, and only the first key of each index page is held in memory
+ * - Segments are written to a temp file, forced and atomically renamed: a visible
+ *   segment is always complete
+ * - Rows are JSON so an archive stays readable with standard tools (inflate + jq)
+ */
+final class AuditArchiveSegment {
+
+    static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x41554453; // "AUDS"
+    private static final int VERSION = 1;
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = JSON.getFactory();
+
+    final Path path;
+    final String source;
+    final long rowCount;
+    final Instant minCreatedAt;
+    final Instant maxCreatedAt;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final SparseIndex requestIndex;
+    private final SparseIndex userIndex;
+    private final BloomFilter requestBloom;
+    private final BloomFilter userBloom;
+
+    private AuditArchiveSegment(Path path, String source, long rowCount, Instant minCreatedAt, Instant maxCreatedAt,
+                                long[] blockOffsets, int[] blockLengths, SparseIndex requestIndex,
+                                SparseIndex userIndex, BloomFilter requestBloom, BloomFilter userBloom) {
+        this.path = path;
+        this.source = source;
+        this.rowCount = rowCount;
+        this.minCreatedAt = minCreatedAt;
+        this.maxCreatedAt = maxCreatedAt;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.requestIndex = requestIndex;
+        this.userIndex = userIndex;
+        this.requestBloom = requestBloom;
+        this.userBloom = userBloom;
+    }
+
+    /**
+     * Which index a lookup uses.
+     */
+    enum Key {
+        REQUEST_ID,
+        USER_ID
+    }
+
+    /**
+     * One archived audit row, with every column needed to re-verify its chain hash.
+     */
+    record Row(
+        long id,
+        Long seq,
+        AuditEventType eventType,
+        UUID userId,
+        String requestId,
+        String ipAddress,
+        String deviceFingerprintHash,
+        String details,
+        Instant createdAt,
+        String chainHash,
+        int occurrenceCount,
+        Instant firstSeenAt
+    ) {}
+
+    boolean overlaps(Instant from, Instant to) {
+        return minCreatedAt.isBefore(to) && !maxCreatedAt.isBefore(from);
+    }
+
+    /**
+     * False only if the key is definitely not in this segment.
+     */
+    boolean mightContain(Key key, String value) {
+        return (key == Key.REQUEST_ID ? requestBloom : userBloom).mightContain(value);
+    }
+
+    /**
+     * Every row whose request or user id equals {@code value}, oldest first.
+     */
+    List<Row> find(Key key, String value) throws IOException {
+        if (!mightContain(key, value)) {
+            return List.of();
+        }
+        SparseIndex index = key == Key.REQUEST_ID ? requestIndex : userIndex;
+        int page = index.pageFor(value);
+        if (page < 0) {
+            return List.of();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int[] blocks = readPage(channel, index.offsets[page], index.lengths[page], value);
+            List<Row> rows = new ArrayList<>();
+            for (int block : blocks) {
+                for (Row row : readBlock(channel, block)) {
+                    String rowValue = key == Key.REQUEST_ID ? row.requestId()
+                        : row.userId() != null ? row.userId().toString() : null;
+                    if (value.equals(rowValue)) {
+                        rows.add(row);
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    // --- Reading ---
+
+    static AuditArchiveSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 12) {
+                throw new IOException("Truncated audit archive segment: " + path);
+            }
+            ByteBuffer trailer = read(channel, size - 12, 12);
+            long footerOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC || footerOffset < 0 || footerOffset > size - 12) {
+                throw new IOException("Not an audit archive segment: " + path);
+            }
+            ByteBuffer footer = read(channel, footerOffset, (int) (size - 12 - footerOffset));
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                footer.array(), footer.arrayOffset(), footer.remaining()));
+
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported audit archive segment version: " + path);
+            }
+            String source = in.readUTF();
+            long rowCount = in.readLong();
+            Instant minCreatedAt = readInstant(in);
+            Instant maxCreatedAt = readInstant(in);
+            int blockCount = in.readInt();
+            long[] blockOffsets = new long[blockCount];
+            int[] blockLengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = in.readLong();
+                blockLengths[i] = in.readInt();
+            }
+            SparseIndex requestIndex = SparseIndex.readFrom(in);
+            SparseIndex userIndex = SparseIndex.readFrom(in);
+            BloomFilter requestBloom = BloomFilter.readFrom(in);
+            BloomFilter userBloom = BloomFilter.readFrom(in);
+            return new AuditArchiveSegment(path, source, rowCount, minCreatedAt, maxCreatedAt,
+                blockOffsets, blockLengths, requestIndex, userIndex, requestBloom, userBloom);
+        }
+    }
+
+    private List<Row> readBlock(FileChannel channel, int block) throws IOException {
+        ByteBuffer compressed = read(channel, blockOffsets[block], blockLengths[block]);
+        List<Row> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new InflaterInputStream(new ByteArrayInputStream(compressed.array())), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                rows.add(parseRow(JSON.readTree(line)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Binary search is done on the in-memory first keys; the page itself is scanned.
+     */
+    private static int[] readPage(FileChannel channel, long offset, int length, String value) throws IOException {
+        ByteBuffer page = read(channel, offset, length);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(page.array()));
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            String key = in.readUTF();
+            int[] blocks = new int[in.readInt()];
+            for (int b = 0; b < blocks.length; b++) {
+                blocks[b] = in.readInt();
+            }
+            int cmp = key.compareTo(value);
+            if (cmp == 0) {
+                return blocks;
+            }
+            if (cmp > 0) {
+                break;
+            }
+        }
+        return new int[0];
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of audit archive segment");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static Row parseRow(JsonNode node) {
+        JsonNode details = node.get("details");
+        return new Row(
+            node.get("id").asLong(),
+            node.hasNonNull("seq") ? node.get("seq").asLong() : null,
+            AuditEventType.valueOf(node.get("eventType").asText()),
+            node.hasNonNull("userId") ? UUID.fromString(node.get("userId").asText()) : null,
+            text(node, "requestId"),
+            text(node, "ipAddress"),
+            text(node, "deviceFingerprintHash"),
+            details != null && !details.isNull() ? details.toString() : null,
+            Instant.parse(node.get("createdAt").asText()),
+            text(node, "chainHash"),
+            node.path("occurrenceCount").asInt(1),
+            node.hasNonNull("firstSeenAt") ? Instant.parse(node.get("firstSeenAt").asText()) : null);
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    // --- Writing ---
+
+    /**
+     * Streams rows (in created_at order) into a new segment.
+     */
+    static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path tmp;
+        private final String source;
+        private final int blockRows;
+        private final int indexPageEntries;
+        private final double bloomFpp;
+        private final FileChannel channel;
+
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(64 * 1024);
+        private final List<Long> blockOffsets = new ArrayList<>();
+        private final List<Integer> blockLengths = new ArrayList<>();
+        private final List<KeyBlock> requestKeys = new ArrayList<>();
+        private final List<KeyBlock> userKeys = new ArrayList<>();
+        private Deflater deflater;
+        private DeflaterOutputStream block;
+        private JsonGenerator json;
+        private int rowsInBlock;
+        private long rowCount;
+        private long position;
+        private Instant minCreatedAt;
+        private Instant maxCreatedAt;
+
+        Writer(Path target, String source, int blockRows, int indexPageEntries, double bloomFpp) throws IOException {
+            this.target = target;
+            this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.source = source;
+            this.blockRows = blockRows;
+            this.indexPageEntries = indexPageEntries;
+            this.bloomFpp = bloomFpp;
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        long rowCount() {
+            return rowCount;
+        }
+
+        void add(Row row) throws IOException {
+            if (block == null) {
+                blockBytes.reset();
+                deflater = new Deflater(Deflater.BEST_COMPRESSION);
+                block = new DeflaterOutputStream(blockBytes, deflater);
+                json = JSON_FACTORY.createGenerator(block, JsonEncoding.UTF8);
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.setRootValueSeparator(null);
+            }
+            writeRow(json, row);
+            int blockNumber = blockOffsets.size();
+            if (row.requestId() != null) {
+                requestKeys.add(new KeyBlock(row.requestId(), blockNumber));
+            }
+            if (row.userId() != null) {
+                userKeys.add(new KeyBlock(row.userId().toString(), blockNumber));
+            }
+            if (minCreatedAt == null || row.createdAt().isBefore(minCreatedAt)) {
+                minCreatedAt = row.createdAt();
+            }
+            if (maxCreatedAt == null || row.createdAt().isAfter(maxCreatedAt)) {
+                maxCreatedAt = row.createdAt();
+            }
+            rowCount++;
+            if (++rowsInBlock == blockRows) {
+                finishBlock();
+            }
+        }
+
+        /**
+         * Write indexes and footer, force to disk and atomically publish the segment.
+         */
+        AuditArchiveSegment finish() throws IOException {
+            if (rowCount == 0) {
+                throw new IllegalStateException("Empty audit archive segment");
+            }
+            finishBlock();
+            SparseIndex requestIndex = writeIndex(requestKeys);
+            SparseIndex userIndex = writeIndex(userKeys);
+
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            footer.writeInt(VERSION);
+            footer.writeUTF(source);
+            footer.writeLong(rowCount);
+            footer.writeLong(minCreatedAt.getEpochSecond());
+            footer.writeInt(minCreatedAt.getNano());
+            footer.writeLong(maxCreatedAt.getEpochSecond());
+            footer.writeInt(maxCreatedAt.getNano());
+            footer.writeInt(blockOffsets.size());
+            for (int i = 0; i < blockOffsets.size(); i++) {
+                footer.writeLong(blockOffsets.get(i));
+                footer.writeInt(blockLengths.get(i));
+            }
+            requestIndex.writeTo(footer);
+            userIndex.writeTo(footer);
+            bloom(requestIndex.keyCount, requestKeys).writeTo(footer);
+            bloom(userIndex.keyCount, userKeys).writeTo(footer);
+            long footerOffset = position;
+            write(footerBytes.toByteArray());
+            write(ByteBuffer.allocate(12).putLong(footerOffset).putInt(MAGIC).array());
+
+            channel.force(true);
+            channel.close();
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return open(target);
+        }
+
+        /**
+         * Discards an unfinished segment.
+         */
+        @Override
+        public void close() throws IOException {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+            Files.deleteIfExists(tmp);
+        }
+
+        private void finishBlock() throws IOException {
+            if (block == null) {
+                return;
+            }
+            json.close();
+            block.finish();
+            deflater.end();
+            blockOffsets.add(position);
+            blockLengths.add(blockBytes.size());
+            write(blockBytes.toByteArray());
+            block = null;
+            rowsInBlock = 0;
+        }
+
+        /**
+         * Sort the (key, block) pairs, group them per key and cut them into pages.
+         */
+        private SparseIndex writeIndex(List<KeyBlock> pairs) throws IOException {
+            pairs.sort(null);
+            List<String> firstKeys = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            List<Integer> lengths = new ArrayList<>();
+            int keyCount = 0;
+
+            ByteArrayOutputStream pageBytes = new ByteArrayOutputStream();
+            DataOutputStream page = new DataOutputStream(pageBytes);
+            List<IndexEntry> entries = new ArrayList<>();
+            int i = 0;
+            while (i < pairs.size()) {
+                String key = pairs.get(i).key();
+                List<Integer> blocks = new ArrayList<>();
+                for (; i < pairs.size() && pairs.get(i).key().equals(key); i++) {
+                    int block = pairs.get(i).block();
+                    if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block) {
+                        blocks.add(block);
+                    }
+                }
+                entries.add(new IndexEntry(key, blocks));
+                keyCount++;
+                if (entries.size() == indexPageEntries || i == pairs.size()) {
+                    pageBytes.reset();
+                    page.writeInt(entries.size());
+                    for (IndexEntry entry : entries) {
+                        page.writeUTF(entry.key());
+                        page.writeInt(entry.blocks().size());
+                        for (int block : entry.blocks()) {
+                            page.writeInt(block);
+                        }
+                    }
+                    page.flush();
+                    firstKeys.add(entries.get(0).key());
+                    offsets.add(position);
+                    lengths.add(pageBytes.size());
+                    write(pageBytes.toByteArray());
+                    entries.clear();
+                }
+            }
+            return new SparseIndex(firstKeys.toArray(String[]::new),
+                offsets.stream().mapToLong(Long::longValue).toArray(),
+                lengths.stream().mapToInt(Integer::intValue).toArray(), keyCount);
+        }
+
+        private BloomFilter bloom(int keyCount, List<KeyBlock> sortedPairs) {
+            BloomFilter bloom = BloomFilter.create(keyCount, bloomFpp);
+            String previous = null;
+            for (KeyBlock pair : sortedPairs) {
+                if (!pair.key().equals(previous)) {
+                    bloom.put(pair.key());
+                    previous = pair.key();
+                }
+            }
+            return bloom;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+        }
+
+        private static void writeRow(JsonGenerator json, Row row) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("id", row.id());
+            if (row.seq() != null) {
+                json.writeNumberField("seq", row.seq());
+            }
+            json.writeStringField("eventType", row.eventType().name());
+            json.writeStringField("userId", Objects.toString(row.userId(), null));
+            json.writeStringField("requestId", row.requestId());
+            json.writeStringField("ipAddress", row.ipAddress());
+            json.writeStringField("deviceFingerprintHash", row.deviceFingerprintHash());
+            json.writeFieldName("details");
+            if (row.details() != null) {
+                json.writeRawValue(row.details());
+            } else {
+                json.writeNull();
+            }
+            json.writeStringField("createdAt", row.createdAt().toString());
+            json.writeStringField("chainHash", row.chainHash());
+            if (row.occurrenceCount() > 1) {
+                json.writeNumberField("occurrenceCount", row.occurrenceCount());
+                json.writeStringField("firstSeenAt", row.firstSeenAt().toString());
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+    }
+
+    private record IndexEntry(String key, List<Integer> blocks) {}
+
+    private record KeyBlock(String key, int block) implements Comparable<KeyBlock> {
+        @Override
+        public int compareTo(KeyBlock other) {
+            int cmp = key.compareTo(other.key);
+            return cmp != 0 ? cmp : Integer.compare(block, other.block);
+        }
+    }
+
+    /**
+     * First key, file offset and length of every index page. Held in memory per segment.
+     */
+    private record SparseIndex(String[] firstKeys, long[] offsets, int[] lengths, int keyCount) {
+
+        /**
+         * The only page that can hold {@code key}, or -1.
+         */
+        int pageFor(String key) {
+            int pos = Arrays.binarySearch(firstKeys, key);
+            return pos >= 0 ? pos : -pos - 2;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(keyCount);
+            out.writeInt(firstKeys.length);
+            for (int i = 0; i < firstKeys.length; i++) {
+                out.writeUTF(firstKeys[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+
+        static SparseIndex readFrom(DataInputStream in) throws IOException {
+            int keyCount = in.readInt();
+            int pages = in.readInt();
+            String[] firstKeys = new String[pages];
+            long[] offsets = new long[pages];
+            int[] lengths = new int[pages];
+            for (int i = 0; i < pages; i++) {
+                firstKeys[i] = in.readUTF();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+            }
+            return new SparseIndex(firstKeys, offsets, lengths, keyCount);
+        }
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+}
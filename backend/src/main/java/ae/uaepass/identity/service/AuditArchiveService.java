@@ -0,0 +1,435 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.dto.AuditCursor;
+import ae.uaepass.identity.dto.AuditLogFilter;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditLog;
+import ae.uaepass.identity.util.AuditColumnCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier for audit rows past hot retention.
+ *
+ * Partitions detached by AuditPartitionManager (retention-mode: detach) are streamed
+ * into immutable AuditArchiveSegment files, verified, and only then dropped from
+ * Postgres. Lookups by request ID or user ID consult each segment's Bloom filter and
+ * sparse index, so only segments (and blocks) that can match are read.
+ *
+ * DESIGN DECISIONS:
+ * - One segment per segment-rows rows of a partition; a rerun after a crash first
+ *   deletes that partition's segments, so a partition is archived exactly once
+ * - The detached table is dropped only after the archived row count matches it
+ * - Segment footers are cached in memory; searches never list the directory
+ * - Lookups apply the keyset cursor and page size while scanning segments newest first,
+ *   so deep pages stay reachable and cost about as much as the first
+ * - The directory must be shared by every instance (e.g. a network volume), as only
+ *   the instance holding the advisory lock archives
+ *
+ * SECURITY: archived rows are raw; masking happens in the admin API as for hot rows.
+ */
+@Service
+public class AuditArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditArchiveService.class);
+
+    private static final long LOCK_KEY = 0x4155444954L + 1; // next to the partition manager's
+
+    private static final Comparator<AuditArchiveSegment.Row> OLDEST_FIRST =
+        Comparator.comparing(AuditArchiveSegment.Row::createdAt).thenComparingLong(AuditArchiveSegment.Row::id);
+
+    private static final String DETACHED_SQL =
+        "SELECT c.relname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "WHERE n.nspname = current_schema() AND c.relkind = 'r' AND NOT c.relispartition " +
+        "AND c.relname ~ '^audit_logs_(p[0-9]{6}|legacy)$' ORDER BY c.relname";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final AuditProperties.ArchiveProperties props;
+    private final Path directory;
+    private final ObjectReader detailsReader;
+    /** Replaced wholesale, never mutated, so searches see a consistent set without locking. */
+    private volatile List<AuditArchiveSegment> segments = List.of();
+    private final Counter archivedRows;
+    private final Counter segmentsRead;
+    private final Counter segmentsSkipped;
+
+    public AuditArchiveService(JdbcTemplate jdbcTemplate,
+                               DataSource dataSource,
+                               PlatformTransactionManager transactionManager,
+                               AuditProperties auditProps,
+                               ObjectMapper objectMapper,
+                               MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.props = auditProps.archive();
+        this.directory = Path.of(props.directory());
+        this.detailsReader = objectMapper.readerFor(Map.class);
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(props.blockRows());
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+
+        Gauge.builder("identity.audit.archive.segments", this, service -> service.segments.size())
+            .description("Audit archive segments available for search")
+            .register(registry);
+        this.archivedRows = Counter.builder("identity.audit.archive.rows")
+            .description("Audit rows moved to the cold archive")
+            .register(registry);
+        this.segmentsRead = Counter.builder("identity.audit.archive.lookups")
+            .description("Archive segment lookups by outcome")
+            .tag("outcome", "read")
+            .register(registry);
+        this.segmentsSkipped = Counter.builder("identity.audit.archive.lookups")
+            .description("Archive segment lookups by outcome")
+            .tag("outcome", "bloom_skip")
+            .register(registry);
+    }
+
+    /**
+     * Load every segment footer. Unreadable files are logged and left out of searches.
+     * Rescanned periodically: segments may have been written by another instance.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.audit.archive.refresh-ms}", initialDelayString = "${app.audit.archive.refresh-ms}")
+    public void loadSegments() {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<AuditArchiveSegment> loaded = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.filter(AuditArchiveSegment::isSegment).sorted().toList()) {
+                    try {
+                        loaded.add(AuditArchiveSegment.open(path));
+                    } catch (IOException e) {
+                        log.error("Unreadable audit archive segment {}", path, e);
+                    }
+                }
+            }
+            segments = List.copyOf(loaded);
+            log.info("Audit archive loaded: dir={}, segments={}", directory, loaded.size());
+        } catch (IOException e) {
+            log.error("Audit archive unavailable: dir={}", directory, e);
+        }
+    }
+
+    /**
+     * Archive and drop every detached audit partition.
+     */
+    @Scheduled(cron = "${app.audit.archive.cron}")
+    public void archiveDetached() {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!AuditPartitionManager.tryLock(connection, LOCK_KEY)) {
+                    log.info("Audit archiving running elsewhere, skipping");
+                    return null;
+                }
+                try {
+                    for (String table : jdbcTemplate.queryForList(DETACHED_SQL, String.class)) {
+                        archive(table);
+                    }
+                } finally {
+                    AuditPartitionManager.unlock(connection, LOCK_KEY);
+                }
+                return null;
+            });
+        } catch (DataAccessException | UncheckedIOException | IllegalStateException e) {
+            log.error("Audit archiving failed", e);
+        }
+    }
+
+    /**
+     * One keyset page of archived rows matching the filter: newest first (created_at DESC, id DESC),
+     * strictly after the cursor, at most limit rows. Segments are read newest first, and the scan
+     * stops at the first segment entirely older than the page's last row, so a page reads about
+     * as many segments as it spans however deep it is.
+     * Only request ID and user ID lookups reach the archive; other filters return nothing.
+     */
+    public List<AuditLog> find(AuditLogFilter filter, AuditCursor after, int limit) {
+        Lookup lookup = lookup(filter);
+        if (lookup == null) {
+            return List.of();
+        }
+        List<AuditArchiveSegment> candidates = segments.stream()
+            .filter(segment -> segment.overlaps(filter.from(), filter.to()))
+            .filter(segment -> after == null || !segment.minCreatedAt.isAfter(after.createdAt()))
+            .sorted(Comparator.comparing((AuditArchiveSegment segment) -> segment.maxCreatedAt).reversed())
+            .toList();
+
+        // Head is the oldest row kept, evicted when a newer one arrives at capacity
+        PriorityQueue<AuditArchiveSegment.Row> page = new PriorityQueue<>(OLDEST_FIRST);
+        for (AuditArchiveSegment segment : candidates) {
+            if (page.size() == limit && segment.maxCreatedAt.isBefore(page.peek().createdAt())) {
+                break;
+            }
+            for (AuditArchiveSegment.Row row : read(segment, lookup)) {
+                if (matches(row, filter) && (after == null || isAfter(row, after))) {
+                    page.add(row);
+                    if (page.size() > limit) {
+                        page.poll();
+                    }
+                }
+            }
+        }
+        return page.stream()
+            .sorted(OLDEST_FIRST.reversed())
+            .map(AuditArchiveService::toAuditLog)
+            .toList();
+    }
+
+    /**
+     * Exact number of archived rows matching the filter. Reads every segment that may hold
+     * the key, so callers ask for it only when an exact count was requested.
+     */
+    public long count(AuditLogFilter filter) {
+        Lookup lookup = lookup(filter);
+        if (lookup == null) {
+            return 0;
+        }
+        long count = 0;
+        for (AuditArchiveSegment segment : segments) {
+            if (segment.overlaps(filter.from(), filter.to())) {
+                for (AuditArchiveSegment.Row row : read(segment, lookup)) {
+                    if (matches(row, filter)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private record Lookup(AuditArchiveSegment.Key key, String value) {}
+
+    private static Lookup lookup(AuditLogFilter filter) {
+        if (filter.requestId() != null) {
+            return new Lookup(AuditArchiveSegment.Key.REQUEST_ID, filter.requestId());
+        }
+        return filter.userId() != null ? new Lookup(AuditArchiveSegment.Key.USER_ID, filter.userId().toString()) : null;
+    }
+
+    private List<AuditArchiveSegment.Row> read(AuditArchiveSegment segment, Lookup lookup) {
+        if (!segment.mightContain(lookup.key(), lookup.value())) {
+            segmentsSkipped.increment();
+            return List.of();
+        }
+        segmentsRead.increment();
+        try {
+            return segment.find(lookup.key(), lookup.value());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Audit archive segment unreadable: " + segment.path, e);
+        }
+    }
+
+    private static boolean isAfter(AuditArchiveSegment.Row row, AuditCursor cursor) {
+        int byTime = row.createdAt().compareTo(cursor.createdAt());
+        return byTime < 0 || (byTime == 0 && row.id() < cursor.id());
+    }
+
+    private void archive(String table) {
+        long start = System.currentTimeMillis();
+        deleteSegments(table);
+
+        List<AuditArchiveSegment> written = new ArrayList<>();
+        AuditArchiveSegment.Writer[] writer = new AuditArchiveSegment.Writer[1];
+        try {
+            Set<String> columns = columns(table);
+            String occurrences = columns.contains("occurrence_count")
+                ? "occurrence_count, first_seen_at" : "1 AS occurrence_count, NULL::timestamptz AS first_seen_at";
+            String compact = columns.contains("ip_address_raw")
+                ? AuditColumnCodec.SELECT_IP + ", " + AuditColumnCodec.SELECT_FINGERPRINT
+                : "ip_address, device_fingerprint_hash";
+            readOnlyTx.executeWithoutResult(status -> cursorTemplate.query(
+                "SELECT id, seq, event_type, user_id, request_id, " + compact + ", " +
+                "details::text AS details, created_at, chain_hash, " + occurrences +
+                " FROM " + table + " ORDER BY created_at, id",
+                (RowCallbackHandler) rs -> {
+                    try {
+                        if (writer[0] == null) {
+                            writer[0] = newWriter(table, written.size() + 1);
+                        }
+                        writer[0].add(mapRow(rs));
+                        if (writer[0].rowCount() == props.segmentRows()) {
+                            written.add(writer[0].finish());
+                            writer[0] = null;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            if (writer[0] != null) {
+                written.add(writer[0].finish());
+                writer[0] = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeQuietly(writer[0]);
+        }
+
+        long archived = written.stream().mapToLong(s -> s.rowCount).sum();
+        Long stored = jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+        if (stored == null || stored != archived) {
+            written.forEach(segment -> deleteQuietly(segment.path));
+            throw new IllegalStateException("Archive of " + table + " incomplete: " + archived + " of " + stored);
+        }
+        List<AuditArchiveSegment> updated = new ArrayList<>(segments);
+        updated.addAll(written);
+        segments = List.copyOf(updated);
+        jdbcTemplate.execute("DROP TABLE " + table);
+        archivedRows.increment(archived);
+        log.warn("Archived and dropped audit partition {}: rows={}, segments={}, tookMs={}",
+            table, archived, written.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * A detached partition keeps the layout it was detached with: no coalescing columns before V9,
+     * text event types and addresses before V10.
+     */
+    private Set<String> columns(String table) {
+        return Set.copyOf(jdbcTemplate.queryForList(
+            "SELECT column_name FROM information_schema.columns WHERE table_schema = current_schema() " +
+            "AND table_name = ?", String.class, table));
+    }
+
+    private AuditArchiveSegment.Writer newWriter(String table, int part) throws IOException {
+        Path target = directory.resolve(String.format("%s-%04d%s", table, part, AuditArchiveSegment.SUFFIX));
+        return new AuditArchiveSegment.Writer(target, table, props.blockRows(), props.indexPageEntries(),
+            props.bloomFpp());
+    }
+
+    /**
+     * Segments left by an interrupted run of the same partition.
+     */
+    private void deleteSegments(String table) {
+        segments = segments.stream().filter(segment -> !segment.source.equals(table)).toList();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().startsWith(table + "-"))
+                .forEach(AuditArchiveService::deleteQuietly);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean matches(AuditArchiveSegment.Row row, AuditLogFilter filter) {
+        return !row.createdAt().isBefore(filter.from())
+            && row.createdAt().isBefore(filter.to())
+            && (filter.eventType() == null || filter.eventType() == row.eventType())
+            && (filter.userId() == null || filter.userId().equals(row.userId()))
+            && (filter.requestId() == null || filter.requestId().equals(row.requestId()))
+            && containsDetails(row.details(), filter.details());
+    }
+
+    /**
+     * Same semantics as {@code details @> predicates} for the flat, scalar-valued details we write.
+     */
+    private boolean containsDetails(String details, Map<String, Object> predicates) {
+        if (predicates.isEmpty()) {
+            return true;
+        }
+        if (details == null) {
+            return false;
+        }
+        Map<String, Object> stored;
+        try {
+            stored = detailsReader.readValue(details);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Archived audit details unreadable", e);
+        }
+        return predicates.entrySet().stream()
+            .allMatch(predicate -> predicate.getValue().equals(stored.get(predicate.getKey())));
+    }
+
+    private static AuditArchiveSegment.Row mapRow(ResultSet rs) throws SQLException {
+        Long seq = rs.getObject("seq", Long.class);
+        OffsetDateTime firstSeenAt = rs.getObject("first_seen_at", OffsetDateTime.class);
+        return new AuditArchiveSegment.Row(
+            rs.getLong("id"),
+            seq,
+            eventType(rs.getObject("event_type")),
+            rs.getObject("user_id", UUID.class),
+            rs.getString("request_id"),
+            rs.getString("ip_address"),
+            rs.getString("device_fingerprint_hash"),
+            rs.getString("details"),
+            rs.getObject("created_at", OffsetDateTime.class).toInstant(),
+            rs.getString("chain_hash"),
+            rs.getInt("occurrence_count"),
+            firstSeenAt != null ? firstSeenAt.toInstant() : null);
+    }
+
+    /**
+     * smallint code since V10, name before.
+     */
+    private static AuditEventType eventType(Object stored) {
+        return stored instanceof Number code
+            ? AuditEventType.fromCode(code.intValue()) : AuditEventType.valueOf(stored.toString());
+    }
+
+    private static AuditLog toAuditLog(AuditArchiveSegment.Row row) {
+        return AuditLog.restored(row.id(), row.seq(), row.createdAt(), row.chainHash())
+            .eventType(row.eventType())
+            .userId(row.userId())
+            .requestId(row.requestId())
+            .ipAddress(row.ipAddress())
+            .deviceFingerprintHash(row.deviceFingerprintHash())
+            .details(row.details())
+            .occurrences(row.occurrenceCount(), row.firstSeenAt());
+    }
+
+    private static void closeQuietly(AuditArchiveSegment.Writer writer) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Could not discard unfinished audit archive segment", e);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete audit archive file {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package ae.uaepass.identity.service;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Computes audit chain hashes by feeding the canonical form to the Mac as bytes.
+ *
+ * Produces exactly HMAC(canonical(seq, record) + "|" + previousHash) — see
+ * AuditSequencer.canonical — without building the intermediate strings: fields are
+ * encoded into a reusable scratch buffer, and ASCII text (almost every field) is
+ * copied char by char instead of through String.getBytes.
+ *
+ * Not thread-safe: owns its Mac and buffers. One instance per thread.
+ */
+final class AuditChainHasher {
+
+    private static final byte SEPARATOR = '|';
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Mac mac;
+    private final byte[] digest;
+    private byte[] buffer = new byte[512];
+    private int length;
+
+    AuditChainHasher(Mac mac) {
+        this.mac = mac;
+        this.digest = new byte[mac.getMacLength()];
+    }
+
+    String hash(long seq, AuditRecord record, String previousHash) {
+        length = 0;
+        appendLong(seq);
+        append(SEPARATOR);
+        appendAscii(record.eventType().name());
+        append(SEPARATOR);
+        appendUuid(record.userId());
+        append(SEPARATOR);
+        appendString(record.requestId());
+        append(SEPARATOR);
+        appendString(record.ipAddress());
+        append(SEPARATOR);
+        appendString(record.deviceFingerprintHash());
+        append(SEPARATOR);
+        appendString(record.details());
+        append(SEPARATOR);
+        appendLong(record.createdAt().toEpochMilli());
+        if (record.coalesced()) {
+            append(SEPARATOR);
+            appendLong(record.occurrenceCount());
+            append(SEPARATOR);
+            appendLong(record.firstSeenAt().toEpochMilli());
+        }
+        append(SEPARATOR);
+        appendString(previousHash);
+
+        mac.update(buffer, 0, length);
+        try {
+            mac.doFinal(digest, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hex = new byte[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    private void append(byte b) {
+        ensure(1);
+        buffer[length++] = b;
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // Digits were written least significant first
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    /**
+     * Same text as UUID.toString(): 8-4-4-4-12 lower-case hex digits.
+     */
+    private void appendUuid(UUID uuid) {
+        if (uuid == null) {
+            appendBytes(NULL);
+            return;
+        }
+        ensure(36);
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        appendHex(msb >>> 32, 8);
+        buffer[length++] = '-';
+        appendHex(msb >>> 16, 4);
+        buffer[length++] = '-';
+        appendHex(msb, 4);
+        buffer[length++] = '-';
+        appendHex(lsb >>> 48, 4);
+        buffer[length++] = '-';
+        appendHex(lsb, 12);
+    }
+
+    private void appendHex(long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[length++] = HEX[(int) (value >>> (4 * i)) & 0xF];
+        }
+    }
+
+    private void appendString(String value) {
+        if (value == null) {
+            appendBytes(NULL);
+            return;
+        }
+        int n = value.length();
+        ensure(n);
+        int start = length;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // Rare non-ASCII text: fall back to the JDK encoder for the whole value
+                length = start;
+                appendBytes(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[length++] = (byte) c;
+        }
+    }
+
+    private void appendAscii(String value) {
+        int n = value.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            buffer[length++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void appendBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
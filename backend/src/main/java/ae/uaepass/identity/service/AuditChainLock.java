@@ -0,0 +1,148 @@
+package ae.uaepass.identity.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Postgres advisory lock that makes one AuditWriter the only sequencer of the audit chain
+ * when the stream transport is off. AuditSequencer keeps the chain head in memory, so two
+ * instances sequencing at once would each extend their own copy of the chain and fork it.
+ *
+ * The lock is session-level and held on a dedicated connection for the writer's lifetime;
+ * if the instance dies, Postgres ends the session and frees the lock.
+ *
+ * DESIGN DECISIONS:
+ * - Startup fails closed: a second instance without the stream transport refuses to start
+ *   (more than one instance needs app.audit.stream.enabled on all of them)
+ * - The lock is checked before each batch. If its connection broke and another session has
+ *   taken the lock since, the batch is dropped and counted rather than sequenced on a stale head
+ * - While Postgres is unreachable the writer keeps spooling on its own head; the duplicate-seq
+ *   guard (AuditSequencer.checkUnforked) stops replay if another writer moved the chain meanwhile
+ */
+@Component
+public class AuditChainLock {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditChainLock.class);
+
+    private static final long LOCK_KEY = 0x4155444954L + 2; // after the partition manager's and the archive's
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    enum Status {
+        /** Still held on the same session. */
+        HELD,
+        /** The session broke and the lock was taken again; the chain head must be reloaded. */
+        REACQUIRED,
+        /** Another session holds the lock. */
+        LOST,
+        /** Postgres is unreachable, so whether the lock is still held is unknown. */
+        UNAVAILABLE
+    }
+
+    private final DataSource dataSource;
+
+    private volatile Connection connection;
+
+    public AuditChainLock(DataSource dataSource, MeterRegistry registry) {
+        this.dataSource = dataSource;
+        Gauge.builder("identity.audit.chain.writer", this, lock -> lock.isHeld() ? 1 : 0)
+            .description("1 on the instance holding the audit chain lock (stream transport off)")
+            .register(registry);
+    }
+
+    /**
+     * Take the lock at writer startup, or fail.
+     *
+     * @throws IllegalStateException if another instance holds it or Postgres is unreachable
+     */
+    public synchronized void acquire() {
+        try {
+            if (!lock()) {
+                throw new IllegalStateException("Audit chain is sequenced by another instance; "
+                    + "set app.audit.stream.enabled on every instance to run more than one");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Audit chain lock could not be taken", e);
+        }
+        log.info("Audit chain lock acquired");
+    }
+
+    /**
+     * Confirm the lock before sequencing a batch, taking it again if its session broke.
+     */
+    public synchronized Status check() {
+        try {
+            if (connection != null && connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return Status.HELD;
+            }
+        } catch (SQLException e) {
+            log.warn("Audit chain lock connection check failed", e);
+        }
+        discard();
+        try {
+            if (lock()) {
+                log.warn("Audit chain lock reacquired after its session ended");
+                return Status.REACQUIRED;
+            }
+            return Status.LOST;
+        } catch (SQLException e) {
+            return Status.UNAVAILABLE;
+        }
+    }
+
+    public synchronized void release() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            AuditPartitionManager.unlock(connection, LOCK_KEY);
+            connection.close();
+            connection = null;
+        } catch (SQLException e) {
+            log.warn("Audit chain lock not released, dropping its session", e);
+            discard();
+        }
+    }
+
+    boolean isHeld() {
+        return connection != null;
+    }
+
+    private boolean lock() throws SQLException {
+        Connection candidate = dataSource.getConnection();
+        try {
+            if (AuditPartitionManager.tryLock(candidate, LOCK_KEY)) {
+                connection = candidate;
+                return true;
+            }
+        } catch (SQLException e) {
+            candidate.close();
+            throw e;
+        }
+        candidate.close();
+        return false;
+    }
+
+    /**
+     * Drop the lock's session outright: closing alone would hand a connection that may still
+     * hold the lock back to the pool.
+     */
+    private void discard() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.abort(Runnable::run);
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Audit chain lock connection close failed", e);
+        }
+        connection = null;
+    }
+}
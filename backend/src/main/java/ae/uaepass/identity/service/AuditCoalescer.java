@@ -0,0 +1,231 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collapses floods of identical audit events into one row with a count.
+ *
+ * For event types with a configured window (e.g. OTP_SENT, OTP_FAILED), the first event
+ * for a given user, IP, device and details opens a window and is written as usual. Identical
+ * events inside the window are absorbed; when the window closes, one row records how many
+ * were absorbed (occurrence_count), the first (first_seen_at) and the last (created_at), and
+ * keeps the last request ID as a sample to trace. A quiet key costs one row per event, as
+ * before; a flooding key costs two rows per window.
+ *
+ * key-modes widens the key per event type: USER coalesces a user's events from any IP or
+ * device (credential stuffing spread over a botnet), IP coalesces an IP's events for any user
+ * (one source spraying many accounts). Fields outside the key are taken from the last
+ * absorbed event, like the request ID. An event without the key's field (no user under USER,
+ * no IP under IP) is keyed as under FULL, so anonymous events are not lumped together.
+ *
+ * SECURITY:
+ * - Coalesced rows are sequenced and chained like any other row; their count and first-seen
+ *   time are part of the chain hash, so a count cannot be altered undetected
+ * - Nothing is discarded: every raw event is either its own row or counted in a coalesced one
+ *   (sum of occurrence_count is the raw event count)
+ * - Distinct keys are capped at max-keys; beyond that events are written uncoalesced, so an
+ *   attacker rotating IPs costs rows, not memory
+ * - Under USER or IP the IPs, devices or users absorbed are not kept, only their count and
+ *   the last one; keep FULL for types where each source must stay on record
+ *
+ * DESIGN DECISIONS:
+ * - Windows are updated inside ConcurrentHashMap.compute, atomic per key, so executor threads
+ *   need no further locking
+ * - Windows are timed by event time; closed windows are swept every sweep-interval-ms and
+ *   all open windows are flushed on shutdown, before the writer drains
+ */
+@Component
+public class AuditCoalescer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditCoalescer.class);
+
+    private final AuditWriter auditWriter;
+    private final AuditProperties.CoalesceProperties props;
+    private final Map<AuditEventType, Duration> windows;
+    private final Map<AuditEventType, AuditProperties.CoalesceKeyMode> keyModes;
+    private final Map<Key, Window> open = new ConcurrentHashMap<>();
+    private final Map<AuditEventType, Counter> suppressed = new EnumMap<>(AuditEventType.class);
+    private final Counter overflowCounter;
+    private volatile boolean running;
+
+    public AuditCoalescer(AuditWriter auditWriter, AuditProperties auditProps, MeterRegistry registry) {
+        this.auditWriter = auditWriter;
+        this.props = auditProps.coalesce();
+        this.windows = props.windows() != null && !props.windows().isEmpty()
+            ? new EnumMap<>(props.windows()) : Map.of();
+        this.keyModes = props.keyModes() != null && !props.keyModes().isEmpty()
+            ? new EnumMap<>(props.keyModes()) : Map.of();
+
+        for (AuditEventType type : windows.keySet()) {
+            suppressed.put(type, Counter.builder("identity.audit.coalesced")
+                .description("Raw audit events absorbed into coalesced rows")
+                .tag("type", type.name())
+                .register(registry));
+        }
+        this.overflowCounter = Counter.builder("identity.audit.coalesce.overflow")
+            .description("Coalescible audit events written individually because max-keys was reached")
+            .register(registry);
+        Gauge.builder("identity.audit.coalesce.windows", open, Map::size)
+            .description("Open coalescing windows")
+            .register(registry);
+    }
+
+    /**
+     * Absorb the record into an open window, or open one for it.
+     *
+     * @return true if the record was absorbed and must not be written; false to write it now
+     */
+    public boolean absorb(AuditRecord record) {
+        Duration window = windows.get(record.eventType());
+        if (window == null || !running) {
+            return false;
+        }
+        Key key = Key.of(record, keyModes.getOrDefault(record.eventType(), AuditProperties.CoalesceKeyMode.FULL));
+        if (open.size() >= props.maxKeys() && !open.containsKey(key)) {
+            overflowCounter.increment();
+            return false;
+        }
+        AuditRecord[] closed = new AuditRecord[1];
+        boolean[] absorbed = new boolean[1];
+        open.compute(key, (k, current) -> {
+            if (current != null && record.createdAt().isBefore(current.closesAt)) {
+                current.add(record);
+                absorbed[0] = true;
+                return current;
+            }
+            if (current != null) {
+                closed[0] = current.summary();
+            }
+            return new Window(record.createdAt().plus(window));
+        });
+        if (closed[0] != null) {
+            auditWriter.enqueue(closed[0]);
+        }
+        if (absorbed[0]) {
+            suppressed.get(record.eventType()).increment();
+        }
+        return absorbed[0];
+    }
+
+    /**
+     * Write one row for every window that has closed.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.coalesce.sweep-interval-ms}")
+    public void sweep() {
+        flush(Instant.now());
+    }
+
+    void flush(Instant now) {
+        if (open.isEmpty()) {
+            return;
+        }
+        List<AuditRecord> closed = new ArrayList<>();
+        for (Key key : open.keySet()) {
+            open.computeIfPresent(key, (k, window) -> {
+                if (now.isBefore(window.closesAt)) {
+                    return window;
+                }
+                AuditRecord summary = window.summary();
+                if (summary != null) {
+                    closed.add(summary);
+                }
+                return null;
+            });
+        }
+        for (AuditRecord summary : closed) {
+            auditWriter.enqueue(summary);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Stops after the audit executor (which depends on this bean) and before the writer.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        flush(Instant.MAX);
+        log.info("Audit coalescer flushed");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * What makes two events identical: under FULL everything but the request ID and time;
+     * under USER or IP only the type and that field.
+     */
+    private record Key(AuditEventType eventType, UUID userId, String ipAddress,
+                       String deviceFingerprintHash, String details) {
+        static Key of(AuditRecord record, AuditProperties.CoalesceKeyMode mode) {
+            if (mode == AuditProperties.CoalesceKeyMode.USER && record.userId() != null) {
+                return new Key(record.eventType(), record.userId(), null, null, null);
+            }
+            if (mode == AuditProperties.CoalesceKeyMode.IP && record.ipAddress() != null) {
+                return new Key(record.eventType(), null, record.ipAddress(), null, null);
+            }
+            return new Key(record.eventType(), record.userId(), record.ipAddress(),
+                record.deviceFingerprintHash(), record.details());
+        }
+    }
+
+    /**
+     * Events absorbed since the window opened. Only touched inside map compute calls.
+     */
+    private static final class Window {
+        final Instant closesAt;
+        int count;
+        Instant first;
+        AuditRecord last;
+
+        Window(Instant closesAt) {
+            this.closesAt = closesAt;
+        }
+
+        void add(AuditRecord record) {
+            count++;
+            if (first == null || record.createdAt().isBefore(first)) {
+                first = record.createdAt();
+            }
+            if (last == null || !record.createdAt().isBefore(last.createdAt())) {
+                last = record;
+            }
+        }
+
+        /**
+         * The row for the absorbed events, with the last one's fields; null if none were
+         * absorbed. A single absorbed event is written as a plain row.
+         */
+        AuditRecord summary() {
+            if (count == 0) {
+                return null;
+            }
+            return new AuditRecord(last.eventType(), last.userId(), last.requestId(), last.ipAddress(),
+                last.deviceFingerprintHash(), last.details(), last.createdAt(), count, count > 1 ? first : null);
+        }
+    }
+}
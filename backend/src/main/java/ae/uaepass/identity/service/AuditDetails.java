@@ -0,0 +1,57 @@
+package ae.uaepass.identity.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Typed details payloads for audit events, one record per event shape.
+ *
+ * Serialized by AuditService through one pre-built ObjectWriter per record type, so the
+ * hot paths (OTP, PIN, lockouts) skip Map construction and per-call serializer lookup.
+ *
+ * DESIGN DECISIONS:
+ * - Properties are alphabetical: details are part of the chain's canonical form and must
+ *   match the sorted-key form AuditSealService restores after the jsonb round trip
+ * - Records are immutable, so they can cross to the audit executor without copying
+ * - Never add secrets, OTP values, tokens or PINs here
+ */
+public sealed interface AuditDetails {
+
+    /** OTP_FAILED, ACCOUNT_LOCKED: why the attempt or account was rejected. */
+    @JsonPropertyOrder(alphabetic = true)
+    record Reason(String reason) implements AuditDetails {}
+
+    /** OTP_SENT */
+    @JsonPropertyOrder(alphabetic = true)
+    record OtpSent(String channel) implements AuditDetails {}
+
+    /** OTP_FAILED after a wrong code. */
+    @JsonPropertyOrder(alphabetic = true)
+    record OtpAttempts(int attemptsUsed, int maxAttempts) implements AuditDetails {}
+
+    /** REGISTRATION_START */
+    @JsonPropertyOrder(alphabetic = true)
+    record Registration(String accountLevel) implements AuditDetails {}
+
+    /** SESSION_REVOKED for more than the current session. */
+    @JsonPropertyOrder(alphabetic = true)
+    record SessionScope(String scope) implements AuditDetails {}
+
+    /** KEY_ROTATION_NEEDED: expiry is set for EXPIRED keys, daysUntilExpiry for EXPIRING_SOON. */
+    @JsonPropertyOrder(alphabetic = true)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record KeyRotation(String alias, String status, String expiry, String daysUntilExpiry) implements AuditDetails {
+
+        public static KeyRotation expired(String alias, String expiry) {
+            return new KeyRotation(alias, "EXPIRED", expiry, null);
+        }
+
+        public static KeyRotation expiringSoon(String alias, long daysUntilExpiry) {
+            return new KeyRotation(alias, "EXPIRING_SOON", null, String.valueOf(daysUntilExpiry));
+        }
+    }
+
+    /** AUDIT_EXPORTED: exports of the audit trail are themselves audited. */
+    @JsonPropertyOrder(alphabetic = true)
+    record Export(String exportedBy, String format, String from, String to) implements AuditDetails {}
+}
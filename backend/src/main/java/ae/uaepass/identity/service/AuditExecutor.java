@@ -0,0 +1,143 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dedicated, bounded executor for audit event preparation (details serialization and
+ * hand-off to AuditWriter), replacing Spring's shared unbounded @Async executor.
+ *
+ * When both the threads and the queue are full, saturation-policy decides:
+ * - CALLER_RUNS: the request thread does the work itself (slows callers, loses nothing)
+ * - DROP: the event is dropped and counted
+ * - BLOCK: the caller waits up to block-timeout for queue space, then drops and counts
+ *
+ * DESIGN DECISIONS:
+ * - Depends on AuditWriter and AuditCoalescer, so it is stopped (and drained) before the
+ *   coalescer flushes its open windows and the writer stops
+ * - After shutdown, tasks run on the caller so late events still reach the writer
+ * - Saturation is visible through identity.audit.executor.saturated and the standard
+ *   executor.* metrics (tag name=audit)
+ */
+@Component
+@DependsOn({"auditWriter", "auditCoalescer"})
+public class AuditExecutor implements Executor, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditExecutor.class);
+
+    private final AuditProperties.ExecutorProperties props;
+    private final ThreadPoolExecutor pool;
+    private final Counter callerRunsCounter;
+    private final Counter droppedCounter;
+    private volatile boolean running;
+
+    public AuditExecutor(AuditProperties auditProps, MeterRegistry registry) {
+        this.props = auditProps.executor();
+        this.pool = new ThreadPoolExecutor(props.threads(), props.threads(), 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(props.queueCapacity()), threadFactory(), this::saturated);
+
+        this.callerRunsCounter = Counter.builder("identity.audit.executor.saturated")
+            .description("Audit tasks that found the executor saturated")
+            .tag("outcome", "caller_runs")
+            .register(registry);
+        this.droppedCounter = Counter.builder("identity.audit.executor.saturated")
+            .description("Audit tasks that found the executor saturated")
+            .tag("outcome", "dropped")
+            .register(registry);
+        Gauge.builder("identity.audit.executor.queue.depth", pool, p -> p.getQueue().size())
+            .description("Audit tasks waiting for an executor thread")
+            .register(registry);
+        new ExecutorServiceMetrics(pool, "audit", List.of()).bindTo(registry);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Finish queued tasks so their events reach the writer before it drains.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(props.shutdownTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                List<Runnable> pending = pool.shutdownNow();
+                log.error("Audit executor shutdown timed out, dropped {} queued events", pending.size());
+                droppedCounter.increment(pending.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * {@link RejectedExecutionHandler}: invoked when threads and queue are full, or after shutdown.
+     */
+    private void saturated(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            task.run();
+            return;
+        }
+        switch (props.saturationPolicy()) {
+            case CALLER_RUNS -> {
+                callerRunsCounter.increment();
+                task.run();
+            }
+            case DROP -> drop();
+            case BLOCK -> {
+                try {
+                    if (!executor.getQueue().offer(task, props.blockTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                        drop();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop();
+                }
+            }
+        }
+    }
+
+    private void drop() {
+        droppedCounter.increment();
+        log.warn("Audit executor saturated, event dropped: queued={}", pool.getQueue().size());
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "audit-exec-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
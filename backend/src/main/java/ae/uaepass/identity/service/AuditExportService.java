@@ -0,0 +1,190 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.dto.AuditLogFilter;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.util.AuditColumnCodec;
+import ae.uaepass.identity.util.PiiMaskingUtil;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams masked audit rows as NDJSON (one JSON object per line).
+ *
+ * DESIGN DECISIONS:
+ * - Server-side cursor: pgjdbc only honours the fetch size inside a transaction, so the
+ *   query runs in a read-only transaction and holds at most fetch-size rows at a time
+ * - Rows are written straight from the ResultSet through a JsonGenerator — no entities,
+ *   no intermediate Maps — so memory is constant regardless of the range size
+ * - details are copied as raw JSON (jsonb text is already valid JSON)
+ *
+ * SECURITY: user IDs and IPs are masked with PiiMaskingUtil, as in the admin viewer.
+ */
+@Service
+public class AuditExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditExportService.class);
+
+    private final JdbcTemplate cursorTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final JsonFactory jsonFactory;
+    private final int fetchSize;
+    private final Counter exportedRows;
+
+    public AuditExportService(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              AuditProperties auditProps,
+                              MeterRegistry registry) {
+        this.fetchSize = auditProps.export().fetchSize();
+        this.cursorTemplate = new JdbcTemplate(dataSource);
+        this.cursorTemplate.setFetchSize(fetchSize);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+        this.exportedRows = Counter.builder("identity.audit.export.rows")
+            .description("Audit rows streamed by the admin export")
+            .register(registry);
+    }
+
+    /**
+     * Write every row matching the filter, oldest first, to {@code out}.
+     *
+     * @return number of rows written
+     */
+    public long export(AuditLogFilter filter, boolean gzip, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, 64 * 1024) : null;
+        long[] count = new long[1];
+
+        try (JsonGenerator json = jsonFactory.createGenerator(gzipStream != null ? gzipStream : out, JsonEncoding.UTF8)) {
+            // The servlet container owns the response stream; one object per line, no array
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            List<Object> params = new ArrayList<>();
+            String sql = query(filter, params);
+
+            readOnlyTx.executeWithoutResult(status -> cursorTemplate.query(sql, ps -> bind(ps, params),
+                (RowCallbackHandler) rs -> {
+                    writeRow(json, rs);
+                    if (++count[0] % fetchSize == 0) {
+                        flush(json);
+                    }
+                }));
+        } catch (UncheckedIOException e) {
+            // Client went away mid-stream; the transaction has already rolled back
+            throw e.getCause();
+        } finally {
+            exportedRows.increment(count[0]);
+        }
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+
+        log.info("Audit export complete: rows={}, from={}, to={}, gzip={}, tookMs={}",
+            count[0], filter.from(), filter.to(), gzip, System.currentTimeMillis() - start);
+        return count[0];
+    }
+
+    private static String query(AuditLogFilter filter, List<Object> params) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT id, seq, event_type, user_id, request_id, " + AuditColumnCodec.SELECT_IP +
+            ", details::text AS details, created_at, " +
+            "occurrence_count, first_seen_at " +
+            "FROM audit_logs WHERE created_at >= ? AND created_at < ?");
+        params.add(OffsetDateTime.ofInstant(filter.from(), ZoneOffset.UTC));
+        params.add(OffsetDateTime.ofInstant(filter.to(), ZoneOffset.UTC));
+        if (filter.eventType() != null) {
+            sql.append(" AND event_type = ?");
+            params.add(filter.eventType().code());
+        }
+        if (filter.userId() != null) {
+            sql.append(" AND user_id = ?");
+            params.add(filter.userId());
+        }
+        if (filter.requestId() != null) {
+            sql.append(" AND request_id = ?");
+            params.add(filter.requestId());
+        }
+        // Partition order: each partition is read sequentially, oldest first
+        sql.append(" ORDER BY created_at, id");
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private static void writeRow(JsonGenerator json, ResultSet rs) throws SQLException {
+        try {
+            json.writeStartObject();
+            json.writeNumberField("id", rs.getLong("id"));
+            long seq = rs.getLong("seq");
+            if (rs.wasNull()) {
+                json.writeNullField("seq");
+            } else {
+                json.writeNumberField("seq", seq);
+            }
+            json.writeStringField("eventType", AuditEventType.fromCode(rs.getShort("event_type")).name());
+            UUID userId = rs.getObject("user_id", UUID.class);
+            json.writeStringField("userId", userId != null ? PiiMaskingUtil.maskUuid(userId.toString()) : null);
+            json.writeStringField("requestId", rs.getString("request_id"));
+            String ip = rs.getString("ip_address");
+            json.writeStringField("ipAddress", ip != null ? PiiMaskingUtil.maskIp(ip) : null);
+            json.writeStringField("createdAt",
+                rs.getObject("created_at", OffsetDateTime.class).toInstant().toString());
+            int occurrences = rs.getInt("occurrence_count");
+            if (occurrences > 1) {
+                json.writeNumberField("occurrenceCount", occurrences);
+                json.writeStringField("firstSeenAt",
+                    rs.getObject("first_seen_at", OffsetDateTime.class).toInstant().toString());
+            }
+            String details = rs.getString("details");
+            json.writeFieldName("details");
+            if (details != null) {
+                json.writeRawValue(details);
+            } else {
+                json.writeNull();
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(JsonGenerator json) {
+        try {
+            json.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lifecycle of the monthly audit_logs partitions (see V5__audit_logs_partitioning.sql).
+ *
+ * Runs daily and on startup:
+ * - Pre-creates partitions for the current month and premake-months ahead, so inserts
+ *   never hit a missing range (there is deliberately no DEFAULT partition)
+ * - Swaps the created_at B-tree of partitions older than brin-after-months for a BRIN index:
+ *   rows arrive in time order, so BRIN prunes as well at a fraction of the size
+ * - Retires partitions older than retention-months by DETACH (kept for archiving) or DROP,
+ *   instead of row-by-row DELETEs. Each partition's last seq and chain hash are recorded in
+ *   audit_retired_partitions first: the retention boundary AuditSealVerifier checks against
+ *
+ * DESIGN DECISIONS:
+ * - Planning is a pure function of the catalog and the current month, so it is unit-tested
+ * - Index swaps and detaches run CONCURRENTLY (autocommit), never blocking the audit writer
+ * - A session advisory lock keeps several instances from maintaining partitions at once
+ */
+@Service
+public class AuditPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditPartitionManager.class);
+
+    private static final long LOCK_KEY = 0x4155444954L; // "AUDIT"
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String PARTITIONS_SQL =
+        "SELECT c.relname, " +
+        "  (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'FROM \\(''(.*)''\\) TO'))[1]::timestamptz AS lower_bound, " +
+        "  (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''(.*)''\\)'))[1]::timestamptz AS upper_bound, " +
+        "  EXISTS (SELECT 1 FROM pg_index x " +
+        "          JOIN pg_class ix ON ix.oid = x.indexrelid " +
+        "          JOIN pg_am am ON am.oid = ix.relam " +
+        "          WHERE x.indrelid = c.oid AND am.amname = 'brin') AS has_brin " +
+        "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+        "WHERE i.inhparent = 'audit_logs'::regclass";
+
+    private static final String RECORD_RETIRED_SQL =
+        "INSERT INTO audit_retired_partitions (partition_name, last_seq, last_chain_hash, retention_mode) " +
+        "VALUES (?, ?, ?, ?) ON CONFLICT (partition_name) DO UPDATE SET last_seq = EXCLUDED.last_seq, " +
+        "last_chain_hash = EXCLUDED.last_chain_hash, retention_mode = EXCLUDED.retention_mode, retired_at = NOW()";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditProperties.PartitionProperties props;
+    private final AtomicInteger monthsAhead = new AtomicInteger();
+    private final Counter failureCounter;
+
+    public AuditPartitionManager(JdbcTemplate jdbcTemplate, AuditProperties auditProps, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.props = auditProps.partition();
+
+        Gauge.builder("identity.audit.partitions.ahead", monthsAhead, AtomicInteger::get)
+            .description("Future monthly audit partitions already created")
+            .register(registry);
+        this.failureCounter = Counter.builder("identity.audit.partition.failures")
+            .description("Failed audit partition maintenance runs")
+            .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.audit.partition.cron}")
+    public void maintain() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!tryLock(connection, LOCK_KEY)) {
+                    log.info("Audit partition maintenance running elsewhere, skipping");
+                    return null;
+                }
+                try {
+                    YearMonth current = YearMonth.now(ZoneOffset.UTC);
+                    Plan plan = plan(listPartitions(connection), current, props);
+                    apply(connection, plan);
+                    monthsAhead.set(countAhead(listPartitions(connection), current));
+                } finally {
+                    unlock(connection, LOCK_KEY);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            failureCounter.increment();
+            log.error("Audit partition maintenance failed", e);
+        }
+    }
+
+    private void apply(Connection connection, Plan plan) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (YearMonth month : plan.create()) {
+                String name = partitionName(month);
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF audit_logs " +
+                    "FOR VALUES FROM ('" + startOf(month) + "') TO ('" + startOf(month.plusMonths(1)) + "')");
+                stmt.execute("CREATE INDEX IF NOT EXISTS " + name + "_created_at_idx ON " + name + " (created_at DESC)");
+                log.info("Created audit partition {}", name);
+            }
+            for (String name : plan.toBrin()) {
+                stmt.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + "_created_at_brin ON " + name +
+                    " USING brin (created_at) WITH (pages_per_range = 32)");
+                stmt.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name + "_created_at_idx");
+                log.info("Switched audit partition {} to a BRIN time index", name);
+            }
+            for (String name : plan.retire()) {
+                recordRetired(connection, name, props.retentionMode());
+                if (props.retentionMode() == AuditProperties.RetentionMode.DROP) {
+                    stmt.execute("DROP TABLE " + name);
+                    log.warn("Dropped expired audit partition {}", name);
+                } else {
+                    stmt.execute("ALTER TABLE audit_logs DETACH PARTITION " + name + " CONCURRENTLY");
+                    log.warn("Detached expired audit partition {}, awaiting archive", name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Record the partition's last sequenced row before it leaves audit_logs, so verification can
+     * tell rows retired with it from rows deleted by hand.
+     */
+    private static void recordRetired(Connection connection, String name, AuditProperties.RetentionMode mode)
+            throws SQLException {
+        Long lastSeq = null;
+        String lastHash = null;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT seq, chain_hash FROM " + name +
+                 " WHERE seq IS NOT NULL ORDER BY seq DESC LIMIT 1")) {
+            if (rs.next()) {
+                lastSeq = rs.getLong(1);
+                lastHash = rs.getString(2);
+            }
+        }
+        try (PreparedStatement ps = connection.prepareStatement(RECORD_RETIRED_SQL)) {
+            ps.setString(1, name);
+            ps.setObject(2, lastSeq, Types.BIGINT);
+            ps.setString(3, lastHash);
+            ps.setString(4, mode.name());
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Decide what to create, convert to BRIN and retire for the given month.
+     */
+    static Plan plan(List<Partition> partitions, YearMonth current, AuditProperties.PartitionProperties props) {
+        List<YearMonth> create = new ArrayList<>();
+        for (int i = 0; i <= props.premakeMonths(); i++) {
+            YearMonth month = current.plusMonths(i);
+            Instant start = startOf(month);
+            if (partitions.stream().noneMatch(p -> p.covers(start))) {
+                create.add(month);
+            }
+        }
+
+        Instant brinBefore = startOf(current.minusMonths(props.brinAfterMonths()));
+        Instant retireBefore = startOf(current.minusMonths(props.retentionMonths()));
+        List<String> toBrin = new ArrayList<>();
+        List<String> retire = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (!partition.upperBound().isAfter(retireBefore)) {
+                retire.add(partition.name());
+            } else if (!partition.brin() && !partition.upperBound().isAfter(brinBefore)) {
+                toBrin.add(partition.name());
+            }
+        }
+        return new Plan(create, toBrin, retire);
+    }
+
+    static String partitionName(YearMonth month) {
+        return "audit_logs_p" + month.format(SUFFIX);
+    }
+
+    static Instant startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    private static int countAhead(List<Partition> partitions, YearMonth current) {
+        Instant nextMonth = startOf(current.plusMonths(1));
+        return (int) partitions.stream()
+            .filter(p -> p.lowerBound() != null && !p.lowerBound().isBefore(nextMonth))
+            .count();
+    }
+
+    private static List<Partition> listPartitions(Connection connection) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(PARTITIONS_SQL)) {
+            while (rs.next()) {
+                OffsetDateTime lower = rs.getObject("lower_bound", OffsetDateTime.class);
+                partitions.add(new Partition(
+                    rs.getString("relname"),
+                    lower != null ? lower.toInstant() : null,
+                    rs.getObject("upper_bound", OffsetDateTime.class).toInstant(),
+                    rs.getBoolean("has_brin")));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Session advisory lock, shared with other audit maintenance jobs (one key per job).
+     */
+    static boolean tryLock(Connection connection, long key) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            ps.setLong(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    static void unlock(Connection connection, long key) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            ps.setLong(1, key);
+            ps.execute();
+        }
+    }
+
+    /**
+     * One attached partition. lowerBound is null for the MINVALUE legacy partition.
+     */
+    record Partition(String name, Instant lowerBound, Instant upperBound, boolean brin) {
+
+        boolean covers(Instant instant) {
+            return (lowerBound == null || !instant.isBefore(lowerBound)) && instant.isBefore(upperBound);
+        }
+    }
+
+    record Plan(List<YearMonth> create, List<String> toBrin, List<String> retire) {}
+}
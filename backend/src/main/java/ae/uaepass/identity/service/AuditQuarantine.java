@@ -0,0 +1,132 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+
+/**
+ * Dead-letter file for audit records Postgres rejects (SQLState class 22/23), so one bad
+ * record cannot stall persistence. Each rejected record is appended, unmasked and complete,
+ * as one JSON line to quarantine.ndjson in the spool directory.
+ *
+ * A rejected record that was already sequenced (replayed from the AuditSpool) has rows chained
+ * after it. It is replaced in audit_logs by a tombstone: same seq, chain hash, type, user and
+ * time, request and client fields cleared, details {"quarantined": "<SQLState>"}. The seq range
+ * then stays contiguous for sealing, the next row still chains over the stored hash, and
+ * AuditSealVerifier reports the tombstone's seq instead of a broken chain. The quarantined
+ * line holds the original fields, from which the chain hash recomputes.
+ *
+ * SECURITY: the file holds raw PII and header values; it shares the spool directory's
+ * permissions and backups. A record may be quarantined twice if replay is interrupted;
+ * reconcile by seq.
+ */
+@Component
+public class AuditQuarantine {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditQuarantine.class);
+
+    static final String FILE_NAME = "quarantine.ndjson";
+    static final String TOMBSTONE_FIELD = "quarantined";
+
+    private final Path file;
+    private final JsonFactory jsonFactory;
+    private final Counter quarantinedCounter;
+
+    public AuditQuarantine(AuditProperties auditProps, ObjectMapper objectMapper, MeterRegistry registry) {
+        this.file = Path.of(auditProps.spool().directory()).resolve(FILE_NAME);
+        this.jsonFactory = objectMapper.getFactory();
+        this.quarantinedCounter = Counter.builder("identity.audit.quarantined")
+            .description("Audit events rejected by Postgres and moved to the quarantine file")
+            .register(registry);
+    }
+
+    /**
+     * Append a rejected record. seq and chainHash are null for records rejected before sequencing.
+     */
+    public synchronized void add(AuditRecord record, Long seq, String chainHash, DataAccessException cause) {
+        quarantinedCounter.increment();
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                 JsonGenerator json = jsonFactory.createGenerator(out)) {
+                json.writeStartObject();
+                json.writeStringField("quarantinedAt", Instant.now().toString());
+                json.writeStringField("sqlState", sqlState(cause));
+                if (seq != null) {
+                    json.writeNumberField("seq", seq);
+                }
+                json.writeStringField("chainHash", chainHash);
+                json.writeStringField("eventType", record.eventType().name());
+                json.writeStringField("userId", record.userId() != null ? record.userId().toString() : null);
+                json.writeStringField("requestId", record.requestId());
+                json.writeStringField("ipAddress", record.ipAddress());
+                json.writeStringField("deviceFingerprintHash", record.deviceFingerprintHash());
+                json.writeStringField("details", record.details());
+                json.writeStringField("createdAt", record.createdAt().toString());
+                json.writeNumberField("occurrenceCount", record.occurrenceCount());
+                json.writeStringField("firstSeenAt",
+                    record.firstSeenAt() != null ? record.firstSeenAt().toString() : null);
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+            log.error("Audit event rejected by the database, quarantined: type={}, seq={}, sqlState={}",
+                record.eventType(), seq, sqlState(cause), cause);
+        } catch (IOException e) {
+            log.error("Audit event rejected by the database and could not be quarantined, lost: type={}, seq={}",
+                record.eventType(), seq, e);
+        }
+    }
+
+    /**
+     * The row stored in place of a rejected, already sequenced record.
+     */
+    static SequencedAuditRecord tombstone(SequencedAuditRecord rejected, DataAccessException cause) {
+        AuditRecord record = rejected.record();
+        return new SequencedAuditRecord(new AuditRecord(record.eventType(), record.userId(), null, null, null,
+            "{\"" + TOMBSTONE_FIELD + "\":\"" + sqlState(cause) + "\"}", record.createdAt(),
+            record.occurrenceCount(), record.firstSeenAt()), rejected.seq(), rejected.chainHash());
+    }
+
+    static boolean isTombstone(AuditRecord record) {
+        return record.details() != null && record.details().startsWith("{\"" + TOMBSTONE_FIELD + "\":")
+            && record.requestId() == null && record.ipAddress() == null && record.deviceFingerprintHash() == null;
+    }
+
+    /**
+     * The first class 22/23 SQLState behind the failure, else the first one found, else "unknown".
+     */
+    static String sqlState(DataAccessException cause) {
+        String first = null;
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                for (SQLException next = sql; next != null; next = next.getNextException()) {
+                    String state = next.getSQLState();
+                    if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                        return state;
+                    }
+                    if (first == null) {
+                        first = state;
+                    }
+                }
+            }
+        }
+        return first != null ? first : "unknown";
+    }
+}
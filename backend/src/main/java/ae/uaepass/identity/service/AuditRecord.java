@@ -0,0 +1,43 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Immutable audit row waiting to be persisted by {@link AuditWriter}.
+ * PII must already be masked or hashed; details are pre-serialized JSON.
+ *
+ * occurrenceCount is 1 for a single event. A row written by AuditCoalescer stands for
+ * occurrenceCount identical events seen between firstSeenAt and createdAt (the last one).
+ */
+public record AuditRecord(
+    AuditEventType eventType,
+    UUID userId,
+    String requestId,
+    String ipAddress,
+    String deviceFingerprintHash,
+    String details,
+    Instant createdAt,
+    int occurrenceCount,
+    Instant firstSeenAt
+) {
+    public AuditRecord {
+        if (occurrenceCount < 1 || (occurrenceCount > 1) != (firstSeenAt != null)) {
+            throw new IllegalArgumentException("firstSeenAt is set exactly when occurrenceCount > 1");
+        }
+    }
+
+    /**
+     * A single event.
+     */
+    public AuditRecord(AuditEventType eventType, UUID userId, String requestId, String ipAddress,
+                       String deviceFingerprintHash, String details, Instant createdAt) {
+        this(eventType, userId, requestId, ipAddress, deviceFingerprintHash, details, createdAt, 1, null);
+    }
+
+    public boolean coalesced() {
+        return occurrenceCount > 1;
+    }
+}
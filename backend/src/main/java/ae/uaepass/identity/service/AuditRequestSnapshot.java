@@ -0,0 +1,74 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.util.AuditColumnCodec;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.MDC;
+
+/**
+ * The request fields an audit record needs, captured on the request thread.
+ *
+ * The servlet container recycles HttpServletRequest objects once the response completes,
+ * and MDC is thread-local, so neither may be read from the audit executor.
+ *
+ * SECURITY: X-Request-ID, X-Forwarded-For and X-Device-Fingerprint are client-controlled.
+ * Each is reduced to visible ASCII and cut to its audit_logs column width here, before the
+ * record is chained, spooled or streamed, so no header can make an audit insert fail.
+ */
+public record AuditRequestSnapshot(
+    String requestId,
+    String ipAddress,
+    String deviceFingerprint
+) {
+    private static final String REQUEST_ID_KEY = "requestId";
+    /** Width of audit_logs.request_id. */
+    static final int MAX_REQUEST_ID_LENGTH = 64;
+
+    /**
+     * Capture from the current request. Must be called on the request thread.
+     */
+    public static AuditRequestSnapshot capture(HttpServletRequest request) {
+        String requestId = MDC.get(REQUEST_ID_KEY);
+        if (request == null) {
+            return new AuditRequestSnapshot(requestId, null, null);
+        }
+        if (requestId == null && request.getAttribute(REQUEST_ID_KEY) instanceof String attribute) {
+            requestId = attribute;
+        }
+        return new AuditRequestSnapshot(sanitize(requestId, MAX_REQUEST_ID_LENGTH), resolveClientIp(request),
+            sanitize(request.getHeader("X-Device-Fingerprint"), AuditColumnCodec.MAX_FINGERPRINT_RAW_LENGTH));
+    }
+
+    /**
+     * For events without an HTTP request context (e.g., scheduled tasks).
+     */
+    public static AuditRequestSnapshot ofRequestId(String requestId) {
+        return new AuditRequestSnapshot(requestId, null, null);
+    }
+
+    private static String resolveClientIp(HttpServletRequest request) {
+        String xff = request.getHeader("X-Forwarded-For");
+        if (xff != null && !xff.isBlank()) {
+            int comma = xff.indexOf(',');
+            return sanitize(comma >= 0 ? xff.substring(0, comma) : xff, AuditColumnCodec.MAX_IP_RAW_LENGTH);
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * Visible ASCII only (no controls, spaces or non-ASCII), at most maxLength characters;
+     * null if nothing is left.
+     */
+    static String sanitize(String value, int maxLength) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder clean = new StringBuilder(Math.min(value.length(), maxLength));
+        for (int i = 0; i < value.length() && clean.length() < maxLength; i++) {
+            char c = value.charAt(i);
+            if (c > ' ' && c < 0x7f) {
+                clean.append(c);
+            }
+        }
+        return clean.isEmpty() ? null : clean.toString();
+    }
+}
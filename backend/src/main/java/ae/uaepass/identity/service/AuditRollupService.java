@@ -0,0 +1,216 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-minute audit event counts, kept in memory and flushed into audit_rollups.
+ *
+ * AuditWriter counts every persisted (or spooled) event by type and minute. Each flush
+ * upserts the accumulated deltas into the MINUTE, HOUR and DAY rows in one statement
+ * batch, so hourly and daily rollups are maintained incrementally — no re-aggregation
+ * job and no GROUP BY over audit_logs.
+ *
+ * DESIGN DECISIONS:
+ * - Upserts add (event_count + delta), so several nodes' counts sum correctly
+ * - Counts are taken and removed per key with ConcurrentHashMap.merge/remove, both atomic,
+ *   so increments racing a flush land in the next flush instead of being lost
+ * - A failed flush puts its deltas back; counts are approximate only if the node dies
+ *   between flushes (at most flush-interval of counts)
+ * - Minute rows are pruned after minute-retention-days; hour and day rows are kept
+ */
+@Service
+public class AuditRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditRollupService.class);
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO audit_rollups (granularity, event_type, bucket_start, event_count) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (granularity, event_type, bucket_start) " +
+        "DO UPDATE SET event_count = audit_rollups.event_count + EXCLUDED.event_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditProperties.RollupProperties props;
+    private final Map<MinuteKey, Long> pending = new ConcurrentHashMap<>();
+    private final Counter flushFailures;
+    private volatile Instant lastPrune = Instant.EPOCH;
+
+    public AuditRollupService(JdbcTemplate jdbcTemplate, AuditProperties auditProps, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.props = auditProps.rollup();
+        this.flushFailures = Counter.builder("identity.audit.rollup.flush.failures")
+            .description("Failed audit rollup flushes (counts are retried on the next flush)")
+            .register(registry);
+    }
+
+    /**
+     * Count a persisted event. Called on the audit writer thread; never blocks on I/O.
+     * A coalesced row counts all its occurrences, in the minute of the last one.
+     */
+    public void record(AuditRecord record) {
+        long minute = record.createdAt().getEpochSecond() / 60;
+        pending.merge(new MinuteKey(record.eventType(), minute), (long) record.occurrenceCount(), Long::sum);
+    }
+
+    /**
+     * Upsert accumulated minute counts and their hour and day totals.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.rollup.flush-interval-ms}")
+    public void flush() {
+        List<Map.Entry<MinuteKey, Long>> taken = new ArrayList<>();
+        for (MinuteKey key : pending.keySet()) {
+            Long count = pending.remove(key);
+            if (count != null) {
+                taken.add(Map.entry(key, count));
+            }
+        }
+        if (taken.isEmpty()) {
+            pruneIfDue();
+            return;
+        }
+
+        List<Delta> deltas = deltas(taken);
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, deltas, deltas.size(), AuditRollupService::bind);
+        } catch (DataAccessException e) {
+            flushFailures.increment();
+            log.error("Audit rollup flush failed, retrying next interval: buckets={}", taken.size(), e);
+            for (Map.Entry<MinuteKey, Long> entry : taken) {
+                pending.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+            return;
+        }
+        pruneIfDue();
+    }
+
+    /**
+     * Counts per bucket in [from, to) at one granularity, oldest first.
+     * A null eventType returns every type's series.
+     */
+    public List<RollupPoint> series(AuditEventType eventType, Granularity granularity, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        long points = Duration.between(granularity.truncate(from), to).dividedBy(granularity.step);
+        if (points > props.maxPoints()) {
+            throw new IllegalArgumentException("Range too large for " + granularity.name().toLowerCase()
+                + " granularity (max " + props.maxPoints() + " points)");
+        }
+        String sql = "SELECT bucket_start, event_type, event_count FROM audit_rollups " +
+            "WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ?" +
+            (eventType != null ? " AND event_type = ?" : "") +
+            " ORDER BY bucket_start, event_type";
+        List<Object> params = new ArrayList<>(List.of(granularity.name(),
+            OffsetDateTime.ofInstant(granularity.truncate(from), ZoneOffset.UTC),
+            OffsetDateTime.ofInstant(to, ZoneOffset.UTC)));
+        if (eventType != null) {
+            params.add(eventType.name());
+        }
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new RollupPoint(
+                rs.getObject("bucket_start", OffsetDateTime.class).toInstant(),
+                AuditEventType.valueOf(rs.getString("event_type")),
+                rs.getLong("event_count")),
+            params.toArray());
+    }
+
+    /**
+     * One delta per rollup row. Minutes of the same hour or day are summed here: the driver
+     * rewrites the batch into one multi-row upsert, which may not touch a row twice.
+     * Sorted, so concurrent flushes from several nodes lock rows in the same order.
+     */
+    static List<Delta> deltas(List<Map.Entry<MinuteKey, Long>> minuteCounts) {
+        Map<Delta, Long> sums = new TreeMap<>(Comparator.comparing(Delta::granularity)
+            .thenComparing(Delta::eventType)
+            .thenComparing(Delta::bucketStart));
+        for (Map.Entry<MinuteKey, Long> entry : minuteCounts) {
+            Instant minute = Instant.ofEpochSecond(entry.getKey().epochMinute() * 60);
+            for (Granularity granularity : Granularity.values()) {
+                Delta row = new Delta(granularity, entry.getKey().eventType(), granularity.truncate(minute), 0);
+                sums.merge(row, entry.getValue(), Long::sum);
+            }
+        }
+        List<Delta> deltas = new ArrayList<>(sums.size());
+        sums.forEach((row, count) -> deltas.add(
+            new Delta(row.granularity(), row.eventType(), row.bucketStart(), count)));
+        return deltas;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // The writer has drained by now (lifecycle stop precedes bean destruction)
+        flush();
+    }
+
+    private void pruneIfDue() {
+        Instant now = Instant.now();
+        if (lastPrune.isAfter(now.minus(1, ChronoUnit.HOURS))) {
+            return;
+        }
+        lastPrune = now;
+        try {
+            int deleted = jdbcTemplate.update(
+                "DELETE FROM audit_rollups WHERE granularity = 'MINUTE' AND bucket_start < ?",
+                OffsetDateTime.ofInstant(now.minus(props.minuteRetentionDays(), ChronoUnit.DAYS), ZoneOffset.UTC));
+            if (deleted > 0) {
+                log.info("Pruned {} minute audit rollups", deleted);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Audit rollup pruning failed", e);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Delta delta) throws SQLException {
+        ps.setString(1, delta.granularity().name());
+        ps.setString(2, delta.eventType().name());
+        ps.setObject(3, OffsetDateTime.ofInstant(delta.bucketStart(), ZoneOffset.UTC));
+        ps.setLong(4, delta.count());
+    }
+
+    public enum Granularity {
+        MINUTE(Duration.ofMinutes(1), ChronoUnit.MINUTES),
+        HOUR(Duration.ofHours(1), ChronoUnit.HOURS),
+        DAY(Duration.ofDays(1), ChronoUnit.DAYS);
+
+        private final Duration step;
+        private final ChronoUnit unit;
+
+        Granularity(Duration step, ChronoUnit unit) {
+            this.step = step;
+            this.unit = unit;
+        }
+
+        /** UTC bucket start containing {@code instant}. */
+        Instant truncate(Instant instant) {
+            return instant.truncatedTo(unit);
+        }
+    }
+
+    record MinuteKey(AuditEventType eventType, long epochMinute) {}
+
+    record Delta(Granularity granularity, AuditEventType eventType, Instant bucketStart, long count) {}
+
+    public record RollupPoint(Instant bucketStart, AuditEventType eventType, long count) {}
+}
@@ -0,0 +1,283 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditSeal;
+import ae.uaepass.identity.repository.AuditSealRepository;
+import ae.uaepass.identity.security.AuditSealSigner;
+import ae.uaepass.identity.util.AuditColumnCodec;
+import ae.uaepass.identity.util.MerkleTree;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Merkle-batched audit sealing and inclusion proofs.
+ *
+ * Sequenced audit rows are sealed in batches of batch-size under a signed Merkle root.
+ * A partial batch is sealed once its oldest row is older than max-delay, so quiet
+ * periods do not leave rows unsealed indefinitely. Batches are always contiguous in seq:
+ * rows still waiting in the AuditSpool are never sealed past.
+ *
+ * leaf = H(0x00 || canonical(entry) + "|" + chain_hash), see AuditSequencer.canonical
+ */
+@Service
+public class AuditSealService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditSealService.class);
+
+    private static final String ROW_COLUMNS =
+        "SELECT id, seq, event_type, user_id, request_id, " + AuditColumnCodec.SELECT_IP + ", " +
+        AuditColumnCodec.SELECT_FINGERPRINT + ", details::text AS details, created_at, chain_hash, " +
+        "occurrence_count, first_seen_at FROM audit_logs ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditSealRepository sealRepository;
+    private final AuditSealSigner signer;
+    private final AuditProperties.SealProperties props;
+    private final ObjectReader detailsReader;
+    private final ObjectWriter detailsWriter;
+
+    public AuditSealService(JdbcTemplate jdbcTemplate,
+                            AuditSealRepository sealRepository,
+                            AuditSealSigner signer,
+                            AuditProperties auditProps,
+                            ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sealRepository = sealRepository;
+        this.signer = signer;
+        this.props = auditProps.seal();
+        this.detailsReader = objectMapper.readerFor(LinkedHashMap.class);
+        this.detailsWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    }
+
+    /**
+     * Seal every complete (or stale partial) batch after the last seal.
+     * Concurrent sealing from another node loses on the unique first_seq constraint.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.seal.interval-ms}")
+    public void sealPending() {
+        try {
+            long lastSealed = sealRepository.findTopByOrderByLastSeqDesc()
+                .map(AuditSeal::getLastSeq)
+                .orElse(0L);
+            Instant staleBefore = Instant.now().minusMillis(props.maxDelayMs());
+
+            while (true) {
+                List<ChainRow> rows = contiguousFrom(lastSealed + 1, loadAfter(lastSealed, props.batchSize()));
+                boolean full = rows.size() == props.batchSize();
+                boolean stale = !rows.isEmpty() && rows.get(0).entry().record().createdAt().isBefore(staleBefore);
+                if (!full && !stale) {
+                    return;
+                }
+                lastSealed = seal(rows).getLastSeq();
+            }
+        } catch (DataIntegrityViolationException e) {
+            log.info("Audit batch already sealed by another node");
+        } catch (Exception e) {
+            log.error("Audit sealing failed", e);
+        }
+    }
+
+    private AuditSeal seal(List<ChainRow> rows) {
+        byte[] root = MerkleTree.root(leaves(rows));
+        AuditSeal seal = new AuditSeal()
+            .range(rows.get(0).entry().seq(), rows.get(rows.size() - 1).entry().seq(), rows.size())
+            .createdBetween(minCreatedAt(rows), maxCreatedAt(rows))
+            .merkleRoot(HexFormat.of().formatHex(root));
+        AuditSealSigner.SignedSeal signed = signer.sign(seal);
+        seal.signature(signed.jws(), signed.keyId());
+        seal = sealRepository.save(seal);
+        log.info("Sealed audit batch: seq={}..{}, leaves={}", seal.getFirstSeq(), seal.getLastSeq(), rows.size());
+        return seal;
+    }
+
+    /**
+     * O(log n) inclusion proof for one audit entry against its seal's signed root.
+     * The entry's created_at lets the planner prune the lookup to its one partition.
+     */
+    public InclusionProof inclusionProof(long auditId, Instant createdAt) {
+        Long seq = jdbcTemplate.query("SELECT seq FROM audit_logs WHERE id = ? AND created_at = ?",
+                rs -> rs.next() ? (Long) rs.getObject(1) : null,
+                auditId, OffsetDateTime.ofInstant(createdAt, ZoneOffset.UTC));
+        if (seq == null) {
+            throw new IllegalArgumentException("Audit entry not found or not sequenced");
+        }
+        AuditSeal seal = sealRepository.findCovering(seq)
+            .orElseThrow(() -> new IllegalStateException("Audit entry not sealed yet"));
+
+        List<ChainRow> rows = loadSeal(seal);
+        List<byte[]> leaves = leaves(rows);
+        int index = 0;
+        while (index < rows.size() && rows.get(index).id() != auditId) {
+            index++;
+        }
+        if (index == rows.size()) {
+            throw new IllegalStateException("Audit entry missing from its sealed batch");
+        }
+
+        HexFormat hex = HexFormat.of();
+        List<InclusionProof.Step> path = MerkleTree.proof(leaves, index).stream()
+            .map(step -> new InclusionProof.Step(hex.formatHex(step.sibling()),
+                step.siblingOnLeft() ? "left" : "right"))
+            .toList();
+        return new InclusionProof(auditId, seq, index, hex.formatHex(leaves.get(index)), path,
+            seal.getId(), seal.getMerkleRoot(), seal.getSignature(), seal.getKeyId());
+    }
+
+    // --- Row access shared with AuditSealVerifier ---
+
+    /**
+     * The created_at bounds let the planner prune to the seal's partitions.
+     */
+    List<ChainRow> loadSeal(AuditSeal seal) {
+        return jdbcTemplate.query(ROW_COLUMNS +
+                "WHERE seq BETWEEN ? AND ? AND created_at BETWEEN ? AND ? ORDER BY seq",
+            (rs, rowNum) -> mapRow(rs), seal.getFirstSeq(), seal.getLastSeq(),
+            OffsetDateTime.ofInstant(seal.getFirstCreatedAt(), ZoneOffset.UTC),
+            OffsetDateTime.ofInstant(seal.getLastCreatedAt(), ZoneOffset.UTC));
+    }
+
+    /**
+     * Chain hash of the previous seal's last row, null if that row is missing.
+     * The previous seal's created_at bounds prune the lookup to its partitions.
+     */
+    String lastChainHash(AuditSeal previous) {
+        List<String> last = jdbcTemplate.query(
+            "SELECT chain_hash FROM audit_logs WHERE seq = ? AND created_at BETWEEN ? AND ?",
+            (rs, rowNum) -> rs.getString(1), previous.getLastSeq(),
+            OffsetDateTime.ofInstant(previous.getFirstCreatedAt(), ZoneOffset.UTC),
+            OffsetDateTime.ofInstant(previous.getLastCreatedAt(), ZoneOffset.UTC));
+        return last.isEmpty() ? null : last.get(0);
+    }
+
+    /**
+     * Last seq and chain hash retired with their partitions, recorded by AuditPartitionManager.
+     * Every seq above it must still be stored.
+     */
+    RetentionBoundary retentionBoundary() {
+        List<RetentionBoundary> boundary = jdbcTemplate.query(
+            "SELECT last_seq, last_chain_hash FROM audit_retired_partitions " +
+            "WHERE last_seq IS NOT NULL ORDER BY last_seq DESC LIMIT 1",
+            (rs, rowNum) -> new RetentionBoundary(rs.getLong(1), rs.getString(2)));
+        return boundary.isEmpty() ? RetentionBoundary.NONE : boundary.get(0);
+    }
+
+    static List<byte[]> leaves(List<ChainRow> rows) {
+        List<byte[]> leaves = new ArrayList<>(rows.size());
+        for (ChainRow row : rows) {
+            leaves.add(leaf(row.entry()));
+        }
+        return leaves;
+    }
+
+    static byte[] leaf(SequencedAuditRecord entry) {
+        String data = AuditSequencer.canonical(entry.seq(), entry.record()) + "|" + entry.chainHash();
+        return MerkleTree.leafHash(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rows still in the local spool leave seq gaps; seal only up to the first gap.
+     */
+    static List<ChainRow> contiguousFrom(long expectedSeq, List<ChainRow> rows) {
+        int end = 0;
+        while (end < rows.size() && rows.get(end).entry().seq() == expectedSeq + end) {
+            end++;
+        }
+        return end == rows.size() ? rows : rows.subList(0, end);
+    }
+
+    private List<ChainRow> loadAfter(long seq, int limit) {
+        return jdbcTemplate.query(ROW_COLUMNS + "WHERE seq > ? ORDER BY seq LIMIT ?",
+            (rs, rowNum) -> mapRow(rs), seq, limit);
+    }
+
+    private ChainRow mapRow(ResultSet rs) throws SQLException {
+        OffsetDateTime firstSeenAt = rs.getObject("first_seen_at", OffsetDateTime.class);
+        AuditRecord record = new AuditRecord(
+            AuditEventType.fromCode(rs.getShort("event_type")),
+            rs.getObject("user_id", UUID.class),
+            rs.getString("request_id"),
+            rs.getString("ip_address"),
+            rs.getString("device_fingerprint_hash"),
+            canonicalDetails(rs.getString("details")),
+            rs.getObject("created_at", OffsetDateTime.class).toInstant(),
+            rs.getInt("occurrence_count"),
+            firstSeenAt != null ? firstSeenAt.toInstant() : null);
+        return new ChainRow(rs.getLong("id"),
+            new SequencedAuditRecord(record, rs.getLong("seq"), rs.getString("chain_hash")));
+    }
+
+    /**
+     * jsonb reorders keys and adds whitespace; restore the compact sorted form the writer hashed.
+     */
+    private String canonicalDetails(String jsonb) {
+        if (jsonb == null) {
+            return null;
+        }
+        try {
+            return detailsWriter.writeValueAsString(detailsReader.readValue(jsonb));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable audit details", e);
+        }
+    }
+
+    private static Instant minCreatedAt(List<ChainRow> rows) {
+        return rows.stream().map(r -> r.entry().record().createdAt()).min(Instant::compareTo).orElseThrow();
+    }
+
+    private static Instant maxCreatedAt(List<ChainRow> rows) {
+        return rows.stream().map(r -> r.entry().record().createdAt()).max(Instant::compareTo).orElseThrow();
+    }
+
+    /**
+     * A persisted, sequenced audit row.
+     */
+    record ChainRow(long id, SequencedAuditRecord entry) {}
+
+    /**
+     * Highest retired seq and its chain hash; seq 0 and GENESIS while nothing has been retired.
+     */
+    record RetentionBoundary(long lastSeq, String chainHash) {
+
+        static final RetentionBoundary NONE = new RetentionBoundary(0, AuditSequencer.GENESIS);
+    }
+
+    /**
+     * Everything an auditor needs to check one entry: recompute the leaf from the row,
+     * fold the path into the root, then verify the seal JWS against /oauth2/jwks.
+     */
+    public record InclusionProof(
+        long auditId,
+        long seq,
+        int leafIndex,
+        String leafHash,
+        List<Step> path,
+        long sealId,
+        String merkleRoot,
+        String sealSignature,
+        String keyId
+    ) {
+        public record Step(String hash, String position) {}
+    }
+}
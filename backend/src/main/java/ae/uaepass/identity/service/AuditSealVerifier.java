@@ -0,0 +1,208 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditSeal;
+import ae.uaepass.identity.repository.AuditSealRepository;
+import ae.uaepass.identity.security.AuditSealSigner;
+import ae.uaepass.identity.security.SecretsProvider;
+import ae.uaepass.identity.util.MerkleTree;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Full audit trail verification, one fork-join task per seal.
+ *
+ * Each seal is self-contained: its rows, the chain hash of the row before it (the previous
+ * seal's last row, or the retention boundary), and its signed root. Seals are therefore checked independently and in parallel, which turns
+ * an O(n) sequential chain walk into n / batch-size parallel tasks.
+ *
+ * Per seal:
+ * - leaf count matches the sealed range (no rows deleted or inserted)
+ * - every chain_hash recomputes from the row and its predecessor (HMAC chain)
+ * - the Merkle root recomputes from the rows
+ * - the root's JWS signature verifies against the server's JWK set
+ *
+ * DESIGN DECISIONS:
+ * - Dedicated pool sized by verify-parallelism so verification cannot starve the common pool
+ * - Mac is not thread-safe — each task builds its own AuditChainHasher
+ * - Retention is checked against the boundary AuditPartitionManager records when it retires a
+ *   partition, never inferred from the oldest row left: seals wholly below it are skipped, every
+ *   seq above it must be present, and the first row above it chains from the recorded hash.
+ *   A seal straddling the boundary has its retained rows, chain and signature checked; its
+ *   Merkle root cannot be recomputed without the retired rows
+ * - Tombstones of quarantined rows (AuditQuarantine) cannot recompute their own chain hash;
+ *   they are listed in the report for reconciliation with the quarantine file, and the
+ *   chain continues from their stored hash
+ */
+@Service
+public class AuditSealVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditSealVerifier.class);
+
+    private final AuditSealRepository sealRepository;
+    private final AuditSealService sealService;
+    private final AuditSealSigner signer;
+    private final SecretsProvider secretsProvider;
+    private final ForkJoinPool pool;
+
+    public AuditSealVerifier(AuditSealRepository sealRepository,
+                             AuditSealService sealService,
+                             AuditSealSigner signer,
+                             SecretsProvider secretsProvider,
+                             AuditProperties auditProps) {
+        this.sealRepository = sealRepository;
+        this.sealService = sealService;
+        this.signer = signer;
+        this.secretsProvider = secretsProvider;
+        this.pool = new ForkJoinPool(auditProps.seal().verifyParallelism());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Verify every seal above the retention boundary. Rows after the last seal are not covered.
+     */
+    public VerificationReport verifyAll() {
+        AuditSealService.RetentionBoundary boundary = sealService.retentionBoundary();
+        List<AuditSeal> seals = sealRepository.findAllByOrderByFirstSeqAsc().stream()
+            .filter(seal -> seal.getLastSeq() > boundary.lastSeq())
+            .toList();
+        long start = System.currentTimeMillis();
+
+        List<SealResult> results = pool.invoke(new VerifyRange(seals, boundary, 0, seals.size()));
+
+        long rows = 0;
+        List<String> failures = new ArrayList<>();
+        List<Long> quarantined = new ArrayList<>();
+        for (SealResult result : results) {
+            rows += result.rowsChecked();
+            failures.addAll(result.failures());
+            quarantined.addAll(result.quarantinedSeqs());
+        }
+        // Seals must tile the sequence with no gaps, from the retention boundary on
+        if (!seals.isEmpty() && seals.get(0).getFirstSeq() > boundary.lastSeq() + 1) {
+            failures.add("Seqs " + (boundary.lastSeq() + 1) + ".." + (seals.get(0).getFirstSeq() - 1)
+                + " missing above the retention boundary");
+        }
+        for (int i = 1; i < seals.size(); i++) {
+            if (seals.get(i).getFirstSeq() != seals.get(i - 1).getLastSeq() + 1) {
+                failures.add("Gap between seals " + seals.get(i - 1).getId() + " and " + seals.get(i).getId());
+            }
+        }
+
+        log.info("Audit verification: seals={}, rows={}, failures={}, tookMs={}",
+            seals.size(), rows, failures.size(), System.currentTimeMillis() - start);
+        return new VerificationReport(seals.size(), rows, failures, quarantined, failures.isEmpty());
+    }
+
+    /**
+     * @param previous the seal before this one, null if this is the first above the boundary
+     */
+    SealResult verifySeal(AuditSeal seal, AuditSeal previous, AuditSealService.RetentionBoundary boundary,
+                          AuditChainHasher hasher) {
+        List<String> failures = new ArrayList<>();
+        List<Long> quarantined = new ArrayList<>();
+        String label = "Seal " + seal.getId() + " (seq " + seal.getFirstSeq() + ".." + seal.getLastSeq() + "): ";
+
+        List<AuditSealService.ChainRow> rows = sealService.loadSeal(seal);
+        // Straddling the boundary: the rows up to it were retired, every one after it must be here
+        boolean straddles = seal.getFirstSeq() <= boundary.lastSeq();
+        if (straddles) {
+            rows = rows.stream().filter(row -> row.entry().seq() > boundary.lastSeq()).toList();
+        }
+        long expectedRows = seal.getLastSeq() - Math.max(seal.getFirstSeq() - 1, boundary.lastSeq());
+        if (rows.size() != expectedRows || (!straddles && rows.size() != seal.getLeafCount())) {
+            failures.add(label + "expected " + expectedRows + " rows, found " + rows.size());
+            return new SealResult(rows.size(), failures, quarantined);
+        }
+
+        String previousHash;
+        if (straddles || seal.getFirstSeq() == boundary.lastSeq() + 1) {
+            previousHash = boundary.chainHash();
+        } else if (previous != null) {
+            previousHash = sealService.lastChainHash(previous);
+        } else {
+            previousHash = null;
+        }
+        if (previousHash == null) {
+            failures.add(label + "row before seq " + seal.getFirstSeq() + " is missing");
+            return new SealResult(rows.size(), failures, quarantined);
+        }
+        for (AuditSealService.ChainRow row : rows) {
+            SequencedAuditRecord entry = row.entry();
+            String expected = hasher.hash(entry.seq(), entry.record(), previousHash);
+            if (!expected.equals(entry.chainHash()) && AuditQuarantine.isTombstone(entry.record())) {
+                quarantined.add(entry.seq());
+            } else if (!expected.equals(entry.chainHash())) {
+                failures.add(label + "chain broken at seq " + entry.seq());
+                break;
+            }
+            previousHash = entry.chainHash();
+        }
+
+        String root = straddles ? seal.getMerkleRoot()
+            : HexFormat.of().formatHex(MerkleTree.root(AuditSealService.leaves(rows)));
+        if (!root.equals(seal.getMerkleRoot())) {
+            failures.add(label + "Merkle root mismatch");
+        }
+        if (!signer.verify(seal)) {
+            failures.add(label + "invalid signature");
+        }
+        return new SealResult(rows.size(), failures, quarantined);
+    }
+
+    /**
+     * Splits the seal list until a single seal remains, then verifies it.
+     */
+    private class VerifyRange extends RecursiveTask<List<SealResult>> {
+
+        private final List<AuditSeal> seals;
+        private final AuditSealService.RetentionBoundary boundary;
+        private final int from;
+        private final int to;
+
+        VerifyRange(List<AuditSeal> seals, AuditSealService.RetentionBoundary boundary, int from, int to) {
+            this.seals = seals;
+            this.boundary = boundary;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<SealResult> compute() {
+            if (to - from <= 1) {
+                return from == to
+                    ? List.of()
+                    : List.of(verifySeal(seals.get(from), from > 0 ? seals.get(from - 1) : null, boundary,
+                        new AuditChainHasher(AuditSequencer.newMac(secretsProvider))));
+            }
+            int mid = (from + to) >>> 1;
+            VerifyRange left = new VerifyRange(seals, boundary, from, mid);
+            left.fork();
+            List<SealResult> results = new ArrayList<>(new VerifyRange(seals, boundary, mid, to).compute());
+            results.addAll(0, left.join());
+            return results;
+        }
+    }
+
+    record SealResult(long rowsChecked, List<String> failures, List<Long> quarantinedSeqs) {}
+
+    public record VerificationReport(
+        int sealsChecked,
+        long rowsChecked,
+        List<String> failures,
+        List<Long> quarantinedSeqs,
+        boolean valid
+    ) {}
+}
@@ -0,0 +1,172 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.security.SecretsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Assigns each audit event a monotonic sequence number and HMAC chain hash.
+ *
+ * SINGLE-WRITER: only the AuditWriter thread calls {@link #next}, so the chain head
+ * needs no locks or atomics and the Mac is initialised once and reused. Across instances
+ * AuditChainLock keeps a single sequencing writer, and {@link #checkUnforked} rejects a
+ * batch whose seqs are already stored under other hashes.
+ *
+ * RESTART-SAFE: {@link #resume()} reloads the chain head from the last persisted
+ * row, so the chain continues across restarts instead of resetting to GENESIS.
+ *
+ * chain_hash(n) = HMAC-SHA256(key, canonical(n) + "|" + chain_hash(n-1)),
+ * computed over the encoded bytes by AuditChainHasher without building the string.
+ */
+@Component
+public class AuditSequencer {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditSequencer.class);
+
+    static final String GENESIS = "GENESIS";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String STORED_SQL =
+        "SELECT seq, chain_hash FROM audit_logs WHERE seq BETWEEN ? AND ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditChainHasher hasher;
+
+    private long lastSeq;
+    private String lastHash = GENESIS;
+
+    public AuditSequencer(JdbcTemplate jdbcTemplate, SecretsProvider secretsProvider) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hasher = new AuditChainHasher(newMac(secretsProvider));
+    }
+
+    /**
+     * Fresh keyed Mac for chain computation. Mac is not thread-safe — one per thread.
+     */
+    static Mac newMac(SecretsProvider secretsProvider) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            byte[] key = secretsProvider.getAuditHmacKey().getBytes(StandardCharsets.UTF_8);
+            mac.init(new SecretKeySpec(key, HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Audit HMAC initialisation failed", e);
+        }
+    }
+
+    /**
+     * Reload the chain head from the last persisted row. Called once before the writer starts.
+     */
+    public void resume() {
+        List<Object[]> head = jdbcTemplate.query(
+            "SELECT seq, chain_hash FROM audit_logs WHERE seq IS NOT NULL ORDER BY seq DESC LIMIT 1",
+            (rs, rowNum) -> new Object[] { rs.getLong(1), rs.getString(2) });
+        if (!head.isEmpty()) {
+            resumeFrom((Long) head.get(0)[0], (String) head.get(0)[1]);
+        }
+        log.info("Audit chain resumed: seq={}", lastSeq);
+    }
+
+    void resumeFrom(long seq, String chainHash) {
+        this.lastSeq = seq;
+        this.lastHash = chainHash;
+    }
+
+    /**
+     * Append a record to the chain. Not thread-safe by design — single writer only.
+     */
+    public SequencedAuditRecord next(AuditRecord record) {
+        long seq = lastSeq + 1;
+        String chainHash = chainHash(seq, record, lastHash);
+        lastSeq = seq;
+        lastHash = chainHash;
+        return new SequencedAuditRecord(record, seq, chainHash);
+    }
+
+    /**
+     * Fail if audit_logs already holds one of the batch's seqs under a different chain hash:
+     * another writer has sequenced the same range and the chain has forked. Rows with the same
+     * hash (a replay of committed rows, or a tombstone) pass. Call inside the insert transaction.
+     *
+     * @throws ChainForkException on the first conflicting seq
+     */
+    public void checkUnforked(List<SequencedAuditRecord> batch) {
+        Map<Long, String> hashes = new HashMap<>();
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (SequencedAuditRecord row : batch) {
+            hashes.put(row.seq(), row.chainHash());
+            first = Math.min(first, row.seq());
+            last = Math.max(last, row.seq());
+        }
+        List<Object[]> stored = jdbcTemplate.query(STORED_SQL,
+            (rs, rowNum) -> new Object[] { rs.getLong(1), rs.getString(2) }, first, last);
+        for (Object[] row : stored) {
+            long seq = (Long) row[0];
+            if (!Objects.equals(hashes.get(seq), row[1])) {
+                throw new ChainForkException(seq);
+            }
+        }
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    public String lastHash() {
+        return lastHash;
+    }
+
+    String chainHash(long seq, AuditRecord record, String previousHash) {
+        return hasher.hash(seq, record, previousHash);
+    }
+
+    /**
+     * Canonical form of an entry: every persisted column except the id.
+     * Details must be compact JSON with sorted keys so the form survives a jsonb round trip.
+     * Coalesced rows append their count and first-seen time; single events keep the
+     * original form, so rows chained before coalescing existed still verify.
+     * AuditChainHasher encodes exactly this text; keep the two in step.
+     */
+    static String canonical(long seq, AuditRecord record) {
+        String canonical = seq
+            + "|" + record.eventType()
+            + "|" + record.userId()
+            + "|" + record.requestId()
+            + "|" + record.ipAddress()
+            + "|" + record.deviceFingerprintHash()
+            + "|" + record.details()
+            + "|" + record.createdAt().toEpochMilli();
+        if (record.coalesced()) {
+            canonical += "|" + record.occurrenceCount() + "|" + record.firstSeenAt().toEpochMilli();
+        }
+        return canonical;
+    }
+
+    /**
+     * A seq is already stored with another chain hash: two writers sequenced the same range.
+     */
+    static class ChainForkException extends IllegalStateException {
+
+        private final long seq;
+
+        ChainForkException(long seq) {
+            super("Audit chain forked: seq " + seq + " is already stored with a different chain hash");
+            this.seq = seq;
+        }
+
+        long seq() {
+            return seq;
+        }
+    }
+}
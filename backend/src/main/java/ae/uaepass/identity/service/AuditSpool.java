@@ -0,0 +1,542 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable local spool for sequenced audit records that could not be inserted.
+ *
+ * Append-only, memory-mapped segment files: an append is a few buffer puts into the page
+ * cache, so the writer thread never waits on Postgres. {@link AuditSpoolReplayer} drains
+ * the spool into Postgres in seq order once the database recovers.
+ *
+ * Record layout: [int length][int crc32c][payload]. The length is written last and a zero
+ * end marker follows every record, so a record torn by a crash fails the length or CRC
+ * check on recovery and the segment is truncated there.
+ *
+ * DESIGN DECISIONS:
+ * - Records keep their seq and chain hash; replay is idempotent via ON CONFLICT DO NOTHING
+ * - The replay position is checkpointed after each committed replay batch; a crash in
+ *   between only replays rows that are then ignored as duplicates
+ * - Segments are not fsynced per append: the page cache survives a process crash, and
+ *   segments are forced on rollover and shutdown
+ * - Single appender (the audit writer thread) and single replayer; one monitor guards both
+ * - Bounded by max-bytes awaiting replay: past it a batch is refused whole, as when the disk fails
+ */
+@Component
+public class AuditSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditSpool.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String CHECKPOINT_FILE = "replay.checkpoint";
+
+    private final AuditProperties.SpoolProperties props;
+    private final Path directory;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final AtomicLong pendingRecords = new AtomicLong();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final Counter appendedCounter;
+    private final Counter rolloverCounter;
+    private final Counter fullCounter;
+
+    private Segment active;
+    private Position readPosition;
+    private SequencedAuditRecord lastAppended;
+    private volatile long oldestPendingMillis;
+    private volatile boolean open;
+
+    public AuditSpool(AuditProperties auditProps, MeterRegistry registry) {
+        this.props = auditProps.spool();
+        this.directory = Path.of(props.directory());
+
+        Gauge.builder("identity.audit.spool.records", pendingRecords, AtomicLong::get)
+            .description("Spooled audit events waiting for replay")
+            .register(registry);
+        Gauge.builder("identity.audit.spool.bytes", pendingBytes, AtomicLong::get)
+            .description("Spooled audit bytes waiting for replay")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("identity.audit.spool.replay.lag", this, AuditSpool::replayLagSeconds)
+            .description("Age of the oldest spooled audit event")
+            .baseUnit("seconds")
+            .register(registry);
+        this.appendedCounter = Counter.builder("identity.audit.spool.appended")
+            .description("Audit events written to the local spool")
+            .register(registry);
+        this.rolloverCounter = Counter.builder("identity.audit.spool.rollovers")
+            .description("Audit spool segment rollovers")
+            .register(registry);
+        this.fullCounter = Counter.builder("identity.audit.spool.full")
+            .description("Audit batches refused because max-bytes were awaiting replay")
+            .register(registry);
+    }
+
+    /**
+     * Recover existing segments and the replay checkpoint. A spool that cannot be opened
+     * is disabled (appends return false) rather than failing startup.
+     */
+    public synchronized void open() {
+        if (!props.enabled() || open) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.filter(AuditSpool::isSegment).toList()) {
+                    Segment segment = Segment.map(path, segmentNumber(path), props.segmentBytes());
+                    segment.recover();
+                    segments.put(segment.number, segment);
+                }
+            }
+
+            readPosition = readCheckpoint();
+            if (readPosition == null || !segments.containsKey(readPosition.segment())) {
+                readPosition = segments.isEmpty() ? null : new Position(segments.firstKey(), 0);
+            }
+            deleteConsumedSegments();
+            active = segments.isEmpty() ? null : segments.lastEntry().getValue();
+
+            for (Segment segment : segments.descendingMap().values()) {
+                if (segment.lastRecordOffset >= 0) {
+                    lastAppended = segment.read(segment.lastRecordOffset);
+                    break;
+                }
+            }
+            countPending();
+            open = true;
+            log.info("Audit spool opened: dir={}, segments={}, pending={}",
+                directory, segments.size(), pendingRecords.get());
+        } catch (IOException | RuntimeException e) {
+            log.error("Audit spool unavailable, failed audit batches will be lost: dir={}", directory, e);
+        }
+    }
+
+    /**
+     * Append a batch atomically: either every record is spooled or none is.
+     *
+     * @return false if the spool is disabled or full, or the batch could not be written
+     */
+    public synchronized boolean append(List<SequencedAuditRecord> batch) {
+        if (!open) {
+            return false;
+        }
+        Segment startSegment = active;
+        int startPosition = active != null ? active.writePosition : 0;
+        List<Segment> created = new ArrayList<>();
+        try {
+            List<byte[]> payloads = new ArrayList<>(batch.size());
+            long batchBytes = 0;
+            for (SequencedAuditRecord record : batch) {
+                byte[] payload = encode(record);
+                if (HEADER_BYTES + payload.length + 4 > props.segmentBytes()) {
+                    throw new IOException("Audit record larger than a spool segment: seq=" + record.seq());
+                }
+                payloads.add(payload);
+                batchBytes += HEADER_BYTES + payload.length;
+            }
+            if (pendingBytes.get() + batchBytes > props.maxBytes()) {
+                fullCounter.increment();
+                log.error("Audit spool full, batch refused: size={}, pendingBytes={}", batch.size(), pendingBytes.get());
+                return false;
+            }
+
+            long bytes = 0;
+            for (byte[] payload : payloads) {
+                int needed = HEADER_BYTES + payload.length;
+                // Keep room for the end marker
+                if (active == null || active.writePosition + needed + 4 > props.segmentBytes()) {
+                    created.add(roll());
+                }
+                active.write(payload);
+                bytes += needed;
+            }
+
+            if (pendingRecords.getAndAdd(batch.size()) == 0) {
+                oldestPendingMillis = batch.get(0).record().createdAt().toEpochMilli();
+            }
+            pendingBytes.addAndGet(bytes);
+            lastAppended = batch.get(batch.size() - 1);
+            appendedCounter.increment(batch.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Audit spool append failed: size={}", batch.size(), e);
+            rollBack(startSegment, startPosition, created);
+            return false;
+        }
+    }
+
+    /**
+     * Up to {@code max} records from the replay position, in seq order. Does not consume them.
+     */
+    public synchronized Batch peek(int max) {
+        List<SequencedAuditRecord> records = new ArrayList<>();
+        Position position = readPosition;
+        long bytes = 0;
+        while (position != null && records.size() < max) {
+            Segment segment = segments.get(position.segment());
+            if (position.offset() >= segment.writePosition) {
+                Long next = segments.higherKey(position.segment());
+                if (next == null) {
+                    break;
+                }
+                position = new Position(next, 0);
+                continue;
+            }
+            int length = segment.buffer.getInt(position.offset());
+            records.add(segment.read(position.offset()));
+            bytes += HEADER_BYTES + length;
+            position = new Position(position.segment(), position.offset() + HEADER_BYTES + length);
+        }
+        return new Batch(records, position, bytes);
+    }
+
+    /**
+     * Mark a peeked batch as durably replayed. Only call after the insert has committed.
+     */
+    public synchronized void commit(Batch batch) {
+        if (batch.records().isEmpty()) {
+            return;
+        }
+        readPosition = batch.next();
+        pendingRecords.addAndGet(-batch.records().size());
+        pendingBytes.addAndGet(-batch.bytes());
+        writeCheckpoint();
+        deleteConsumedSegments();
+
+        Batch next = peek(1);
+        oldestPendingMillis = next.records().isEmpty()
+            ? 0 : next.records().get(0).record().createdAt().toEpochMilli();
+    }
+
+    public boolean hasBacklog() {
+        return pendingRecords.get() > 0;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Last record ever appended (replayed or not), so the chain can resume past it after a restart.
+     */
+    public synchronized SequencedAuditRecord lastAppended() {
+        return lastAppended;
+    }
+
+    public synchronized void close() {
+        if (open && active != null) {
+            active.buffer.force();
+        }
+        open = false;
+    }
+
+    private double replayLagSeconds() {
+        long oldest = oldestPendingMillis;
+        return oldest == 0 ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    private Segment roll() throws IOException {
+        long number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        if (active != null) {
+            active.buffer.force();
+        }
+        Segment segment = Segment.map(directory.resolve(segmentName(number)), number, props.segmentBytes());
+        segments.put(number, segment);
+        active = segment;
+        if (readPosition == null) {
+            readPosition = new Position(number, 0);
+        }
+        rolloverCounter.increment();
+        log.info("Audit spool rolled to segment {}", number);
+        return segment;
+    }
+
+    private void rollBack(Segment startSegment, int startPosition, List<Segment> created) {
+        for (Segment segment : created) {
+            segments.remove(segment.number);
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Could not delete spool segment {}", segment.path, e);
+            }
+        }
+        active = startSegment;
+        if (active != null) {
+            active.truncate(startPosition);
+        }
+        if (readPosition != null && !segments.containsKey(readPosition.segment())) {
+            readPosition = segments.isEmpty() ? null : new Position(segments.firstKey(), 0);
+        }
+    }
+
+    private void deleteConsumedSegments() {
+        while (readPosition != null && !segments.isEmpty() && segments.firstKey() < readPosition.segment()) {
+            Segment segment = segments.pollFirstEntry().getValue();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Could not delete replayed spool segment {}", segment.path, e);
+            }
+        }
+    }
+
+    private void countPending() {
+        long records = 0;
+        long bytes = 0;
+        long oldest = 0;
+        for (Map.Entry<Long, Segment> entry : segments.tailMap(
+                readPosition != null ? readPosition.segment() : Long.MAX_VALUE, true).entrySet()) {
+            Segment segment = entry.getValue();
+            int offset = entry.getKey() == readPosition.segment() ? readPosition.offset() : 0;
+            while (offset < segment.writePosition) {
+                if (oldest == 0) {
+                    oldest = segment.read(offset).record().createdAt().toEpochMilli();
+                }
+                int length = segment.buffer.getInt(offset);
+                records++;
+                bytes += HEADER_BYTES + length;
+                offset += HEADER_BYTES + length;
+            }
+        }
+        pendingRecords.set(records);
+        pendingBytes.set(bytes);
+        oldestPendingMillis = oldest;
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(checkpoint)) {
+            return null;
+        }
+        String[] parts = Files.readString(checkpoint).trim().split(" ");
+        return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    private void writeCheckpoint() {
+        try {
+            Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(tmp, readPosition.segment() + " " + readPosition.offset());
+            Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Worst case a restart replays rows that are already stored, which is harmless
+            log.warn("Could not write audit spool checkpoint", e);
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentName(long number) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    // --- Record codec ---
+
+    static byte[] encode(SequencedAuditRecord sequenced) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(sequenced.seq());
+        writeString(out, sequenced.chainHash());
+        writeRecord(out, sequenced.record());
+        return bytes.toByteArray();
+    }
+
+    static SequencedAuditRecord decode(ByteBuffer in) {
+        long seq = in.getLong();
+        String chainHash = readString(in);
+        return new SequencedAuditRecord(readRecord(in), seq, chainHash);
+    }
+
+    /**
+     * Record fields, shared with the stream transport (AuditStreamPublisher). Ends with an
+     * optional trailer, so {@code in} must end where the record does.
+     */
+    static void writeRecord(DataOutputStream out, AuditRecord record) throws IOException {
+        writeString(out, record.eventType().name());
+        out.writeBoolean(record.userId() != null);
+        if (record.userId() != null) {
+            out.writeLong(record.userId().getMostSignificantBits());
+            out.writeLong(record.userId().getLeastSignificantBits());
+        }
+        writeString(out, record.requestId());
+        writeString(out, record.ipAddress());
+        writeString(out, record.deviceFingerprintHash());
+        writeString(out, record.details());
+        out.writeLong(record.createdAt().getEpochSecond());
+        out.writeInt(record.createdAt().getNano());
+        // Optional trailer: records spooled before coalescing existed simply end here
+        if (record.coalesced()) {
+            out.writeInt(record.occurrenceCount());
+            out.writeLong(record.firstSeenAt().getEpochSecond());
+            out.writeInt(record.firstSeenAt().getNano());
+        }
+    }
+
+    static AuditRecord readRecord(ByteBuffer in) {
+        AuditEventType eventType = AuditEventType.valueOf(readString(in));
+        UUID userId = in.get() != 0 ? new UUID(in.getLong(), in.getLong()) : null;
+        String requestId = readString(in);
+        String ipAddress = readString(in);
+        String fingerprint = readString(in);
+        String details = readString(in);
+        Instant createdAt = Instant.ofEpochSecond(in.getLong(), in.getInt());
+        int occurrenceCount = 1;
+        Instant firstSeenAt = null;
+        if (in.hasRemaining()) {
+            occurrenceCount = in.getInt();
+            firstSeenAt = Instant.ofEpochSecond(in.getLong(), in.getInt());
+        }
+        return new AuditRecord(eventType, userId, requestId, ipAddress, fingerprint,
+            details, createdAt, occurrenceCount, firstSeenAt);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One memory-mapped segment file. writePosition is the end of the valid records.
+     */
+    private static final class Segment {
+
+        final long number;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        int lastRecordOffset = -1;
+
+        private Segment(long number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path path, long number, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(number, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        /**
+         * Find the end of the valid records; anything after a torn record is discarded.
+         */
+        void recover() {
+            int position = 0;
+            while (position + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                    break;
+                }
+                if (crc(buffer, position + HEADER_BYTES, length) != buffer.getInt(position + 4)) {
+                    log.warn("Truncating torn audit spool record: segment={}, offset={}", path, position);
+                    break;
+                }
+                lastRecordOffset = position;
+                position += HEADER_BYTES + length;
+            }
+            truncate(position);
+        }
+
+        void write(byte[] payload) {
+            int position = writePosition;
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            buffer.put(position + HEADER_BYTES, payload);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            int end = position + HEADER_BYTES + payload.length;
+            if (end + 4 <= buffer.capacity()) {
+                buffer.putInt(end, 0);
+            }
+            // Length last: until it is set, recovery sees the end marker
+            buffer.putInt(position, payload.length);
+            lastRecordOffset = position;
+            writePosition = end;
+        }
+
+        void truncate(int position) {
+            writePosition = position;
+            if (lastRecordOffset >= position) {
+                lastRecordOffset = -1;
+            }
+            if (position + 4 <= buffer.capacity()) {
+                buffer.putInt(position, 0);
+            }
+        }
+
+        SequencedAuditRecord read(int offset) {
+            int length = buffer.getInt(offset);
+            return decode(buffer.slice(offset + HEADER_BYTES, length));
+        }
+
+        private static int crc(ByteBuffer buffer, int offset, int length) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(offset, length));
+            return (int) crc.getValue();
+        }
+    }
+
+    /**
+     * Replay position: segment number and byte offset of the next unreplayed record.
+     */
+    public record Position(long segment, int offset) {}
+
+    /**
+     * Records read from the spool and the position just after them.
+     */
+    public record Batch(List<SequencedAuditRecord> records, Position next, long bytes) {}
+}
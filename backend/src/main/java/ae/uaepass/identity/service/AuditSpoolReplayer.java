@@ -0,0 +1,151 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the local audit spool into Postgres, oldest first.
+ *
+ * Each batch is inserted in one transaction with ON CONFLICT DO NOTHING on (seq, created_at)
+ * and only then committed in the spool, so replaying a batch twice is harmless.
+ * While Postgres is still down (a transient failure, see AuditWriter.isTransient) the attempt
+ * fails and is retried on the next tick.
+ *
+ * If Postgres rejects the data instead, the batch is replayed row by row. Each rejected row
+ * goes to the AuditQuarantine file and is replaced by a tombstone, so the checkpoint advances
+ * and neither the spool nor sealing waits on a row that can never be inserted.
+ *
+ * A batch whose seqs are already stored under other chain hashes (another writer sequenced
+ * while this one was cut off, see AuditChainLock) is never inserted: replay stops there and
+ * identity.audit.chain.forks counts it until an operator reconciles the spool.
+ */
+@Component
+public class AuditSpoolReplayer {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditSpoolReplayer.class);
+
+    static final String REPLAY_SQL = AuditWriter.INSERT_SQL + " ON CONFLICT (seq, created_at) DO NOTHING";
+
+    private final AuditSpool spool;
+    private final AuditQuarantine quarantine;
+    private final AuditSequencer sequencer;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserActivityService activity;
+    private final int batchSize;
+    private final Counter replayedCounter;
+    private final Counter forkCounter;
+
+    public AuditSpoolReplayer(AuditSpool spool, AuditQuarantine quarantine, AuditSequencer sequencer,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager, UserActivityService activity,
+                              AuditProperties auditProps, MeterRegistry registry) {
+        this.spool = spool;
+        this.quarantine = quarantine;
+        this.sequencer = sequencer;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.activity = activity;
+        this.batchSize = auditProps.spool().replayBatchSize();
+        this.replayedCounter = Counter.builder("identity.audit.spool.replayed")
+            .description("Spooled audit events replayed into Postgres")
+            .register(registry);
+        this.forkCounter = Counter.builder("identity.audit.chain.forks")
+            .description("Audit batches refused because their seqs were already stored by another writer")
+            .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.spool.replay-interval-ms}")
+    public void replay() {
+        if (!spool.isOpen() || !spool.hasBacklog()) {
+            return;
+        }
+        long replayed = 0;
+        try {
+            while (spool.hasBacklog()) {
+                AuditSpool.Batch batch = spool.peek(batchSize);
+                if (batch.records().isEmpty()) {
+                    break;
+                }
+                List<SequencedAuditRecord> written;
+                try {
+                    insert(batch.records());
+                    written = batch.records();
+                } catch (DataAccessException e) {
+                    if (AuditWriter.isTransient(e)) {
+                        throw e;
+                    }
+                    log.warn("Spooled audit batch rejected, replaying row by row: size={}", batch.records().size(), e);
+                    written = replayEachRow(batch.records());
+                }
+                spool.commit(batch);
+                for (SequencedAuditRecord sequenced : written) {
+                    activity.recordWritten(sequenced.record());
+                }
+                replayed += batch.records().size();
+                replayedCounter.increment(batch.records().size());
+            }
+            log.info("Audit spool drained: replayed={}", replayed);
+        } catch (AuditSequencer.ChainForkException e) {
+            forkCounter.increment();
+            log.error("Audit spool replay stopped, chain forked by another writer: seq={}, replayed={}",
+                e.seq(), replayed, e);
+        } catch (DataAccessException e) {
+            log.warn("Audit spool replay paused, database unavailable: replayed={}", replayed, e);
+        }
+    }
+
+    /**
+     * Replay one row per transaction; rejected rows are quarantined and tombstoned.
+     * A transient failure propagates, and the whole batch is retried on the next tick.
+     *
+     * @return the rows written intact
+     */
+    private List<SequencedAuditRecord> replayEachRow(List<SequencedAuditRecord> records) {
+        List<SequencedAuditRecord> written = new ArrayList<>(records.size());
+        for (SequencedAuditRecord row : records) {
+            try {
+                insert(List.of(row));
+                written.add(row);
+            } catch (DataAccessException e) {
+                if (AuditWriter.isTransient(e)) {
+                    throw e;
+                }
+                quarantine.add(row.record(), row.seq(), row.chainHash(), e);
+                insertTombstone(row, e);
+            }
+        }
+        return written;
+    }
+
+    private void insertTombstone(SequencedAuditRecord row, DataAccessException cause) {
+        try {
+            insert(List.of(AuditQuarantine.tombstone(row, cause)));
+        } catch (DataAccessException e) {
+            if (AuditWriter.isTransient(e)) {
+                throw e;
+            }
+            // Sealing stops at this seq until a row is inserted for it by hand
+            log.error("Audit tombstone rejected, seq left empty: seq={}", row.seq(), e);
+        }
+    }
+
+    private void insert(List<SequencedAuditRecord> rows) {
+        transactionTemplate.executeWithoutResult(status -> {
+            sequencer.checkUnforked(rows);
+            jdbcTemplate.batchUpdate(REPLAY_SQL, rows, rows.size(), AuditWriter::bind);
+        });
+    }
+}
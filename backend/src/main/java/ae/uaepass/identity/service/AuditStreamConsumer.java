@@ -0,0 +1,609 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumer side of the Redis Streams audit transport: persists the stream into audit_logs.
+ *
+ * Every node runs a consumer in the consumer group, but only the holder of the writer lease
+ * (a Redis key renewed on every poll) reads. audit_logs has one HMAC chain, and a chain has one
+ * writer (see AuditSequencer), so the stream moves the Postgres writes of N nodes onto one
+ * node in large batches instead of spreading them. If the holder dies, another node takes the
+ * lease within lease-ms, claims the dead consumer's pending entries and carries on. Entries left
+ * pending on any other consumer are claimed before every read, not only on takeover: a former
+ * holder that stalled past its lease may still read entries after the takeover.
+ *
+ * Each read of up to batch-size entries is sequenced and inserted in one transaction, together
+ * with the entry IDs (audit_stream_entries) and the offset in audit_stream_offsets. Entries are
+ * acknowledged and deleted only after commit.
+ *
+ * SECURITY:
+ * - Exactly once: the offset update is conditional on the commit count last read, so a former
+ *   lease holder that stalled past its lease cannot commit a second chain; a redelivered entry
+ *   is skipped only if its ID was persisted, never because a higher ID was
+ * - Undecodable entries are moved to {key}:dead rather than dropped, and counted
+ * - A batch that fails on its data rather than on an outage is retried one entry at a time. An
+ *   entry that still fails on its own once XPENDING shows max-deliveries deliveries is moved to
+ *   {key}:dead too, so one poison entry cannot block the group; an outage never dead-letters
+ *
+ * DESIGN DECISIONS:
+ * - Acknowledged entries are deleted, so XLEN is the backlog and the oldest entry ID dates it
+ *   (identity.audit.stream.backlog, identity.audit.stream.lag.seconds)
+ * - A node that gains the lease reloads the chain head from Postgres before writing
+ */
+@Component
+public class AuditStreamConsumer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditStreamConsumer.class);
+
+    static final String INIT_OFFSET_SQL =
+        "INSERT INTO audit_stream_offsets (stream_key, last_id) VALUES (?, '0-0') ON CONFLICT DO NOTHING";
+    static final String ADVANCE_OFFSET_SQL =
+        "UPDATE audit_stream_offsets SET last_id = ?, commits = commits + 1, updated_at = NOW() " +
+        "WHERE stream_key = ? AND commits = ?";
+    static final String INSERT_ENTRY_SQL =
+        "INSERT INTO audit_stream_entries (stream_key, entry_ms, entry_seq) VALUES (?, ?, ?)";
+    static final String PERSISTED_ENTRIES_SQL =
+        "SELECT entry_ms, entry_seq FROM audit_stream_entries " +
+        "WHERE stream_key = ? AND (entry_ms, entry_seq) >= (?, ?) AND (entry_ms, entry_seq) <= (?, ?)";
+    private static final String PRUNE_ENTRIES_SQL =
+        "DELETE FROM audit_stream_entries WHERE stream_key = ? AND (entry_ms, entry_seq) < (?, ?)";
+
+    private static final RedisScript<Long> RENEW_LEASE = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+        "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+    private static final RedisScript<Long> RELEASE_LEASE = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+        Long.class);
+    // Atomic, so the consumer cannot read an entry between the check and the delete
+    private static final RedisScript<Long> DELETE_IDLE_CONSUMER = new DefaultRedisScript<>(
+        "if #redis.call('xpending', KEYS[1], ARGV[1], '-', '+', 1, ARGV[2]) == 0 then " +
+        "return redis.call('xgroup', 'delconsumer', KEYS[1], ARGV[1], ARGV[2]) else return -1 end", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditSequencer sequencer;
+    private final AuditRollupService rollups;
+    private final UserActivityService activity;
+    private final AuditProperties.StreamProperties props;
+    private final byte[] key;
+    private final byte[] deadLetterKey;
+    private final String leaseKey;
+    private final Consumer consumer;
+
+    private final Counter persistedCounter;
+    private final Counter duplicateCounter;
+    private final Counter deadLetterCounter;
+    private final Counter failureCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean leader;
+    private Thread consumerThread;
+    // Consumer thread only; lastId is the highest persisted entry ID, null until resumed
+    private String lastId;
+    private long commits;
+    private boolean readPending;
+    // Set after a batch failed on its data; pending entries are then persisted one at a time
+    private boolean isolate;
+
+    public AuditStreamConsumer(StringRedisTemplate redisTemplate, JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager, AuditSequencer sequencer,
+                               AuditRollupService rollups, UserActivityService activity,
+                               AuditProperties auditProps, MeterRegistry registry) {
+        this.redisTemplate = redisTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sequencer = sequencer;
+        this.rollups = rollups;
+        this.activity = activity;
+        this.props = auditProps.stream();
+        this.key = props.key().getBytes(StandardCharsets.UTF_8);
+        this.deadLetterKey = (props.key() + ":dead").getBytes(StandardCharsets.UTF_8);
+        this.leaseKey = props.key() + ":writer";
+        this.consumer = Consumer.from(props.group(), UUID.randomUUID().toString());
+
+        this.persistedCounter = Counter.builder("identity.audit.stream.persisted")
+            .description("Audit events persisted from the Redis stream")
+            .register(registry);
+        this.duplicateCounter = Counter.builder("identity.audit.stream.duplicates")
+            .description("Redelivered stream entries skipped because they were already persisted")
+            .register(registry);
+        this.deadLetterCounter = Counter.builder("identity.audit.stream.dead.letters")
+            .description("Undecodable or repeatedly rejected stream entries moved to the dead-letter stream")
+            .register(registry);
+        this.failureCounter = Counter.builder("identity.audit.stream.failures")
+            .description("Stream batches that failed to persist and will be retried")
+            .register(registry);
+        this.batchSizeSummary = DistributionSummary.builder("identity.audit.stream.batch.size")
+            .description("Audit events per stream persist transaction")
+            .register(registry);
+        Gauge.builder("identity.audit.stream.backlog", backlog, AtomicLong::get)
+            .description("Stream entries (audit batches) not yet persisted")
+            .register(registry);
+        Gauge.builder("identity.audit.stream.lag.seconds", lagSeconds, AtomicLong::get)
+            .description("Age of the oldest stream entry not yet persisted")
+            .register(registry);
+        Gauge.builder("identity.audit.stream.leader", this, c -> c.leader ? 1 : 0)
+            .description("1 on the node holding the audit writer lease")
+            .register(registry);
+    }
+
+    @Override
+    public void start() {
+        if (!props.enabled()) {
+            return;
+        }
+        running = true;
+        consumerThread = new Thread(this::consumeLoop, "audit-stream-consumer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        log.info("Audit stream consumer started: key={}, group={}, consumer={}",
+            props.key(), props.group(), consumer.getName());
+    }
+
+    /**
+     * Finish the batch in hand and hand the lease over at once rather than after lease-ms.
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            consumerThread.join(props.blockMs() + props.leaseMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (leader) {
+            try {
+                redisTemplate.execute(RELEASE_LEASE, List.of(leaseKey), consumer.getName());
+            } catch (RuntimeException e) {
+                log.warn("Audit writer lease not released, expires in {} ms", props.leaseMs());
+            }
+            leader = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Sample backlog and lag. Runs on every node, so any node's metrics show the stream state.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.stream.lag-interval-ms}")
+    public void sampleLag() {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                RedisStreamCommands streams = connection.streamCommands();
+                Long length = streams.xLen(key);
+                List<ByteRecord> oldest = streams.xRange(key, Range.unbounded(), Limit.limit().count(1));
+                backlog.set(length != null ? length : 0);
+                lagSeconds.set(oldest == null || oldest.isEmpty() ? 0
+                    : Math.max(0, (System.currentTimeMillis() - oldest.get(0).getId().getTimestamp()) / 1000));
+                if (leader && oldest != null && !oldest.isEmpty()) {
+                    // Only an entry still in the stream can be redelivered
+                    RecordId bound = oldest.get(0).getId();
+                    jdbcTemplate.update(PRUNE_ENTRIES_SQL, props.key(), bound.getTimestamp(), bound.getSequence());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Audit stream lag not sampled: {}", e.getMessage());
+        }
+    }
+
+    private void consumeLoop() {
+        while (running) {
+            try {
+                if (!holdLease()) {
+                    pause();
+                    continue;
+                }
+                List<ByteRecord> entries = read();
+                if (entries.isEmpty()) {
+                    continue;
+                }
+                if (isolate) {
+                    persistEachEntry(entries);
+                } else {
+                    persist(entries);
+                }
+            } catch (RuntimeException e) {
+                failureCounter.increment();
+                log.error("Audit stream batch failed, retrying from pending entries", e);
+                isolate |= isPoison(e);
+                // Re-establish the chain head and offset from Postgres before the retry
+                readPending = true;
+                lastId = null;
+                pause();
+            }
+        }
+        log.info("Audit stream consumer stopped");
+    }
+
+    /**
+     * Renew the lease if held, otherwise try to take it.
+     */
+    private boolean holdLease() {
+        if (leader) {
+            Long renewed = redisTemplate.execute(RENEW_LEASE, List.of(leaseKey),
+                consumer.getName(), String.valueOf(props.leaseMs()));
+            if (renewed == null || renewed == 0) {
+                leader = false;
+                log.warn("Audit writer lease lost: consumer={}", consumer.getName());
+                return false;
+            }
+            return true;
+        }
+        Boolean acquired = redisTemplate.opsForValue()
+            .setIfAbsent(leaseKey, consumer.getName(), Duration.ofMillis(props.leaseMs()));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return false;
+        }
+        leader = true;
+        lastId = null;
+        readPending = true;
+        log.info("Audit writer lease acquired: consumer={}", consumer.getName());
+        return true;
+    }
+
+    /**
+     * This node's pending entries first (after taking over those of other consumers), then new ones.
+     */
+    private List<ByteRecord> read() {
+        if (lastId == null) {
+            resume();
+        } else if (claimPending(false)) {
+            readPending = true;
+        }
+        if (readPending) {
+            List<ByteRecord> pending = readGroup(StreamReadOptions.empty().count(props.batchSize()),
+                ReadOffset.from("0"));
+            if (pending != null && !pending.isEmpty()) {
+                return pending;
+            }
+            readPending = false;
+            isolate = false;
+        }
+        List<ByteRecord> fresh = readGroup(
+            StreamReadOptions.empty().count(props.batchSize()).block(Duration.ofMillis(props.blockMs())),
+            ReadOffset.lastConsumed());
+        return fresh != null ? fresh : List.of();
+    }
+
+    @SuppressWarnings("unchecked") // Generic varargs of a single StreamOffset
+    private List<ByteRecord> readGroup(StreamReadOptions options, ReadOffset offset) {
+        return redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+            connection.streamCommands().xReadGroup(consumer, options, StreamOffset.create(key, offset)));
+    }
+
+    /**
+     * Load the chain head and persisted offset from Postgres, ensure the group exists,
+     * and claim entries left pending by other consumers.
+     */
+    private void resume() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            try {
+                connection.streamCommands().xGroupCreate(key, props.group(), ReadOffset.from("0"), true);
+            } catch (RuntimeException e) {
+                if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                    throw e;
+                }
+            }
+            return null;
+        });
+        claimPending(true);
+        jdbcTemplate.update(INIT_OFFSET_SQL, props.key());
+        Map<String, Object> offset = jdbcTemplate.queryForMap(
+            "SELECT last_id, commits FROM audit_stream_offsets WHERE stream_key = ?", props.key());
+        restoreOffset((String) offset.get("last_id"), ((Number) offset.get("commits")).longValue());
+        sequencer.resume();
+        readPending = true;
+    }
+
+    void restoreOffset(String lastId, long commits) {
+        this.lastId = lastId;
+        this.commits = commits;
+    }
+
+    /**
+     * Claim the entries pending on other consumers. The lease guarantees their owners no longer
+     * write, so there is no idle threshold; one pending summary per poll when there is nothing to claim.
+     *
+     * @param removeConsumers also delete the other consumers that have nothing pending
+     * @return whether anything was claimed
+     */
+    private boolean claimPending(boolean removeConsumers) {
+        List<String> others = new ArrayList<>();
+        Boolean claimed = redisTemplate.execute((RedisCallback<Boolean>) connection -> {
+            RedisStreamCommands streams = connection.streamCommands();
+            PendingMessagesSummary summary = streams.xPending(key, props.group());
+            boolean any = false;
+            if (summary != null && summary.getTotalPendingMessages() > 0) {
+                for (Map.Entry<String, Long> owner : summary.getPendingMessagesPerConsumer().entrySet()) {
+                    if (!owner.getKey().equals(consumer.getName()) && owner.getValue() > 0) {
+                        any |= claimFrom(streams, owner.getKey());
+                    }
+                }
+            }
+            if (removeConsumers) {
+                for (StreamInfo.XInfoConsumer other : streams.xInfoConsumers(key, props.group())) {
+                    if (!other.consumerName().equals(consumer.getName())) {
+                        others.add(other.consumerName());
+                    }
+                }
+            }
+            return any;
+        });
+        // A consumer that read again since the claim keeps its entries and stays
+        for (String other : others) {
+            redisTemplate.execute(DELETE_IDLE_CONSUMER, List.of(props.key()), props.group(), other);
+        }
+        return Boolean.TRUE.equals(claimed);
+    }
+
+    private boolean claimFrom(RedisStreamCommands streams, String owner) {
+        int total = 0;
+        while (true) {
+            List<RecordId> ids = new ArrayList<>();
+            for (PendingMessage message : streams.xPending(key, props.group(), owner,
+                    Range.unbounded(), (long) props.batchSize())) {
+                ids.add(message.getId());
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            streams.xClaimJustId(key, props.group(), consumer.getName(),
+                RedisStreamCommands.XClaimOptions.minIdle(Duration.ZERO).ids(ids));
+            total += ids.size();
+        }
+        if (total > 0) {
+            log.warn("Claimed pending audit stream entries: from={}, count={}", owner, total);
+        }
+        return total > 0;
+    }
+
+    void persist(List<ByteRecord> entries) {
+        Set<String> persisted = alreadyPersisted(entries);
+        List<RecordId> done = new ArrayList<>(entries.size());
+        List<Object[]> entryIds = new ArrayList<>(entries.size());
+        List<AuditRecord> batch = new ArrayList<>();
+        String newLastId = lastId;
+        for (ByteRecord entry : entries) {
+            RecordId id = entry.getId();
+            done.add(id);
+            if (persisted.contains(id.getValue())) {
+                duplicateCounter.increment();
+                continue;
+            }
+            entryIds.add(new Object[] { props.key(), id.getTimestamp(), id.getSequence() });
+            List<AuditRecord> records = decode(entry);
+            if (records != null) {
+                batch.addAll(records);
+            }
+            if (compareIds(id.getValue(), newLastId) > 0) {
+                newLastId = id.getValue();
+            }
+        }
+
+        if (!entryIds.isEmpty()) {
+            long headSeq = sequencer.lastSeq();
+            String headHash = sequencer.lastHash();
+            List<SequencedAuditRecord> sequenced = new ArrayList<>(batch.size());
+            for (AuditRecord record : batch) {
+                sequenced.add(sequencer.next(record));
+            }
+            long expected = commits;
+            String advanced = newLastId;
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(AuditWriter.INSERT_SQL, sequenced, sequenced.size(), AuditWriter::bind);
+                    jdbcTemplate.batchUpdate(INSERT_ENTRY_SQL, entryIds);
+                    if (jdbcTemplate.update(ADVANCE_OFFSET_SQL, advanced, props.key(), expected) != 1) {
+                        throw new LeaseLostException();
+                    }
+                });
+            } catch (RuntimeException e) {
+                sequencer.resumeFrom(headSeq, headHash);
+                throw e;
+            }
+            lastId = newLastId;
+            commits = expected + 1;
+            batchSizeSummary.record(batch.size());
+            persistedCounter.increment(batch.size());
+            for (AuditRecord record : batch) {
+                rollups.record(record);
+                activity.recordWritten(record);
+            }
+        }
+
+        // Persisted; if this fails the entries are redelivered and found in audit_stream_entries
+        acknowledge(done.toArray(RecordId[]::new));
+    }
+
+    /**
+     * Persist entries one per transaction after a batch failed on its data. An entry that fails
+     * alone on its data after max-deliveries deliveries is dead-lettered and the rest carry on;
+     * below that, or on an outage, the failure propagates and the pending entries are retried.
+     */
+    void persistEachEntry(List<ByteRecord> entries) {
+        for (ByteRecord entry : entries) {
+            try {
+                persist(List.of(entry));
+            } catch (RuntimeException e) {
+                if (!isPoison(e)) {
+                    throw e;
+                }
+                long deliveries = deliveries(entry.getId());
+                if (deliveries < props.maxDeliveries()) {
+                    throw e;
+                }
+                log.error("Audit stream entry rejected {} times, dead-lettered: id={}", deliveries, entry.getId(), e);
+                deadLetter(entry);
+                acknowledge(entry.getId());
+            }
+        }
+    }
+
+    /**
+     * Whether retrying the failure unchanged cannot help: anything but an outage (see
+     * AuditWriter.isTransient) or a lost lease.
+     */
+    static boolean isPoison(RuntimeException e) {
+        if (e instanceof DataAccessException dataAccess) {
+            return !AuditWriter.isTransient(dataAccess);
+        }
+        return !(e instanceof LeaseLostException);
+    }
+
+    /**
+     * Times the entry has been delivered to this consumer, from XPENDING.
+     */
+    private long deliveries(RecordId id) {
+        PendingMessages pending = redisTemplate.execute((RedisCallback<PendingMessages>) connection ->
+            connection.streamCommands().xPending(key, props.group(), consumer.getName(),
+                Range.closed(id.getValue(), id.getValue()), 1L));
+        return pending == null || pending.isEmpty() ? 0 : pending.get(0).getTotalDeliveryCount();
+    }
+
+    private void acknowledge(RecordId... ids) {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.streamCommands().xAck(key, props.group(), ids);
+            connection.streamCommands().xDel(key, ids);
+            return null;
+        });
+    }
+
+    private void deadLetter(ByteRecord entry) {
+        deadLetterCounter.increment();
+        redisTemplate.execute((RedisCallback<RecordId>) connection ->
+            connection.streamCommands().xAdd(MapRecord.create(deadLetterKey, entry.getValue())));
+    }
+
+    /**
+     * IDs among the entries that are already persisted. Entries all above the highest persisted ID,
+     * the usual fresh read, need no lookup.
+     */
+    private Set<String> alreadyPersisted(List<ByteRecord> entries) {
+        RecordId min = entries.get(0).getId();
+        RecordId max = min;
+        for (ByteRecord entry : entries) {
+            RecordId id = entry.getId();
+            if (compareIds(id.getValue(), min.getValue()) < 0) {
+                min = id;
+            }
+            if (compareIds(id.getValue(), max.getValue()) > 0) {
+                max = id;
+            }
+        }
+        if (compareIds(min.getValue(), lastId) > 0) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.query(PERSISTED_ENTRIES_SQL,
+            (rs, rowNum) -> rs.getLong("entry_ms") + "-" + rs.getLong("entry_seq"),
+            props.key(), min.getTimestamp(), min.getSequence(), max.getTimestamp(), max.getSequence()));
+    }
+
+    /**
+     * Records of one entry, or null if it is undecodable (then moved to the dead-letter stream).
+     */
+    private List<AuditRecord> decode(ByteRecord entry) {
+        byte[] payload = null;
+        for (Map.Entry<byte[], byte[]> field : entry.getValue().entrySet()) {
+            if (Arrays.equals(field.getKey(), AuditStreamPublisher.FIELD)) {
+                payload = field.getValue();
+            }
+        }
+        try {
+            if (payload != null) {
+                return AuditStreamPublisher.decode(payload);
+            }
+        } catch (RuntimeException e) {
+            log.error("Undecodable audit stream entry: id={}", entry.getId(), e);
+        }
+        deadLetter(entry);
+        return null;
+    }
+
+    /**
+     * Order of two stream IDs ("millis-sequence").
+     */
+    static int compareIds(String a, String b) {
+        int dashA = a.indexOf('-');
+        int dashB = b.indexOf('-');
+        int byTime = Long.compareUnsigned(Long.parseUnsignedLong(a.substring(0, dashA)),
+            Long.parseUnsignedLong(b.substring(0, dashB)));
+        return byTime != 0 ? byTime : Long.compareUnsigned(Long.parseUnsignedLong(a.substring(dashA + 1)),
+            Long.parseUnsignedLong(b.substring(dashB + 1)));
+    }
+
+    /**
+     * The offset fence failed: another node holds the writer lease. Never a reason to dead-letter.
+     */
+    static class LeaseLostException extends IllegalStateException {
+
+        LeaseLostException() {
+            super("Audit stream offset moved: another writer holds the lease");
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(props.retryBackoffMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
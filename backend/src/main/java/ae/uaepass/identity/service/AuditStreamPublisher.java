@@ -0,0 +1,116 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Producer side of the Redis Streams audit transport (app.audit.stream.enabled).
+ *
+ * AuditWriter hands each batch it drains here instead of to Postgres. A batch becomes one stream
+ * entry, so it is added atomically: a retry after a failed XADD can never duplicate part of it.
+ * AuditStreamConsumer on the node holding the writer lease sequences and persists the entries.
+ *
+ * Entry layout: field "batch" = version byte, record count, then per record its length and the
+ * AuditSpool record encoding (unsequenced: seq and chain hash are assigned by the consumer).
+ *
+ * SECURITY:
+ * - Entries carry the unmasked fields of audit_logs rows; the stream lives on the same Redis
+ *   as sessions and OTP state and needs the same protection (AUTH, TLS, no eviction)
+ */
+@Component
+public class AuditStreamPublisher {
+
+    static final byte[] FIELD = "batch".getBytes(StandardCharsets.UTF_8);
+    private static final byte FORMAT_VERSION = 1;
+
+    private final StringRedisTemplate redisTemplate;
+    private final AuditProperties.StreamProperties props;
+    private final byte[] key;
+    private final Counter publishedCounter;
+
+    public AuditStreamPublisher(StringRedisTemplate redisTemplate, AuditProperties auditProps,
+                                MeterRegistry registry) {
+        this.redisTemplate = redisTemplate;
+        this.props = auditProps.stream();
+        this.key = props.key().getBytes(StandardCharsets.UTF_8);
+        this.publishedCounter = Counter.builder("identity.audit.stream.published")
+            .description("Audit events added to the Redis stream")
+            .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return props.enabled();
+    }
+
+    /**
+     * Add the batch as one stream entry.
+     *
+     * @throws org.springframework.dao.DataAccessException if Redis did not take it
+     */
+    public RecordId publish(List<AuditRecord> batch) {
+        byte[] payload = encode(batch);
+        RecordId id = redisTemplate.execute((RedisCallback<RecordId>) connection -> xAdd(connection, payload));
+        publishedCounter.increment(batch.size());
+        return id;
+    }
+
+    private RecordId xAdd(RedisConnection connection, byte[] payload) {
+        return connection.streamCommands().xAdd(MapRecord.create(key, Map.of(FIELD, payload)));
+    }
+
+    static byte[] encode(List<AuditRecord> batch) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 * batch.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+            DataOutputStream recordOut = new DataOutputStream(recordBytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(batch.size());
+            for (AuditRecord record : batch) {
+                recordBytes.reset();
+                AuditSpool.writeRecord(recordOut, record);
+                out.writeInt(recordBytes.size());
+                recordBytes.writeTo(out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the entry was written by an unknown format version
+     */
+    static List<AuditRecord> decode(byte[] payload) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unknown audit stream format: " + version);
+        }
+        int count = in.getInt();
+        List<AuditRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = in.getInt();
+            records.add(AuditSpool.readRecord(in.slice(in.position(), length)));
+            in.position(in.position() + length);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,461 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.util.AuditColumnCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched, back-pressured audit log writer.
+ *
+ * Producers enqueue into a bounded ring buffer; a single writer thread drains it
+ * and persists rows with JDBC batch inserts (rewritten into multi-row INSERTs by
+ * the driver, see reWriteBatchedInserts). Ids come from audit_logs_id_seq.
+ * The writer thread is also the single writer of the HMAC chain (AuditSequencer); across
+ * instances AuditChainLock makes it the only one, and each insert first checks that none of its
+ * seqs is already stored under another hash.
+ * Each batch commits in one transaction, so readers (AuditSealService) only ever
+ * see whole batches.
+ *
+ * With the stream transport (app.audit.stream.enabled) the writer thread publishes each batch
+ * to Redis instead (AuditStreamPublisher) and AuditStreamConsumer persists it; the buffer then
+ * only rides out Redis hiccups, and this node never sequences.
+ *
+ * When an insert fails, or the buffer passes the spool high-watermark because Postgres
+ * is slow, batches go to the local AuditSpool instead. While the spool has a backlog every
+ * batch is spooled, so AuditSpoolReplayer can restore them to Postgres in seq order.
+ * When Postgres rejects the data instead (one bad row fails the whole JDBC batch), the batch
+ * is retried row by row and only the offending events go to the AuditQuarantine file.
+ *
+ * DESIGN DECISIONS:
+ * - Flush policy: a batch is written at batch-size rows or after flush-interval, whichever comes first
+ * - Back-pressure: producers wait up to offer-timeout for space, then the event is dropped and counted
+ * - Shutdown: the buffer is drained before the connection pool closes
+ * - Persisted (or spooled) events are counted into AuditRollupService for dashboards
+ * - Accepted events are offered to SecurityEventFeed on enqueue, so the SOC feed does not
+ *   wait for the flush
+ * - Failures must not crash the request — a batch that can be neither inserted nor
+ *   spooled is logged and counted, an event Postgres rejects is quarantined, and the chain
+ *   head is rewound so the next row links to the last persisted one
+ */
+@Component
+public class AuditWriter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditWriter.class);
+
+    static final String INSERT_SQL =
+        "INSERT INTO audit_logs (event_type, user_id, request_id, ip_address, ip_address_raw, " +
+        "device_fingerprint_hash, device_fingerprint_raw, details, created_at, seq, chain_hash, " +
+        "occurrence_count, first_seen_at) " +
+        "VALUES (?, ?, ?, CAST(? AS inet), ?, ?, ?, CAST(? AS jsonb), ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditSequencer sequencer;
+    private final AuditChainLock chainLock;
+    private final AuditSpool spool;
+    private final AuditQuarantine quarantine;
+    private final AuditRollupService rollups;
+    private final UserActivityService activity;
+    private final AuditStreamPublisher stream;
+    private final SecurityEventFeed feed;
+    private final AuditProperties.WriterProperties props;
+    private final int spoolWatermark;
+    private final BlockingQueue<AuditRecord> buffer;
+
+    private final Counter droppedCounter;
+    private final Counter writeFailureCounter;
+    private final Counter forkCounter;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushLatencyTimer;
+
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AuditWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       AuditSequencer sequencer, AuditChainLock chainLock,
+                       AuditSpool spool, AuditQuarantine quarantine,
+                       AuditRollupService rollups,
+                       UserActivityService activity, AuditStreamPublisher stream,
+                       SecurityEventFeed feed, AuditProperties auditProps, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sequencer = sequencer;
+        this.chainLock = chainLock;
+        this.spool = spool;
+        this.quarantine = quarantine;
+        this.rollups = rollups;
+        this.activity = activity;
+        this.stream = stream;
+        this.feed = feed;
+        this.props = auditProps.writer();
+        this.spoolWatermark = props.spoolWatermark();
+        this.buffer = new ArrayBlockingQueue<>(props.capacity());
+
+        Gauge.builder("identity.audit.queue.depth", buffer, BlockingQueue::size)
+            .description("Audit events waiting to be persisted")
+            .register(registry);
+        this.droppedCounter = Counter.builder("identity.audit.dropped")
+            .description("Audit events dropped because the buffer stayed full")
+            .register(registry);
+        this.writeFailureCounter = Counter.builder("identity.audit.write.failures")
+            .description("Audit events lost: batch insert failed and could not be spooled")
+            .register(registry);
+        this.forkCounter = Counter.builder("identity.audit.chain.forks")
+            .description("Audit batches refused because their seqs were already stored by another writer")
+            .register(registry);
+        this.batchSizeSummary = DistributionSummary.builder("identity.audit.batch.size")
+            .description("Rows per audit batch insert")
+            .register(registry);
+        this.flushLatencyTimer = Timer.builder("identity.audit.flush.latency")
+            .description("Audit batch insert latency")
+            .register(registry);
+    }
+
+    /**
+     * Hand an audit record to the writer. Waits up to offer-timeout for buffer space.
+     *
+     * @return false if the record was dropped
+     */
+    public boolean enqueue(AuditRecord record) {
+        if (!accepting) {
+            droppedCounter.increment();
+            log.warn("Audit writer not accepting events, dropped: type={}", record.eventType());
+            return false;
+        }
+        try {
+            if (buffer.offer(record, props.offerTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                feed.offer(record);
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedCounter.increment();
+        log.warn("Audit buffer full, dropped: type={}", record.eventType());
+        return false;
+    }
+
+    @Override
+    public void start() {
+        spool.open();
+        // With the stream transport the chain belongs to the lease holder's AuditStreamConsumer
+        if (!stream.isEnabled()) {
+            // Fails startup if another instance already sequences the chain
+            chainLock.acquire();
+            resumeChain();
+        }
+        accepting = true;
+        running = true;
+        writerThread = new Thread(this::drainLoop, "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Audit writer started: capacity={}, batchSize={}, flushIntervalMs={}",
+            props.capacity(), props.batchSize(), props.flushIntervalMs());
+    }
+
+    /**
+     * Stop accepting events, then drain whatever is buffered before returning.
+     */
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        try {
+            writerThread.join(props.shutdownTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            log.error("Audit writer shutdown timed out with {} events still buffered", buffer.size());
+        }
+        chainLock.release();
+        spool.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Reload the chain head from the database, or from the spool when unreplayed events are ahead of it.
+     */
+    private void resumeChain() {
+        sequencer.resume();
+        SequencedAuditRecord spooled = spool.lastAppended();
+        if (spooled != null && spooled.seq() > sequencer.lastSeq()) {
+            sequencer.resumeFrom(spooled.seq(), spooled.chainHash());
+            log.info("Audit chain resumed from spool: seq={}", spooled.seq());
+        }
+    }
+
+    private void drainLoop() {
+        List<AuditRecord> batch = new ArrayList<>(props.batchSize());
+        List<SequencedAuditRecord> sequenced = new ArrayList<>(props.batchSize());
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(props.flushIntervalMs());
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                AuditRecord first = buffer.poll(props.flushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Fill the batch until it is full or the flush interval elapses
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < props.batchSize()) {
+                    buffer.drainTo(batch, props.batchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= props.batchSize() || remaining <= 0 || !running) {
+                        break;
+                    }
+                    AuditRecord next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (stream.isEnabled()) {
+                    publish(batch);
+                    continue;
+                }
+                if (!holdsChain(batch.size())) {
+                    continue;
+                }
+                long headSeq = sequencer.lastSeq();
+                String headHash = sequencer.lastHash();
+                for (AuditRecord record : batch) {
+                    sequenced.add(sequencer.next(record));
+                }
+                for (SequencedAuditRecord kept : persist(sequenced, headSeq, headHash)) {
+                    rollups.record(kept.record());
+                }
+            } catch (InterruptedException e) {
+                // Shutdown is signalled via the running flag; keep draining
+                Thread.interrupted();
+            } catch (RuntimeException e) {
+                log.error("Unexpected audit writer failure", e);
+            } finally {
+                batch.clear();
+                sequenced.clear();
+            }
+        }
+        log.info("Audit writer drained and stopped");
+    }
+
+    /**
+     * Confirm this instance still sequences the chain before the batch takes seqs. A batch is
+     * dropped and counted rather than sequenced while another instance holds the chain lock.
+     */
+    private boolean holdsChain(int size) {
+        switch (chainLock.check()) {
+            case LOST -> {
+                writeFailureCounter.increment(size);
+                log.error("Audit batch dropped, another instance holds the audit chain lock: size={}", size);
+                return false;
+            }
+            case REACQUIRED -> resumeChain();
+            default -> { }
+        }
+        return true;
+    }
+
+    /**
+     * Hand the batch to the Redis stream, retrying while Redis is unavailable. Meanwhile the
+     * buffer fills and producers see the usual back-pressure. Gives up only at shutdown.
+     */
+    private void publish(List<AuditRecord> batch) {
+        while (true) {
+            try {
+                stream.publish(batch);
+                return;
+            } catch (DataAccessException e) {
+                if (!running) {
+                    writeFailureCounter.increment(batch.size());
+                    log.error("Audit batch lost at shutdown, Redis unavailable: size={}", batch.size(), e);
+                    return;
+                }
+                log.warn("Failed to publish audit batch, retrying: size={}", batch.size(), e);
+            }
+            try {
+                Thread.sleep(props.flushIntervalMs());
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Insert the batch, or spool it if Postgres is failing, slow, or still catching up.
+     * Leaves the chain head at the last row kept; headSeq and headHash precede the batch.
+     *
+     * @return the rows inserted or spooled, empty if the batch was lost
+     */
+    private List<SequencedAuditRecord> persist(List<SequencedAuditRecord> batch, long headSeq, String headHash) {
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        batchSizeSummary.record(batch.size());
+        // Preserve seq order: nothing goes straight to Postgres until the spool is drained
+        if (spool.hasBacklog() || buffer.size() >= spoolWatermark) {
+            return spool(batch, headSeq, headHash);
+        }
+        try {
+            insert(batch);
+            return batch;
+        } catch (AuditSequencer.ChainForkException e) {
+            return forked(batch, e);
+        } catch (DataAccessException e) {
+            if (isTransient(e)) {
+                log.error("Failed to write audit batch, spooling: size={}", batch.size(), e);
+                return spool(batch, headSeq, headHash);
+            }
+            log.warn("Audit batch rejected, retrying row by row: size={}", batch.size(), e);
+            return insertEachRow(batch, headSeq, headHash);
+        }
+    }
+
+    /**
+     * Insert the batch in one transaction, after checking no other writer has stored its seqs.
+     */
+    private void insert(List<SequencedAuditRecord> batch) {
+        Timer.Sample sample = Timer.start();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                sequencer.checkUnforked(batch);
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), AuditWriter::bind);
+            });
+        } finally {
+            sample.stop(flushLatencyTimer);
+        }
+        // Committed: readers now see these rows. Spooled rows are reported on replay
+        for (SequencedAuditRecord sequenced : batch) {
+            activity.recordWritten(sequenced.record());
+        }
+    }
+
+    /**
+     * Insert a rejected batch one row per transaction, so only the rows Postgres rejects are quarantined.
+     * Rows are re-sequenced from the batch's predecessor as they go: a rejected event takes no
+     * seq and leaves no hole in the chain. After a transient failure the remaining rows are spooled.
+     */
+    private List<SequencedAuditRecord> insertEachRow(List<SequencedAuditRecord> batch,
+                                                     long headSeq, String headHash) {
+        List<SequencedAuditRecord> kept = new ArrayList<>(batch.size());
+        sequencer.resumeFrom(headSeq, headHash);
+        for (int i = 0; i < batch.size(); i++) {
+            long previousSeq = sequencer.lastSeq();
+            String previousHash = sequencer.lastHash();
+            SequencedAuditRecord row = sequencer.next(batch.get(i).record());
+            try {
+                insert(List.of(row));
+                kept.add(row);
+            } catch (AuditSequencer.ChainForkException e) {
+                forked(batch.subList(i, batch.size()), e);
+                return kept;
+            } catch (DataAccessException e) {
+                if (isTransient(e)) {
+                    List<SequencedAuditRecord> rest = new ArrayList<>(batch.size() - i);
+                    rest.add(row);
+                    for (int j = i + 1; j < batch.size(); j++) {
+                        rest.add(sequencer.next(batch.get(j).record()));
+                    }
+                    log.error("Failed to write audit rows, spooling: size={}", rest.size(), e);
+                    kept.addAll(spool(rest, previousSeq, previousHash));
+                    return kept;
+                }
+                sequencer.resumeFrom(previousSeq, previousHash);
+                quarantine.add(row.record(), null, null, e);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Another writer stored these seqs first. The rows are not written over its chain: they are
+     * counted as lost and the chain head is reloaded from the database.
+     */
+    private List<SequencedAuditRecord> forked(List<SequencedAuditRecord> lost, AuditSequencer.ChainForkException e) {
+        forkCounter.increment();
+        writeFailureCounter.increment(lost.size());
+        log.error("Audit batch dropped, chain forked by another writer: size={}", lost.size(), e);
+        resumeChain();
+        return List.of();
+    }
+
+    /**
+     * Spool the batch; if that fails too, it is lost and the chain head rewinds to headSeq.
+     */
+    private List<SequencedAuditRecord> spool(List<SequencedAuditRecord> batch, long headSeq, String headHash) {
+        if (spool.append(batch)) {
+            return batch;
+        }
+        writeFailureCounter.increment(batch.size());
+        log.error("Audit batch lost: size={}, seq={}..{}",
+            batch.size(), batch.get(0).seq(), batch.get(batch.size() - 1).seq());
+        sequencer.resumeFrom(headSeq, headHash);
+        return List.of();
+    }
+
+    /**
+     * Whether a failed insert may succeed when retried unchanged. Only Postgres rejecting the
+     * data itself is permanent: SQLState class 22 (data exception) or 23 (integrity constraint
+     * violation). Connection loss (class 08) and everything else are treated as transient.
+     */
+    static boolean isTransient(DataAccessException e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return false;
+        }
+        // A batch failure carries the row's error as its next exception; sqlState looks there too
+        String state = AuditQuarantine.sqlState(e);
+        return !state.startsWith("22") && !state.startsWith("23");
+    }
+
+    static void bind(PreparedStatement ps, SequencedAuditRecord sequenced) throws SQLException {
+        AuditRecord record = sequenced.record();
+        ps.setShort(1, record.eventType().code());
+        ps.setObject(2, record.userId());
+        ps.setString(3, record.requestId());
+        ps.setString(4, AuditColumnCodec.inet(record.ipAddress()));
+        ps.setString(5, AuditColumnCodec.ipRaw(record.ipAddress()));
+        ps.setBytes(6, AuditColumnCodec.fingerprint(record.deviceFingerprintHash()));
+        ps.setString(7, AuditColumnCodec.fingerprintRaw(record.deviceFingerprintHash()));
+        if (record.details() != null) {
+            ps.setString(8, record.details());
+        } else {
+            ps.setNull(8, Types.VARCHAR);
+        }
+        ps.setObject(9, OffsetDateTime.ofInstant(record.createdAt(), ZoneOffset.UTC));
+        ps.setLong(10, sequenced.seq());
+        ps.setString(11, sequenced.chainHash());
+        ps.setInt(12, record.occurrenceCount());
+        ps.setObject(13, record.firstSeenAt() != null
+            ? OffsetDateTime.ofInstant(record.firstSeenAt(), ZoneOffset.UTC) : null, Types.TIMESTAMP_WITH_TIMEZONE);
+    }
+}
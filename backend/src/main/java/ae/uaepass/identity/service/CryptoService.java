@@ -1,25 +1,54 @@
 package ae.uaepass.identity.service;
 
 import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.security.CryptoProviders;
+import ae.uaepass.identity.security.RandomSource;
+import ae.uaepass.identity.security.SecretsProvider;
+import ae.uaepass.identity.util.CryptoPrimitives;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HexFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 
 /**
  * Cryptographic utility service.
  * 
  * SECURITY DECISIONS:
- * - SHA-256 for identifier hashing (with app salt): irreversible lookup keys
+ * - SHA-256 for identifier hashing (with app salt): irreversible lookup keys, kept as the raw
+ *   32 bytes (bytea columns, V14)
  * - AES-256-GCM for PII encryption: authenticated encryption with unique IV per operation
- * - All keys/salts from environment variables, never hardcoded
+ * - Ciphertexts name their key: "k{id}:" + Base64(IV || ciphertext || tag), the prefix bound
+ *   in as GCM associated data so it cannot be swapped. Decryption picks the key from the ring
+ *   by id; unprefixed (pre-versioning) values are key 1 without associated data
+ * - Per-user data keys (UserDataKeyService) are stored wrapped, i.e. encrypted like any PII value
+ *   under the active key; values under a data key are "u:" + Base64(IV || ciphertext || tag)
+ * - All keys/salts from environment variables, never hardcoded; every ring key, rotated ones
+ *   included, is resolved through SecretsProvider so a Vault/KMS provider serves them all
  * - Uses java.security and javax.crypto only — no custom crypto
+ *
+ * DESIGN DECISIONS:
+ * - JCA instances are per thread (CryptoPrimitives), from the providers CryptoProviders selected,
+ *   and the AES key specs are built once;
+ *   the salt prefix is hashed once at startup and its digest state cloned per hash
+ * - Key rotation is online: add the new key to the ring, make it active, and
+ *   PiiReencryptionJob re-wraps the data keys; drop the old key once it reports done
+ * - Bulk variants (encryptAll, decryptAll, hashAll) for back-office jobs split a list into
+ *   chunks on a dedicated pool, one worker per core, so they cannot starve the common pool;
+ *   each worker reuses its thread's Cipher/MessageDigest, results keep the input order
  */
 @Service
 public class CryptoService {
@@ -28,34 +57,66 @@ public class CryptoService {
     private static final int GCM_TAG_LENGTH = 128; // bits
     private static final int GCM_IV_LENGTH = 12;   // bytes
 
-    private final String hashSalt;
-    private final byte[] aesKeyBytes;
-    private final SecureRandom secureRandom;
+    static final int LEGACY_KEY_ID = 1;
+    static final String DATA_KEY_PREFIX = "u:";
+    private static final byte[] DATA_KEY_AAD = DATA_KEY_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int DATA_KEY_LENGTH = 32; // bytes
 
-    public CryptoService(AppSecurityProperties securityProps) {
-        this.hashSalt = securityProps.crypto().hashSalt();
-        this.aesKeyBytes = Base64.getDecoder().decode(securityProps.crypto().aesKey());
-        this.secureRandom = new SecureRandom();
+    // Values per bulk task: a few ms of work, so fork/join overhead stays negligible
+    static final int BULK_CHUNK = 2048;
 
+    private final MessageDigest saltedDigest;
+    private final Map<Integer, SecretKeySpec> keyRing;
+    private final int activeKeyId;
+    private final String activePrefix;
+    private final byte[] activeAad;
+    private final RandomSource randomSource;
+    // From the provider CryptoProviders selected for AES-GCM
+    private final ThreadLocal<Cipher> cipher;
+    private final ForkJoinPool bulkPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    public CryptoService(AppSecurityProperties securityProps, SecretsProvider secretsProvider,
+                         RandomSource randomSource, CryptoProviders cryptoProviders) {
+        AppSecurityProperties.CryptoProperties crypto = securityProps.crypto();
+        this.randomSource = randomSource;
+        this.cipher = CryptoPrimitives.cipher(AES_ALGORITHM, cryptoProviders.aesGcm());
+
+        Map<Integer, SecretKeySpec> ring = new HashMap<>();
+        ring.put(LEGACY_KEY_ID, aesKey(LEGACY_KEY_ID, secretsProvider.getEncryptionKey(LEGACY_KEY_ID)));
+        for (int id : secretsProvider.getEncryptionKeyIds()) {
+            if (id != LEGACY_KEY_ID) {
+                ring.put(id, aesKey(id, secretsProvider.getEncryptionKey(id)));
+            }
+        }
+        this.keyRing = Map.copyOf(ring);
+        this.activeKeyId = crypto.activeKeyId();
+        if (!keyRing.containsKey(activeKeyId)) {
+            throw new IllegalStateException("Active PII key id " + activeKeyId + " is not in the key ring");
+        }
+        this.activePrefix = prefix(activeKeyId);
+        this.activeAad = activePrefix.getBytes(StandardCharsets.US_ASCII);
+        // UTF-8 of salt + ":" + plaintext is the prefix bytes followed by the plaintext bytes
+        this.saltedDigest = CryptoPrimitives.prefixed((crypto.hashSalt() + ":").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SecretKeySpec aesKey(int id, String base64) {
+        if (base64 == null) {
+            throw new IllegalStateException("AES key " + id + " is not available from the secrets provider");
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(base64);
         // Validate AES key length on startup
-        if (this.aesKeyBytes.length != 32) {
-            throw new IllegalStateException("AES key must be exactly 32 bytes (256 bits), got " + this.aesKeyBytes.length);
+        if (keyBytes.length != 32) {
+            throw new IllegalStateException("AES key " + id + " must be exactly 32 bytes (256 bits), got " + keyBytes.length);
         }
+        return new SecretKeySpec(keyBytes, "AES");
     }
 
     /**
-     * SHA-256 hash with application salt.
+     * SHA-256 hash with application salt, as the raw 32 bytes.
      * Used for: Emirates ID, email, phone number — creating irreversible lookup keys.
      */
-    public String hash(String plaintext) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            String salted = hashSalt + ":" + plaintext;
-            byte[] hashBytes = digest.digest(salted.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hashBytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Hashing failed", e);
-        }
+    public byte[] hash(String plaintext) {
+        return CryptoPrimitives.digestAfter(saltedDigest, plaintext.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -63,62 +124,138 @@ public class CryptoService {
      * Used for: OTP hashing (ephemeral, no need for persistent salt).
      */
     public String hashRaw(String plaintext) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(plaintext.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hashBytes);
-        } catch (Exception e) {
-            throw new RuntimeException("Hashing failed", e);
-        }
+        return CryptoPrimitives.hex(CryptoPrimitives.sha256(plaintext.getBytes(StandardCharsets.UTF_8)));
     }
 
     /**
-     * AES-256-GCM encryption.
+     * AES-256-GCM encryption with the active key.
      * Used for: full name and other PII fields that need to be decrypted.
-     * Returns: Base64(IV || ciphertext || GCM tag)
+     * Returns: "k{id}:" + Base64(IV || ciphertext || GCM tag)
      */
     public String encrypt(String plaintext) {
+        return seal(keyRing.get(activeKeyId), activePrefix, activeAad, plaintext);
+    }
+
+    /**
+     * AES-256-GCM decryption with the key the ciphertext names.
+     * Input: "k{id}:" + Base64(IV || ciphertext || GCM tag), or the unprefixed legacy form
+     */
+    public String decrypt(String encrypted) {
+        SecretKeySpec key;
         try {
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            secureRandom.nextBytes(iv);
+            key = ringKey(keyId(encrypted));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Decryption failed", e);
+        }
+        return open(key, encrypted, encrypted.indexOf(':') + 1);
+    }
+
+    private SecretKeySpec ringKey(int keyId) {
+        SecretKeySpec key = keyRing.get(keyId);
+        if (key == null) {
+            throw new IllegalStateException("PII key " + keyId + " is not in the key ring");
+        }
+        return key;
+    }
 
-            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
-            SecretKeySpec keySpec = new SecretKeySpec(aesKeyBytes, "AES");
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, keySpec, gcmSpec);
+    /**
+     * AES-256-GCM encryption under a user's data key.
+     * Returns: "u:" + Base64(IV || ciphertext || GCM tag)
+     */
+    public String encrypt(String plaintext, SecretKey dataKey) {
+        return seal(dataKey, DATA_KEY_PREFIX, DATA_KEY_AAD, plaintext);
+    }
+
+    /**
+     * AES-256-GCM decryption of a "u:" value under the user's data key.
+     */
+    public String decrypt(String encrypted, SecretKey dataKey) {
+        if (!isDataKeyed(encrypted)) {
+            throw new IllegalArgumentException("Not encrypted under a data key");
+        }
+        return open(dataKey, encrypted, DATA_KEY_PREFIX.length());
+    }
+
+    /**
+     * True for values encrypted under a per-user data key, false for values under a ring key.
+     */
+    public static boolean isDataKeyed(String encrypted) {
+        return encrypted.startsWith(DATA_KEY_PREFIX);
+    }
 
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+    /**
+     * A fresh 256-bit data key from the DRBG.
+     */
+    public SecretKey newDataKey() {
+        byte[] key = new byte[DATA_KEY_LENGTH];
+        randomSource.nextBytes(key);
+        return new SecretKeySpec(key, "AES");
+    }
+
+    /**
+     * The data key encrypted under the active ring key. A wrapped key is an ordinary "k{id}:"
+     * ciphertext, so {@link #reencrypt} re-wraps it after a rotation.
+     */
+    public String wrapKey(SecretKey dataKey) {
+        return encrypt(Base64.getEncoder().encodeToString(dataKey.getEncoded()));
+    }
 
-            // Prepend IV to ciphertext
-            byte[] combined = new byte[iv.length + ciphertext.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(ciphertext, 0, combined, iv.length, ciphertext.length);
+    public SecretKey unwrapKey(String wrapped) {
+        byte[] key = Base64.getDecoder().decode(decrypt(wrapped));
+        if (key.length != DATA_KEY_LENGTH) {
+            throw new IllegalStateException("Wrapped data key has " + key.length + " bytes");
+        }
+        return new SecretKeySpec(key, "AES");
+    }
 
-            return Base64.getEncoder().encodeToString(combined);
+    /**
+     * The ciphertext under the active key: unchanged if it already is, else decrypted and re-encrypted.
+     */
+    public String reencrypt(String encrypted) {
+        return isCurrent(encrypted) ? encrypted : encrypt(decrypt(encrypted));
+    }
+
+    public boolean isCurrent(String encrypted) {
+        return encrypted.startsWith(activePrefix);
+    }
+
+    public int activeKeyId() {
+        return activeKeyId;
+    }
+
+    private String seal(SecretKey key, String prefix, byte[] aad, String plaintext) {
+        try {
+            byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+            Cipher cipher = this.cipher.get();
+            // IV, ciphertext and tag are written into one buffer: IV first, cipher output after it
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            randomSource.nextBytes(iv);
+            byte[] combined = new byte[GCM_IV_LENGTH + input.length + GCM_TAG_LENGTH / 8];
+            System.arraycopy(iv, 0, combined, 0, GCM_IV_LENGTH);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            cipher.updateAAD(aad);
+            cipher.doFinal(input, 0, input.length, combined, GCM_IV_LENGTH);
+
+            return prefix + Base64.getEncoder().encodeToString(combined);
         } catch (Exception e) {
             throw new RuntimeException("Encryption failed", e);
         }
     }
 
     /**
-     * AES-256-GCM decryption.
-     * Input: Base64(IV || ciphertext || GCM tag)
+     * Opens prefix (bound as associated data, if any) + Base64(IV || ciphertext || tag).
      */
-    public String decrypt(String encryptedBase64) {
+    private String open(SecretKey key, String encrypted, int prefixLength) {
         try {
-            byte[] combined = Base64.getDecoder().decode(encryptedBase64);
-
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            byte[] ciphertext = new byte[combined.length - GCM_IV_LENGTH];
-            System.arraycopy(combined, 0, iv, 0, iv.length);
-            System.arraycopy(combined, iv.length, ciphertext, 0, ciphertext.length);
+            byte[] combined = Base64.getDecoder().decode(encrypted.substring(prefixLength));
 
-            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
-            SecretKeySpec keySpec = new SecretKeySpec(aesKeyBytes, "AES");
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, keySpec, gcmSpec);
+            Cipher cipher = this.cipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, combined, 0, GCM_IV_LENGTH));
+            if (prefixLength > 0) {
+                cipher.updateAAD(encrypted.substring(0, prefixLength).getBytes(StandardCharsets.US_ASCII));
+            }
 
-            byte[] plaintext = cipher.doFinal(ciphertext);
+            byte[] plaintext = cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH);
             return new String(plaintext, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException("Decryption failed", e);
@@ -126,14 +263,107 @@ public class CryptoService {
     }
 
     /**
-     * Generate OTP of specified length using SecureRandom.
-     * SECURITY: Uses SecureRandom, not Math.random().
+     * Prefix of ciphertexts under the key, e.g. "k2:". Base64 has no ':', so legacy values never match.
      */
-    public String generateOtp(int length) {
-        StringBuilder otp = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            otp.append(secureRandom.nextInt(10));
+    public static String prefix(int keyId) {
+        return "k" + keyId + ":";
+    }
+
+    /**
+     * Key id a ciphertext was written with.
+     *
+     * @throws IllegalArgumentException for a malformed key prefix
+     */
+    static int keyId(String encrypted) {
+        int colon = encrypted.indexOf(':');
+        if (colon < 0) {
+            return LEGACY_KEY_ID;
         }
-        return otp.toString();
+        if (colon < 2 || encrypted.charAt(0) != 'k') {
+            throw new IllegalArgumentException("Malformed ciphertext key prefix");
+        }
+        return Integer.parseInt(encrypted, 1, colon, 10);
+    }
+
+    /**
+     * {@link #encrypt(String)} for every value, in parallel; results in input order.
+     */
+    public List<String> encryptAll(List<String> plaintexts) {
+        return bulk(plaintexts, this::encrypt);
+    }
+
+    /**
+     * {@link #decrypt(String)} for every value, in parallel; results in input order.
+     * Fails as a whole if any value fails to decrypt.
+     */
+    public List<String> decryptAll(List<String> encrypted) {
+        return bulk(encrypted, this::decrypt);
+    }
+
+    /**
+     * {@link #hash(String)} for every value, in parallel; results in input order.
+     */
+    public List<byte[]> hashAll(List<String> plaintexts) {
+        return bulk(plaintexts, this::hash);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        bulkPool.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> List<R> bulk(List<String> inputs, Function<String, R> operation) {
+        Object[] values = inputs.toArray(); // Indexed access whatever the list type
+        Object[] results = new Object[values.length];
+        BulkRange all = new BulkRange(values, results, operation, 0, values.length);
+        // Inline when one chunk or one core: the pool would only add a thread hand-off
+        if (values.length <= BULK_CHUNK || bulkPool.getParallelism() == 1) {
+            all.compute();
+        } else {
+            bulkPool.invoke(all);
+        }
+        return (List<R>) Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Applies the operation to values[from, to), writing each result at its input index.
+     */
+    private static final class BulkRange extends RecursiveAction {
+
+        private final Object[] values;
+        private final Object[] results;
+        private final Function<String, ?> operation;
+        private final int from;
+        private final int to;
+
+        BulkRange(Object[] values, Object[] results, Function<String, ?> operation, int from, int to) {
+            this.values = values;
+            this.results = results;
+            this.operation = operation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BULK_CHUNK) {
+                for (int i = from; i < to; i++) {
+                    results[i] = operation.apply((String) values[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BulkRange(values, results, operation, from, mid),
+                      new BulkRange(values, results, operation, mid, to));
+        }
+    }
+
+    /**
+     * Generate OTP of specified length from the DRBG (RandomSource).
+     * SECURITY: Uniform digits from one batch of random bytes, not Math.random().
+     */
+    public String generateOtp(int length) {
+        return randomSource.digits(length);
     }
 }
@@ -3,13 +3,12 @@ package ae.uaepass.identity.service;
 import ae.uaepass.identity.entity.DeviceSession;
 import ae.uaepass.identity.entity.TrustLevel;
 import ae.uaepass.identity.repository.DeviceSessionRepository;
+import ae.uaepass.identity.util.CryptoPrimitives;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -19,7 +18,8 @@ import java.util.UUID;
  * Device fingerprint computation and session tracking.
  *
  * Fingerprint = SHA-256(User-Agent + Accept-Language + IP prefix)
- * Only the hash is stored — never the raw composite.
+ * Only the hash is stored — never the raw composite. device_sessions keeps the raw 32 bytes;
+ * audit and risk records carry the hex text.
  */
 @Service
 public class DeviceFingerprintService {
@@ -31,9 +31,16 @@ public class DeviceFingerprintService {
     }
 
     /**
-     * Compute device fingerprint hash from request headers.
+     * Compute device fingerprint hash from request headers, as hex.
      */
     public String computeFingerprint(HttpServletRequest request) {
+        return CryptoPrimitives.hex(fingerprintHash(request));
+    }
+
+    /**
+     * Compute device fingerprint hash from request headers, as the raw 32 bytes.
+     */
+    public byte[] fingerprintHash(HttpServletRequest request) {
         String userAgent = request.getHeader("User-Agent");
         String acceptLang = request.getHeader("Accept-Language");
         String screenHint = request.getHeader("X-Screen-Resolution"); // Custom header from frontend
@@ -44,7 +51,7 @@ public class DeviceFingerprintService {
             + "|" + normalize(screenHint)
             + "|" + normalize(timezoneHint);
 
-        return sha256(composite);
+        return CryptoPrimitives.sha256(composite.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -53,7 +60,7 @@ public class DeviceFingerprintService {
      */
     @Transactional
     public boolean trackDevice(UUID userId, HttpServletRequest request) {
-        String fingerprint = computeFingerprint(request);
+        byte[] fingerprint = fingerprintHash(request);
         String userAgent = request.getHeader("User-Agent");
         String ip = extractClientIp(request);
 
@@ -126,18 +133,4 @@ public class DeviceFingerprintService {
         if (ua == null) return null;
         return ua.length() > 500 ? ua.substring(0, 500) : ua;
     }
-
-    private String sha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hash) {
-                hex.append(String.format("%02x", b));
-            }
-            return hex.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
-        }
-    }
 }
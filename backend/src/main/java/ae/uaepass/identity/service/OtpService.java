@@ -12,7 +12,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -69,7 +68,7 @@ public class OtpService {
             user.setStatus(UserStatus.LOCKED);
             userRepository.save(user);
             auditService.logEvent(AuditEventType.ACCOUNT_LOCKED, userId, request,
-                Map.of("reason", "max_otp_cycles_exceeded"));
+                new AuditDetails.Reason("max_otp_cycles_exceeded"));
             throw new SecurityException("Account locked due to too many failed OTP attempts");
         }
 
@@ -101,7 +100,7 @@ public class OtpService {
         userRepository.save(user);
 
         auditService.logEvent(AuditEventType.OTP_SENT, userId, request,
-            Map.of("channel", channel.name()));
+            new AuditDetails.OtpSent(channel.name()));
 
         // SECURITY: Return plaintext OTP only for notification delivery.
         // It must NOT be logged or stored anywhere else.
@@ -123,14 +122,14 @@ public class OtpService {
         // Check max attempts
         if (challenge.isMaxAttemptsReached()) {
             auditService.logEvent(AuditEventType.OTP_FAILED, userId, request,
-                Map.of("reason", "max_attempts_reached"));
+                new AuditDetails.Reason("max_attempts_reached"));
             throw new IllegalStateException("Maximum OTP attempts exceeded. Please request a new OTP.");
         }
 
         // Check expiry
         if (challenge.isExpired()) {
             auditService.logEvent(AuditEventType.OTP_FAILED, userId, request,
-                Map.of("reason", "expired"));
+                new AuditDetails.Reason("expired"));
             throw new IllegalStateException("OTP has expired. Please request a new OTP.");
         }
 
@@ -154,7 +153,7 @@ public class OtpService {
             // Failure: increment attempt counter
             otpChallengeRepository.save(challenge);
             auditService.logEvent(AuditEventType.OTP_FAILED, userId, request,
-                Map.of("attemptsUsed", challenge.getAttempts(), "maxAttempts", challenge.getMaxAttempts()));
+                new AuditDetails.OtpAttempts(challenge.getAttempts(), challenge.getMaxAttempts()));
             return false;
         }
     }
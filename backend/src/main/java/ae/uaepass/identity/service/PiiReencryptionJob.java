@@ -0,0 +1,406 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.SecretKey;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Online PII key rotation: brings every user onto a data key wrapped under the active key.
+ *
+ * Per user that means re-wrapping a data key still wrapped under an older key (see CryptoService),
+ * and moving a users.full_name_enc written before data keys existed onto the user's data key
+ * (UserDataKeyService), creating the key if needed.
+ *
+ * The users.id space is split into 16 segments by first hex digit. Workers take pending segments
+ * and walk each in keyset batches over the primary key, selecting only users with work left.
+ * A batch is written in one transaction together with the segment's cursor
+ * (pii_reencryption_progress, V12), so a restart resumes where it stopped and a change of active
+ * key restarts every segment.
+ *
+ * Throttling, so a rotation over tens of millions of rows never competes with logins:
+ * - A row budget (max-rows-per-second) shared by all workers
+ * - Workers wait while requests are queueing for a pool connection
+ * - A batch slower than max-batch-ms means the database is busy; the worker pauses as long again
+ *
+ * SECURITY:
+ * - Plaintext exists only in memory for the duration of one row's re-encryption
+ * - Rows are updated compare-and-set on the old ciphertext: a value rewritten by the
+ *   application meanwhile (already under the data key) is left alone
+ * - A value is moved onto a data key only in the transaction that stores that key; if the key
+ *   insert loses to another writer the value stays as it is until the next run
+ * - Shredded users (shredded_users, V18) are skipped and never given a new data key, so the job
+ *   cannot undo an erasure
+ *
+ * DESIGN DECISIONS:
+ * - The session advisory lock (as AuditPartitionManager) gives one rotating instance at a time
+ * - A row that cannot be decrypted is skipped and counted, and its segment rescanned next run
+ *   instead of being marked complete; the old key must stay in the ring until the job is done.
+ *   A skip anywhere in the walk counts, not only in its last batch: the segment's had_failures
+ *   flag (V15) carries it from batch to batch and across restarts
+ */
+@Service
+public class PiiReencryptionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(PiiReencryptionJob.class);
+
+    static final int SEGMENTS = 16;
+    private static final long LOCK_KEY = 0x5049494b4559L; // "PIIKEY"
+
+    private static final String INIT_SQL =
+        "INSERT INTO pii_reencryption_progress (segment, key_id) VALUES (?, ?) " +
+        "ON CONFLICT (segment) DO UPDATE SET key_id = EXCLUDED.key_id, last_id = NULL, rows_reencrypted = 0, " +
+        "  had_failures = FALSE, completed_at = NULL, updated_at = NOW() " +
+        "WHERE pii_reencryption_progress.key_id <> EXCLUDED.key_id";
+
+    private static final String PENDING_SQL =
+        "SELECT segment, last_id, had_failures FROM pii_reencryption_progress " +
+        "WHERE key_id = ? AND completed_at IS NULL ORDER BY segment";
+
+    private static final String BATCH_SELECT =
+        "SELECT u.id, u.full_name_enc, k.wrapped_key FROM users u " +
+        "LEFT JOIN user_data_keys k ON k.user_id = u.id ";
+
+    private static final String BATCH_WORK_LEFT =
+        "AND NOT EXISTS (SELECT 1 FROM shredded_users s WHERE s.user_id = u.id) " +
+        "AND ((u.full_name_enc IS NOT NULL AND u.full_name_enc NOT LIKE '" + CryptoService.DATA_KEY_PREFIX + "%') " +
+        "  OR k.wrapped_key NOT LIKE ?) " +
+        "ORDER BY u.id LIMIT ?";
+
+    private static final String FIRST_BATCH_SQL =
+        BATCH_SELECT + "WHERE u.id >= ? AND u.id <= ? " + BATCH_WORK_LEFT;
+
+    private static final String NEXT_BATCH_SQL =
+        BATCH_SELECT + "WHERE u.id > ? AND u.id <= ? " + BATCH_WORK_LEFT;
+
+    private static final String INSERT_KEY_SQL =
+        "INSERT INTO user_data_keys (user_id, wrapped_key) " +
+        "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM shredded_users WHERE user_id = ?) " +
+        "ON CONFLICT (user_id) DO NOTHING";
+
+    private static final String REWRAP_SQL =
+        "UPDATE user_data_keys SET wrapped_key = ? WHERE user_id = ? AND wrapped_key = ?";
+
+    private static final String UPDATE_SQL =
+        "UPDATE users SET full_name_enc = ? WHERE id = ? AND full_name_enc = ?";
+
+    private static final String PROGRESS_SQL =
+        "UPDATE pii_reencryption_progress SET last_id = ?, rows_reencrypted = rows_reencrypted + ?, " +
+        "  had_failures = ?, completed_at = CASE WHEN ? THEN NOW() END, updated_at = NOW() " +
+        "WHERE segment = ? AND key_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CryptoService cryptoService;
+    private final AppSecurityProperties.ReencryptionProperties props;
+    private final HikariDataSource pool;
+    private final Bucket rowBudget;
+    private final AtomicInteger pendingSegments = new AtomicInteger();
+    private final Counter reencryptedCounter;
+    private final Counter conflictCounter;
+    private final Counter failureCounter;
+    private final Counter throttledCounter;
+
+    private volatile boolean stopping;
+
+    public PiiReencryptionJob(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              DataSource dataSource, CryptoService cryptoService,
+                              AppSecurityProperties securityProps, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cryptoService = cryptoService;
+        this.props = securityProps.reencryption();
+        this.pool = hikari(dataSource);
+        this.rowBudget = Bucket.builder()
+            .addLimit(Bandwidth.builder()
+                .capacity(props.maxRowsPerSecond())
+                .refillGreedy(props.maxRowsPerSecond(), Duration.ofSeconds(1))
+                .build())
+            .build();
+
+        Gauge.builder("identity.crypto.reencrypt.pending.segments", pendingSegments, AtomicInteger::get)
+            .description("users.id segments with data keys or PII not yet under the active PII key")
+            .register(registry);
+        this.reencryptedCounter = Counter.builder("identity.crypto.reencrypted")
+            .description("Data keys created or re-wrapped, and PII values moved onto data keys")
+            .register(registry);
+        this.conflictCounter = Counter.builder("identity.crypto.reencrypt.conflicts")
+            .description("Rows written by the application during re-encryption, left as written")
+            .register(registry);
+        this.failureCounter = Counter.builder("identity.crypto.reencrypt.failures")
+            .description("PII values that could not be decrypted for re-encryption")
+            .register(registry);
+        this.throttledCounter = Counter.builder("identity.crypto.reencrypt.throttled")
+            .description("Re-encryption pauses because the connection pool or database was busy")
+            .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.reencryption.interval-ms}", initialDelay = 60_000)
+    public void run() {
+        if (!props.enabled()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!AuditPartitionManager.tryLock(connection, LOCK_KEY)) {
+                    log.debug("PII re-encryption running elsewhere, skipping");
+                    return null;
+                }
+                try {
+                    rotate();
+                } finally {
+                    AuditPartitionManager.unlock(connection, LOCK_KEY);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.error("PII re-encryption run failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    private void rotate() {
+        int keyId = cryptoService.activeKeyId();
+        jdbcTemplate.batchUpdate(INIT_SQL, segmentArgs(keyId));
+        List<Segment> pending = jdbcTemplate.query(PENDING_SQL,
+            (rs, rowNum) -> new Segment(rs.getInt("segment"), rs.getObject("last_id", UUID.class),
+                rs.getBoolean("had_failures")), keyId);
+        pendingSegments.set(pending.size());
+        if (pending.isEmpty()) {
+            return;
+        }
+        log.info("PII re-encryption onto key {}: {} segments pending", keyId, pending.size());
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(props.parallelism(), pending.size()),
+            runnable -> new Thread(runnable, "pii-reencrypt-" + threads.incrementAndGet()));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Segment segment : pending) {
+                results.add(workers.submit(() -> walk(segment, keyId)));
+            }
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    // The segment resumes from its last committed batch next run
+                    log.error("PII re-encryption segment failed", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            stopping = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+        }
+        log.info("PII re-encryption onto key {}: {} segments still pending", keyId, pendingSegments.get());
+    }
+
+    private void walk(Segment segment, int keyId) {
+        UUID cursor = segment.lastId();
+        boolean failures = segment.hadFailures();
+        try {
+            while (!stopping) {
+                awaitIdlePool();
+                long start = System.nanoTime();
+                UUID after = cursor;
+                boolean earlierSkips = failures;
+                Batch batch = transactionTemplate.execute(
+                    status -> reencryptBatch(segment.index(), after, keyId, earlierSkips));
+                long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+                failures |= batch.skipped() > 0;
+                if (batch.done()) {
+                    if (!failures) {
+                        pendingSegments.decrementAndGet();
+                    }
+                    return;
+                }
+                cursor = batch.lastId();
+                rowBudget.asBlocking().consume(Math.min(batch.rows(), props.maxRowsPerSecond()));
+                if (elapsedMs > props.maxBatchMs()) {
+                    throttledCounter.increment();
+                    Thread.sleep(elapsedMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One keyset batch of the segment, with the cursor update, in the caller's transaction.
+     *
+     * @param earlierSkips whether an earlier batch of this walk skipped rows
+     */
+    Batch reencryptBatch(int segment, UUID after, int keyId, boolean earlierSkips) {
+        UUID upper = upperBound(segment);
+        List<Object[]> rows = jdbcTemplate.query(after == null ? FIRST_BATCH_SQL : NEXT_BATCH_SQL,
+            (rs, rowNum) -> new Object[] {
+                rs.getObject("id", UUID.class), rs.getString("full_name_enc"), rs.getString("wrapped_key") },
+            after == null ? lowerBound(segment) : after, upper, CryptoService.prefix(keyId) + "%", props.batchSize());
+
+        List<Object[]> keyInserts = new ArrayList<>();
+        List<Object[]> rewraps = new ArrayList<>();
+        // Values moved onto a key inserted in this batch, by index into keyInserts
+        Map<Integer, Object[]> valuesOnNewKeys = new HashMap<>();
+        List<Object[]> values = new ArrayList<>();
+        int skipped = 0;
+        for (Object[] row : rows) {
+            UUID userId = (UUID) row[0];
+            String value = (String) row[1];
+            String wrapped = (String) row[2];
+            try {
+                SecretKey dataKey;
+                if (wrapped == null) {
+                    dataKey = cryptoService.newDataKey();
+                    keyInserts.add(new Object[] { userId, cryptoService.wrapKey(dataKey), userId });
+                } else {
+                    dataKey = cryptoService.unwrapKey(wrapped);
+                    if (!cryptoService.isCurrent(wrapped)) {
+                        rewraps.add(new Object[] { cryptoService.reencrypt(wrapped), userId, wrapped });
+                    }
+                }
+                if (value != null && !CryptoService.isDataKeyed(value)) {
+                    Object[] update = { cryptoService.encrypt(cryptoService.decrypt(value), dataKey), userId, value };
+                    if (wrapped == null) {
+                        valuesOnNewKeys.put(keyInserts.size() - 1, update);
+                    } else {
+                        values.add(update);
+                    }
+                }
+            } catch (RuntimeException e) {
+                skipped++;
+                failureCounter.increment();
+                log.warn("PII of user {} could not be decrypted for re-encryption: {}", userId, e.getMessage());
+            }
+        }
+
+        int conflicts = 0;
+        int written = 0;
+        int[] inserted = batchUpdate(INSERT_KEY_SQL, keyInserts);
+        for (int i = 0; i < inserted.length; i++) {
+            Object[] update = valuesOnNewKeys.get(i);
+            if (inserted[i] > 0) {
+                written++;
+                if (update != null) {
+                    values.add(update);
+                }
+            } else if (update != null) {
+                // Someone else created the key: the value was encrypted under a key that was never stored
+                conflicts++;
+                skipped++;
+            }
+        }
+        for (int count : batchUpdate(REWRAP_SQL, rewraps)) {
+            written += count;
+        }
+        for (int count : batchUpdate(UPDATE_SQL, values)) {
+            written += count;
+        }
+        reencryptedCounter.increment(written);
+        conflictCounter.increment(conflicts + rewraps.size() + values.size() - written);
+
+        boolean done = rows.size() < props.batchSize();
+        UUID lastId = rows.isEmpty() ? after : (UUID) rows.get(rows.size() - 1)[0];
+        // A walk that skipped rows in any batch is never marked complete: at its end the cursor and
+        // the flag reset, so the next run rescans the whole segment
+        boolean failed = earlierSkips || skipped > 0;
+        jdbcTemplate.update(PROGRESS_SQL, done && failed ? null : lastId, written, failed && !done, done && !failed,
+            segment, keyId);
+        return new Batch(rows.size(), lastId, skipped, done);
+    }
+
+    private int[] batchUpdate(String sql, List<Object[]> args) {
+        return args.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    private void awaitIdlePool() throws InterruptedException {
+        while (!stopping && poolBusy()) {
+            throttledCounter.increment();
+            Thread.sleep(props.maxBatchMs());
+        }
+    }
+
+    private boolean poolBusy() {
+        if (pool == null) {
+            return false;
+        }
+        HikariPoolMXBean mx = pool.getHikariPoolMXBean();
+        return mx != null && mx.getThreadsAwaitingConnection() > 0;
+    }
+
+    private static HikariDataSource hikari(DataSource dataSource) {
+        try {
+            return dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)
+                ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static List<Object[]> segmentArgs(int keyId) {
+        List<Object[]> args = new ArrayList<>(SEGMENTS);
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            args.add(new Object[] { segment, keyId });
+        }
+        return args;
+    }
+
+    /**
+     * Smallest id in the segment: first hex digit = segment, the rest zero.
+     */
+    static UUID lowerBound(int segment) {
+        return new UUID((long) segment << 60, 0L);
+    }
+
+    /**
+     * Largest id in the segment: first hex digit = segment, the rest f.
+     */
+    static UUID upperBound(int segment) {
+        return new UUID(((long) segment << 60) | 0x0fffffffffffffffL, -1L);
+    }
+
+    /**
+     * @param hadFailures an earlier batch of the walk in progress skipped rows
+     */
+    record Segment(int index, UUID lastId, boolean hadFailures) {}
+
+    /**
+     * @param skipped rows left for the next run (undecryptable, or their new data key lost a race)
+     */
+    record Batch(int rows, UUID lastId, int skipped, boolean done) {}
+}
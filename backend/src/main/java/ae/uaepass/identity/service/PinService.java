@@ -4,6 +4,7 @@ import ae.uaepass.identity.config.AppSecurityProperties;
 import ae.uaepass.identity.entity.*;
 import ae.uaepass.identity.repository.CredentialRepository;
 import ae.uaepass.identity.repository.UserRepository;
+import ae.uaepass.identity.security.RandomSource;
 import jakarta.servlet.http.HttpServletRequest;
 import org.bouncycastle.crypto.generators.Argon2BytesGenerator;
 import org.bouncycastle.crypto.params.Argon2Parameters;
@@ -11,7 +12,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
 import java.util.Base64;
 import java.util.UUID;
 
@@ -22,7 +22,7 @@ import java.util.UUID;
  * - Argon2id: memory-hard, resists GPU/ASIC attacks
  * - Parameters: memory=65536 KB (64 MB), iterations=3, parallelism=1
  * - Server pepper appended before hashing (from env var)
- * - Per-user salt generated via SecureRandom (16 bytes)
+ * - Per-user salt drawn from the DRBG (RandomSource, 16 bytes)
  * - PIN never logged, never stored in plaintext
  * - PIN complexity enforced (6 digits, no sequential/repeated patterns)
  */
@@ -39,17 +39,18 @@ public class PinService {
     private final UserRepository userRepository;
     private final AuditService auditService;
     private final String serverPepper;
-    private final SecureRandom secureRandom;
+    private final RandomSource randomSource;
 
     public PinService(CredentialRepository credentialRepository,
                       UserRepository userRepository,
                       AuditService auditService,
-                      AppSecurityProperties securityProps) {
+                      AppSecurityProperties securityProps,
+                      RandomSource randomSource) {
         this.credentialRepository = credentialRepository;
         this.userRepository = userRepository;
         this.auditService = auditService;
         this.serverPepper = securityProps.crypto().serverPepper();
-        this.secureRandom = new SecureRandom();
+        this.randomSource = randomSource;
     }
 
     /**
@@ -108,7 +109,7 @@ public class PinService {
      * - No sequential patterns (123456, 654321)
      * - No repeated patterns (111111, 222222)
      */
-    private void validatePinComplexity(String pin) {
+    void validatePinComplexity(String pin) {
         if (pin == null || !pin.matches("^\\d{6}$")) {
             throw new IllegalArgumentException("PIN must be exactly 6 digits");
         }
@@ -143,9 +144,10 @@ public class PinService {
         }
     }
 
-    private String hashWithArgon2id(String input) {
+    // Package-private for PinServiceBenchmark
+    String hashWithArgon2id(String input) {
         byte[] salt = new byte[SALT_LENGTH];
-        secureRandom.nextBytes(salt);
+        randomSource.nextBytes(salt);
 
         Argon2Parameters params = new Argon2Parameters.Builder(Argon2Parameters.ARGON2_id)
             .withMemoryAsKB(ARGON2_MEMORY)
@@ -166,7 +168,7 @@ public class PinService {
         return "$argon2id$" + saltB64 + "$" + hashB64;
     }
 
-    private boolean verifyArgon2id(String input, String stored) {
+    boolean verifyArgon2id(String input, String stored) {
         // Parse stored format: $argon2id$salt$hash
         String[] parts = stored.split("\\$");
         if (parts.length != 4) {
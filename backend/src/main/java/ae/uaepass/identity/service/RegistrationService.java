@@ -10,7 +10,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -20,7 +19,8 @@ import java.util.UUID;
  * 
  * SECURITY: All PII is hashed/encrypted before database storage.
  * Emirates ID, email, and phone are SHA-256 hashed for lookup.
- * Full name is AES-GCM encrypted (needs to be decryptable for user profile).
+ * Full name is AES-GCM encrypted under the user's data key (needs to be decryptable for user
+ * profile, and is crypto-shredded with the key on erasure).
  */
 @Service
 public class RegistrationService {
@@ -29,15 +29,18 @@ public class RegistrationService {
 
     private final UserRepository userRepository;
     private final CryptoService cryptoService;
+    private final UserDataKeyService dataKeyService;
     private final OtpService otpService;
     private final AuditService auditService;
 
     public RegistrationService(UserRepository userRepository,
                                 CryptoService cryptoService,
+                                UserDataKeyService dataKeyService,
                                 OtpService otpService,
                                 AuditService auditService) {
         this.userRepository = userRepository;
         this.cryptoService = cryptoService;
+        this.dataKeyService = dataKeyService;
         this.otpService = otpService;
         this.auditService = auditService;
     }
@@ -51,32 +54,33 @@ public class RegistrationService {
     @Transactional
     public UUID startRegistration(RegistrationStartRequest request, HttpServletRequest httpRequest) {
         // Hash all identifiers for storage and duplicate detection
-        String emiratesIdHash = cryptoService.hash(request.emiratesId());
-        String emailHash = cryptoService.hash(request.email());
-        String phoneHash = cryptoService.hash(request.phone());
+        byte[] emiratesIdHash = cryptoService.hash(request.emiratesId());
+        byte[] emailHash = cryptoService.hash(request.email());
+        byte[] phoneHash = cryptoService.hash(request.phone());
 
         // Check for duplicate Emirates ID
         if (userRepository.existsByEmiratesIdHash(emiratesIdHash)) {
             throw new IllegalStateException("An account with this Emirates ID already exists");
         }
 
-        // Encrypt PII that needs to be decryptable
-        String fullNameEnc = cryptoService.encrypt(request.fullName());
-
         // Create user record
         User user = new User();
         user.setEmiratesIdHash(emiratesIdHash);
         user.setEmailHash(emailHash);
         user.setPhoneHash(phoneHash);
-        user.setFullNameEnc(fullNameEnc);
         user.setGender(request.gender());
         user.setStatus(UserStatus.PENDING);
         user.setAccountLevel(AccountLevel.SOP1);
 
-        user = userRepository.save(user);
+        // Flushed now: the data key row references it
+        user = userRepository.saveAndFlush(user);
+
+        // Encrypt PII that needs to be decryptable, under the user's own key
+        dataKeyService.createKey(user.getId());
+        user.setFullNameEnc(dataKeyService.encrypt(user.getId(), request.fullName()));
 
         auditService.logEvent(AuditEventType.REGISTRATION_START, user.getId(), httpRequest,
-            Map.of("accountLevel", "SOP1"));
+            new AuditDetails.Registration("SOP1"));
 
         // Auto-send OTP to phone
         otpService.generateOtp(user.getId(), OtpChannel.SMS, httpRequest);
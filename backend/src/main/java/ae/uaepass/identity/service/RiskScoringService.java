@@ -39,15 +39,18 @@ public class RiskScoringService {
     private final DeviceSessionRepository deviceSessionRepository;
     private final RedisSecurityService redisSecurityService;
     private final DeviceFingerprintService deviceFingerprintService;
+    private final SecurityEventFeed feed;
 
     public RiskScoringService(RiskEventRepository riskEventRepository,
                                DeviceSessionRepository deviceSessionRepository,
                                RedisSecurityService redisSecurityService,
-                               DeviceFingerprintService deviceFingerprintService) {
+                               DeviceFingerprintService deviceFingerprintService,
+                               SecurityEventFeed feed) {
         this.riskEventRepository = riskEventRepository;
         this.deviceSessionRepository = deviceSessionRepository;
         this.redisSecurityService = redisSecurityService;
         this.deviceFingerprintService = deviceFingerprintService;
+        this.feed = feed;
     }
 
     /**
@@ -56,7 +59,7 @@ public class RiskScoringService {
     @Transactional(readOnly = true)
     public int scoreLoginRisk(UUID userId, HttpServletRequest request) {
         int score = 0;
-        String fingerprint = deviceFingerprintService.computeFingerprint(request);
+        byte[] fingerprint = deviceFingerprintService.fingerprintHash(request);
         Instant since = Instant.now().minus(24, ChronoUnit.HOURS);
 
         // Factor 1: Unknown device
@@ -123,6 +126,7 @@ public class RiskScoringService {
         event.setDeviceFingerprintHash(deviceFingerprintService.computeFingerprint(request));
         event.setMetadata(metadata);
         riskEventRepository.save(event);
+        feed.offer(event, userId);
     }
 
     /**
@@ -0,0 +1,388 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.RiskEvent;
+import ae.uaepass.identity.entity.RiskEventType;
+import ae.uaepass.identity.util.PiiMaskingUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live feed of security events (lockouts, token replays, key rotation alerts, risk events)
+ * for SOC tooling, as server-sent events. Replaces polling the admin audit API.
+ *
+ * Events enter a fixed-size in-memory ring as they are raised on this node — audit events as
+ * AuditWriter accepts them (after coalescing), risk events as RiskScoringService records them —
+ * each with the next offset. Every event is rendered to masked JSON once, however many
+ * subscribers there are.
+ *
+ * Resumption: each SSE id is "{feed}-{offset}", feed being random per process. A client
+ * reconnecting with Last-Event-ID continues after that offset. If the offset has left the ring,
+ * or the ID is from another node or an earlier process, the client first receives a "gap"
+ * event naming the oldest event still held, then the whole ring; earlier events are in the
+ * admin audit API.
+ *
+ * SECURITY:
+ * - Admin only (AdminAuditController); user IDs and IPs are masked as in the audit viewer,
+ *   risk metadata is not sent
+ * - max-subscribers bounds the open streams: a slot is reserved atomically before the stream
+ *   opens and released exactly once however it ends
+ *
+ * DESIGN DECISIONS:
+ * - An idle subscriber holds no thread (servlet async). New events schedule one drain per
+ *   subscriber on a virtual thread, so a slow client blocks only its own drain
+ * - Offsets are per node: with several instances, subscribe to each (the feed is a
+ *   real-time signal; audit_logs stays the record)
+ */
+@Service
+public class SecurityEventFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityEventFeed.class);
+
+    static final String AUDIT_PREFIX = "audit.";
+    static final String RISK_PREFIX = "risk.";
+    private static final int DRAIN_BATCH = 256;
+
+    private final ObjectMapper objectMapper;
+    private final AuditProperties.FeedProperties props;
+    private final Set<AuditEventType> eventTypes;
+    private final String feedId = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final Entry[] ring;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    /** Reserved subscriber slots; may run ahead of subscribers while a stream is opening. */
+    private final AtomicInteger slots = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter publishedCounter;
+    private final Counter gapCounter;
+
+    // Guarded by this
+    private long head;
+
+    public SecurityEventFeed(ObjectMapper objectMapper, AuditProperties auditProps, MeterRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.props = auditProps.feed();
+        this.eventTypes = props.eventTypes().isEmpty()
+            ? EnumSet.noneOf(AuditEventType.class) : EnumSet.copyOf(props.eventTypes());
+        this.ring = new Entry[props.capacity()];
+        this.publishedCounter = Counter.builder("identity.feed.events")
+            .description("Security events published to the SOC feed")
+            .register(registry);
+        this.gapCounter = Counter.builder("identity.feed.gaps")
+            .description("Feed subscribers that resumed or fell behind past the ring")
+            .register(registry);
+        Gauge.builder("identity.feed.subscribers", slots, AtomicInteger::get)
+            .description("Open SOC feed subscriptions")
+            .register(registry);
+    }
+
+    /**
+     * Publish an audit event, if its type is in the feed. Called on the audit path: never blocks.
+     */
+    public void offer(AuditRecord record) {
+        if (!eventTypes.contains(record.eventType())) {
+            return;
+        }
+        append(AUDIT_PREFIX + record.eventType().name(), record.createdAt(), json -> {
+            json.writeStringField("userId", record.userId() != null
+                ? PiiMaskingUtil.maskUuid(record.userId().toString()) : null);
+            json.writeStringField("requestId", record.requestId());
+            json.writeStringField("ipAddress", record.ipAddress() != null
+                ? PiiMaskingUtil.maskIp(record.ipAddress()) : null);
+            if (record.coalesced()) {
+                json.writeNumberField("occurrenceCount", record.occurrenceCount());
+                json.writeStringField("firstSeenAt", record.firstSeenAt().toString());
+            }
+            json.writeFieldName("details");
+            if (record.details() != null) {
+                json.writeRawValue(record.details());
+            } else {
+                json.writeNull();
+            }
+        });
+    }
+
+    /**
+     * Publish a recorded risk event. Metadata is left out: it is free-form.
+     */
+    public void offer(RiskEvent event, UUID userId) {
+        Instant occurredAt = event.getCreatedAt() != null ? event.getCreatedAt() : Instant.now();
+        append(RISK_PREFIX + event.getEventType().name(), occurredAt, json -> {
+            json.writeStringField("userId", userId != null ? PiiMaskingUtil.maskUuid(userId.toString()) : null);
+            json.writeStringField("ipAddress", event.getSourceIp() != null
+                ? PiiMaskingUtil.maskIp(event.getSourceIp()) : null);
+            json.writeNumberField("riskScore", event.getRiskScore());
+        });
+    }
+
+    /**
+     * Open a subscription.
+     *
+     * @param lastEventId the Last-Event-ID the client saw, null to receive new events only
+     * @param types       qualified event names to receive (e.g. audit.TOKEN_REPLAYED, risk.BRUTE_FORCE); empty for all
+     * @throws IllegalArgumentException for an unknown type
+     * @throws IllegalStateException    if max-subscribers streams are open
+     */
+    public SseEmitter subscribe(String lastEventId, Set<String> types) {
+        Set<String> filter = validateTypes(types);
+        int max = props.maxSubscribers();
+        if (slots.getAndUpdate(open -> open < max ? open + 1 : open) >= max) {
+            throw new IllegalStateException("Too many security feed subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(props.timeoutMs());
+        Subscriber subscriber = new Subscriber(emitter, filter, resumeCursor(lastEventId));
+        emitter.onCompletion(subscriber::release);
+        emitter.onTimeout(subscriber::release);
+        emitter.onError(e -> subscriber.release());
+        subscribers.add(subscriber);
+        subscriber.schedule();
+        return emitter;
+    }
+
+    /**
+     * Subscriber slots currently reserved.
+     */
+    int subscriberCount() {
+        return slots.get();
+    }
+
+    /**
+     * Keep idle streams open through proxies, and find subscribers that have gone away.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.feed.heartbeat-ms}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.heartbeatDue = true;
+            subscriber.schedule();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        senders.shutdownNow();
+    }
+
+    // --- Ring ---
+
+    private void append(String type, Instant occurredAt, JsonFields fields) {
+        String json = render(type, occurredAt, fields);
+        synchronized (this) {
+            head++;
+            ring[(int) (head % ring.length)] = new Entry(head, type, occurredAt, json);
+        }
+        publishedCounter.increment();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.schedule();
+        }
+    }
+
+    synchronized long head() {
+        return head;
+    }
+
+    /**
+     * Offset of the oldest event still held; head + 1 while the ring is empty.
+     */
+    synchronized long oldest() {
+        return Math.max(1, head - ring.length + 1);
+    }
+
+    /**
+     * Up to max held events after the offset, oldest first.
+     */
+    synchronized List<Entry> after(long offset, int max) {
+        long from = Math.max(offset + 1, oldest());
+        int count = (int) Math.min(max, Math.max(0, head - from + 1));
+        List<Entry> entries = new ArrayList<>(count);
+        for (long o = from; o < from + count; o++) {
+            entries.add(ring[(int) (o % ring.length)]);
+        }
+        return entries;
+    }
+
+    /**
+     * Offset to continue after. An ID from another feed, or none that parses, replays the ring.
+     */
+    long resumeCursor(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return head();
+        }
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash > 0 && lastEventId.substring(0, dash).equals(feedId)) {
+            try {
+                long offset = Long.parseLong(lastEventId.substring(dash + 1));
+                if (offset >= 0 && offset <= head()) {
+                    return offset;
+                }
+            } catch (NumberFormatException e) {
+                // Replay below
+            }
+        }
+        return -1;
+    }
+
+    String eventId(long offset) {
+        return feedId + "-" + offset;
+    }
+
+    private Set<String> validateTypes(Set<String> types) {
+        if (types == null || types.isEmpty()) {
+            return null;
+        }
+        Set<String> valid = new HashSet<>();
+        for (String type : types) {
+            try {
+                if (type.startsWith(AUDIT_PREFIX)) {
+                    AuditEventType.valueOf(type.substring(AUDIT_PREFIX.length()));
+                } else if (type.startsWith(RISK_PREFIX)) {
+                    RiskEventType.valueOf(type.substring(RISK_PREFIX.length()));
+                } else {
+                    throw new IllegalArgumentException(type);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown feed event type: " + type);
+            }
+            valid.add(type);
+        }
+        return Collections.unmodifiableSet(valid);
+    }
+
+    private String render(String type, Instant occurredAt, JsonFields fields) {
+        StringWriter out = new StringWriter(256);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeStringField("type", type);
+            json.writeStringField("occurredAt", occurredAt.toString());
+            fields.write(json);
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    @FunctionalInterface
+    private interface JsonFields {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    record Entry(long offset, String type, Instant occurredAt, String json) {}
+
+    /**
+     * One open stream. cursor is only touched by the drain holding {@code draining}.
+     */
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Set<String> types;
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean released = new AtomicBoolean();
+        volatile boolean heartbeatDue;
+        long cursor;
+
+        Subscriber(SseEmitter emitter, Set<String> types, long cursor) {
+            this.emitter = emitter;
+            this.types = types;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Leave the feed and free the slot. Completion, timeout, error and a failed send may
+         * each report the same end; only the first counts.
+         */
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                slots.decrementAndGet();
+            }
+        }
+
+        void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RuntimeException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                do {
+                    sendPending();
+                    draining.set(false);
+                    // An event appended after the last read but before the flag cleared
+                } while (head() > cursor && draining.compareAndSet(false, true));
+            } catch (IOException | IllegalStateException e) {
+                // Client gone or emitter completed
+                release();
+                draining.set(false);
+            }
+        }
+
+        private void sendPending() throws IOException {
+            boolean sent = false;
+            while (true) {
+                long oldest = oldest();
+                if (cursor + 1 < oldest) {
+                    gapCounter.increment();
+                    Entry first = after(oldest - 1, 1).stream().findFirst().orElse(null);
+                    emitter.send(SseEmitter.event().name("gap").data("{\"oldestOffset\":\"" + eventId(oldest) +
+                        "\",\"oldestOccurredAt\":" + (first != null ? "\"" + first.occurredAt() + "\"" : "null") + "}",
+                        MediaType.APPLICATION_JSON));
+                    cursor = oldest - 1;
+                    sent = true;
+                }
+                List<Entry> entries = after(cursor, DRAIN_BATCH);
+                if (entries.isEmpty()) {
+                    break;
+                }
+                for (Entry entry : entries) {
+                    if (types == null || types.contains(entry.type())) {
+                        emitter.send(SseEmitter.event().id(eventId(entry.offset())).name(entry.type())
+                            .data(entry.json(), MediaType.APPLICATION_JSON));
+                        sent = true;
+                    }
+                    cursor = entry.offset();
+                }
+            }
+            if (heartbeatDue) {
+                heartbeatDue = false;
+                if (!sent) {
+                    emitter.send(SseEmitter.event().comment("keepalive"));
+                }
+            }
+        }
+    }
+}
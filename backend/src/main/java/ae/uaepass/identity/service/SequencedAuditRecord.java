@@ -0,0 +1,10 @@
+package ae.uaepass.identity.service;
+
+/**
+ * Audit record with its position in the HMAC chain, as assigned by {@link AuditSequencer}.
+ */
+public record SequencedAuditRecord(
+    AuditRecord record,
+    long seq,
+    String chainHash
+) {}
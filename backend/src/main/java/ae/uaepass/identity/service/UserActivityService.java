@@ -0,0 +1,239 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.dto.ActivityPage;
+import ae.uaepass.identity.dto.AuditCursor;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditLog;
+import ae.uaepass.identity.repository.AuditLogRepository;
+import ae.uaepass.identity.util.PiiMaskingUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The caller's own security activity ("which devices logged in, when were OTPs sent").
+ *
+ * Pages walk idx_audit_user_time (user_id, created_at DESC, id DESC) with a keyset cursor.
+ * The first page — what the app's activity screen opens on — is cached in Redis per user.
+ *
+ * Invalidation: AuditWriter and AuditSpoolReplayer report each user whose events became
+ * visible in Postgres; every invalidate-interval-ms those users get a fresh random
+ * generation token. A cached page is served only while it carries the user's current token,
+ * so a page rendered from a read that raced a write is never served after that write's
+ * invalidation lands.
+ *
+ * SECURITY:
+ * - Only user-facing event types are returned; risk scoring and replay detection stay internal
+ * - IP addresses are masked as in the admin viewer
+ * - The cache is an optimisation, not security state: if Redis is unavailable reads fail
+ *   open to Postgres, unlike RedisSecurityService
+ */
+@Service
+public class UserActivityService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserActivityService.class);
+
+    static final Set<AuditEventType> VISIBLE_EVENTS = Collections.unmodifiableSet(EnumSet.of(
+        AuditEventType.REGISTRATION_COMPLETE,
+        AuditEventType.OTP_SENT,
+        AuditEventType.OTP_VERIFIED,
+        AuditEventType.OTP_FAILED,
+        AuditEventType.PIN_CREATED,
+        AuditEventType.LOGIN_SUCCESS,
+        AuditEventType.LOGIN_FAILURE,
+        AuditEventType.TOKEN_REVOKED,
+        AuditEventType.CONSENT_GRANTED,
+        AuditEventType.ACCOUNT_LOCKED,
+        AuditEventType.ACCOUNT_SUSPENDED,
+        AuditEventType.SESSION_REVOKED,
+        AuditEventType.DEVICE_REGISTERED,
+        AuditEventType.DEVICE_REVOKED,
+        AuditEventType.PIN_LOCKOUT,
+        AuditEventType.OTP_LOCKOUT));
+
+    private static final String KEY_PAGE = "activity:page:";
+    private static final String KEY_GENERATION = "activity:gen:";
+    /** Generation of a user with no recent writes. */
+    private static final String NO_GENERATION = "-";
+
+    private final AuditLogRepository auditLogRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final AuditProperties.ActivityProperties props;
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter invalidationFailures;
+
+    public UserActivityService(AuditLogRepository auditLogRepository,
+                               StringRedisTemplate redisTemplate,
+                               ObjectMapper objectMapper,
+                               AuditProperties auditProps,
+                               MeterRegistry registry) {
+        this.auditLogRepository = auditLogRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.props = auditProps.activity();
+        this.cacheHits = Counter.builder("identity.activity.cache")
+            .description("User activity first-page cache lookups")
+            .tag("outcome", "hit")
+            .register(registry);
+        this.cacheMisses = Counter.builder("identity.activity.cache")
+            .description("User activity first-page cache lookups")
+            .tag("outcome", "miss")
+            .register(registry);
+        this.invalidationFailures = Counter.builder("identity.activity.invalidation.failures")
+            .description("User activity cache invalidations retried because Redis failed")
+            .register(registry);
+    }
+
+    /**
+     * One page of the user's activity; {@code cursor} is the previous page's nextCursor, null for the first.
+     */
+    public ActivityPage page(UUID userId, String cursor) {
+        if (cursor != null) {
+            return load(userId, AuditCursor.decode(cursor));
+        }
+        String generation;
+        try {
+            List<String> cached = redisTemplate.opsForValue().multiGet(
+                List.of(KEY_GENERATION + userId, KEY_PAGE + userId));
+            generation = cached != null && cached.get(0) != null ? cached.get(0) : NO_GENERATION;
+            ActivityPage hit = cached != null ? fromCache(cached.get(1), generation) : null;
+            if (hit != null) {
+                cacheHits.increment();
+                return hit;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Activity cache unavailable, reading from database: {}", e.getMessage());
+            return load(userId, null);
+        }
+
+        cacheMisses.increment();
+        ActivityPage page = load(userId, null);
+        try {
+            redisTemplate.opsForValue().set(KEY_PAGE + userId,
+                generation + "\n" + objectMapper.writeValueAsString(page),
+                Duration.ofSeconds(props.cacheTtlSeconds()));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Activity page not cached: {}", e.getMessage());
+        }
+        return page;
+    }
+
+    /**
+     * Called once a record is in audit_logs. Only notes the user; Redis is touched by {@link #invalidate()}
+     * so the audit writer thread never waits on it.
+     */
+    public void recordWritten(AuditRecord record) {
+        if (record.userId() != null && VISIBLE_EVENTS.contains(record.eventType())) {
+            dirty.add(record.userId());
+        }
+    }
+
+    /**
+     * Give every user with new events a new generation, in one pipelined round trip.
+     * Tokens are random rather than counters, so an expired generation key can never be
+     * re-created with the value an old cached page carries.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.activity.invalidate-interval-ms}")
+    public void invalidate() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<UUID> users = new ArrayList<>();
+        for (Iterator<UUID> it = dirty.iterator(); it.hasNext(); ) {
+            users.add(it.next());
+            it.remove();
+        }
+        byte[] token = Long.toHexString(ThreadLocalRandom.current().nextLong()).getBytes(StandardCharsets.UTF_8);
+        // Outlives any page cached under the previous token
+        Expiration ttl = Expiration.seconds(2 * props.cacheTtlSeconds());
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (UUID user : users) {
+                    connection.stringCommands().set((KEY_GENERATION + user).getBytes(StandardCharsets.UTF_8),
+                        token, ttl, RedisStringCommands.SetOption.upsert());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            dirty.addAll(users);
+            invalidationFailures.increment();
+            log.warn("Activity cache invalidation failed, will retry: users={}", users.size(), e);
+        }
+    }
+
+    private ActivityPage fromCache(String cached, String generation) {
+        if (cached == null) {
+            return null;
+        }
+        int separator = cached.indexOf('\n');
+        if (separator < 0 || !cached.substring(0, separator).equals(generation)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(cached.substring(separator + 1), ActivityPage.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private ActivityPage load(UUID userId, AuditCursor after) {
+        Instant since = Instant.now().minus(Duration.ofDays(props.windowDays()));
+        int size = props.pageSize();
+        // One extra row tells whether another page exists without counting
+        List<AuditLog> rows = auditLogRepository.findUserActivity(userId, VISIBLE_EVENTS, since, after, size + 1);
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+        List<ActivityPage.Item> items = new ArrayList<>(rows.size());
+        for (AuditLog row : rows) {
+            items.add(new ActivityPage.Item(row.getEventType().name(), row.getCreatedAt(),
+                row.getIpAddress() != null ? PiiMaskingUtil.maskIp(row.getIpAddress()) : null,
+                details(row.getDetails()), row.getOccurrenceCount(), row.getFirstSeenAt()));
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            AuditLog last = rows.get(rows.size() - 1);
+            nextCursor = new AuditCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new ActivityPage(items, hasMore, nextCursor);
+    }
+
+    private JsonNode details(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable audit details", e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.SecretKey;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-user data encryption keys, for crypto-shredding on account erasure.
+ *
+ * Every user has one AES-256 key, stored wrapped under the active PII key in user_data_keys (V13),
+ * and all of the user's encrypted PII is encrypted under it. Erasing the user's PII is then one
+ * row delete ({@link #shred}), however many encrypted fields or tables hold their data.
+ *
+ * SECURITY:
+ * - Data keys come from the DRBG and exist unwrapped only in memory, in a bounded LRU cache
+ * - A shred evicts the key here at once; other instances drop it within cache-ttl-seconds
+ * - Values under a ring key (written before data keys) are not covered by the data key; a shred
+ *   clears them and leaves a tombstone (shredded_users, V18) so PiiReencryptionJob never
+ *   gives the user a new data key
+ *
+ * DESIGN DECISIONS:
+ * - Wrapped keys are ordinary "k{id}:" ciphertexts, so a PII key rotation re-wraps one short row
+ *   per user instead of re-encrypting every PII column
+ * - The cache saves the unwrap (and the query) on the profile read path; entries expire so an
+ *   instance never keeps a shredded user's key indefinitely
+ */
+@Service
+public class UserDataKeyService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDataKeyService.class);
+
+    private static final String INSERT_SQL =
+        "INSERT INTO user_data_keys (user_id, wrapped_key) VALUES (?, ?)";
+
+    private static final String SELECT_SQL =
+        "SELECT wrapped_key FROM user_data_keys WHERE user_id = ?";
+
+    private static final String DELETE_SQL =
+        "DELETE FROM user_data_keys WHERE user_id = ?";
+
+    private static final String TOMBSTONE_SQL =
+        "INSERT INTO shredded_users (user_id) VALUES (?) ON CONFLICT (user_id) DO NOTHING";
+
+    private static final String CLEAR_RING_KEYED_SQL =
+        "UPDATE users SET full_name_enc = NULL WHERE id = ? " +
+        "AND full_name_enc NOT LIKE '" + CryptoService.DATA_KEY_PREFIX + "%'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CryptoService cryptoService;
+    private final KeyCache cache;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter shredded;
+
+    public UserDataKeyService(JdbcTemplate jdbcTemplate, CryptoService cryptoService,
+                              AppSecurityProperties securityProps, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cryptoService = cryptoService;
+        AppSecurityProperties.DataKeyProperties props = securityProps.dataKeys();
+        this.cache = new KeyCache(props.cacheSize(), props.cacheTtlSeconds() * 1_000_000_000L);
+        this.cacheHits = Counter.builder("identity.crypto.datakey.cache")
+            .description("Unwrapped user data key lookups")
+            .tag("outcome", "hit")
+            .register(registry);
+        this.cacheMisses = Counter.builder("identity.crypto.datakey.cache")
+            .description("Unwrapped user data key lookups")
+            .tag("outcome", "miss")
+            .register(registry);
+        this.shredded = Counter.builder("identity.crypto.datakey.shredded")
+            .description("User data keys deleted, making the user's PII unreadable")
+            .register(registry);
+    }
+
+    /**
+     * Create the user's data key, in the caller's transaction. The user row must already be flushed.
+     */
+    public void createKey(UUID userId) {
+        SecretKey key = cryptoService.newDataKey();
+        jdbcTemplate.update(INSERT_SQL, userId, cryptoService.wrapKey(key));
+        cache.put(userId, key);
+    }
+
+    /**
+     * Encrypt a PII value of the user under their data key.
+     *
+     * @throws IllegalStateException if the user has no data key (never created, or shredded)
+     */
+    public String encrypt(UUID userId, String plaintext) {
+        return cryptoService.encrypt(plaintext, dataKey(userId));
+    }
+
+    /**
+     * Decrypt a PII value of the user: under their data key, or under a ring key if not yet migrated.
+     *
+     * @throws IllegalStateException if the value needs the data key and the user has none
+     */
+    public String decrypt(UUID userId, String encrypted) {
+        if (!CryptoService.isDataKeyed(encrypted)) {
+            return cryptoService.decrypt(encrypted);
+        }
+        return cryptoService.decrypt(encrypted, dataKey(userId));
+    }
+
+    /**
+     * Crypto-shred: delete the user's data key. Every value encrypted under it is unreadable from
+     * then on, without touching the rows that hold them. PII still under a ring key is cleared,
+     * and the user is tombstoned, in the same transaction.
+     *
+     * @return false if the user had neither a data key nor ring-keyed PII
+     */
+    @Transactional
+    public boolean shred(UUID userId) {
+        jdbcTemplate.update(TOMBSTONE_SQL, userId);
+        // Before the delete: a re-encryption batch moving the value holds the row until it commits,
+        // and the delete then sees (and removes) the key it stored
+        int cleared = jdbcTemplate.update(CLEAR_RING_KEYED_SQL, userId);
+        int deleted = jdbcTemplate.update(DELETE_SQL, userId);
+        cache.remove(userId);
+        if (deleted > 0) {
+            shredded.increment();
+            log.info("Data key of user {} shredded", userId);
+        }
+        if (cleared > 0) {
+            log.info("Ring-keyed PII of user {} cleared", userId);
+        }
+        return deleted > 0 || cleared > 0;
+    }
+
+    SecretKey dataKey(UUID userId) {
+        SecretKey key = cache.get(userId);
+        if (key != null) {
+            cacheHits.increment();
+            return key;
+        }
+        cacheMisses.increment();
+        List<String> wrapped = jdbcTemplate.queryForList(SELECT_SQL, String.class, userId);
+        if (wrapped.isEmpty()) {
+            throw new IllegalStateException("No data key for user");
+        }
+        key = cryptoService.unwrapKey(wrapped.get(0));
+        cache.put(userId, key);
+        return key;
+    }
+
+    /**
+     * Bounded LRU of unwrapped keys with a time-to-live. Lookups are a map access under a lock,
+     * short next to the GCM operation that follows.
+     */
+    static final class KeyCache {
+
+        private record Entry(SecretKey key, long expiresAt) {}
+
+        private final long ttlNanos;
+        private final Map<UUID, Entry> entries;
+
+        KeyCache(int capacity, long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized SecretKey get(UUID userId) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt() > 0) {
+                entries.remove(userId);
+                return null;
+            }
+            return entry.key();
+        }
+
+        synchronized void put(UUID userId, SecretKey key) {
+            entries.put(userId, new Entry(key, System.nanoTime() + ttlNanos));
+        }
+
+        synchronized void remove(UUID userId) {
+            entries.remove(userId);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ae.uaepass.identity.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Compact storage of audit_logs.ip_address (inet) and device_fingerprint_hash (32-byte bytea), see V10.
+ *
+ * Both values come from request headers and are hashed into the audit chain exactly as received,
+ * so every stored row must give back the original text. A value is stored compact only when the
+ * compact form reads back identically: a plain dotted-quad IPv4 (host() returns it unchanged), a
+ * lowercase 64-hex-digit hash (encode(..., 'hex') returns it unchanged). Anything else — IPv6,
+ * whose text form Postgres normalises, or a malformed header — is also kept verbatim in the
+ * sparse *_raw column, which readers prefer (see SELECT_IP, SELECT_FINGERPRINT).
+ *
+ * SECURITY: Only strings produced here reach {@code CAST(? AS inet)} and the *_raw columns, so a
+ * malformed X-Forwarded-For or X-Device-Fingerprint can never fail a batch insert. Raw values are
+ * cut to their column width (ip_address_raw VARCHAR(45), device_fingerprint_raw VARCHAR(128)) and
+ * NUL characters, which Postgres text cannot hold, are dropped. Such a row no longer reads back as
+ * hashed, so AuditSealVerifier flags it. AuditRequestSnapshot bounds both headers before they are
+ * chained, so only records from elsewhere can reach that point.
+ */
+public final class AuditColumnCodec {
+
+    private AuditColumnCodec() {} // Utility class
+
+    /** Select-list expression giving the original ip_address text. */
+    public static final String SELECT_IP =
+        "COALESCE(ip_address_raw, host(ip_address)) AS ip_address";
+
+    /** Select-list expression giving the original device_fingerprint_hash text. */
+    public static final String SELECT_FINGERPRINT =
+        "COALESCE(device_fingerprint_raw, encode(device_fingerprint_hash, 'hex')) AS device_fingerprint_hash";
+
+    private static final Pattern IPV4 = Pattern.compile(
+        "(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}");
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final int MAX_IP_LENGTH = 64;
+    /** Width of ip_address_raw. */
+    public static final int MAX_IP_RAW_LENGTH = 45;
+    /** Width of device_fingerprint_raw. */
+    public static final int MAX_FINGERPRINT_RAW_LENGTH = 128;
+
+    /**
+     * The inet literal to store for an address, or null if it is not an IP address.
+     */
+    public static String inet(String ip) {
+        if (ip == null || ip.length() > MAX_IP_LENGTH) {
+            return null;
+        }
+        if (IPV4.matcher(ip).matches()) {
+            return ip;
+        }
+        if (ip.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            // A literal containing ':' is parsed, never resolved. Rebuilding from the bytes drops
+            // any zone ID, which inet does not accept.
+            return InetAddress.getByAddress(InetAddress.getByName(ip).getAddress()).getHostAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The text to keep in ip_address_raw: null when host(inet) gives the address back unchanged.
+     */
+    public static String ipRaw(String ip) {
+        return ip == null || IPV4.matcher(ip).matches() ? null : bounded(ip, MAX_IP_RAW_LENGTH);
+    }
+
+    /**
+     * The 32 bytes to store for a fingerprint hash, or null if it is not lowercase SHA-256 hex.
+     */
+    public static byte[] fingerprint(String hash) {
+        return hash != null && SHA256_HEX.matcher(hash).matches() ? HexFormat.of().parseHex(hash) : null;
+    }
+
+    /**
+     * The text to keep in device_fingerprint_raw: null when the bytea form gives the hash back unchanged.
+     */
+    public static String fingerprintRaw(String hash) {
+        return hash == null || SHA256_HEX.matcher(hash).matches() ? null : bounded(hash, MAX_FINGERPRINT_RAW_LENGTH);
+    }
+
+    /**
+     * The value as a VARCHAR(maxLength) can store it: without NUL, at most maxLength characters,
+     * never ending in half a surrogate pair.
+     */
+    public static String bounded(String value, int maxLength) {
+        if (value.indexOf('\0') >= 0) {
+            value = value.replace("\0", "");
+        }
+        if (value.length() <= maxLength) {
+            return value;
+        }
+        int end = Character.isHighSurrogate(value.charAt(maxLength - 1)) ? maxLength - 1 : maxLength;
+        return value.substring(0, end);
+    }
+
+    /**
+     * Original ip_address text from the stored pair; {@code inet} as read with getString.
+     */
+    public static String ipText(String inet, String raw) {
+        return raw != null ? raw : inet;
+    }
+
+    /**
+     * Original device_fingerprint_hash text from the stored pair.
+     */
+    public static String fingerprintText(byte[] hash, String raw) {
+        return raw != null ? raw : hash != null ? HexFormat.of().formatHex(hash) : null;
+    }
+}
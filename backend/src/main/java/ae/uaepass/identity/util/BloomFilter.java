@@ -0,0 +1,106 @@
+package ae.uaepass.identity.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size Bloom filter over strings, persisted inside audit archive segments.
+ *
+ * Sized for an expected key count and false-positive rate; uses double hashing
+ * (h1 + i * h2) over a 64-bit FNV-1a hash and its SplitMix64 remix.
+ *
+ * DESIGN DECISIONS:
+ * - The hash is fixed and defined here, never String.hashCode, so filters written by
+ *   one JVM version stay valid when read by another
+ * - No false negatives: a miss means the key is definitely absent
+ */
+public final class BloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MAX_HASHES = 16;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Filter sized for {@code expectedKeys} at false-positive probability {@code fpp}.
+     */
+    public static BloomFilter create(long expectedKeys, double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be in (0, 1)");
+        }
+        long n = Math.max(1, expectedKeys);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + Long.SIZE - 1) / Long.SIZE));
+        int k = (int) Math.round((double) words * Long.SIZE / n * Math.log(2));
+        return new BloomFilter(new long[words], Math.max(1, Math.min(MAX_HASHES, k)));
+    }
+
+    public void put(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(hashCount);
+        out.writeInt(bits.length);
+        for (long word : bits) {
+            out.writeLong(word);
+        }
+    }
+
+    public static BloomFilter readFrom(DataInput in) throws IOException {
+        int hashCount = in.readInt();
+        int words = in.readInt();
+        if (hashCount < 1 || hashCount > MAX_HASHES || words < 1) {
+            throw new IOException("Corrupt Bloom filter header");
+        }
+        long[] bits = new long[words];
+        for (int i = 0; i < words; i++) {
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(bits, hashCount);
+    }
+
+    private static long hash(String key) {
+        long h = FNV_OFFSET;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        // Odd, so successive probes never collapse onto one bit
+        return (z ^ (z >>> 31)) | 1;
+    }
+}
@@ -0,0 +1,132 @@
+package ae.uaepass.identity.util;
+
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+
+/**
+ * Reusable JCA instances and allocation-lean hex encoding for the hot hashing and encryption paths.
+ *
+ * getInstance walks the provider list on every call and its result is not thread-safe, so
+ * CryptoService, DeviceFingerprintService and MerkleTree used to create a fresh MessageDigest or
+ * Cipher per hash. Here each thread keeps one instance, reset before it is handed out.
+ *
+ * SECURITY:
+ * - Same algorithms and providers as before; only the instance lifetime changes
+ * - A Cipher is always re-initialised with a fresh IV by the caller before use, so no key/IV
+ *   state carries over between calls
+ *
+ * DESIGN DECISIONS:
+ * - ThreadLocal, not a pool: callers run on the bounded Tomcat and writer threads, and an
+ *   instance is never held across a call (no re-entrancy), so one per thread suffices
+ * - A salted hash clones a digest that has already absorbed the salt prefix ({@link #prefixed});
+ *   clone copies the SHA-256 state instead of re-hashing the prefix
+ * - The SHA-256 provider is chosen once at startup (CryptoProviders); a thread whose digest
+ *   predates the choice replaces it on its next call
+ */
+public final class CryptoPrimitives {
+
+    private static final String SHA_256 = "SHA-256";
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(CryptoPrimitives::newSha256);
+
+    /** Null until configured: the JVM's provider preference order. */
+    private static volatile Provider sha256Provider;
+
+    private CryptoPrimitives() {} // Utility class
+
+    /**
+     * This thread's SHA-256 digest, reset. Use it within the calling method only.
+     */
+    public static MessageDigest sha256() {
+        MessageDigest digest = SHA256.get();
+        Provider provider = sha256Provider;
+        if (provider != null && digest.getProvider() != provider) {
+            digest = newSha256();
+            SHA256.set(digest);
+        }
+        digest.reset();
+        return digest;
+    }
+
+    /**
+     * Provider for every SHA-256 digest from here on; null for the JVM's preference order.
+     */
+    public static void useSha256Provider(Provider provider) {
+        sha256Provider = provider;
+    }
+
+    public static byte[] sha256(byte[] input) {
+        return sha256().digest(input);
+    }
+
+    /**
+     * A SHA-256 digest that has absorbed the prefix, to be used as a prototype for {@link #digestAfter}.
+     * Never update it after construction: it is shared between threads.
+     */
+    public static MessageDigest prefixed(byte[] prefix) {
+        MessageDigest prototype = newSha256();
+        prototype.update(prefix);
+        return prototype;
+    }
+
+    /**
+     * SHA-256(prefix || input) from a {@link #prefixed} prototype, without re-hashing the prefix.
+     */
+    public static byte[] digestAfter(MessageDigest prototype, byte[] input) {
+        try {
+            MessageDigest digest = (MessageDigest) prototype.clone();
+            return digest.digest(input);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("SHA-256 provider does not support clone", e);
+        }
+    }
+
+    /**
+     * Lowercase hex, encoded straight into the Latin-1 bytes the String keeps.
+     */
+    public static String hex(byte[] bytes) {
+        byte[] out = new byte[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[2 * i] = HEX[(bytes[i] >> 4) & 0x0f];
+            out[2 * i + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * A per-thread Cipher holder for one transformation. The caller must init it before each use.
+     */
+    public static ThreadLocal<Cipher> cipher(String transformation) {
+        return cipher(transformation, null);
+    }
+
+    /**
+     * As {@link #cipher(String)}, from the given provider; null for the JVM's preference order.
+     */
+    public static ThreadLocal<Cipher> cipher(String transformation, Provider provider) {
+        newCipher(transformation, provider); // Fail at startup, not on first use
+        return ThreadLocal.withInitial(() -> newCipher(transformation, provider));
+    }
+
+    private static Cipher newCipher(String transformation, Provider provider) {
+        try {
+            return provider == null ? Cipher.getInstance(transformation) : Cipher.getInstance(transformation, provider);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " not available", e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        Provider provider = sha256Provider;
+        try {
+            return provider == null ? MessageDigest.getInstance(SHA_256) : MessageDigest.getInstance(SHA_256, provider);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ae.uaepass.identity.util;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary SHA-256 Merkle tree for audit batch sealing.
+ *
+ * SECURITY:
+ * - Domain separation: leaves are H(0x00 || data), inner nodes H(0x01 || left || right),
+ *   so a leaf can never be passed off as an inner node (second-preimage attack)
+ * - An unpaired node at the end of a level is promoted unchanged, never duplicated,
+ *   so two different leaf lists cannot produce the same root
+ */
+public final class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private MerkleTree() {} // Utility class
+
+    /**
+     * One step of an inclusion proof: the sibling hash and which side it sits on.
+     */
+    public record ProofStep(byte[] sibling, boolean siblingOnLeft) {}
+
+    public static byte[] leafHash(byte[] data) {
+        MessageDigest digest = CryptoPrimitives.sha256();
+        digest.update(LEAF_PREFIX);
+        return digest.digest(data);
+    }
+
+    public static byte[] nodeHash(byte[] left, byte[] right) {
+        MessageDigest digest = CryptoPrimitives.sha256();
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+
+    /**
+     * Root over already-hashed leaves.
+     */
+    public static byte[] root(List<byte[]> leafHashes) {
+        if (leafHashes.isEmpty()) {
+            throw new IllegalArgumentException("Merkle tree needs at least one leaf");
+        }
+        List<byte[]> level = leafHashes;
+        while (level.size() > 1) {
+            level = nextLevel(level);
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Inclusion proof for the leaf at {@code index}: O(log n) sibling hashes, leaf to root.
+     */
+    public static List<ProofStep> proof(List<byte[]> leafHashes, int index) {
+        if (index < 0 || index >= leafHashes.size()) {
+            throw new IllegalArgumentException("Leaf index out of range");
+        }
+        List<ProofStep> steps = new ArrayList<>();
+        List<byte[]> level = leafHashes;
+        int position = index;
+        while (level.size() > 1) {
+            boolean isRight = (position & 1) == 1;
+            int siblingIndex = isRight ? position - 1 : position + 1;
+            if (siblingIndex < level.size()) {
+                steps.add(new ProofStep(level.get(siblingIndex), isRight));
+            }
+            // Unpaired last node: promoted without a step
+            level = nextLevel(level);
+            position >>= 1;
+        }
+        return steps;
+    }
+
+    /**
+     * Recompute the root from a leaf hash and its proof and compare in constant time.
+     */
+    public static boolean verify(byte[] leafHash, List<ProofStep> proof, byte[] expectedRoot) {
+        byte[] current = leafHash;
+        for (ProofStep step : proof) {
+            current = step.siblingOnLeft()
+                ? nodeHash(step.sibling(), current)
+                : nodeHash(current, step.sibling());
+        }
+        return MessageDigest.isEqual(current, expectedRoot);
+    }
+
+    private static List<byte[]> nextLevel(List<byte[]> level) {
+        List<byte[]> next = new ArrayList<>((level.size() + 1) / 2);
+        for (int i = 0; i < level.size(); i += 2) {
+            if (i + 1 < level.size()) {
+                next.add(nodeHash(level.get(i), level.get(i + 1)));
+            } else {
+                next.add(level.get(i));
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,91 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V10
+-- Compact audit_logs encoding
+-- ============================================
+
+-- audit_logs is the largest table; three of its columns were stored as text:
+--   event_type               VARCHAR(50), 8-24 bytes  -> SMALLINT code, 2 bytes
+--   ip_address               VARCHAR(45), 8-16 bytes  -> INET, 7 bytes for IPv4
+--   device_fingerprint_hash  VARCHAR(128), 65 bytes   -> BYTEA, 33 bytes
+-- idx_audit_event_type_time shrinks with event_type.
+--
+-- Rows are chained over the original text (AuditSequencer.canonical), so every row must read
+-- back exactly as written. Values whose compact form would not (IPv6, which inet normalises;
+-- malformed header values) are also kept verbatim in the sparse *_raw columns, and readers use
+-- COALESCE(raw, compact) (AuditColumnCodec). The compact column still holds any parseable IPv6
+-- address, so inet operators work for every real address.
+--
+-- Codes are fixed by AuditEventType.code(); audit_event_types names them for ad hoc SQL.
+-- There is deliberately no foreign key: it would cost a lookup per inserted row.
+--
+-- Partitions still detached for archiving (AuditArchiveService) keep the text layout.
+-- ALTER COLUMN TYPE rewrites every attached partition under an ACCESS EXCLUSIVE lock:
+-- run in a maintenance window, with AuditSpool absorbing writes meanwhile.
+
+CREATE TABLE audit_event_types (
+    code SMALLINT PRIMARY KEY,
+    name VARCHAR(50) NOT NULL UNIQUE
+);
+
+INSERT INTO audit_event_types (code, name) VALUES
+    (1, 'REGISTRATION_START'),
+    (2, 'REGISTRATION_COMPLETE'),
+    (3, 'OTP_SENT'),
+    (4, 'OTP_VERIFIED'),
+    (5, 'OTP_FAILED'),
+    (6, 'PIN_CREATED'),
+    (7, 'LOGIN_SUCCESS'),
+    (8, 'LOGIN_FAILURE'),
+    (9, 'TOKEN_ISSUED'),
+    (10, 'TOKEN_REVOKED'),
+    (11, 'TOKEN_REPLAYED'),
+    (12, 'CONSENT_GRANTED'),
+    (13, 'ACCOUNT_LOCKED'),
+    (14, 'ACCOUNT_SUSPENDED'),
+    (15, 'SESSION_REVOKED'),
+    (16, 'DEVICE_REGISTERED'),
+    (17, 'DEVICE_REVOKED'),
+    (18, 'RISK_EVENT_CREATED'),
+    (19, 'KEY_ROTATION_NEEDED'),
+    (20, 'PIN_LOCKOUT'),
+    (21, 'OTP_LOCKOUT'),
+    (22, 'AUDIT_EXPORTED');
+
+ALTER TABLE audit_logs
+    ADD COLUMN ip_address_raw VARCHAR(45),
+    ADD COLUMN device_fingerprint_raw VARCHAR(128);
+
+-- Same tests as AuditColumnCodec.ipRaw / fingerprintRaw
+UPDATE audit_logs SET ip_address_raw = ip_address
+WHERE ip_address !~ '^(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])(\.(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9]?[0-9])){3}$';
+
+UPDATE audit_logs SET device_fingerprint_raw = device_fingerprint_hash
+WHERE device_fingerprint_hash !~ '^[0-9a-f]{64}$';
+
+-- Conversion helpers, dropped below. A missing name yields NULL and fails the NOT NULL check.
+CREATE FUNCTION audit_event_code(type_name TEXT) RETURNS SMALLINT
+    LANGUAGE sql STABLE
+    AS $$ SELECT code FROM audit_event_types WHERE name = type_name $$;
+
+CREATE FUNCTION audit_try_inet(address TEXT) RETURNS INET
+    LANGUAGE plpgsql IMMUTABLE
+    AS $$
+BEGIN
+    RETURN address::inet;
+EXCEPTION WHEN invalid_text_representation THEN
+    RETURN NULL;
+END $$;
+
+-- One rewrite for all three columns
+ALTER TABLE audit_logs
+    ALTER COLUMN event_type TYPE SMALLINT USING audit_event_code(event_type),
+    ALTER COLUMN ip_address TYPE INET USING CASE
+        WHEN ip_address_raw IS NULL THEN ip_address::inet
+        ELSE audit_try_inet(ip_address) END,
+    ALTER COLUMN device_fingerprint_hash TYPE BYTEA USING CASE
+        WHEN device_fingerprint_raw IS NULL THEN decode(device_fingerprint_hash, 'hex') END;
+
+DROP FUNCTION audit_event_code(TEXT);
+DROP FUNCTION audit_try_inet(TEXT);
+
+ANALYZE audit_logs;
@@ -0,0 +1,14 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V11
+-- Redis Streams audit transport offsets
+-- ============================================
+
+-- Last Redis stream entry persisted into audit_logs, per stream (AuditStreamConsumer).
+-- Advanced in the same transaction as the inserted rows, and only from the value the
+-- writer last read: entries redelivered after a lost acknowledgement are skipped, and a
+-- former writer whose lease expired mid-batch cannot commit.
+CREATE TABLE audit_stream_offsets (
+    stream_key  VARCHAR(128) PRIMARY KEY,
+    last_id     VARCHAR(41)  NOT NULL,
+    updated_at  TIMESTAMPTZ  NOT NULL DEFAULT NOW()
+);
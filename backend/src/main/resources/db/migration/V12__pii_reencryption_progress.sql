@@ -0,0 +1,19 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V12
+-- Online PII key rotation progress
+-- ============================================
+
+-- Keyset cursor of PiiReencryptionJob per segment of the users.id space (16 segments,
+-- by the first hex digit). A segment is restarted when the active key changes, and
+-- resumed from last_id after a restart. completed_at is set once a segment has no
+-- ciphertext left under another key.
+CREATE TABLE pii_reencryption_progress (
+    segment           SMALLINT     PRIMARY KEY,
+    key_id            INTEGER      NOT NULL,
+    last_id           UUID,
+    rows_reencrypted  BIGINT       NOT NULL DEFAULT 0,
+    completed_at      TIMESTAMPTZ,
+    updated_at        TIMESTAMPTZ  NOT NULL DEFAULT NOW(),
+
+    CONSTRAINT chk_reencryption_segment CHECK (segment BETWEEN 0 AND 15)
+);
@@ -0,0 +1,13 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V13
+-- Per-user data encryption keys
+-- ============================================
+
+-- One AES-256 key per user, wrapped (AES-GCM encrypted) under the active PII key:
+-- "k{id}:" + Base64(IV || ciphertext || tag). The user's PII columns are encrypted
+-- under this key ("u:" + ...). Deleting the row crypto-shreds all of them at once.
+CREATE TABLE user_data_keys (
+    user_id      UUID         PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    wrapped_key  TEXT         NOT NULL,
+    created_at   TIMESTAMPTZ  NOT NULL DEFAULT NOW()
+);
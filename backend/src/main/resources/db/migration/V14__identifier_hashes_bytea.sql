@@ -0,0 +1,34 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V14
+-- Identifier hashes as bytea
+-- ============================================
+
+-- SHA-256 lookup hashes were stored as 64-char lowercase hex in VARCHAR(128):
+--   users.emirates_id_hash, email_hash, phone_hash      65 bytes -> BYTEA, 33 bytes
+--   device_sessions.device_fingerprint_hash             65 bytes -> BYTEA, 33 bytes
+-- A B-tree leaf entry (8-byte tuple header + key, MAXALIGNed, + 4-byte line pointer) shrinks
+-- from 84 to 52 bytes, so the unique Emirates ID index and the email/phone indexes hold ~60%
+-- more entries per page (~62% of the size). Benchmark: src/jmh/sql/identifier_hash_bytea.sql.
+--
+-- CryptoService.hash and DeviceFingerprintService.fingerprintHash return the raw 32 bytes.
+-- risk_events.device_fingerprint_hash and the audit columns are unchanged: the audit chain
+-- hashes the fingerprint text (audit_logs already stores it compactly, see V10).
+--
+-- Every value was written by CryptoService as lowercase hex, so decode() cannot fail; a
+-- value that somehow is not 64 hex digits fails the length check and the migration with it.
+-- ALTER COLUMN TYPE rewrites both tables and rebuilds their indexes under an ACCESS EXCLUSIVE
+-- lock: run in a maintenance window.
+
+ALTER TABLE users
+    ALTER COLUMN emirates_id_hash TYPE BYTEA USING decode(emirates_id_hash, 'hex'),
+    ALTER COLUMN email_hash TYPE BYTEA USING decode(email_hash, 'hex'),
+    ALTER COLUMN phone_hash TYPE BYTEA USING decode(phone_hash, 'hex'),
+    ADD CONSTRAINT chk_users_hash_length CHECK (
+        octet_length(emirates_id_hash) = 32 AND octet_length(email_hash) = 32 AND octet_length(phone_hash) = 32);
+
+ALTER TABLE device_sessions
+    ALTER COLUMN device_fingerprint_hash TYPE BYTEA USING decode(device_fingerprint_hash, 'hex'),
+    ADD CONSTRAINT chk_device_fingerprint_length CHECK (octet_length(device_fingerprint_hash) = 32);
+
+ANALYZE users;
+ANALYZE device_sessions;
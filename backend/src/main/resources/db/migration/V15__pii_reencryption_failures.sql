@@ -0,0 +1,16 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V15
+-- Skipped rows in a PII re-encryption walk
+-- ============================================
+
+-- A segment walk that skipped any row (undecryptable, or its data key insert lost a race)
+-- must not end with completed_at set, even if its last batch was clean: the cursor has
+-- already moved past the skipped rows. had_failures records a skip in an earlier batch,
+-- across restarts; the walk's end then resets the cursor and the flag for a full rescan.
+ALTER TABLE pii_reencryption_progress
+    ADD COLUMN had_failures BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Segments completed before this column existed may have skipped rows: rescan them under
+-- their key id. Rows already on the active key are not selected again, so this is cheap.
+UPDATE pii_reencryption_progress SET completed_at = NULL, last_id = NULL, updated_at = NOW()
+WHERE completed_at IS NOT NULL;
@@ -0,0 +1,26 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V16
+-- Redis stream entries persisted into audit_logs
+-- ============================================
+
+-- AuditStreamConsumer skipped every entry at or below audit_stream_offsets.last_id as
+-- already persisted. Entries are not always persisted in ID order: a former writer that
+-- stalled past its lease can still read new entries into its pending list, and the writer
+-- that claims them later has persisted higher IDs meanwhile. Those entries were acked as
+-- duplicates and lost.
+--
+-- The IDs of persisted entries are now recorded in the transaction that inserts their rows,
+-- and a redelivered entry is skipped only if it is found here. Rows are pruned below the
+-- oldest entry still in the stream: only an entry still in the stream can be redelivered.
+CREATE TABLE audit_stream_entries (
+    stream_key  VARCHAR(128) NOT NULL,
+    entry_ms    BIGINT       NOT NULL,
+    entry_seq   BIGINT       NOT NULL,
+
+    PRIMARY KEY (stream_key, entry_ms, entry_seq)
+);
+
+-- Writer fence: each commit expects the count it last read, so a former writer whose lease
+-- expired cannot commit after the current one, even over entries below last_id.
+ALTER TABLE audit_stream_offsets
+    ADD COLUMN commits BIGINT NOT NULL DEFAULT 0;
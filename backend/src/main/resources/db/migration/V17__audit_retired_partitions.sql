@@ -0,0 +1,22 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V17
+-- Audit retention boundary
+-- ============================================
+
+-- AuditSealVerifier skipped every seal below the oldest seq still in audit_logs, on the
+-- assumption that missing rows had been retired with their partitions. Deleting the oldest
+-- rows by hand therefore also passed verification.
+--
+-- AuditPartitionManager now records the last sequenced row of each partition before it
+-- drops or detaches it. The highest last_seq is the retention boundary: the verifier
+-- expects every seq above it to be present and chains the first retained row from
+-- last_chain_hash. last_seq is null for a partition that held no sequenced rows.
+CREATE TABLE audit_retired_partitions (
+    partition_name   VARCHAR(63)  PRIMARY KEY,
+    last_seq         BIGINT,
+    last_chain_hash  VARCHAR(64),
+    retention_mode   VARCHAR(8)   NOT NULL,
+    retired_at       TIMESTAMPTZ  NOT NULL DEFAULT NOW(),
+
+    CONSTRAINT chk_retired_mode CHECK (retention_mode IN ('DROP', 'DETACH'))
+);
@@ -0,0 +1,16 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V18
+-- Crypto-shred tombstones
+-- ============================================
+
+-- Deleting a user's data key (V13) only erased values already moved onto it. A
+-- full_name_enc still under a ring key stayed readable, and PiiReencryptionJob later
+-- created a fresh data key and moved the value onto it, undoing the erasure.
+--
+-- UserDataKeyService.shred now clears ring-keyed PII and records the user here in the
+-- same transaction. PiiReencryptionJob skips these users and never creates a data key
+-- for them.
+CREATE TABLE shredded_users (
+    user_id      UUID         PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    shredded_at  TIMESTAMPTZ  NOT NULL DEFAULT NOW()
+);
@@ -0,0 +1,12 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V3
+-- Persisted audit HMAC chain
+-- ============================================
+
+-- seq:        monotonic sequence assigned by the single audit writer
+-- chain_hash: HMAC-SHA256(previous chain_hash || canonical entry), hex encoded
+ALTER TABLE audit_logs ADD COLUMN seq BIGINT;
+ALTER TABLE audit_logs ADD COLUMN chain_hash VARCHAR(64);
+
+-- Rows written before V3 have no seq; the chain starts at the first sequenced row
+CREATE UNIQUE INDEX idx_audit_seq ON audit_logs (seq);
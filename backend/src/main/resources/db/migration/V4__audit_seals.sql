@@ -0,0 +1,25 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V4
+-- Merkle-batched audit seals
+-- ============================================
+
+-- Each seal covers a contiguous seq range of audit_logs.
+-- merkle_root: SHA-256 Merkle root over the range's leaves (hex)
+-- signature:   JWS (RS256) over {firstSeq, lastSeq, leafCount, root}, verifiable via /oauth2/jwks
+CREATE TABLE audit_seals (
+    id                  BIGSERIAL PRIMARY KEY,
+    first_seq           BIGINT NOT NULL,
+    last_seq            BIGINT NOT NULL,
+    leaf_count          INT NOT NULL,
+    merkle_root         VARCHAR(64) NOT NULL,
+    first_created_at    TIMESTAMPTZ NOT NULL,
+    last_created_at     TIMESTAMPTZ NOT NULL,
+    signature           TEXT NOT NULL,
+    key_id              VARCHAR(128) NOT NULL,
+    sealed_at           TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    CONSTRAINT uq_audit_seal_first_seq UNIQUE (first_seq),
+    CONSTRAINT chk_audit_seal_range CHECK (last_seq >= first_seq AND leaf_count > 0)
+);
+
+CREATE INDEX idx_audit_seal_last_seq ON audit_seals (last_seq);
@@ -0,0 +1,59 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V5
+-- Monthly range partitioning of audit_logs
+-- ============================================
+
+-- Partition bounds are UTC month starts (see AuditPartitionManager)
+SET LOCAL timezone = 'UTC';
+
+-- The existing heap becomes the first partition, covering everything before next month.
+ALTER TABLE audit_logs RENAME TO audit_logs_legacy;
+ALTER TABLE audit_logs_legacy DROP CONSTRAINT audit_logs_pkey;
+DROP INDEX idx_audit_event_type;
+DROP INDEX idx_audit_user_id;
+DROP INDEX idx_audit_request_id;
+DROP INDEX idx_audit_seq;
+-- Per-partition time index; AuditPartitionManager swaps it for BRIN once the partition ages
+ALTER INDEX idx_audit_created_at RENAME TO audit_logs_legacy_created_at_idx;
+ALTER SEQUENCE audit_logs_id_seq OWNED BY NONE;
+
+CREATE TABLE audit_logs (
+    id                      BIGINT NOT NULL DEFAULT nextval('audit_logs_id_seq'),
+    event_type              VARCHAR(50) NOT NULL,
+    user_id                 UUID,
+    request_id              VARCHAR(64),
+    ip_address              VARCHAR(45),
+    device_fingerprint_hash VARCHAR(128),
+    details                 JSONB,
+    created_at              TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    seq                     BIGINT,
+    chain_hash              VARCHAR(64),
+
+    -- Unique constraints on a partitioned table must include the partition key
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE audit_logs_id_seq OWNED BY audit_logs.id;
+
+-- Partitioned indexes: created on every current and future partition
+CREATE INDEX idx_audit_event_type ON audit_logs (event_type);
+CREATE INDEX idx_audit_user_id ON audit_logs (user_id);
+CREATE INDEX idx_audit_request_id ON audit_logs (request_id);
+-- seq uniqueness is owned by the single writer; the index serves chain and seal lookups
+CREATE UNIQUE INDEX idx_audit_seq ON audit_logs (seq, created_at);
+
+DO $$
+DECLARE
+    boundary TIMESTAMPTZ := date_trunc('month', NOW()) + INTERVAL '1 month';
+    next_partition TEXT := 'audit_logs_p' || to_char(boundary, 'YYYYMM');
+BEGIN
+    -- A validated CHECK lets ATTACH skip its own scan of the legacy rows
+    EXECUTE format('ALTER TABLE audit_logs_legacy ADD CONSTRAINT audit_logs_legacy_bound CHECK (created_at < %L)', boundary);
+    EXECUTE format('ALTER TABLE audit_logs ATTACH PARTITION audit_logs_legacy FOR VALUES FROM (MINVALUE) TO (%L)', boundary);
+    ALTER TABLE audit_logs_legacy DROP CONSTRAINT audit_logs_legacy_bound;
+
+    -- Next month, so inserts never outrun the partition manager's first run
+    EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+        next_partition, boundary, boundary + INTERVAL '1 month');
+    EXECUTE format('CREATE INDEX %I ON %I (created_at DESC)', next_partition || '_created_at_idx', next_partition);
+END $$;
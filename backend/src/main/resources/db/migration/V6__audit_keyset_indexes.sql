@@ -0,0 +1,16 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V6
+-- Keyset pagination indexes for the admin audit viewer
+-- ============================================
+
+-- Pages are ordered by (created_at DESC, id DESC) and continue from a cursor.
+-- Filtered listings walk these composites in order and stop after one page;
+-- the single-column indexes they replace are their prefixes.
+DROP INDEX idx_audit_event_type;
+DROP INDEX idx_audit_user_id;
+
+CREATE INDEX idx_audit_event_type_time ON audit_logs (event_type, created_at DESC, id DESC);
+CREATE INDEX idx_audit_user_time ON audit_logs (user_id, created_at DESC, id DESC);
+
+-- request_id is near-unique: idx_audit_request_id already returns a handful of rows.
+-- Unfiltered listings use each partition's created_at index (B-tree or BRIN, see AuditPartitionManager).
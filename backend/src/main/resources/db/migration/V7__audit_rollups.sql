@@ -0,0 +1,21 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V7
+-- Pre-aggregated audit event counts for dashboards
+-- ============================================
+
+-- One row per (granularity, event type, bucket). AuditRollupService adds each node's
+-- in-memory per-minute counts to the MINUTE, HOUR and DAY rows with upserts, so
+-- dashboards never GROUP BY over audit_logs and nodes' counts simply sum.
+-- granularity: 'MINUTE' | 'HOUR' | 'DAY'; bucket_start is truncated in UTC.
+CREATE TABLE audit_rollups (
+    granularity     VARCHAR(6) NOT NULL,
+    event_type      VARCHAR(50) NOT NULL,
+    bucket_start    TIMESTAMPTZ NOT NULL,
+    event_count     BIGINT NOT NULL,
+
+    CONSTRAINT pk_audit_rollups PRIMARY KEY (granularity, event_type, bucket_start),
+    CONSTRAINT chk_audit_rollup_granularity CHECK (granularity IN ('MINUTE', 'HOUR', 'DAY'))
+);
+
+-- Series for all event types at one granularity
+CREATE INDEX idx_audit_rollup_bucket ON audit_rollups (granularity, bucket_start);
@@ -0,0 +1,21 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V8
+-- Indexed search over audit details
+-- ============================================
+
+-- The admin search (GET /api/v1/admin/audit/search) compiles its detail predicates into one
+-- containment, details @> '{"reason":"max_attempts_reached"}'. jsonb_path_ops indexes a hash
+-- per key path and value, so it is smaller and faster than the default jsonb_ops and serves
+-- exactly @>. The planner ANDs its bitmap with the created_at and event_type indexes.
+--
+-- Chosen over generated columns per key: adding a stored column rewrites every partition,
+-- while this index covers every current and future key of the flat details objects.
+--
+-- Created on the partitioned parent, so every existing partition gets its own index and
+-- partitions made later by AuditPartitionManager inherit it. On a large live table, build
+-- each partition's index CONCURRENTLY beforehand with the same definition; Postgres then
+-- attaches those instead of building new ones.
+CREATE INDEX idx_audit_details_path ON audit_logs USING GIN (details jsonb_path_ops);
+
+-- Containment selectivity comes from the column's most-common-values statistics.
+ALTER TABLE audit_logs ALTER COLUMN details SET STATISTICS 1000;
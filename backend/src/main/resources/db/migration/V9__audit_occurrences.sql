@@ -0,0 +1,14 @@
+-- ============================================
+-- UAE Digital Identity Platform - Schema V9
+-- Coalesced audit rows
+-- ============================================
+
+-- During floods (SMS pumping, credential stuffing) AuditCoalescer collapses identical
+-- events for the same user and IP into one row: occurrence_count events, the first at
+-- first_seen_at and the last at created_at. Single events keep count 1 and no first_seen_at.
+-- Both columns are part of the row's chain hash when occurrence_count > 1 (AuditSequencer.canonical).
+--
+-- A constant default is stored in the catalog: no partition is rewritten.
+ALTER TABLE audit_logs
+    ADD COLUMN occurrence_count INT NOT NULL DEFAULT 1,
+    ADD COLUMN first_seen_at TIMESTAMPTZ;
@@ -0,0 +1,51 @@
+package ae.uaepass.identity.dto;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditLogFilter.
+ * Tests range defaults and typed details predicates.
+ */
+class AuditLogFilterTest {
+
+    @Test
+    void withDetails_parsesTypedValuesSortedByName() {
+        Map<AuditDetailKey, String> predicates = new EnumMap<>(AuditDetailKey.class);
+        predicates.put(AuditDetailKey.REASON, "max_attempts_reached");
+        predicates.put(AuditDetailKey.ATTEMPTS_USED, "3");
+        predicates.put(AuditDetailKey.CHANNEL, null);
+
+        AuditLogFilter filter = AuditLogFilter.of(AuditEventType.OTP_FAILED, null, null, null, null)
+            .withDetails(predicates);
+
+        assertEquals(List.of("attemptsUsed", "reason"), List.copyOf(filter.details().keySet()));
+        assertEquals(3, filter.details().get("attemptsUsed"));
+        assertEquals("max_attempts_reached", filter.details().get("reason"));
+    }
+
+    @Test
+    void withDetails_malformedValue_rejected() {
+        AuditLogFilter filter = AuditLogFilter.of(null, null, null, null, null);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> filter.withDetails(Map.of(AuditDetailKey.ATTEMPTS_USED, "three")));
+        assertThrows(IllegalArgumentException.class,
+            () -> filter.withDetails(Map.of(AuditDetailKey.REASON, "\"}, \"x\": {")));
+    }
+
+    @Test
+    void of_invertedRange_rejected() {
+        Instant now = Instant.now();
+
+        assertThrows(IllegalArgumentException.class,
+            () -> AuditLogFilter.of(null, null, null, now, now.minusSeconds(1)));
+    }
+}
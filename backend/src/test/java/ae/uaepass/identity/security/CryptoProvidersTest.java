@@ -0,0 +1,91 @@
+package ae.uaepass.identity.security;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.util.CryptoPrimitives;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.info.Info;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for JCA provider selection.
+ * Ensures the configured, benchmarked and default paths, the known-answer gate and reporting.
+ */
+class CryptoProvidersTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void resetSha256Provider() {
+        CryptoPrimitives.useSha256Provider(null);
+    }
+
+    @Test
+    void defaults_areJvmProvidersThatPassKnownAnswer() {
+        CryptoProviders providers = new CryptoProviders(props(null), registry);
+
+        assertEquals("SunJCE", providers.aesGcm().getName());
+        assertEquals("SUN", providers.sha256().getName());
+        assertEquals("default", providers.selection(CryptoProviders.Primitive.AES_GCM).source());
+    }
+
+    @Test
+    void configuredProvider_isUsedAndAppliedToDigests() {
+        CryptoProviders providers = new CryptoProviders(props(
+            new AppSecurityProperties.ProviderProperties("BC", "BC", false, null, 0)), registry);
+
+        assertEquals("BC", providers.aesGcm().getName());
+        assertEquals("BC", providers.sha256().getName());
+        assertEquals("BC", CryptoPrimitives.sha256().getProvider().getName());
+        assertEquals(1.0, registry.get("identity.crypto.provider.selected")
+            .tags("primitive", "aes-gcm", "provider", "BC", "source", "configured").gauge().value());
+    }
+
+    @Test
+    void configuredProvider_withoutAlgorithm_failsStartup() {
+        assertThrows(IllegalStateException.class, () -> new CryptoProviders(props(
+            new AppSecurityProperties.ProviderProperties("SUN", null, false, null, 0)), registry));
+        assertThrows(IllegalStateException.class, () -> new CryptoProviders(props(
+            new AppSecurityProperties.ProviderProperties(null, "NoSuchProvider", false, null, 0)), registry));
+    }
+
+    @Test
+    void selfBenchmark_picksFastestOfferingCandidate() {
+        CryptoProviders providers = new CryptoProviders(props(new AppSecurityProperties.ProviderProperties(
+            "", "", true, List.of("SunJCE", "SUN", "BC", "NoSuchProvider"), 5)), registry);
+
+        CryptoProviders.Selection aes = providers.selection(CryptoProviders.Primitive.AES_GCM);
+        assertEquals("benchmarked", aes.source());
+        assertEquals(List.of("SunJCE", "BC"), List.copyOf(aes.nanosPerOp().keySet()));
+        long fastest = aes.nanosPerOp().values().stream().mapToLong(Long::longValue).min().orElseThrow();
+        assertEquals(fastest, aes.nanosPerOp().get(aes.provider().getName()));
+
+        CryptoProviders.Selection sha = providers.selection(CryptoProviders.Primitive.SHA_256);
+        assertEquals(List.of("SUN", "BC"), List.copyOf(sha.nanosPerOp().keySet()));
+        assertNotNull(registry.get("identity.crypto.provider.benchmark")
+            .tags("primitive", "sha-256", "provider", "BC").gauge());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void info_listsProviderPerPrimitive() {
+        CryptoProviders providers = new CryptoProviders(props(null), registry);
+        Info.Builder builder = new Info.Builder();
+        providers.contribute(builder);
+
+        Map<String, Object> crypto = (Map<String, Object>) builder.build().getDetails().get("crypto");
+        Map<String, Map<String, Object>> byPrimitive = (Map<String, Map<String, Object>>) crypto.get("providers");
+        assertEquals("SunJCE", byPrimitive.get("aes-gcm").get("provider"));
+        assertEquals("SHA-256", byPrimitive.get("sha-256").get("algorithm"));
+    }
+
+    private static AppSecurityProperties props(AppSecurityProperties.ProviderProperties providers) {
+        return TestSecurityProperties.builder().providers(providers).build();
+    }
+}
@@ -0,0 +1,43 @@
+package ae.uaepass.identity.security;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the environment secrets provider.
+ * Ensures every PII ring key, rotated ones included, is served from configuration.
+ */
+class EnvironmentSecretsProviderTest {
+
+    @Test
+    void rotatedKeys_areServedByIdAlongsideKeyOne() {
+        EnvironmentSecretsProvider provider = new EnvironmentSecretsProvider(props(Map.of(3, "key-3", 2, "key-2")));
+
+        assertEquals(Set.of(1, 2, 3), provider.getEncryptionKeyIds());
+        assertEquals("key-1", provider.getEncryptionKey(1));
+        assertEquals("key-2", provider.getEncryptionKey(2));
+        assertNull(provider.getEncryptionKey(4));
+    }
+
+    @Test
+    void noRotatedKeys_ringIsKeyOne() {
+        assertEquals(Set.of(1), new EnvironmentSecretsProvider(props(null)).getEncryptionKeyIds());
+    }
+
+    @Test
+    void keyOneUnderRotatedKeys_isRejected() {
+        assertThrows(IllegalStateException.class, () -> new EnvironmentSecretsProvider(props(Map.of(1, "other"))));
+    }
+
+    private static AppSecurityProperties props(Map<Integer, String> keys) {
+        return TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties("pepper", "key-1", "salt", keys, 1))
+            .build();
+    }
+}
@@ -0,0 +1,74 @@
+package ae.uaepass.identity.security;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the striped DRBG random source.
+ * Ensures stripe sizing, OTP digit format and rough uniformity, and reseeding.
+ */
+class RandomSourceTest {
+
+    @Test
+    void stripes_roundUpToPowerOfTwo() {
+        assertEquals(1, source(1).stripeCount());
+        assertEquals(4, source(3).stripeCount());
+        assertEquals(8, source(8).stripeCount());
+        assertEquals(64, source(1000).stripeCount());
+        assertEquals(1, Integer.bitCount(source(0).stripeCount()));
+    }
+
+    @Test
+    void digits_haveRequestedLengthAndVary() {
+        RandomSource random = source(2);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String otp = random.digits(6);
+            assertTrue(otp.matches("\\d{6}"), otp);
+            seen.add(otp);
+        }
+        assertTrue(seen.size() > 190, "6-digit codes should almost never repeat in 200 draws");
+        assertEquals(40, random.digits(40).length());
+        assertThrows(IllegalArgumentException.class, () -> random.digits(0));
+    }
+
+    @Test
+    void digits_areRoughlyUniform() {
+        RandomSource random = source(2);
+        int[] counts = new int[10];
+        int draws = 10_000;
+        for (int i = 0; i < draws; i++) {
+            for (char c : random.digits(10).toCharArray()) {
+                counts[c - '0']++;
+            }
+        }
+        // Expected 10,000 per digit; 5 sigma is about 475
+        for (int digit = 0; digit < 10; digit++) {
+            assertEquals(10_000, counts[digit], 500, "digit " + digit);
+        }
+    }
+
+    @Test
+    void reseed_keepsProducingOutput() {
+        RandomSource random = source(2);
+        random.reseed();
+        byte[] a = new byte[32];
+        byte[] b = new byte[32];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        assertFalse(Arrays.equals(a, b));
+    }
+
+    private static RandomSource source(int stripes) {
+        return new RandomSource(TestSecurityProperties.builder()
+            .random(new AppSecurityProperties.RandomProperties(stripes, 600000))
+            .build());
+    }
+}
@@ -0,0 +1,82 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditArchiveSegment.
+ * Tests round-tripping through the sparse indexes, Bloom filters and atomic publication.
+ */
+class AuditArchiveSegmentTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+    private static final UUID ALICE = UUID.fromString("11111111-1111-1111-1111-111111111111");
+    private static final UUID BOB = UUID.fromString("22222222-2222-2222-2222-222222222222");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void find_byRequestAndUser_returnsOnlyMatchingRows() throws Exception {
+        // Small blocks and pages so lookups cross several of each
+        AuditArchiveSegment segment = write(1000, 10, 8);
+
+        List<AuditArchiveSegment.Row> byRequest = segment.find(AuditArchiveSegment.Key.REQUEST_ID, "req-517");
+        assertEquals(1, byRequest.size());
+        assertEquals(517, byRequest.get(0).id());
+        assertEquals("{\"channel\":\"SMS\"}", byRequest.get(0).details());
+
+        List<AuditArchiveSegment.Row> byUser = segment.find(AuditArchiveSegment.Key.USER_ID, BOB.toString());
+        assertEquals(500, byUser.size());
+        assertTrue(byUser.stream().allMatch(row -> BOB.equals(row.userId())));
+    }
+
+    @Test
+    void find_absentKey_returnsNothing() throws Exception {
+        AuditArchiveSegment segment = write(200, 10, 8);
+
+        assertTrue(segment.find(AuditArchiveSegment.Key.REQUEST_ID, "req-999999").isEmpty());
+        assertTrue(segment.find(AuditArchiveSegment.Key.REQUEST_ID, "a-before-every-key").isEmpty());
+        assertFalse(segment.mightContain(AuditArchiveSegment.Key.USER_ID, UUID.randomUUID().toString())
+            && segment.mightContain(AuditArchiveSegment.Key.USER_ID, UUID.randomUUID().toString())
+            && segment.mightContain(AuditArchiveSegment.Key.USER_ID, UUID.randomUUID().toString()),
+            "Bloom filter should reject unknown users");
+    }
+
+    @Test
+    void open_reloadsFooterWithTimeRange() throws Exception {
+        AuditArchiveSegment written = write(50, 10, 8);
+
+        AuditArchiveSegment reopened = AuditArchiveSegment.open(written.path);
+
+        assertEquals(50, reopened.rowCount);
+        assertEquals(T0, reopened.minCreatedAt);
+        assertEquals(T0.plusSeconds(49), reopened.maxCreatedAt);
+        assertTrue(reopened.overlaps(T0.plusSeconds(10), T0.plusSeconds(11)));
+        assertFalse(reopened.overlaps(T0.plusSeconds(50), T0.plusSeconds(60)));
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(written.path), files.toList(), "No temp file may be left behind");
+        }
+    }
+
+    private AuditArchiveSegment write(int rows, int blockRows, int pageEntries) throws Exception {
+        try (AuditArchiveSegment.Writer writer = new AuditArchiveSegment.Writer(
+                dir.resolve("audit_logs_p202601-0001.seg"), "audit_logs_p202601", blockRows, pageEntries, 0.01)) {
+            for (int i = 0; i < rows; i++) {
+                writer.add(new AuditArchiveSegment.Row(i, (long) i + 1, AuditEventType.OTP_SENT,
+                    i % 2 == 0 ? ALICE : BOB, "req-" + i, "10.0.0.1", null, "{\"channel\": \"SMS\"}",
+                    T0.plusSeconds(i), "hash-" + i, 1, null));
+            }
+            return writer.finish();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.dto.AuditCursor;
+import ae.uaepass.identity.dto.AuditLogFilter;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for AuditArchiveService lookups.
+ * Tests that keyset pages reach the oldest archived rows and read only the segments they span.
+ */
+class AuditArchiveServiceTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+    private static final UUID ALICE = UUID.fromString("11111111-1111-1111-1111-111111111111");
+    private static final UUID BOB = UUID.fromString("22222222-2222-2222-2222-222222222222");
+    private static final int SEGMENTS = 3;
+    private static final int ROWS_PER_SEGMENT = 200;
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry registry;
+    private AuditArchiveService service;
+    private AuditLogFilter alice;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        registry = new SimpleMeterRegistry();
+        AuditProperties props = new AuditProperties(null, null, null, null, null, null, null,
+            new AuditProperties.ArchiveProperties(true, dir.toString(), "0 0 3 * * ?", 900000, 500000, 10, 8, 0.01),
+            null, null, null, null);
+        service = new AuditArchiveService(mock(JdbcTemplate.class),
+            mock(DataSource.class), mock(PlatformTransactionManager.class),
+            props, new ObjectMapper(), registry);
+
+        // One segment per month, alternating users, one row a minute
+        long id = 1;
+        for (int month = 0; month < SEGMENTS; month++) {
+            String source = "audit_logs_p20260" + (month + 1);
+            try (AuditArchiveSegment.Writer writer = new AuditArchiveSegment.Writer(
+                    dir.resolve(source + "-0001.seg"), source, 10, 8, 0.01)) {
+                Instant start = T0.plus(Duration.ofDays(31L * month));
+                for (int i = 0; i < ROWS_PER_SEGMENT; i++, id++) {
+                    writer.add(new AuditArchiveSegment.Row(id, id, AuditEventType.OTP_SENT,
+                        i % 2 == 0 ? ALICE : BOB, "req-" + id, "10.0.0.1", null, null,
+                        start.plus(Duration.ofMinutes(i)), "hash-" + id, 1, null));
+                }
+                writer.finish();
+            }
+        }
+        service.loadSegments();
+        alice = AuditLogFilter.of(null, ALICE, null, T0, T0.plus(Duration.ofDays(120)));
+    }
+
+    @Test
+    void find_pagesThroughEveryArchivedRowInKeysetOrder() {
+        List<AuditLog> seen = new ArrayList<>();
+        AuditCursor after = null;
+        while (true) {
+            List<AuditLog> page = service.find(alice, after, 31);
+            seen.addAll(page.subList(0, Math.min(30, page.size())));
+            if (page.size() <= 30) {
+                break;
+            }
+            AuditLog last = page.get(29);
+            after = new AuditCursor(last.getCreatedAt(), last.getId());
+        }
+
+        int expected = SEGMENTS * ROWS_PER_SEGMENT / 2;
+        assertEquals(expected, seen.size());
+        assertEquals(expected, new HashSet<>(seen.stream().map(AuditLog::getId).toList()).size());
+        for (int i = 1; i < seen.size(); i++) {
+            assertTrue(seen.get(i).getCreatedAt().isBefore(seen.get(i - 1).getCreatedAt()), "Newest first");
+        }
+        assertEquals(T0, seen.get(seen.size() - 1).getCreatedAt(), "Oldest archived row must be reachable");
+    }
+
+    @Test
+    void find_firstPage_readsOnlyNewestSegment() {
+        List<AuditLog> page = service.find(alice, null, 31);
+
+        assertEquals(31, page.size());
+        assertEquals(1.0, registry.get("identity.audit.archive.lookups").tag("outcome", "read").counter().count());
+    }
+
+    @Test
+    void find_cursorPastNewerSegments_skipsThem() {
+        // Cursor inside the oldest segment: the two newer ones are never opened
+        AuditCursor after = new AuditCursor(T0.plus(Duration.ofMinutes(100)), 101);
+
+        List<AuditLog> page = service.find(alice, after, 100);
+
+        assertEquals(50, page.size());
+        assertEquals(1.0, registry.get("identity.audit.archive.lookups").tag("outcome", "read").counter().count());
+    }
+
+    @Test
+    void count_isExactAcrossSegments() {
+        assertEquals(SEGMENTS * ROWS_PER_SEGMENT / 2, service.count(alice));
+        assertEquals(1, service.count(AuditLogFilter.of(null, null, "req-7", T0, T0.plus(Duration.ofDays(120)))));
+    }
+}
@@ -0,0 +1,165 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditCoalescer.
+ * Tests window opening, absorption, summary rows, key separation, key modes and the key cap.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditCoalescerTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+    private static final UUID USER = UUID.fromString("44444444-4444-4444-4444-444444444444");
+
+    @Mock
+    private AuditWriter auditWriter;
+
+    private SimpleMeterRegistry registry;
+    private AuditCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        coalescer = newCoalescer(100, Map.of());
+    }
+
+    @Test
+    void absorb_repeatsInWindow_collapseIntoOneCountedRow() {
+        assertFalse(coalescer.absorb(otpSent("req-0", T0)), "The first event is written immediately");
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(coalescer.absorb(otpSent("req-" + i, T0.plusSeconds(i))));
+        }
+        verifyNoInteractions(auditWriter);
+
+        coalescer.flush(T0.plusSeconds(60));
+
+        ArgumentCaptor<AuditRecord> captor = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(auditWriter).enqueue(captor.capture());
+        AuditRecord row = captor.getValue();
+        assertEquals(5, row.occurrenceCount());
+        assertEquals(T0.plusSeconds(1), row.firstSeenAt());
+        assertEquals(T0.plusSeconds(5), row.createdAt());
+        assertEquals("req-5", row.requestId(), "The last request ID is kept as a sample");
+        assertEquals(5.0, registry.get("identity.audit.coalesced").tag("type", "OTP_SENT").counter().count());
+    }
+
+    @Test
+    void absorb_eventAfterWindow_closesItAndOpensNext() {
+        coalescer.absorb(otpSent("req-0", T0));
+        coalescer.absorb(otpSent("req-1", T0.plusSeconds(1)));
+
+        assertFalse(coalescer.absorb(otpSent("req-2", T0.plusSeconds(61))));
+
+        // The lone absorbed event is written as a plain row before the new window's opener
+        ArgumentCaptor<AuditRecord> captor = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(auditWriter).enqueue(captor.capture());
+        assertFalse(captor.getValue().coalesced());
+        assertEquals("req-1", captor.getValue().requestId());
+    }
+
+    @Test
+    void absorb_differentIpOrUncoalescedType_passesThrough() {
+        coalescer.absorb(otpSent("req-0", T0));
+
+        AuditRecord otherIp = new AuditRecord(AuditEventType.OTP_SENT, USER, "req-1", "10.9.9.9", null,
+            "{\"channel\":\"SMS\"}", T0.plusSeconds(1));
+        AuditRecord login = new AuditRecord(AuditEventType.LOGIN_SUCCESS, USER, "req-2", "10.0.0.1", null,
+            null, T0.plusSeconds(1));
+
+        assertFalse(coalescer.absorb(otherIp));
+        assertFalse(coalescer.absorb(login));
+        assertFalse(coalescer.absorb(login));
+    }
+
+    @Test
+    void absorb_keyCapReached_writesIndividually() {
+        coalescer = newCoalescer(1, Map.of());
+        coalescer.absorb(otpSent("req-0", T0));
+
+        AuditRecord newKey = new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-1", "10.0.0.2",
+            null, "{\"channel\":\"SMS\"}", T0);
+        assertFalse(coalescer.absorb(newKey));
+        assertFalse(coalescer.absorb(newKey));
+        assertEquals(2.0, registry.get("identity.audit.coalesce.overflow").counter().count());
+    }
+
+    @Test
+    void stop_flushesOpenWindows() {
+        coalescer.absorb(otpSent("req-0", T0));
+        coalescer.absorb(otpSent("req-1", T0.plusSeconds(1)));
+        coalescer.absorb(otpSent("req-2", T0.plusSeconds(2)));
+
+        coalescer.stop();
+
+        verify(auditWriter).enqueue(argThat(row -> row.occurrenceCount() == 2));
+        assertFalse(coalescer.absorb(otpSent("req-3", T0.plusSeconds(3))), "Stopped: write everything");
+    }
+
+    @Test
+    void userKeyMode_coalescesAcrossIps_andKeepsLastEventsFields() {
+        coalescer = newCoalescer(100, Map.of(AuditEventType.OTP_SENT, AuditProperties.CoalesceKeyMode.USER));
+        coalescer.absorb(otpSent("req-0", T0));
+
+        assertTrue(coalescer.absorb(new AuditRecord(AuditEventType.OTP_SENT, USER, "req-1", "10.9.9.9", "fp-1",
+            null, T0.plusSeconds(1))));
+        assertTrue(coalescer.absorb(new AuditRecord(AuditEventType.OTP_SENT, USER, "req-2", "10.8.8.8", "fp-2",
+            null, T0.plusSeconds(2))));
+        assertFalse(coalescer.absorb(new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-3",
+            "10.0.0.1", null, "{\"channel\":\"SMS\"}", T0.plusSeconds(3))), "Another user is another key");
+        coalescer.flush(T0.plusSeconds(60));
+
+        ArgumentCaptor<AuditRecord> captor = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(auditWriter).enqueue(captor.capture());
+        AuditRecord row = captor.getValue();
+        assertEquals(2, row.occurrenceCount());
+        assertEquals(USER, row.userId());
+        assertEquals("10.8.8.8", row.ipAddress());
+        assertEquals("fp-2", row.deviceFingerprintHash());
+    }
+
+    @Test
+    void ipKeyMode_coalescesAcrossUsers_butNotAnonymousEventsWithoutIp() {
+        coalescer = newCoalescer(100, Map.of(AuditEventType.OTP_SENT, AuditProperties.CoalesceKeyMode.IP));
+        coalescer.absorb(otpSent("req-0", T0));
+
+        assertTrue(coalescer.absorb(new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-1",
+            "10.0.0.1", null, null, T0.plusSeconds(1))));
+        // Without an IP the event is keyed in full
+        AuditRecord noIp = new AuditRecord(AuditEventType.OTP_SENT, null, "req-2", null, null, null, T0.plusSeconds(2));
+        assertFalse(coalescer.absorb(noIp));
+        assertFalse(coalescer.absorb(new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-3", null,
+            null, null, T0.plusSeconds(3))));
+        assertTrue(coalescer.absorb(noIp));
+    }
+
+    private AuditCoalescer newCoalescer(int maxKeys, Map<AuditEventType, AuditProperties.CoalesceKeyMode> keyModes) {
+        AuditProperties props = new AuditProperties(null, null, null, null, null, null, null, null, null,
+            new AuditProperties.CoalesceProperties(Map.of(AuditEventType.OTP_SENT, Duration.ofSeconds(60)),
+                keyModes, maxKeys, 1000), null, null);
+        AuditCoalescer created = new AuditCoalescer(auditWriter, props, registry);
+        created.start();
+        return created;
+    }
+
+    private static AuditRecord otpSent(String requestId, Instant at) {
+        return new AuditRecord(AuditEventType.OTP_SENT, USER, requestId, "10.0.0.1", null,
+            "{\"channel\":\"SMS\"}", at);
+    }
+}
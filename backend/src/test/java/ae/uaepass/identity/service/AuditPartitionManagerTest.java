@@ -0,0 +1,70 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.service.AuditPartitionManager.Partition;
+import ae.uaepass.identity.service.AuditPartitionManager.Plan;
+import org.junit.jupiter.api.Test;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static ae.uaepass.identity.service.AuditPartitionManager.startOf;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditPartitionManager planning.
+ * Tests pre-creation, BRIN conversion and retention decisions.
+ */
+class AuditPartitionManagerTest {
+
+    private static final YearMonth NOW = YearMonth.of(2026, 10);
+    private static final AuditProperties.PartitionProperties PROPS = new AuditProperties.PartitionProperties(
+        "0 30 1 * * ?", 2, 1, 12, AuditProperties.RetentionMode.DETACH);
+
+    @Test
+    void plan_afterMigration_createsOnlyMissingFutureMonths() {
+        // Legacy heap ends where the current month's partition begins
+        List<Partition> partitions = List.of(
+            new Partition("audit_logs_legacy", null, startOf(NOW), false),
+            monthly(NOW, false));
+
+        Plan plan = AuditPartitionManager.plan(partitions, NOW, PROPS);
+
+        assertEquals(List.of(NOW.plusMonths(1), NOW.plusMonths(2)), plan.create());
+        assertTrue(plan.retire().isEmpty());
+    }
+
+    @Test
+    void plan_agedPartitions_switchToBrinOnce() {
+        List<Partition> partitions = List.of(
+            monthly(NOW.minusMonths(3), true),
+            monthly(NOW.minusMonths(2), false),
+            monthly(NOW.minusMonths(1), false),
+            monthly(NOW, false));
+
+        Plan plan = AuditPartitionManager.plan(partitions, NOW, PROPS);
+
+        // Last month keeps its B-tree; older ones without BRIN are converted
+        assertEquals(List.of(AuditPartitionManager.partitionName(NOW.minusMonths(2))), plan.toBrin());
+    }
+
+    @Test
+    void plan_expiredPartitions_areRetired() {
+        List<Partition> partitions = List.of(
+            new Partition("audit_logs_legacy", null, startOf(NOW.minusMonths(14)), true),
+            monthly(NOW.minusMonths(13), true),
+            monthly(NOW.minusMonths(12), true),
+            monthly(NOW, false));
+
+        Plan plan = AuditPartitionManager.plan(partitions, NOW, PROPS);
+
+        assertEquals(List.of("audit_logs_legacy", AuditPartitionManager.partitionName(NOW.minusMonths(13))),
+            plan.retire(), "Partitions ending on or before the retention cutoff must be retired");
+        assertFalse(plan.toBrin().contains("audit_logs_legacy"));
+    }
+
+    private static Partition monthly(YearMonth month, boolean brin) {
+        return new Partition(AuditPartitionManager.partitionName(month),
+            startOf(month), startOf(month.plusMonths(1)), brin);
+    }
+}
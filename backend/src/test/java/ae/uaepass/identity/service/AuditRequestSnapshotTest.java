@@ -0,0 +1,47 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.util.AuditColumnCodec;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditRequestSnapshot.
+ * Tests that client-controlled headers are bounded and cleaned before they reach the audit chain.
+ */
+class AuditRequestSnapshotTest {
+
+    @Test
+    void capture_oversizedHeaders_areCutToColumnWidths() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getAttribute("requestId")).thenReturn("r".repeat(500));
+        when(request.getHeader("X-Forwarded-For")).thenReturn("9".repeat(10_000) + ", 10.0.0.1");
+        when(request.getHeader("X-Device-Fingerprint")).thenReturn("f".repeat(10_000));
+
+        AuditRequestSnapshot snapshot = AuditRequestSnapshot.capture(request);
+
+        assertEquals(AuditRequestSnapshot.MAX_REQUEST_ID_LENGTH, snapshot.requestId().length());
+        assertEquals(AuditColumnCodec.MAX_IP_RAW_LENGTH, snapshot.ipAddress().length());
+        assertEquals(AuditColumnCodec.MAX_FINGERPRINT_RAW_LENGTH, snapshot.deviceFingerprint().length());
+    }
+
+    @Test
+    void capture_keepsFirstHopAndDropsControlCharacters() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("X-Forwarded-For")).thenReturn(" 203.0.113.7\u0000 , 10.0.0.1");
+        when(request.getHeader("X-Device-Fingerprint")).thenReturn("ab\r\ncdé");
+
+        AuditRequestSnapshot snapshot = AuditRequestSnapshot.capture(request);
+
+        assertEquals("203.0.113.7", snapshot.ipAddress());
+        assertEquals("abcd", snapshot.deviceFingerprint());
+    }
+
+    @Test
+    void sanitize_nothingVisible_isNull() {
+        assertNull(AuditRequestSnapshot.sanitize(" \t\u0000", 64));
+        assertNull(AuditRequestSnapshot.sanitize(null, 64));
+    }
+}
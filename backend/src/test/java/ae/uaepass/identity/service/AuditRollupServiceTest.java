@@ -0,0 +1,98 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.service.AuditRollupService.Delta;
+import ae.uaepass.identity.service.AuditRollupService.Granularity;
+import ae.uaepass.identity.service.AuditRollupService.MinuteKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditRollupService.
+ * Tests incremental hour/day aggregation, flush retry and stats range limits.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditRollupServiceTest {
+
+    private static final Instant T = Instant.parse("2026-10-16T09:41:30Z");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void deltas_sumMinutesIntoTheirHourAndDay() {
+        long minute = T.getEpochSecond() / 60;
+        List<Delta> deltas = AuditRollupService.deltas(List.of(
+            Map.entry(new MinuteKey(AuditEventType.OTP_FAILED, minute), 3L),
+            Map.entry(new MinuteKey(AuditEventType.OTP_FAILED, minute + 1), 2L)));
+
+        assertEquals(List.of(
+            new Delta(Granularity.MINUTE, AuditEventType.OTP_FAILED, Instant.parse("2026-10-16T09:41:00Z"), 3),
+            new Delta(Granularity.MINUTE, AuditEventType.OTP_FAILED, Instant.parse("2026-10-16T09:42:00Z"), 2),
+            new Delta(Granularity.HOUR, AuditEventType.OTP_FAILED, Instant.parse("2026-10-16T09:00:00Z"), 5),
+            new Delta(Granularity.DAY, AuditEventType.OTP_FAILED, Instant.parse("2026-10-16T00:00:00Z"), 5)),
+            deltas, "Each rollup row appears once per flush: a multi-row upsert may not touch a row twice");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_failure_keepsCountsForNextFlush() {
+        AuditRollupService service = newService();
+        List<Collection<Delta>> attempts = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+            .thenAnswer(inv -> {
+                attempts.add(new ArrayList<>((Collection<Delta>) inv.getArgument(1)));
+                throw new DataAccessResourceFailureException("Connection refused");
+            })
+            .thenAnswer(inv -> {
+                attempts.add(new ArrayList<>((Collection<Delta>) inv.getArgument(1)));
+                return new int[0][];
+            });
+
+        service.record(record(AuditEventType.ACCOUNT_LOCKED));
+        service.flush();
+        service.record(record(AuditEventType.ACCOUNT_LOCKED));
+        service.flush();
+
+        assertEquals(2, attempts.size());
+        assertTrue(attempts.get(1).contains(
+            new Delta(Granularity.MINUTE, AuditEventType.ACCOUNT_LOCKED, Instant.parse("2026-10-16T09:41:00Z"), 2)),
+            "Counts from the failed flush must be retried, not lost");
+    }
+
+    @Test
+    void series_rangeTooLarge_isRejected() {
+        AuditRollupService service = newService();
+
+        assertThrows(IllegalArgumentException.class, () -> service.series(null, Granularity.MINUTE,
+            T.minusSeconds(8 * 24 * 3600), T));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private AuditRollupService newService() {
+        AuditProperties props = new AuditProperties(null, null, null, null, null, null,
+            new AuditProperties.RollupProperties(10000, 14, 10080), null, null, null, null, null);
+        return new AuditRollupService(jdbcTemplate, props, new SimpleMeterRegistry());
+    }
+
+    private static AuditRecord record(AuditEventType type) {
+        return new AuditRecord(type, null, "req-1", null, null, null, T);
+    }
+}
@@ -0,0 +1,121 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditSeal;
+import ae.uaepass.identity.repository.AuditSealRepository;
+import ae.uaepass.identity.security.AuditSealSigner;
+import ae.uaepass.identity.util.MerkleTree;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditSealVerifier.
+ * Tests that retention is checked against the recorded boundary, so rows deleted by hand
+ * below the oldest retained row fail verification.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditSealVerifierTest {
+
+    private static final Instant T0 = Instant.parse("2026-03-01T10:15:30Z");
+
+    @Mock
+    private AuditSealRepository sealRepository;
+
+    @Mock
+    private AuditSealService sealService;
+
+    @Mock
+    private AuditSealSigner signer;
+
+    private AuditSealVerifier verifier;
+    private final List<AuditSealService.ChainRow> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        AuditProperties props = new AuditProperties(null, null,
+            new AuditProperties.SealProperties(4, 60000, 60000, 2), null, null, null, null, null, null, null, null, null);
+        verifier = new AuditSealVerifier(sealRepository, sealService, signer, new TestSecretsProvider(), props);
+        AuditSequencer sequencer = new AuditSequencer(null, new TestSecretsProvider());
+        for (int i = 0; i < 8; i++) {
+            rows.add(new AuditSealService.ChainRow(i + 1, sequencer.next(new AuditRecord(AuditEventType.OTP_SENT,
+                UUID.randomUUID(), "req-" + i, "10.0.0.1", null, null, T0.plusSeconds(i)))));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifier.shutdown();
+    }
+
+    @Test
+    void partitionRetiredAtBoundary_verifiesFromRecordedHash() {
+        AuditSeal first = seal(1, 4);
+        AuditSeal second = seal(5, 8);
+        when(sealRepository.findAllByOrderByFirstSeqAsc()).thenReturn(List.of(first, second));
+        when(sealService.retentionBoundary()).thenReturn(boundary(2));
+        when(sealService.loadSeal(first)).thenReturn(rows.subList(2, 4));
+        when(sealService.loadSeal(second)).thenReturn(rows.subList(4, 8));
+        when(sealService.lastChainHash(first)).thenReturn(rows.get(3).entry().chainHash());
+        when(signer.verify(any())).thenReturn(true);
+
+        AuditSealVerifier.VerificationReport report = verifier.verifyAll();
+
+        assertTrue(report.valid(), () -> String.join("; ", report.failures()));
+        assertEquals(6, report.rowsChecked());
+    }
+
+    @Test
+    void oldestRowsAndSealsDeleted_withoutRetirement_fail() {
+        AuditSeal second = seal(5, 8);
+        when(sealRepository.findAllByOrderByFirstSeqAsc()).thenReturn(List.of(second));
+        when(sealService.retentionBoundary()).thenReturn(AuditSealService.RetentionBoundary.NONE);
+        when(sealService.loadSeal(second)).thenReturn(rows.subList(4, 8));
+
+        AuditSealVerifier.VerificationReport report = verifier.verifyAll();
+
+        assertFalse(report.valid());
+        assertTrue(report.failures().stream().anyMatch(f -> f.contains("Seqs 1..4 missing")));
+        assertTrue(report.failures().stream().anyMatch(f -> f.contains("row before seq 5 is missing")));
+    }
+
+    @Test
+    void rowsDeletedAboveBoundary_fail() {
+        AuditSeal first = seal(1, 4);
+        when(sealRepository.findAllByOrderByFirstSeqAsc()).thenReturn(List.of(first));
+        when(sealService.retentionBoundary()).thenReturn(boundary(2));
+        when(sealService.loadSeal(first)).thenReturn(rows.subList(3, 4));
+
+        AuditSealVerifier.VerificationReport report = verifier.verifyAll();
+
+        assertFalse(report.valid());
+        assertTrue(report.failures().get(0).contains("expected 2 rows, found 1"));
+    }
+
+    private AuditSeal seal(long firstSeq, long lastSeq) {
+        List<AuditSealService.ChainRow> sealed = rows.subList((int) firstSeq - 1, (int) lastSeq);
+        return new AuditSeal()
+            .range(firstSeq, lastSeq, sealed.size())
+            .createdBetween(sealed.get(0).entry().record().createdAt(),
+                sealed.get(sealed.size() - 1).entry().record().createdAt())
+            .merkleRoot(HexFormat.of().formatHex(MerkleTree.root(AuditSealService.leaves(sealed))));
+    }
+
+    private AuditSealService.RetentionBoundary boundary(long lastSeq) {
+        return new AuditSealService.RetentionBoundary(lastSeq, rows.get((int) lastSeq - 1).entry().chainHash());
+    }
+}
@@ -0,0 +1,109 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditSequencer.
+ * Tests sequence monotonicity, chain linkage, restart resumption and tamper detection.
+ */
+class AuditSequencerTest {
+
+    private AuditSequencer sequencer;
+
+    @BeforeEach
+    void setUp() {
+        sequencer = new AuditSequencer(null, new TestSecretsProvider());
+    }
+
+    @Test
+    void next_assignsMonotonicSequence() {
+        assertEquals(1, sequencer.next(record("a")).seq());
+        assertEquals(2, sequencer.next(record("b")).seq());
+        assertEquals(3, sequencer.next(record("c")).seq());
+        assertEquals(3, sequencer.lastSeq());
+    }
+
+    @Test
+    void next_linksEachEntryToPreviousHash() {
+        AuditRecord first = record("a");
+        AuditRecord second = record("b");
+
+        SequencedAuditRecord s1 = sequencer.next(first);
+        SequencedAuditRecord s2 = sequencer.next(second);
+
+        assertEquals(s1.chainHash(), sequencer.chainHash(1, first, AuditSequencer.GENESIS));
+        assertEquals(s2.chainHash(), sequencer.chainHash(2, second, s1.chainHash()));
+        assertTrue(s2.chainHash().matches("[0-9a-f]{64}"), "Chain hash must be 64 hex chars");
+    }
+
+    @Test
+    void resumeFrom_continuesChainAcrossRestart() {
+        AuditRecord a = record("a");
+        AuditRecord b = record("b");
+        SequencedAuditRecord lastBeforeRestart = sequencer.next(a);
+        SequencedAuditRecord expected = sequencer.next(b);
+
+        AuditSequencer restarted = new AuditSequencer(null, new TestSecretsProvider());
+        restarted.resumeFrom(lastBeforeRestart.seq(), lastBeforeRestart.chainHash());
+
+        assertEquals(expected, restarted.next(b), "Restarted sequencer must continue the same chain");
+    }
+
+    @Test
+    void chainHash_tamperedRecord_producesDifferentHash() {
+        AuditRecord original = record("a");
+        AuditRecord tampered = new AuditRecord(original.eventType(), original.userId(), original.requestId(),
+            "10.9.9.9", original.deviceFingerprintHash(), original.details(), original.createdAt());
+
+        assertNotEquals(
+            sequencer.chainHash(1, original, AuditSequencer.GENESIS),
+            sequencer.chainHash(1, tampered, AuditSequencer.GENESIS),
+            "Any field change must break the chain");
+    }
+
+    @Test
+    void chainHash_byteEncoding_matchesCanonicalString() throws Exception {
+        Mac mac = AuditSequencer.newMac(new TestSecretsProvider());
+        AuditRecord ascii = record("req-1");
+        AuditRecord nulls = new AuditRecord(AuditEventType.KEY_ROTATION_NEEDED, null, null, null, null, null,
+            Instant.parse("1969-12-31T23:59:59.999Z"));
+        AuditRecord unicode = new AuditRecord(AuditEventType.AUDIT_EXPORTED,
+            UUID.fromString("00000000-0000-0001-0000-00000000000a"), "req-2", "2001:db8::1", "fp",
+            "{\"exportedBy\":\"مشرف\"}", Instant.parse("2026-01-01T00:00:00Z"));
+
+        AuditRecord coalesced = new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-3", "10.0.0.1",
+            null, "{\"channel\":\"SMS\"}", Instant.parse("2026-01-01T00:01:00Z"), 42,
+            Instant.parse("2026-01-01T00:00:00Z"));
+
+        for (AuditRecord record : List.of(ascii, nulls, unicode, coalesced)) {
+            String text = AuditSequencer.canonical(Long.MAX_VALUE, record) + "|" + AuditSequencer.GENESIS;
+            String expected = HexFormat.of().formatHex(mac.doFinal(text.getBytes(StandardCharsets.UTF_8)));
+            assertEquals(expected, sequencer.chainHash(Long.MAX_VALUE, record, AuditSequencer.GENESIS),
+                "Byte encoding must stay identical to the documented canonical form");
+        }
+    }
+
+    @Test
+    void canonical_singleEvent_keepsPreCoalescingForm() {
+        AuditRecord single = record("req-1");
+
+        // seq + seven columns, exactly as before: rows chained before coalescing existed still verify
+        assertEquals(8, AuditSequencer.canonical(7, single).split("\\|", -1).length);
+    }
+
+    private static AuditRecord record(String requestId) {
+        return new AuditRecord(AuditEventType.OTP_FAILED, UUID.randomUUID(), requestId, "10.0.0.1",
+            null, "{\"reason\":\"expired\"}", Instant.parse("2026-01-01T00:00:00Z"));
+    }
+}
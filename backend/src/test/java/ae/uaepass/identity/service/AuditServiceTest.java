@@ -0,0 +1,146 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditService and AuditExecutor.
+ * Tests request snapshotting, typed details serialization and executor saturation policies.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditServiceTest {
+
+    @Mock
+    private AuditWriter auditWriter;
+
+    @Mock
+    private AuditCoalescer coalescer;
+
+    @Mock
+    private HttpServletRequest request;
+
+    private AuditExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    @Test
+    void logEvent_capturesRequestBeforeHandOff() throws Exception {
+        executor = newExecutor(AuditProperties.SaturationPolicy.CALLER_RUNS);
+        CountDownLatch release = blockWorker();
+        AuditService service = new AuditService(auditWriter, executor, coalescer, new ObjectMapper());
+        when(request.getHeader("X-Forwarded-For")).thenReturn("203.0.113.7, 10.0.0.1");
+        when(request.getHeader("X-Device-Fingerprint")).thenReturn("fp-hash");
+        when(request.getAttribute("requestId")).thenReturn("req-42");
+
+        service.logEvent(AuditEventType.OTP_SENT, UUID.randomUUID(), request, new AuditDetails.OtpSent("SMS"));
+        release.countDown();
+
+        ArgumentCaptor<AuditRecord> captor = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(auditWriter, timeout(2000)).enqueue(captor.capture());
+        AuditRecord record = captor.getValue();
+        assertEquals("req-42", record.requestId());
+        assertEquals("203.0.113.7", record.ipAddress());
+        assertEquals("fp-hash", record.deviceFingerprintHash());
+        assertEquals("{\"channel\":\"SMS\"}", record.details());
+        verify(request).getAttribute("requestId");
+        verify(request, times(2)).getHeader(anyString());
+        verifyNoMoreInteractions(request);
+    }
+
+    @Test
+    void logEvent_typedDetails_serializeAsSortedCompactJson() throws Exception {
+        executor = newExecutor(AuditProperties.SaturationPolicy.CALLER_RUNS);
+        AuditService service = new AuditService(auditWriter, executor, coalescer, new ObjectMapper());
+
+        service.logEvent(AuditEventType.OTP_FAILED, null, (String) null, new AuditDetails.OtpAttempts(2, 5));
+        service.logEvent(AuditEventType.KEY_ROTATION_NEEDED, null, (String) null,
+            AuditDetails.KeyRotation.expiringSoon("signing-key", 12));
+
+        ArgumentCaptor<AuditRecord> captor = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(auditWriter, timeout(2000).times(2)).enqueue(captor.capture());
+        List<String> details = captor.getAllValues().stream().map(AuditRecord::details).sorted().toList();
+        assertEquals(List.of(
+            "{\"alias\":\"signing-key\",\"daysUntilExpiry\":\"12\",\"status\":\"EXPIRING_SOON\"}",
+            "{\"attemptsUsed\":2,\"maxAttempts\":5}"), details);
+    }
+
+    @Test
+    void execute_saturatedWithDropPolicy_dropsAndCounts() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor = new AuditExecutor(props(AuditProperties.SaturationPolicy.DROP), registry);
+        CountDownLatch release = blockWorker();
+        executor.execute(() -> {});   // fills the single queue slot
+
+        executor.execute(() -> fail("Must be dropped"));
+        release.countDown();
+
+        assertEquals(1.0, registry.get("identity.audit.executor.saturated")
+            .tag("outcome", "dropped").counter().count());
+    }
+
+    @Test
+    void execute_saturatedWithCallerRunsPolicy_runsOnCaller() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor = new AuditExecutor(props(AuditProperties.SaturationPolicy.CALLER_RUNS), registry);
+        CountDownLatch release = blockWorker();
+        executor.execute(() -> {});
+
+        Thread[] ranOn = new Thread[1];
+        executor.execute(() -> ranOn[0] = Thread.currentThread());
+        release.countDown();
+
+        assertSame(Thread.currentThread(), ranOn[0]);
+        assertEquals(1.0, registry.get("identity.audit.executor.saturated")
+            .tag("outcome", "caller_runs").counter().count());
+    }
+
+    /**
+     * Occupies the single worker thread until the returned latch is released.
+     */
+    private CountDownLatch blockWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private AuditExecutor newExecutor(AuditProperties.SaturationPolicy policy) {
+        return new AuditExecutor(props(policy), new SimpleMeterRegistry());
+    }
+
+    private static AuditProperties props(AuditProperties.SaturationPolicy policy) {
+        return new AuditProperties(
+            new AuditProperties.ExecutorProperties(1, 1, policy, 10, 2000),
+            null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
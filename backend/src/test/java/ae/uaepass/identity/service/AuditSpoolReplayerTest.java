@@ -0,0 +1,128 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditSpoolReplayer.
+ * Tests that a row Postgres rejects is quarantined and tombstoned instead of stalling replay,
+ * and that a batch whose seqs another writer already stored is never replayed.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditSpoolReplayerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UserActivityService activity;
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry registry;
+    private AuditSpool spool;
+    private AuditSpoolReplayer replayer;
+    private final List<SequencedAuditRecord> inserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        AuditProperties props = new AuditProperties(null, null, null, null, null,
+            new AuditProperties.SpoolProperties(true, dir.toString(), 1 << 20, 1L << 30, 100, 1000),
+            null, null, null, null, null, null);
+        spool = new AuditSpool(props, registry);
+        spool.open();
+        replayer = new AuditSpoolReplayer(spool, new AuditQuarantine(props, new ObjectMapper(), registry),
+            new AuditSequencer(jdbcTemplate, new TestSecretsProvider()), jdbcTemplate, transactionManager, activity, props, registry);
+    }
+
+    @Test
+    void rejectedRow_isQuarantinedAndTombstoned_andReplayMovesOn() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(inv -> {
+            Collection<SequencedAuditRecord> rows = inv.getArgument(1);
+            if (rows.stream().anyMatch(row -> "req-bad".equals(row.record().requestId()))) {
+                throw new DataIntegrityViolationException("value too long",
+                    new SQLException("value too long for type character varying(64)", "22001"));
+            }
+            inserted.addAll(rows);
+            return new int[0][];
+        });
+        spool.append(List.of(row(1, "req-1"), row(2, "req-bad"), row(3, "req-3")));
+
+        replayer.replay();
+
+        assertFalse(spool.hasBacklog(), "The checkpoint must pass the rejected row");
+        assertEquals(List.of(1L, 2L, 3L), inserted.stream().map(SequencedAuditRecord::seq).toList());
+        SequencedAuditRecord tombstone = inserted.get(1);
+        assertTrue(AuditQuarantine.isTombstone(tombstone.record()));
+        assertEquals("hash-2", tombstone.chainHash(), "The next row must still chain over the stored hash");
+        assertEquals("{\"quarantined\":\"22001\"}", tombstone.record().details());
+        assertEquals(1.0, registry.get("identity.audit.quarantined").counter().count());
+        List<String> quarantined = Files.readAllLines(dir.resolve(AuditQuarantine.FILE_NAME));
+        assertEquals(1, quarantined.size());
+        assertTrue(quarantined.get(0).contains("\"seq\":2"));
+        assertTrue(quarantined.get(0).contains("\"requestId\":\"req-bad\""));
+        verify(activity, times(2)).recordWritten(any());
+    }
+
+    @Test
+    void transientFailure_keepsBatchInSpool() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+            .thenThrow(new DataAccessResourceFailureException("down", new SQLException("refused", "08001")));
+        spool.append(List.of(row(1, "req-1")));
+
+        replayer.replay();
+
+        assertTrue(spool.hasBacklog());
+        assertFalse(Files.exists(dir.resolve(AuditQuarantine.FILE_NAME)));
+    }
+
+    @Test
+    void seqStoredByAnotherWriter_stopsReplayWithoutInserting() {
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<Object[]>>any(), anyLong(), anyLong()))
+            .thenReturn(List.<Object[]>of(new Object[] { 2L, "hash-from-other-writer" }));
+        spool.append(List.of(row(1, "req-1"), row(2, "req-2")));
+
+        replayer.replay();
+
+        assertTrue(spool.hasBacklog(), "A forked batch must stay in the spool");
+        assertEquals(1.0, registry.get("identity.audit.chain.forks").counter().count());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+    }
+
+    private static SequencedAuditRecord row(long seq, String requestId) {
+        return new SequencedAuditRecord(new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), requestId,
+            "10.0.0.1", null, null, Instant.parse("2026-03-01T10:15:30Z")), seq, "hash-" + seq);
+    }
+}
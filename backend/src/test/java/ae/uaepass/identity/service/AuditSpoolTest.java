@@ -0,0 +1,189 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AuditSpool.
+ * Tests round-tripping, recovery after restart, rollover, torn-write truncation and the size cap.
+ */
+class AuditSpoolTest {
+
+    @TempDir
+    Path dir;
+
+    /** Fresh per spool instance, so gauges always observe the latest one. */
+    private SimpleMeterRegistry registry;
+
+    @Test
+    void appendAndPeek_roundTripsRecordsInOrder() {
+        AuditSpool spool = open(1 << 20);
+        List<SequencedAuditRecord> batch = records(1, 3);
+
+        assertTrue(spool.append(batch));
+        AuditSpool.Batch peeked = spool.peek(10);
+
+        assertEquals(batch, peeked.records());
+        assertTrue(spool.hasBacklog(), "Peek must not consume");
+        spool.commit(peeked);
+        assertFalse(spool.hasBacklog());
+    }
+
+    @Test
+    void encode_coalescedRecord_roundTripsOccurrences() throws IOException {
+        AuditRecord coalesced = new AuditRecord(AuditEventType.OTP_FAILED, UUID.randomUUID(), "req-9", "10.0.0.1",
+            null, "{\"reason\":\"expired\"}", Instant.parse("2026-01-01T00:01:00Z"), 17,
+            Instant.parse("2026-01-01T00:00:00.123456789Z"));
+        SequencedAuditRecord sequenced = new SequencedAuditRecord(coalesced, 9, "hash-9");
+
+        assertEquals(sequenced, AuditSpool.decode(ByteBuffer.wrap(AuditSpool.encode(sequenced))));
+    }
+
+    @Test
+    void open_afterRestart_resumesFromCheckpoint() {
+        AuditSpool first = open(1 << 20);
+        first.append(records(1, 4));
+        first.commit(first.peek(2));
+        first.close();
+
+        AuditSpool reopened = open(1 << 20);
+
+        assertEquals(List.of(3L, 4L), seqs(reopened.peek(10)));
+        assertEquals(4L, reopened.lastAppended().seq());
+        assertEquals(2.0, registry.get("identity.audit.spool.records").gauge().value());
+    }
+
+    @Test
+    void append_pastSegmentSize_rollsOverAndDeletesReplayedSegments() throws IOException {
+        AuditSpool spool = open(1024);
+        for (long seq = 1; seq <= 20; seq++) {
+            assertTrue(spool.append(records(seq, 1)));
+        }
+        assertTrue(segmentCount() > 1, "Small segments must roll over");
+        assertTrue(registry.get("identity.audit.spool.rollovers").counter().count() > 1);
+
+        AuditSpool.Batch all = spool.peek(100);
+        assertEquals(20, all.records().size());
+        spool.commit(all);
+
+        assertEquals(1, segmentCount(), "Only the active segment survives a full replay");
+    }
+
+    @Test
+    void open_tornRecord_isTruncated() throws IOException {
+        AuditSpool spool = open(1 << 20);
+        spool.append(records(1, 2));
+        long firstRecordBytes = spool.peek(1).bytes();
+        spool.close();
+
+        // Corrupt the second record's payload, as if the process died mid-write
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.toString().endsWith(".spool")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Past the second record's [length][crc] header, inside its payload
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3}), firstRecordBytes + 12);
+        }
+
+        AuditSpool reopened = open(1 << 20);
+
+        assertEquals(List.of(1L), seqs(reopened.peek(10)));
+        assertEquals(1L, reopened.lastAppended().seq());
+    }
+
+    @Test
+    void append_pastMaxBytes_refusesWholeBatchUntilReplayed() {
+        long recordBytes = spoolBytes(records(1, 1));
+        AuditSpool spool = open(1 << 20, recordBytes * 3);
+
+        assertTrue(spool.append(records(1, 2)));
+        assertFalse(spool.append(records(3, 2)), "Two more records would pass max-bytes");
+        assertEquals(2, spool.peek(10).records().size(), "A refused batch leaves nothing behind");
+        assertEquals(1.0, registry.get("identity.audit.spool.full").counter().count());
+
+        spool.commit(spool.peek(10));
+        assertTrue(spool.append(records(3, 2)));
+    }
+
+    @Test
+    void append_disabledSpool_returnsFalse() {
+        AuditSpool spool = new AuditSpool(props(false, 1 << 20), new SimpleMeterRegistry());
+        spool.open();
+
+        assertFalse(spool.append(records(1, 1)));
+        assertFalse(spool.hasBacklog());
+    }
+
+    private AuditSpool open(int segmentBytes) {
+        return open(segmentBytes, 1L << 30);
+    }
+
+    private AuditSpool open(int segmentBytes, long maxBytes) {
+        registry = new SimpleMeterRegistry();
+        AuditSpool spool = new AuditSpool(props(true, segmentBytes, maxBytes), registry);
+        spool.open();
+        return spool;
+    }
+
+    private AuditProperties props(boolean enabled, int segmentBytes) {
+        return props(enabled, segmentBytes, 1L << 30);
+    }
+
+    private AuditProperties props(boolean enabled, int segmentBytes, long maxBytes) {
+        return new AuditProperties(null, null, null, null, null,
+            new AuditProperties.SpoolProperties(enabled, dir.toString(), segmentBytes, maxBytes, 100, 1000),
+            null, null, null, null, null, null);
+    }
+
+    /** Length and CRC header plus payload. */
+    private static long spoolBytes(List<SequencedAuditRecord> batch) {
+        long bytes = 0;
+        for (SequencedAuditRecord record : batch) {
+            try {
+                bytes += 8 + AuditSpool.encode(record).length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return bytes;
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".spool")).count();
+        }
+    }
+
+    private static List<Long> seqs(AuditSpool.Batch batch) {
+        return batch.records().stream().map(SequencedAuditRecord::seq).toList();
+    }
+
+    private static List<SequencedAuditRecord> records(long firstSeq, int count) {
+        List<SequencedAuditRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AuditRecord record = new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-" + i,
+                "10.0.0.1", null, "{\"channel\":\"SMS\"}", Instant.ofEpochSecond(1_700_000_000L, 123_456_000));
+            records.add(new SequencedAuditRecord(record, firstSeq + i, "hash-" + (firstSeq + i)));
+        }
+        return records;
+    }
+}
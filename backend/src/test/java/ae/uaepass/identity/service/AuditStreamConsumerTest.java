@@ -0,0 +1,214 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditStreamConsumer.
+ * Tests that redelivered entries are skipped by what was persisted, not by stream ID order,
+ * and that an entry rejected on its data is dead-lettered only after max-deliveries.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditStreamConsumerTest {
+
+    private static final String KEY = "audit:stream";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private AuditSequencer sequencer;
+
+    @Mock
+    private AuditRollupService rollups;
+
+    @Mock
+    private UserActivityService activity;
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> entryIds;
+
+    private SimpleMeterRegistry registry;
+    private AuditStreamConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        AuditProperties props = new AuditProperties(null, null, null, null, null, null, null, null, null, null,
+            new AuditProperties.StreamProperties(true, KEY, "audit-writers", 100, 1000, 5000, 500, 3, 10000), null);
+        consumer = new AuditStreamConsumer(redisTemplate, jdbcTemplate, transactionManager, sequencer,
+            rollups, activity, props, registry);
+    }
+
+    @Test
+    void entriesReadByStalledFormerWriter_arePersistedAfterLaterIds() {
+        // The current writer has persisted up to 5-0 (commit 3). A former writer that stalled past its
+        // lease read 3-0 and 4-0 into its pending list and never persisted them; they are claimed now,
+        // together with 5-0, redelivered after a lost acknowledgement.
+        consumer.restoreOffset("5-0", 3);
+        when(jdbcTemplate.query(eq(AuditStreamConsumer.PERSISTED_ENTRIES_SQL),
+            ArgumentMatchers.<RowMapper<String>>any(), eq(KEY), eq(3L), eq(0L), eq(5L), eq(0L))).thenReturn(List.of("5-0"));
+        when(sequencer.next(any())).thenAnswer(call -> new SequencedAuditRecord(call.getArgument(0), 1, "h"));
+        when(jdbcTemplate.update(eq(AuditStreamConsumer.ADVANCE_OFFSET_SQL), any(), any(), any())).thenReturn(1);
+
+        consumer.persist(List.of(entry("3-0", "req-3"), entry("4-0", "req-4"), entry("5-0", "req-5")));
+
+        ArgumentCaptor<AuditRecord> sequenced = ArgumentCaptor.forClass(AuditRecord.class);
+        verify(sequencer, times(2)).next(sequenced.capture());
+        assertEquals(List.of("req-3", "req-4"), sequenced.getAllValues().stream().map(AuditRecord::requestId).toList());
+
+        verify(jdbcTemplate).batchUpdate(eq(AuditStreamConsumer.INSERT_ENTRY_SQL), entryIds.capture());
+        assertEquals(List.of(3L, 4L), entryIds.getValue().stream().map(row -> row[1]).toList());
+        // Offset stays at the highest persisted ID; the writer fence is the commit count
+        verify(jdbcTemplate).update(AuditStreamConsumer.ADVANCE_OFFSET_SQL, "5-0", KEY, 3L);
+        assertEquals(1.0, registry.get("identity.audit.stream.duplicates").counter().count());
+    }
+
+    @Test
+    void freshEntriesAboveOffset_needNoLookup() {
+        consumer.restoreOffset("5-0", 3);
+        when(sequencer.next(any())).thenAnswer(call -> new SequencedAuditRecord(call.getArgument(0), 1, "h"));
+        when(jdbcTemplate.update(eq(AuditStreamConsumer.ADVANCE_OFFSET_SQL), any(), any(), any())).thenReturn(1);
+
+        consumer.persist(List.of(entry("6-0", "req-6"), entry("7-0", "req-7")));
+
+        verify(jdbcTemplate, never()).query(eq(AuditStreamConsumer.PERSISTED_ENTRIES_SQL),
+            ArgumentMatchers.<RowMapper<String>>any(), any(Object[].class));
+        verify(jdbcTemplate).update(AuditStreamConsumer.ADVANCE_OFFSET_SQL, "7-0", KEY, 3L);
+    }
+
+    @Test
+    void staleCommitCount_failsBatchAndRestoresChainHead() {
+        consumer.restoreOffset("5-0", 3);
+        when(sequencer.lastSeq()).thenReturn(41L);
+        when(sequencer.lastHash()).thenReturn("head");
+        when(sequencer.next(any())).thenAnswer(call -> new SequencedAuditRecord(call.getArgument(0), 42, "h"));
+        when(jdbcTemplate.update(eq(AuditStreamConsumer.ADVANCE_OFFSET_SQL), any(), any(), any())).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> consumer.persist(List.of(entry("6-0", "req-6"))));
+        verify(sequencer).resumeFrom(41L, "head");
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void persistEachEntry_entryRejectedAtMaxDeliveries_isDeadLetteredAndRestPersisted() {
+        consumer.restoreOffset("5-0", 3);
+        RedisStreamCommands streams = redisStreams();
+        rejectRequest("req-bad");
+        when(sequencer.next(any())).thenAnswer(call -> new SequencedAuditRecord(call.getArgument(0), 1, "h"));
+        when(jdbcTemplate.update(eq(AuditStreamConsumer.ADVANCE_OFFSET_SQL), any(), any(), any())).thenReturn(1);
+        when(streams.xPending(any(byte[].class), eq("audit-writers"), anyString(), any(), eq(1L)))
+            .thenReturn(pending("6-0", 3));
+
+        consumer.persistEachEntry(List.of(entry("6-0", "req-bad"), entry("7-0", "req-7")));
+
+        verify(streams).xAdd(any());
+        verify(streams).xAck(any(byte[].class), eq("audit-writers"), eq(RecordId.of("6-0")));
+        verify(streams).xAck(any(byte[].class), eq("audit-writers"), eq(RecordId.of("7-0")));
+        verify(jdbcTemplate).update(AuditStreamConsumer.ADVANCE_OFFSET_SQL, "7-0", KEY, 3L);
+        assertEquals(1.0, registry.get("identity.audit.stream.dead.letters").counter().count());
+    }
+
+    @Test
+    void persistEachEntry_rejectedBelowMaxDeliveries_staysPending() {
+        consumer.restoreOffset("5-0", 3);
+        RedisStreamCommands streams = redisStreams();
+        rejectRequest("req-bad");
+        when(sequencer.next(any())).thenAnswer(call -> new SequencedAuditRecord(call.getArgument(0), 1, "h"));
+        when(streams.xPending(any(byte[].class), eq("audit-writers"), anyString(), any(), eq(1L)))
+            .thenReturn(pending("6-0", 2));
+
+        assertThrows(DataIntegrityViolationException.class,
+            () -> consumer.persistEachEntry(List.of(entry("6-0", "req-bad"), entry("7-0", "req-7"))));
+        verify(streams, never()).xAdd(any());
+        verify(streams, never()).xAck(any(byte[].class), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    void isPoison_outagesAndLostLeaseAreRetried() {
+        assertTrue(AuditStreamConsumer.isPoison(new DataIntegrityViolationException("too long",
+            new SQLException("value too long", "22001"))));
+        assertTrue(AuditStreamConsumer.isPoison(new NullPointerException()));
+        assertFalse(AuditStreamConsumer.isPoison(new DataAccessResourceFailureException("down",
+            new SQLException("connection refused", "08001"))));
+        assertFalse(AuditStreamConsumer.isPoison(new RedisConnectionFailureException("down")));
+        assertFalse(AuditStreamConsumer.isPoison(new AuditStreamConsumer.LeaseLostException()));
+    }
+
+    private RedisStreamCommands redisStreams() {
+        RedisConnection connection = mock(RedisConnection.class);
+        RedisStreamCommands streams = mock(RedisStreamCommands.class);
+        when(connection.streamCommands()).thenReturn(streams);
+        when(redisTemplate.execute(ArgumentMatchers.<RedisCallback<Object>>any()))
+            .thenAnswer(call -> call.<RedisCallback<Object>>getArgument(0).doInRedis(connection));
+        return streams;
+    }
+
+    private void rejectRequest(String requestId) {
+        when(jdbcTemplate.batchUpdate(eq(AuditWriter.INSERT_SQL), anyCollection(), anyInt(), any())).thenAnswer(call -> {
+            Collection<SequencedAuditRecord> rows = call.getArgument(1);
+            if (rows.stream().anyMatch(row -> requestId.equals(row.record().requestId()))) {
+                throw new DataIntegrityViolationException("value too long",
+                    new SQLException("value too long for type character varying(64)", "22001"));
+            }
+            return new int[0][];
+        });
+    }
+
+    private static PendingMessages pending(String id, long deliveries) {
+        return new PendingMessages("audit-writers", List.of(new PendingMessage(RecordId.of(id),
+            Consumer.from("audit-writers", "me"), Duration.ofSeconds(1), deliveries)));
+    }
+
+    private static ByteRecord entry(String id, String requestId) {
+        AuditRecord record = new AuditRecord(AuditEventType.LOGIN_SUCCESS, UUID.randomUUID(), requestId,
+            "10.0.0.1", null, null, Instant.parse("2026-03-01T10:15:30Z"));
+        return StreamRecords.rawBytes(Map.of(AuditStreamPublisher.FIELD, AuditStreamPublisher.encode(List.of(record))))
+            .withStreamKey(KEY.getBytes(StandardCharsets.UTF_8))
+            .withId(RecordId.of(id));
+    }
+}
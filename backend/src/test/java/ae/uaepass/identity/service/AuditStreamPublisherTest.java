@@ -0,0 +1,53 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Redis stream entry format and stream ID ordering.
+ * Ensures records survive the stream unchanged, including coalesced ones, since the consumer
+ * hashes them into the audit chain.
+ */
+class AuditStreamPublisherTest {
+
+    @Test
+    void batch_roundTripsThroughEntryPayload() {
+        Instant now = Instant.parse("2026-03-01T10:15:30.123456789Z");
+        List<AuditRecord> batch = List.of(
+            new AuditRecord(AuditEventType.LOGIN_SUCCESS, UUID.randomUUID(), "req-1", "10.0.0.1",
+                "ab".repeat(32), "{\"channel\":\"SMS\"}", now),
+            new AuditRecord(AuditEventType.KEY_ROTATION_NEEDED, null, null, null, null, null, now),
+            new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-3", "2001:db8::1", null,
+                null, now, 42, now.minusSeconds(59)));
+
+        List<AuditRecord> decoded = AuditStreamPublisher.decode(AuditStreamPublisher.encode(batch));
+
+        assertEquals(batch, decoded);
+    }
+
+    @Test
+    void emptyBatch_roundTrips() {
+        assertEquals(List.of(), AuditStreamPublisher.decode(AuditStreamPublisher.encode(List.of())));
+    }
+
+    @Test
+    void unknownFormatVersion_isRejected() {
+        byte[] payload = AuditStreamPublisher.encode(List.of());
+        payload[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> AuditStreamPublisher.decode(payload));
+    }
+
+    @Test
+    void streamIds_compareNumericallyByTimeThenSequence() {
+        assertTrue(AuditStreamConsumer.compareIds("1700000000000-0", "0-0") > 0);
+        assertTrue(AuditStreamConsumer.compareIds("999-5", "1000-0") < 0, "Not a string comparison");
+        assertTrue(AuditStreamConsumer.compareIds("1000-9", "1000-10") < 0);
+        assertEquals(0, AuditStreamConsumer.compareIds("1000-10", "1000-10"));
+    }
+}
@@ -0,0 +1,296 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AuditWriter.
+ * Tests batch flushing, drain on shutdown, back-pressure, spooling and failure handling,
+ * including isolating a row Postgres rejects and refusing to sequence on another writer's chain.
+ */
+@ExtendWith(MockitoExtension.class)
+class AuditWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private UserActivityService activity;
+
+    @Mock
+    private AuditStreamPublisher stream;
+
+    @Mock
+    private SecurityEventFeed feed;
+
+    @Mock
+    private AuditChainLock chainLock;
+
+    @TempDir
+    Path spoolDir;
+
+    private SimpleMeterRegistry registry;
+    private AuditSequencer sequencer;
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        sequencer = new AuditSequencer(jdbcTemplate, new TestSecretsProvider());
+        lenient().when(chainLock.check()).thenReturn(AuditChainLock.Status.HELD);
+        lenient().when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+            .thenAnswer(inv -> {
+                Collection<?> batch = inv.getArgument(1);
+                synchronized (batchSizes) {
+                    batchSizes.add(batch.size());
+                }
+                return new int[0][];
+            });
+    }
+
+    @Test
+    void stop_drainsBufferedEventsInBatches() {
+        AuditWriter writer = newWriter(1000, 100);
+        writer.start();
+
+        for (int i = 0; i < 250; i++) {
+            assertTrue(writer.enqueue(record()));
+        }
+        writer.stop();
+
+        int total;
+        synchronized (batchSizes) {
+            total = batchSizes.stream().mapToInt(Integer::intValue).sum();
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 100), "Batches must respect batch-size");
+        }
+        assertEquals(250, total, "All buffered events must be written on shutdown");
+        assertEquals(0.0, registry.get("identity.audit.queue.depth").gauge().value());
+    }
+
+    @Test
+    void enqueue_afterStop_dropsAndCounts() {
+        AuditWriter writer = newWriter(2, 10);
+        writer.start();
+        writer.stop();
+
+        assertFalse(writer.enqueue(record()), "Stopped writer must not accept events");
+        assertEquals(1.0, registry.get("identity.audit.dropped").counter().count());
+    }
+
+    @Test
+    void flush_databaseFailure_spoolsBatch() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+            .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        AuditWriter writer = newWriter(100, 10, true);
+        writer.start();
+
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(record());
+        }
+        writer.stop();
+
+        assertEquals(0.0, registry.get("identity.audit.write.failures").counter().count());
+        assertEquals(5.0, registry.get("identity.audit.spool.records").gauge().value());
+        assertEquals(5L, sequencer.lastSeq(), "Spooled events stay in the chain");
+    }
+
+    @Test
+    void flush_databaseFailureWithoutSpool_countsLostEvents() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+            .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        AuditWriter writer = newWriter(100, 10, false);
+        writer.start();
+
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(record());
+        }
+        writer.stop();
+
+        assertEquals(5.0, registry.get("identity.audit.write.failures").counter().count());
+        assertEquals(0L, sequencer.lastSeq(), "Lost batches must not advance the chain head");
+        assertEquals(AuditSequencer.GENESIS, sequencer.lastHash());
+    }
+
+    @Test
+    void flush_rejectedRow_isolatesItAndKeepsChainContiguous() throws Exception {
+        List<SequencedAuditRecord> inserted = Collections.synchronizedList(new ArrayList<>());
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any())).thenAnswer(inv -> {
+            Collection<SequencedAuditRecord> rows = inv.getArgument(1);
+            if (rows.stream().anyMatch(row -> "req-bad".equals(row.record().requestId()))) {
+                throw new DataIntegrityViolationException("value too long",
+                    new SQLException("value too long for type character varying(64)", "22001"));
+            }
+            inserted.addAll(rows);
+            return new int[0][];
+        });
+        AuditWriter writer = newWriter(100, 10, true);
+        writer.start();
+
+        writer.enqueue(record());
+        writer.enqueue(record());
+        writer.enqueue(new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-bad",
+            "10.0.0.1", null, null, Instant.now()));
+        writer.enqueue(record());
+        writer.stop();
+
+        assertEquals(0.0, registry.get("identity.audit.write.failures").counter().count());
+        assertEquals(1.0, registry.get("identity.audit.quarantined").counter().count());
+        assertEquals(0.0, registry.get("identity.audit.spool.records").gauge().value(), "Data errors are not spooled");
+        List<String> quarantined = Files.readAllLines(spoolDir.resolve(AuditQuarantine.FILE_NAME));
+        assertEquals(1, quarantined.size());
+        assertTrue(quarantined.get(0).contains("\"requestId\":\"req-bad\""));
+        assertTrue(quarantined.get(0).contains("\"sqlState\":\"22001\""));
+        assertEquals(List.of(1L, 2L, 3L), inserted.stream().map(SequencedAuditRecord::seq).toList(),
+            "The rejected event must leave no seq gap");
+        assertEquals(3L, sequencer.lastSeq());
+        assertEquals(inserted.get(2).chainHash(), sequencer.lastHash());
+        assertEquals(inserted.get(2).chainHash(),
+            sequencer.chainHash(3, inserted.get(2).record(), inserted.get(1).chainHash()));
+    }
+
+    @Test
+    void flush_chainLockHeldElsewhere_dropsBatchWithoutSequencing() {
+        when(chainLock.check()).thenReturn(AuditChainLock.Status.LOST);
+        AuditWriter writer = newWriter(100, 10);
+        writer.start();
+
+        for (int i = 0; i < 5; i++) {
+            writer.enqueue(record());
+        }
+        writer.stop();
+
+        verify(chainLock).acquire();
+        verify(chainLock).release();
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+        assertEquals(5.0, registry.get("identity.audit.write.failures").counter().count());
+        assertEquals(0L, sequencer.lastSeq(), "Only the lock holder sequences");
+    }
+
+    @Test
+    void flush_seqStoredByAnotherWriter_refusesBatchAndReloadsHead() {
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<Object[]>>any(), anyLong(), anyLong()))
+            .thenReturn(List.<Object[]>of(new Object[] { 1L, "hash-from-other-writer" }));
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<Object[]>>any()))
+            .thenReturn(List.of())
+            .thenReturn(List.<Object[]>of(new Object[] { 7L, "hash-from-other-writer" }));
+        AuditWriter writer = newWriter(100, 10);
+        writer.start();
+
+        writer.enqueue(record());
+        writer.stop();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+        assertEquals(1.0, registry.get("identity.audit.chain.forks").counter().count());
+        assertEquals(1.0, registry.get("identity.audit.write.failures").counter().count());
+        assertEquals(7L, sequencer.lastSeq(), "The head is reloaded from the stored chain");
+        assertEquals("hash-from-other-writer", sequencer.lastHash());
+    }
+
+    @Test
+    void isTransient_onlyDataErrorsArePermanent() {
+        assertTrue(AuditWriter.isTransient(new DataAccessResourceFailureException("down",
+            new SQLException("connection refused", "08001"))));
+        assertFalse(AuditWriter.isTransient(new UncategorizedSQLException("batch", "INSERT",
+            new BatchUpdateException("Batch entry 3 was aborted", "22001", new int[0]))));
+        SQLException batch = new BatchUpdateException("Batch entry 0 was aborted", null, new int[0]);
+        batch.setNextException(new SQLException("new row violates check constraint", "23514"));
+        assertFalse(AuditWriter.isTransient(new UncategorizedSQLException("batch", "INSERT", batch)));
+    }
+
+    @Test
+    void streamTransport_publishesBatches_withoutSequencingOrInserting() {
+        List<Integer> published = Collections.synchronizedList(new ArrayList<>());
+        when(stream.isEnabled()).thenReturn(true);
+        when(stream.publish(anyList())).thenAnswer(inv -> {
+            published.add(inv.<List<?>>getArgument(0).size());
+            return null;
+        });
+        AuditWriter writer = newWriter(1000, 100);
+        writer.start();
+        for (int i = 0; i < 250; i++) {
+            assertTrue(writer.enqueue(record()));
+        }
+        writer.stop();
+
+        assertEquals(250, published.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(published.stream().allMatch(size -> size <= 100));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+        assertEquals(0L, sequencer.lastSeq(), "Only the stream consumer sequences");
+    }
+
+    @Test
+    void streamTransport_retriesWhileRedisIsDown() {
+        List<Integer> published = Collections.synchronizedList(new ArrayList<>());
+        when(stream.isEnabled()).thenReturn(true);
+        when(stream.publish(anyList()))
+            .thenThrow(new RedisConnectionFailureException("down"))
+            .thenAnswer(inv -> {
+                published.add(inv.<List<?>>getArgument(0).size());
+                return null;
+            });
+        AuditWriter writer = newWriter(1000, 100);
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            writer.enqueue(record());
+        }
+        verify(stream, timeout(2000).atLeast(2)).publish(anyList());
+        writer.stop();
+
+        assertEquals(10, published.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(0.0, registry.get("identity.audit.write.failures").counter().count());
+    }
+
+    private AuditWriter newWriter(int capacity, int batchSize) {
+        return newWriter(capacity, batchSize, false);
+    }
+
+    private AuditWriter newWriter(int capacity, int batchSize, boolean spoolEnabled) {
+        AuditProperties props = new AuditProperties(null,
+            new AuditProperties.WriterProperties(capacity, batchSize, 50, 10, 5000, capacity),
+            null, null, null,
+            new AuditProperties.SpoolProperties(spoolEnabled, spoolDir.toString(), 1 << 20, 1L << 30, 100, 1000),
+            new AuditProperties.RollupProperties(10000, 14, 10080), null, null, null, null, null);
+        return new AuditWriter(jdbcTemplate, transactionManager, sequencer, chainLock, new AuditSpool(props, registry),
+            new AuditQuarantine(props, new ObjectMapper(), registry),
+            new AuditRollupService(jdbcTemplate, props, registry), activity, stream, feed, props, registry);
+    }
+
+    private static AuditRecord record() {
+        return new AuditRecord(AuditEventType.OTP_SENT, UUID.randomUUID(), "req-1",
+            "10.0.0.1", null, "{\"channel\":\"SMS\"}", Instant.now());
+    }
+}
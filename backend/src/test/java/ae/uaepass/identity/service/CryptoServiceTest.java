@@ -1,7 +1,28 @@
 package ae.uaepass.identity.service;
 
-import org.junit.jupiter.api.Test;
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.security.CryptoProviders;
+import ae.uaepass.identity.security.RandomSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -96,20 +117,183 @@ class CryptoServiceTest {
     @Test
     void generateOtp_producesVariedValues() {
         // Generate multiple OTPs — they should not all be the same
-        java.util.Set<String> otps = new java.util.HashSet<>();
+        Set<String> otps = new HashSet<>();
         for (int i = 0; i < 100; i++) {
             otps.add(generateOtpTestHelper(6));
         }
         assertTrue(otps.size() > 50, "OTPs must have sufficient randomness");
     }
 
+    @Test
+    void service_hashMatchesSaltColonPlaintextFormat() {
+        // Stored lookup hashes were computed as SHA-256(salt + ":" + plaintext); pooling must not change them
+        CryptoService service = service();
+        String expected = rawHashTestHelper("test-salt:784-1990-1234567-0");
+        assertEquals(expected, HexFormat.of().formatHex(service.hash("784-1990-1234567-0")));
+        assertEquals(expected, HexFormat.of().formatHex(service.hash("784-1990-1234567-0")),
+            "Repeat on the same thread");
+        assertEquals(32, service.hash("784-1990-1234567-0").length);
+        assertEquals(rawHashTestHelper("123456"), service.hashRaw("123456"));
+    }
+
+    @Test
+    void service_writesKeyIdAndStillReadsLegacyCiphertexts() {
+        // Rows written before key ids existed are Base64(IV || ciphertext || tag) under aes-key
+        CryptoService service = service();
+        String encrypted = service.encrypt("John Ahmed Al Maktoum");
+        assertTrue(encrypted.startsWith("k1:"), encrypted);
+        assertEquals("John Ahmed Al Maktoum", service.decrypt(encrypted));
+        assertEquals("Sensitive PII Data", service.decrypt(encryptTestHelper("Sensitive PII Data")));
+        assertNotEquals(encrypted, service.encrypt("John Ahmed Al Maktoum"));
+    }
+
+    @Test
+    void rotation_decryptsEveryKeyInRingAndReencryptsOntoActive() {
+        CryptoService before = service();
+        CryptoService after = service(Map.of(2, KEY_2), 2);
+        String legacy = encryptTestHelper("Fatima Al Mansoori");
+        String underKey1 = before.encrypt("Fatima Al Mansoori");
+
+        assertFalse(after.isCurrent(legacy));
+        assertFalse(after.isCurrent(underKey1));
+        for (String old : new String[] {legacy, underKey1}) {
+            String moved = after.reencrypt(old);
+            assertTrue(moved.startsWith("k2:"), moved);
+            assertTrue(after.isCurrent(moved));
+            assertSame(moved, after.reencrypt(moved), "Already current: left as is");
+            assertEquals("Fatima Al Mansoori", after.decrypt(moved));
+        }
+        assertEquals("Fatima Al Mansoori", after.decrypt(underKey1));
+        // A node not yet given key 2 cannot read rotated values
+        assertThrows(RuntimeException.class, () -> before.decrypt(after.encrypt("x")));
+    }
+
+    @Test
+    void keyPrefix_isAuthenticated() {
+        CryptoService service = service(Map.of(2, KEY_2), 1);
+        String underKey1 = service.encrypt("payload");
+        // Relabelled, even if key 2 were the right key, the associated data no longer matches
+        assertThrows(RuntimeException.class, () -> service.decrypt("k2:" + underKey1.substring(3)));
+        assertThrows(RuntimeException.class, () -> service.decrypt("k9:" + underKey1.substring(3)));
+        assertThrows(RuntimeException.class, () -> service.decrypt("x1:" + underKey1.substring(3)));
+    }
+
+    @Test
+    void activeKey_mustBeInRing() {
+        assertThrows(IllegalStateException.class, () -> service(Map.of(2, KEY_2), 3));
+    }
+
+    @Test
+    void ringKeyMissingFromSecretsProvider_failsStartup() {
+        TestSecretsProvider secrets = new TestSecretsProvider() {
+            @Override
+            public Set<Integer> getEncryptionKeyIds() {
+                return Set.of(1, 2);
+            }
+        };
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties(
+                "pepper", "unused", "test-salt", null, 2))
+            .random(new AppSecurityProperties.RandomProperties(2, 600000))
+            .build();
+
+        assertThrows(IllegalStateException.class, () -> new CryptoService(props, secrets,
+            new RandomSource(props),
+            new CryptoProviders(props, new SimpleMeterRegistry())));
+    }
+
+    @Test
+    void service_rejectsTamperedCiphertext() {
+        CryptoService service = service();
+        String encrypted = service.encrypt("payload");
+        byte[] combined = Base64.getDecoder().decode(encrypted.substring(3));
+        combined[combined.length - 1] ^= 1;
+        String tampered = encrypted.substring(0, 3) + Base64.getEncoder().encodeToString(combined);
+        assertThrows(RuntimeException.class, () -> service.decrypt(tampered));
+        // The thread's cipher is still usable afterwards
+        assertEquals("payload", service.decrypt(service.encrypt("payload")));
+    }
+
+    @Test
+    void dataKeys_wrapUnderActiveKeyAndSurviveRotation() {
+        CryptoService before = service();
+        SecretKey dataKey = before.newDataKey();
+        String wrapped = before.wrapKey(dataKey);
+        String value = before.encrypt("Fatima Al Mazrouei", dataKey);
+
+        assertTrue(wrapped.startsWith("k1:"));
+        assertTrue(CryptoService.isDataKeyed(value));
+        assertEquals("Fatima Al Mazrouei", before.decrypt(value, before.unwrapKey(wrapped)));
+
+        // Rotation re-wraps the key; values under it are untouched and still decrypt
+        CryptoService after = service(Map.of(2, KEY_2), 2);
+        String rewrapped = after.reencrypt(wrapped);
+        assertTrue(rewrapped.startsWith("k2:"));
+        assertEquals("Fatima Al Mazrouei", after.decrypt(value, after.unwrapKey(rewrapped)));
+    }
+
+    @Test
+    void dataKeyedValue_needsThatUsersKey() {
+        CryptoService service = service();
+        String value = service.encrypt("Khalid Al Suwaidi", service.newDataKey());
+        assertThrows(RuntimeException.class, () -> service.decrypt(value, service.newDataKey()));
+        assertThrows(RuntimeException.class, () -> service.decrypt(value));
+        assertThrows(IllegalArgumentException.class, () -> service.decrypt(service.encrypt("x"), service.newDataKey()));
+    }
+
+    @Test
+    void bulk_keepsInputOrderAcrossChunks() {
+        CryptoService service = service();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3 * CryptoService.BULK_CHUNK + 7; i++) {
+            names.add("Citizen " + i);
+        }
+
+        List<String> encrypted = service.encryptAll(names);
+        assertEquals(names, service.decryptAll(encrypted));
+        assertEquals(names.get(5000), service.decrypt(encrypted.get(5000)));
+
+        List<byte[]> hashes = service.hashAll(names);
+        for (int i = 0; i < names.size(); i += 997) {
+            assertArrayEquals(service.hash(names.get(i)), hashes.get(i));
+        }
+        assertTrue(service.hashAll(List.of()).isEmpty());
+    }
+
+    @Test
+    void bulkDecrypt_failsOnAnyBadValue() {
+        CryptoService service = service();
+        List<String> encrypted = new ArrayList<>(
+            service.encryptAll(Collections.nCopies(2 * CryptoService.BULK_CHUNK, "x")));
+        encrypted.set(3000, "k1:AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA");
+        assertThrows(RuntimeException.class, () -> service.decryptAll(encrypted));
+    }
+
+    private static final String KEY_2 =
+        Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+
+    private static CryptoService service() {
+        return service(null, 1);
+    }
+
+    private static CryptoService service(Map<Integer, String> keys, int activeKeyId) {
+        String key = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties(
+                "pepper", key, "test-salt", null, activeKeyId))
+            .random(new AppSecurityProperties.RandomProperties(2, 600000))
+            .build();
+        return new CryptoService(props, new TestSecretsProvider(keys), new RandomSource(props),
+            new CryptoProviders(props, new SimpleMeterRegistry()));
+    }
+
     // Test helpers — in real tests these would use the actual CryptoService
     private String hashTestHelper(String input, String salt) {
         // Simulates CryptoService.hashWithSalt
         try {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            digest.update(salt.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            byte[] hash = digest.digest(input.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt.getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
             StringBuilder hex = new StringBuilder();
             for (byte b : hash)
                 hex.append(String.format("%02x", b));
@@ -121,8 +305,8 @@ class CryptoServiceTest {
 
     private String rawHashTestHelper(String input) {
         try {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
             StringBuilder hex = new StringBuilder();
             for (byte b : hash)
                 hex.append(String.format("%02x", b));
@@ -137,16 +321,16 @@ class CryptoServiceTest {
         try {
             byte[] key = "0123456789abcdef0123456789abcdef".getBytes();
             byte[] iv = new byte[12];
-            new java.security.SecureRandom().nextBytes(iv);
-            javax.crypto.Cipher cipher = javax.crypto.Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(javax.crypto.Cipher.ENCRYPT_MODE,
-                    new javax.crypto.spec.SecretKeySpec(key, "AES"),
-                    new javax.crypto.spec.GCMParameterSpec(128, iv));
-            byte[] encrypted = cipher.doFinal(plaintext.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            new SecureRandom().nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE,
+                    new SecretKeySpec(key, "AES"),
+                    new GCMParameterSpec(128, iv));
+            byte[] encrypted = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
             byte[] combined = new byte[iv.length + encrypted.length];
             System.arraycopy(iv, 0, combined, 0, iv.length);
             System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
-            return java.util.Base64.getEncoder().encodeToString(combined);
+            return Base64.getEncoder().encodeToString(combined);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -155,23 +339,23 @@ class CryptoServiceTest {
     private String decryptTestHelper(String ciphertext) {
         try {
             byte[] key = "0123456789abcdef0123456789abcdef".getBytes();
-            byte[] combined = java.util.Base64.getDecoder().decode(ciphertext);
+            byte[] combined = Base64.getDecoder().decode(ciphertext);
             byte[] iv = new byte[12];
             byte[] encrypted = new byte[combined.length - 12];
             System.arraycopy(combined, 0, iv, 0, 12);
             System.arraycopy(combined, 12, encrypted, 0, encrypted.length);
-            javax.crypto.Cipher cipher = javax.crypto.Cipher.getInstance("AES/GCM/NoPadding");
-            cipher.init(javax.crypto.Cipher.DECRYPT_MODE,
-                    new javax.crypto.spec.SecretKeySpec(key, "AES"),
-                    new javax.crypto.spec.GCMParameterSpec(128, iv));
-            return new String(cipher.doFinal(encrypted), java.nio.charset.StandardCharsets.UTF_8);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE,
+                    new SecretKeySpec(key, "AES"),
+                    new GCMParameterSpec(128, iv));
+            return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
     private String generateOtpTestHelper(int length) {
-        java.security.SecureRandom random = new java.security.SecureRandom();
+        SecureRandom random = new SecureRandom();
         StringBuilder otp = new StringBuilder();
         for (int i = 0; i < length; i++) {
             otp.append(random.nextInt(10));
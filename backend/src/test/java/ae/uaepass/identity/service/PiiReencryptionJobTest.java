@@ -0,0 +1,190 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.security.CryptoProviders;
+import ae.uaepass.identity.security.RandomSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.crypto.SecretKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PiiReencryptionJob.
+ * Tests segment bounds, key re-wrapping, moves onto data keys and cursor/completion bookkeeping.
+ */
+@ExtendWith(MockitoExtension.class)
+class PiiReencryptionJobTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void segments_tileTheUuidSpaceInPostgresOrder() {
+        assertEquals("00000000-0000-0000-0000-000000000000", PiiReencryptionJob.lowerBound(0).toString());
+        assertEquals("0fffffff-ffff-ffff-ffff-ffffffffffff", PiiReencryptionJob.upperBound(0).toString());
+        assertEquals("80000000-0000-0000-0000-000000000000", PiiReencryptionJob.lowerBound(8).toString());
+        assertEquals("ffffffff-ffff-ffff-ffff-ffffffffffff", PiiReencryptionJob.upperBound(15).toString());
+        UUID id = UUID.fromString("a3c1e2d4-0000-4000-8000-000000000001");
+        int segment = Character.digit(id.toString().charAt(0), 16);
+        // Postgres orders uuid by unsigned bytes, i.e. by the text form
+        assertTrue(PiiReencryptionJob.lowerBound(segment).toString().compareTo(id.toString()) <= 0);
+        assertTrue(PiiReencryptionJob.upperBound(segment).toString().compareTo(id.toString()) >= 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batch_rewrapsKeysAndMovesLegacyValuesCompareAndSet() {
+        CryptoService oldKey = crypto(Map.of(), 1);
+        CryptoService newKey = crypto(Map.of(2, KEY_2), 2);
+        UUID first = UUID.fromString("30000000-0000-4000-8000-000000000001");
+        UUID last = UUID.fromString("30000000-0000-4000-8000-000000000002");
+        SecretKey dataKey = oldKey.newDataKey();
+        String wrapped = oldKey.wrapKey(dataKey);
+        String legacy = oldKey.encrypt("Omar Al Hashimi");
+        String onDataKey = oldKey.encrypt("Mariam Al Nahyan", dataKey);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any()))
+            .thenReturn(List.of(new Object[] {first, legacy, wrapped}, new Object[] {last, onDataKey, wrapped}));
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE user_data_keys"), anyList())).thenReturn(new int[] {1, 1});
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE users"), anyList())).thenReturn(new int[] {0});
+
+        PiiReencryptionJob.Batch batch = job(newKey, 2).reencryptBatch(3, null, 2, false);
+
+        ArgumentCaptor<List<Object[]>> rewraps = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE user_data_keys"), rewraps.capture());
+        Object[] rewrap = rewraps.getValue().get(0);
+        assertTrue(((String) rewrap[0]).startsWith("k2:"));
+        assertEquals(dataKey, newKey.unwrapKey((String) rewrap[0]));
+        assertEquals(wrapped, rewrap[2], "Compare-and-set on the wrapped key that was read");
+
+        // Only the legacy value moves, onto the data key; the application won the race for it
+        ArgumentCaptor<List<Object[]>> values = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE users"), values.capture());
+        assertEquals(1, values.getValue().size());
+        Object[] value = values.getValue().get(0);
+        assertEquals("Omar Al Hashimi", newKey.decrypt((String) value[0], dataKey));
+        assertEquals(first, value[1]);
+        assertEquals(legacy, value[2], "Compare-and-set on the ciphertext that was read");
+
+        // Full batch: not done, cursor at the last row, two keys re-wrapped
+        assertEquals(new PiiReencryptionJob.Batch(2, last, 0, false), batch);
+        verify(jdbcTemplate).update(startsWith("UPDATE pii_reencryption_progress"), eq(last), eq(2), eq(false), eq(false), eq(3), eq(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void userWithoutKey_getsOne_andValueMovesOnlyIfItIsStored() {
+        CryptoService crypto = crypto(Map.of(), 1);
+        UUID stored = UUID.fromString("30000000-0000-4000-8000-000000000001");
+        UUID raced = UUID.fromString("30000000-0000-4000-8000-000000000002");
+        String legacy = crypto.encrypt("Saeed Al Falasi");
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any()))
+            .thenReturn(List.of(new Object[] {stored, legacy, null}, new Object[] {raced, legacy, null}));
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO user_data_keys"), anyList())).thenReturn(new int[] {1, 0});
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE users"), anyList())).thenReturn(new int[] {1});
+
+        PiiReencryptionJob.Batch batch = job(crypto, 500).reencryptBatch(3, null, 1, false);
+
+        ArgumentCaptor<List<Object[]>> keys = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO user_data_keys"), keys.capture());
+        SecretKey dataKey = crypto.unwrapKey((String) keys.getValue().get(0)[1]);
+        // A user shredded since the batch was read must not get a new key
+        verify(jdbcTemplate).batchUpdate(contains("NOT EXISTS (SELECT 1 FROM shredded_users"), anyList());
+        assertEquals(stored, keys.getValue().get(0)[2]);
+        ArgumentCaptor<List<Object[]>> values = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE users"), values.capture());
+        assertEquals(1, values.getValue().size());
+        assertEquals(stored, values.getValue().get(0)[1]);
+        assertEquals("Saeed Al Falasi", crypto.decrypt((String) values.getValue().get(0)[0], dataKey));
+
+        // The raced row is left for the next run, so the segment is not complete
+        assertEquals(1, batch.skipped());
+        verify(jdbcTemplate).update(startsWith("UPDATE pii_reencryption_progress"), isNull(), eq(2), eq(false), eq(false), eq(3), eq(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void segmentWithUndecryptableRows_isNotMarkedComplete() {
+        CryptoService newKey = crypto(Map.of(2, KEY_2), 2);
+        UUID id = UUID.fromString("30000000-0000-4000-8000-000000000001");
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any()))
+            .thenReturn(new ArrayList<>(List.<Object[]>of(new Object[] {id, null, "k7:AAAA"})));
+
+        PiiReencryptionJob.Batch batch = job(newKey, 500).reencryptBatch(3, null, 2, false);
+
+        assertTrue(batch.done());
+        assertEquals(1, batch.skipped());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        // Cursor reset and no completion: the segment is rescanned next run
+        verify(jdbcTemplate).update(startsWith("UPDATE pii_reencryption_progress"), isNull(), eq(0), eq(false), eq(false), eq(3), eq(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void skipInEarlierBatch_keepsCleanLastBatchFromCompletingSegment() {
+        CryptoService newKey = crypto(Map.of(2, KEY_2), 2);
+        UUID undecryptable = UUID.fromString("30000000-0000-4000-8000-000000000001");
+        UUID clean = UUID.fromString("30000000-0000-4000-8000-000000000002");
+        UUID lastClean = UUID.fromString("30000000-0000-4000-8000-000000000003");
+        String current = newKey.wrapKey(newKey.newDataKey());
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any()))
+            .thenReturn(new ArrayList<>(List.<Object[]>of(
+                new Object[] {undecryptable, null, "k7:AAAA"}, new Object[] {clean, null, current})))
+            .thenReturn(new ArrayList<>(List.<Object[]>of(new Object[] {lastClean, null, current})));
+        PiiReencryptionJob job = job(newKey, 2);
+
+        // First batch is full and skips a row: the cursor moves on, the skip is recorded
+        PiiReencryptionJob.Batch first = job.reencryptBatch(3, null, 2, false);
+        assertFalse(first.done());
+        assertEquals(1, first.skipped());
+        verify(jdbcTemplate).update(startsWith("UPDATE pii_reencryption_progress"),
+            eq(clean), eq(0), eq(true), eq(false), eq(3), eq(2));
+
+        // Last batch is clean, but the walk skipped a row: no completion, cursor and flag reset
+        PiiReencryptionJob.Batch last = job.reencryptBatch(3, clean, 2, true);
+        assertTrue(last.done());
+        assertEquals(0, last.skipped());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE pii_reencryption_progress"),
+            any(), anyInt(), anyBoolean(), eq(true), anyInt(), anyInt());
+        verify(jdbcTemplate).update(startsWith("UPDATE pii_reencryption_progress"),
+            isNull(), eq(0), eq(false), eq(false), eq(3), eq(2));
+    }
+
+    private static final String KEY_2 = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+
+    private PiiReencryptionJob job(CryptoService crypto, int batchSize) {
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .reencryption(new AppSecurityProperties.ReencryptionProperties(true, 3600000, batchSize, 2, 10000, 500))
+            .build();
+        return new PiiReencryptionJob(jdbcTemplate, transactionManager, null, crypto, props, new SimpleMeterRegistry());
+    }
+
+    private static CryptoService crypto(Map<Integer, String> keys, int activeKeyId) {
+        String key1 = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties("pepper", key1, "salt", null, activeKeyId))
+            .random(new AppSecurityProperties.RandomProperties(1, 600000))
+            .build();
+        return new CryptoService(props, new TestSecretsProvider(keys), new RandomSource(props),
+            new CryptoProviders(props, new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,176 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.entity.AuditEventType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the SOC security event feed ring.
+ * Ensures offsets, eviction, masking and Last-Event-ID resumption behave as documented.
+ */
+class SecurityEventFeedTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SecurityEventFeed feed;
+
+    @AfterEach
+    void tearDown() {
+        if (feed != null) {
+            feed.close();
+        }
+    }
+
+    @Test
+    void offer_skipsEventTypesOutsideTheFeed() {
+        feed = feed(8, 10);
+        feed.offer(record(AuditEventType.LOGIN_SUCCESS));
+        feed.offer(record(AuditEventType.TOKEN_REPLAYED));
+
+        List<SecurityEventFeed.Entry> entries = feed.after(0, 10);
+        assertEquals(1, entries.size());
+        assertEquals("audit.TOKEN_REPLAYED", entries.get(0).type());
+        assertEquals(1, entries.get(0).offset());
+    }
+
+    @Test
+    void offer_masksUserAndIp() throws Exception {
+        feed = feed(8, 10);
+        UUID userId = UUID.randomUUID();
+        feed.offer(new AuditRecord(AuditEventType.ACCOUNT_LOCKED, userId, "req-1", "10.20.30.40", null,
+            "{\"reason\":\"max_attempts_reached\"}", Instant.now()));
+
+        JsonNode json = objectMapper.readTree(feed.after(0, 1).get(0).json());
+        assertEquals("audit.ACCOUNT_LOCKED", json.get("type").asText());
+        assertFalse(json.get("userId").asText().contains(userId.toString()));
+        assertNotEquals("10.20.30.40", json.get("ipAddress").asText());
+        assertEquals("max_attempts_reached", json.get("details").get("reason").asText());
+    }
+
+    @Test
+    void ring_evictsOldestEvents() {
+        feed = feed(4, 10);
+        for (int i = 0; i < 10; i++) {
+            feed.offer(record(AuditEventType.SESSION_REVOKED));
+        }
+
+        assertEquals(10, feed.head());
+        assertEquals(7, feed.oldest());
+        List<SecurityEventFeed.Entry> entries = feed.after(0, 10);
+        assertEquals(List.of(7L, 8L, 9L, 10L), entries.stream().map(SecurityEventFeed.Entry::offset).toList());
+        assertEquals(List.of(9L, 10L), feed.after(8, 10).stream().map(SecurityEventFeed.Entry::offset).toList());
+        assertTrue(feed.after(10, 10).isEmpty());
+    }
+
+    @Test
+    void resumeCursor_continuesOnlyFromThisFeedsIds() {
+        feed = feed(8, 10);
+        for (int i = 0; i < 3; i++) {
+            feed.offer(record(AuditEventType.PIN_LOCKOUT));
+        }
+
+        assertEquals(3, feed.resumeCursor(null), "New subscribers start at the head");
+        assertEquals(2, feed.resumeCursor(feed.eventId(2)));
+        assertEquals(-1, feed.resumeCursor("otherfeed-2"), "Another node's ID replays the ring");
+        assertEquals(-1, feed.resumeCursor(feed.eventId(99)), "An ID ahead of the head replays the ring");
+        assertEquals(-1, feed.resumeCursor("garbage"));
+    }
+
+    @Test
+    void subscribe_rejectsUnknownTypes() {
+        feed = feed(8, 10);
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(null, Set.of("audit.NOT_A_TYPE")));
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(null, Set.of("TOKEN_REPLAYED")));
+        assertNotNull(feed.subscribe(null, Set.of("audit.TOKEN_REPLAYED", "risk.BRUTE_FORCE")));
+    }
+
+    @Test
+    void subscribe_isBoundedByMaxSubscribers() {
+        feed = feed(8, 2);
+        feed.subscribe(null, null);
+        feed.subscribe(null, null);
+        assertThrows(IllegalStateException.class, () -> feed.subscribe(null, null));
+    }
+
+    @Test
+    void subscribe_concurrently_neverExceedsMaxSubscribers() throws Exception {
+        feed = feed(8, 4);
+        int threads = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> attempts = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                attempts.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        feed.subscribe(null, null);
+                        accepted.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // Over the limit
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(4, accepted.get());
+        assertEquals(4, feed.subscriberCount());
+    }
+
+    @Test
+    void failedSend_releasesSlotOnce() throws Exception {
+        feed = feed(8, 1);
+        SseEmitter emitter = feed.subscribe(null, null);
+        emitter.complete();
+
+        // The next drain fails to send on the completed emitter and frees the slot
+        feed.offer(record(AuditEventType.TOKEN_REPLAYED));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (feed.subscriberCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, feed.subscriberCount());
+
+        feed.offer(record(AuditEventType.TOKEN_REPLAYED));
+        assertNotNull(feed.subscribe(null, null));
+        assertEquals(1, feed.subscriberCount());
+    }
+
+    private SecurityEventFeed feed(int capacity, int maxSubscribers) {
+        AuditProperties.FeedProperties feedProps = new AuditProperties.FeedProperties(capacity,
+            Set.of(AuditEventType.ACCOUNT_LOCKED, AuditEventType.PIN_LOCKOUT, AuditEventType.TOKEN_REPLAYED,
+                AuditEventType.SESSION_REVOKED), 15000, 60000, maxSubscribers);
+        AuditProperties props = new AuditProperties(null, null, null, null, null, null, null, null, null, null,
+            null, feedProps);
+        return new SecurityEventFeed(objectMapper, props, new SimpleMeterRegistry());
+    }
+
+    private static AuditRecord record(AuditEventType type) {
+        return new AuditRecord(type, UUID.randomUUID(), "req-1", "10.0.0.1", null, null, Instant.now());
+    }
+}
@@ -0,0 +1,133 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AuditProperties;
+import ae.uaepass.identity.dto.ActivityPage;
+import ae.uaepass.identity.entity.AuditEventType;
+import ae.uaepass.identity.entity.AuditLog;
+import ae.uaepass.identity.repository.AuditLogRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserActivityService.
+ * Tests first-page caching, generation-based invalidation and Redis failure handling.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserActivityServiceTest {
+
+    private static final UUID USER = UUID.fromString("33333333-3333-3333-3333-333333333333");
+
+    @Mock
+    private AuditLogRepository auditLogRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOps;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private UserActivityService service;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        AuditProperties props = new AuditProperties(null, null, null, null, null, null, null, null,
+            new AuditProperties.ActivityProperties(90, 20, 600, 200), null, null, null);
+        service = new UserActivityService(auditLogRepository, redisTemplate, objectMapper, props,
+            new SimpleMeterRegistry());
+    }
+
+    @Test
+    void page_cacheMiss_loadsAndCachesUnderCurrentGeneration() {
+        when(valueOps.multiGet(anyList())).thenReturn(Arrays.asList("g1", null));
+        when(auditLogRepository.findUserActivity(eq(USER), any(), any(), isNull(), eq(21)))
+            .thenReturn(List.of(row(1, "10.1.2.3")));
+
+        ActivityPage page = service.page(USER, null);
+
+        assertEquals(1, page.items().size());
+        assertEquals("10.1.*.*", page.items().get(0).ipAddress());
+        assertEquals("SMS", page.items().get(0).details().get("channel").asText());
+        ArgumentCaptor<String> cached = ArgumentCaptor.forClass(String.class);
+        verify(valueOps).set(eq("activity:page:" + USER), cached.capture(), eq(Duration.ofSeconds(600)));
+        assertTrue(cached.getValue().startsWith("g1\n"));
+    }
+
+    @Test
+    void page_cachedUnderCurrentGeneration_skipsDatabase() throws Exception {
+        ActivityPage cached = new ActivityPage(List.of(), false, null);
+        when(valueOps.multiGet(anyList()))
+            .thenReturn(Arrays.asList("g1", "g1\n" + objectMapper.writeValueAsString(cached)));
+
+        assertEquals(cached, service.page(USER, null));
+        verifyNoInteractions(auditLogRepository);
+    }
+
+    @Test
+    void page_cachedUnderOldGeneration_reloads() throws Exception {
+        ActivityPage stale = new ActivityPage(List.of(), false, null);
+        when(valueOps.multiGet(anyList()))
+            .thenReturn(Arrays.asList("g2", "g1\n" + objectMapper.writeValueAsString(stale)));
+        when(auditLogRepository.findUserActivity(eq(USER), any(), any(), isNull(), anyInt()))
+            .thenReturn(List.of(row(1, null)));
+
+        assertEquals(1, service.page(USER, null).items().size());
+    }
+
+    @Test
+    void page_redisDown_readsDatabase() {
+        when(valueOps.multiGet(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+        when(auditLogRepository.findUserActivity(eq(USER), any(), any(), isNull(), anyInt()))
+            .thenReturn(List.of(row(1, null)));
+
+        assertEquals(1, service.page(USER, null).items().size());
+        verify(valueOps, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void invalidate_failure_retriesSameUsers() {
+        service.recordWritten(new AuditRecord(AuditEventType.LOGIN_SUCCESS, USER, "req-1", null, null, null,
+            Instant.now()));
+        service.recordWritten(new AuditRecord(AuditEventType.RISK_EVENT_CREATED, UUID.randomUUID(), "req-2",
+            null, null, null, Instant.now()));
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+            .thenThrow(new RedisConnectionFailureException("down"))
+            .thenReturn(List.of());
+
+        service.invalidate();
+        service.invalidate();
+        service.invalidate();
+
+        // Failed, retried, then nothing left; the internal event never dirtied its user
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+    }
+
+    private static AuditLog row(long id, String ip) {
+        return AuditLog.restored(id, id, Instant.parse("2026-01-01T00:00:00Z"), null)
+            .eventType(AuditEventType.OTP_SENT)
+            .userId(USER)
+            .ipAddress(ip)
+            .details("{\"channel\":\"SMS\"}");
+    }
+}
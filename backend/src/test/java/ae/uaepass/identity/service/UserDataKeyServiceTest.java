@@ -0,0 +1,131 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.config.AppSecurityProperties;
+import ae.uaepass.identity.config.TestSecurityProperties;
+import ae.uaepass.identity.security.CryptoProviders;
+import ae.uaepass.identity.security.RandomSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserDataKeyService.
+ * Tests per-user encryption, the unwrapped key cache and crypto-shredding.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserDataKeyServiceTest {
+
+    private static final UUID USER = UUID.fromString("5b1f0c2e-7a44-4d1b-9c3e-2f8a6d0e4b71");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private CryptoService crypto;
+    private UserDataKeyService service;
+
+    @BeforeEach
+    void setUp() {
+        AppSecurityProperties props = TestSecurityProperties.builder()
+            .crypto(new AppSecurityProperties.CryptoProperties("pepper", "unused", "salt", null, 1))
+            .random(new AppSecurityProperties.RandomProperties(1, 600000))
+            .dataKeys(new AppSecurityProperties.DataKeyProperties(2, 300))
+            .build();
+        crypto = new CryptoService(props, new TestSecretsProvider(), new RandomSource(props),
+            new CryptoProviders(props, new SimpleMeterRegistry()));
+        service = new UserDataKeyService(jdbcTemplate, crypto, props, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void createdKey_isStoredWrappedAndServedFromCache() {
+        service.createKey(USER);
+
+        ArgumentCaptor<String> wrapped = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO user_data_keys"), eq(USER), wrapped.capture());
+        assertTrue(wrapped.getValue().startsWith("k1:"));
+
+        String encrypted = service.encrypt(USER, "Aisha Al Qasimi");
+        assertTrue(CryptoService.isDataKeyed(encrypted));
+        assertEquals("Aisha Al Qasimi", service.decrypt(USER, encrypted));
+        assertEquals("Aisha Al Qasimi", crypto.decrypt(encrypted, crypto.unwrapKey(wrapped.getValue())));
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class), any());
+    }
+
+    @Test
+    void cacheMiss_unwrapsStoredKey() {
+        SecretKey key = crypto.newDataKey();
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(USER)))
+            .thenReturn(List.of(crypto.wrapKey(key)));
+
+        String encrypted = crypto.encrypt("Hamdan Al Maktoum", key);
+        assertEquals("Hamdan Al Maktoum", service.decrypt(USER, encrypted));
+        assertEquals("Hamdan Al Maktoum", service.decrypt(USER, encrypted));
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(String.class), eq(USER));
+    }
+
+    @Test
+    void legacyValue_decryptsWithRingKey() {
+        assertEquals("Noura Al Kaabi", service.decrypt(USER, crypto.encrypt("Noura Al Kaabi")));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void shred_makesValuesUnreadable() {
+        service.createKey(USER);
+        String encrypted = service.encrypt(USER, "Yousef Al Dhaheri");
+        lenient().when(jdbcTemplate.update(startsWith("DELETE FROM user_data_keys"), eq(USER))).thenReturn(1);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(USER))).thenReturn(List.of());
+
+        assertTrue(service.shred(USER));
+
+        assertThrows(IllegalStateException.class, () -> service.decrypt(USER, encrypted));
+        assertThrows(IllegalStateException.class, () -> service.encrypt(USER, "new value"));
+    }
+
+    @Test
+    void shred_ringKeyedUser_clearsValueAndTombstones() {
+        lenient().when(jdbcTemplate.update(startsWith("UPDATE users SET full_name_enc = NULL"), eq(USER))).thenReturn(1);
+
+        assertTrue(service.shred(USER), "A user with only ring-keyed PII must still count as shredded");
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO shredded_users"), eq(USER));
+        verify(jdbcTemplate).update(startsWith("DELETE FROM user_data_keys"), eq(USER));
+    }
+
+    @Test
+    void keyCache_isBoundedLeastRecentlyUsed() {
+        UserDataKeyService.KeyCache cache = new UserDataKeyService.KeyCache(2, 60_000_000_000L);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        cache.put(a, crypto.newDataKey());
+        cache.put(b, crypto.newDataKey());
+        assertNotNull(cache.get(a)); // a is now most recently used
+        cache.put(c, crypto.newDataKey());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+    }
+
+    @Test
+    void keyCache_expiresEntries() {
+        UserDataKeyService.KeyCache cache = new UserDataKeyService.KeyCache(2, 0);
+        cache.put(USER, crypto.newDataKey());
+        assertNull(cache.get(USER));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,112 @@
+package ae.uaepass.identity.util;
+
+import ae.uaepass.identity.entity.AuditEventType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compact audit column encoding.
+ * Ensures every value reads back as the exact text the audit chain hashed.
+ */
+class AuditColumnCodecTest {
+
+    @Test
+    void ipv4_isStoredCompactOnly() {
+        assertEquals("10.1.2.3", AuditColumnCodec.inet("10.1.2.3"));
+        assertNull(AuditColumnCodec.ipRaw("10.1.2.3"));
+        assertEquals("10.1.2.3", AuditColumnCodec.ipText("10.1.2.3", null));
+    }
+
+    @Test
+    void ipv6_keepsOriginalText() {
+        String ip = "2001:DB8::1";
+        assertEquals("2001:db8:0:0:0:0:0:1", AuditColumnCodec.inet(ip));
+        assertEquals(ip, AuditColumnCodec.ipRaw(ip));
+        // Postgres would return 2001:db8::1 for the inet; the raw text wins
+        assertEquals(ip, AuditColumnCodec.ipText("2001:db8::1", AuditColumnCodec.ipRaw(ip)));
+    }
+
+    @Test
+    void malformedIp_isNeverCastToInet() {
+        for (String ip : new String[] {"unknown", "010.1.2.3", "256.1.2.3", "1.2.3", "example.com", "::zz"}) {
+            assertNull(AuditColumnCodec.inet(ip), ip);
+            assertEquals(ip, AuditColumnCodec.ipRaw(ip), ip);
+        }
+    }
+
+    @Test
+    void scopedIpv6_dropsZoneFromInet() {
+        assertEquals("fe80:0:0:0:0:0:0:1", AuditColumnCodec.inet("fe80::1%1"));
+        assertEquals("fe80::1%1", AuditColumnCodec.ipRaw("fe80::1%1"));
+    }
+
+    @Test
+    void sha256Hex_roundTripsThroughBytes() {
+        String hash = "ab".repeat(32);
+        byte[] stored = AuditColumnCodec.fingerprint(hash);
+        assertEquals(32, stored.length);
+        assertNull(AuditColumnCodec.fingerprintRaw(hash));
+        assertEquals(hash, AuditColumnCodec.fingerprintText(stored, null));
+    }
+
+    @Test
+    void nonCanonicalFingerprint_keepsOriginalText() {
+        for (String hash : new String[] {"AB".repeat(32), "abc", "zz".repeat(32)}) {
+            assertNull(AuditColumnCodec.fingerprint(hash), hash);
+            assertEquals(hash, AuditColumnCodec.fingerprintText(null, AuditColumnCodec.fingerprintRaw(hash)));
+        }
+    }
+
+    @Test
+    void oversizedHeaders_areCutToColumnWidth() {
+        String ip = "1.2.3.4 ".repeat(1000);
+        assertNull(AuditColumnCodec.inet(ip));
+        assertEquals(ip.substring(0, AuditColumnCodec.MAX_IP_RAW_LENGTH), AuditColumnCodec.ipRaw(ip));
+
+        String fingerprint = "f".repeat(10_000);
+        assertEquals(AuditColumnCodec.MAX_FINGERPRINT_RAW_LENGTH, AuditColumnCodec.fingerprintRaw(fingerprint).length());
+    }
+
+    @Test
+    void bounded_dropsNulAndNeverSplitsSurrogatePair() {
+        assertEquals("ab", AuditColumnCodec.bounded("a\0b", 45));
+        String emoji = "\uD83D\uDE00";
+        assertEquals("abcd", AuditColumnCodec.bounded("abcd" + emoji, 5));
+        assertEquals("abc" + emoji, AuditColumnCodec.bounded("abc" + emoji + "x", 5));
+    }
+
+    @Test
+    void nulls_stayNull() {
+        assertNull(AuditColumnCodec.inet(null));
+        assertNull(AuditColumnCodec.ipRaw(null));
+        assertNull(AuditColumnCodec.ipText(null, null));
+        assertNull(AuditColumnCodec.fingerprint(null));
+        assertNull(AuditColumnCodec.fingerprintRaw(null));
+        assertNull(AuditColumnCodec.fingerprintText(null, null));
+    }
+
+    @Test
+    void eventCodes_areUniqueAndSeededByMigration() throws IOException {
+        String migration;
+        try (InputStream in = getClass().getResourceAsStream("/db/migration/V10__audit_compact_columns.sql")) {
+            assertNotNull(in);
+            migration = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Set<Short> codes = new HashSet<>();
+        for (AuditEventType type : AuditEventType.values()) {
+            assertTrue(codes.add(type.code()), "Duplicate code " + type.code());
+            assertSame(type, AuditEventType.fromCode(type.code()));
+            assertTrue(migration.contains("(" + type.code() + ", '" + type.name() + "')"),
+                type + " missing from audit_event_types");
+        }
+        assertThrows(IllegalArgumentException.class, () -> AuditEventType.fromCode(0));
+        assertThrows(IllegalArgumentException.class, () -> AuditEventType.fromCode(Short.MAX_VALUE));
+    }
+}
@@ -0,0 +1,56 @@
+package ae.uaepass.identity.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the archive Bloom filter.
+ * Ensures no false negatives, a bounded false-positive rate and a stable serialized form.
+ */
+class BloomFilterTest {
+
+    @Test
+    void mightContain_everyInsertedKey_isFound() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("req-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("req-" + i), "Bloom filters must never report a false negative");
+        }
+    }
+
+    @Test
+    void mightContain_absentKeys_stayNearTargetRate() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(UUID.randomUUID().toString());
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "Expected ~1% false positives, got " + falsePositives);
+    }
+
+    @Test
+    void readFrom_roundTripsSerializedFilter() throws Exception {
+        BloomFilter filter = BloomFilter.create(100, 0.01);
+        filter.put("a1b2c3");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+
+        BloomFilter read = BloomFilter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertTrue(read.mightContain("a1b2c3"));
+    }
+}
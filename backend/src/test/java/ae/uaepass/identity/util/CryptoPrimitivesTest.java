@@ -0,0 +1,82 @@
+package ae.uaepass.identity.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the reused JCA instances and hex encoding.
+ * Ensures reuse and prefix cloning give exactly the digests a fresh instance would.
+ */
+class CryptoPrimitivesTest {
+
+    @Test
+    void hex_matchesHexFormat() {
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        assertEquals(HexFormat.of().formatHex(bytes), CryptoPrimitives.hex(bytes));
+        assertEquals("", CryptoPrimitives.hex(new byte[0]));
+    }
+
+    @Test
+    void sha256_isResetBetweenUses() throws Exception {
+        MessageDigest digest = CryptoPrimitives.sha256();
+        digest.update("left over".getBytes(StandardCharsets.UTF_8)); // Abandoned mid-hash
+
+        byte[] input = "784-1990-1234567-0".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(input), CryptoPrimitives.sha256(input));
+    }
+
+    @Test
+    void digestAfter_equalsHashOfConcatenation() throws Exception {
+        MessageDigest prototype = CryptoPrimitives.prefixed("salt:".getBytes(StandardCharsets.UTF_8));
+        for (String input : new String[] {"", "a", "x".repeat(200)}) {
+            byte[] expected = MessageDigest.getInstance("SHA-256")
+                .digest(("salt:" + input).getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(expected, CryptoPrimitives.digestAfter(prototype, input.getBytes(StandardCharsets.UTF_8)));
+        }
+        // The prototype itself is untouched
+        assertArrayEquals(CryptoPrimitives.digestAfter(prototype, new byte[0]),
+            CryptoPrimitives.digestAfter(prototype, new byte[0]));
+    }
+
+    @Test
+    void sharedPrototype_isSafeAcrossThreads() throws Exception {
+        MessageDigest prototype = CryptoPrimitives.prefixed("salt:".getBytes(StandardCharsets.UTF_8));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        byte[] input = (thread + "-" + i).getBytes(StandardCharsets.UTF_8);
+                        byte[] viaPrototype = CryptoPrimitives.digestAfter(prototype, input);
+                        MessageDigest reused = CryptoPrimitives.sha256();
+                        reused.update("salt:".getBytes(StandardCharsets.UTF_8));
+                        if (!MessageDigest.isEqual(viaPrototype, reused.digest(input))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ae.uaepass.identity.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the audit Merkle tree.
+ * Ensures every leaf has a valid inclusion proof and tampering is detected.
+ */
+class MerkleTreeTest {
+
+    @Test
+    void proof_everyLeaf_verifiesAgainstRoot() {
+        // Odd and even sizes exercise the promoted-node path
+        for (int size : new int[] {1, 2, 3, 7, 8, 1000}) {
+            List<byte[]> leaves = leaves(size);
+            byte[] root = MerkleTree.root(leaves);
+            for (int i = 0; i < size; i++) {
+                assertTrue(MerkleTree.verify(leaves.get(i), MerkleTree.proof(leaves, i), root),
+                    "Leaf " + i + " of " + size + " must verify");
+            }
+        }
+    }
+
+    @Test
+    void proof_isLogarithmic() {
+        List<byte[]> leaves = leaves(1024);
+        assertEquals(10, MerkleTree.proof(leaves, 517).size(), "1024 leaves need 10 siblings");
+    }
+
+    @Test
+    void verify_wrongLeaf_fails() {
+        List<byte[]> leaves = leaves(16);
+        byte[] root = MerkleTree.root(leaves);
+        byte[] forged = MerkleTree.leafHash("forged".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(MerkleTree.verify(forged, MerkleTree.proof(leaves, 3), root));
+    }
+
+    @Test
+    void root_leafCannotPoseAsInnerNode() {
+        List<byte[]> leaves = leaves(2);
+        byte[] innerAsData = new byte[64];
+        System.arraycopy(leaves.get(0), 0, innerAsData, 0, 32);
+        System.arraycopy(leaves.get(1), 0, innerAsData, 32, 32);
+
+        assertNotEquals(
+            new String(MerkleTree.root(leaves), StandardCharsets.ISO_8859_1),
+            new String(MerkleTree.leafHash(innerAsData), StandardCharsets.ISO_8859_1),
+            "Leaf and node hashes must be domain-separated");
+    }
+
+    @Test
+    void root_emptyTree_throws() {
+        assertThrows(IllegalArgumentException.class, () -> MerkleTree.root(List.of()));
+    }
+
+    private static List<byte[]> leaves(int count) {
+        List<byte[]> leaves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            leaves.add(MerkleTree.leafHash(("entry-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        return leaves;
+    }
+}
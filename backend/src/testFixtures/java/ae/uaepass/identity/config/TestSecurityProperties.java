@@ -0,0 +1,76 @@
+package ae.uaepass.identity.config;
+
+/**
+ * Builds AppSecurityProperties for unit tests and benchmarks.
+ *
+ * Every group left unset is null, as when the section is absent; set only what the code under
+ * test reads. A new properties group is added here once instead of to every call site.
+ */
+public final class TestSecurityProperties {
+
+    private AppSecurityProperties.CorsProperties cors;
+    private AppSecurityProperties.JwtProperties jwt;
+    private AppSecurityProperties.CryptoProperties crypto;
+    private AppSecurityProperties.OtpProperties otp;
+    private AppSecurityProperties.RateLimitProperties rateLimit;
+    private AppSecurityProperties.RandomProperties random;
+    private AppSecurityProperties.ReencryptionProperties reencryption;
+    private AppSecurityProperties.DataKeyProperties dataKeys;
+    private AppSecurityProperties.ProviderProperties providers;
+
+    private TestSecurityProperties() {
+    }
+
+    public static TestSecurityProperties builder() {
+        return new TestSecurityProperties();
+    }
+
+    public TestSecurityProperties cors(AppSecurityProperties.CorsProperties cors) {
+        this.cors = cors;
+        return this;
+    }
+
+    public TestSecurityProperties jwt(AppSecurityProperties.JwtProperties jwt) {
+        this.jwt = jwt;
+        return this;
+    }
+
+    public TestSecurityProperties crypto(AppSecurityProperties.CryptoProperties crypto) {
+        this.crypto = crypto;
+        return this;
+    }
+
+    public TestSecurityProperties otp(AppSecurityProperties.OtpProperties otp) {
+        this.otp = otp;
+        return this;
+    }
+
+    public TestSecurityProperties rateLimit(AppSecurityProperties.RateLimitProperties rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public TestSecurityProperties random(AppSecurityProperties.RandomProperties random) {
+        this.random = random;
+        return this;
+    }
+
+    public TestSecurityProperties reencryption(AppSecurityProperties.ReencryptionProperties reencryption) {
+        this.reencryption = reencryption;
+        return this;
+    }
+
+    public TestSecurityProperties dataKeys(AppSecurityProperties.DataKeyProperties dataKeys) {
+        this.dataKeys = dataKeys;
+        return this;
+    }
+
+    public TestSecurityProperties providers(AppSecurityProperties.ProviderProperties providers) {
+        this.providers = providers;
+        return this;
+    }
+
+    public AppSecurityProperties build() {
+        return new AppSecurityProperties(cors, jwt, crypto, otp, rateLimit, random, reencryption, dataKeys, providers);
+    }
+}
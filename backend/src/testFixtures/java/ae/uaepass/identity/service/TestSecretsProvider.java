@@ -0,0 +1,58 @@
+package ae.uaepass.identity.service;
+
+import ae.uaepass.identity.security.SecretsProvider;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Fixed secrets for unit tests and benchmarks — never use outside them.
+ */
+public class TestSecretsProvider implements SecretsProvider {
+
+    private final Map<Integer, String> rotatedKeys;
+
+    public TestSecretsProvider() {
+        this(Map.of());
+    }
+
+    /**
+     * @param rotatedKeys PII keys beyond key 1, by id (Base64, 32 bytes)
+     */
+    public TestSecretsProvider(Map<Integer, String> rotatedKeys) {
+        this.rotatedKeys = rotatedKeys != null ? rotatedKeys : Map.of();
+    }
+
+    @Override
+    public String getSecret(String key) {
+        return "test-secret-" + key;
+    }
+
+    @Override
+    public String getEncryptionKey() {
+        return "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+    }
+
+    @Override
+    public String getEncryptionKey(int id) {
+        return id == 1 ? getEncryptionKey() : rotatedKeys.get(id);
+    }
+
+    @Override
+    public Set<Integer> getEncryptionKeyIds() {
+        Set<Integer> ids = new TreeSet<>(rotatedKeys.keySet());
+        ids.add(1);
+        return ids;
+    }
+
+    @Override
+    public String getServerPepper() {
+        return "test-pepper";
+    }
+
+    @Override
+    public String getAuditHmacKey() {
+        return "test-audit-hmac-key";
+    }
+}